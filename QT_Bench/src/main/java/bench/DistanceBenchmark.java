@@ -0,0 +1,124 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import data.Data;
+import data.DistanceMetric;
+import data.Distances;
+import data.EmptyDatasetException;
+import data.Tuple;
+
+/**
+ * Benchmark di {@link Tuple#getDistance(Tuple)}, di {@link Data#getItemSet(int)} e del calcolo
+ * a blocchi delle distanze ({@link Distances}) al variare del numero di attributi discreti e continui.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+    /** Numero di righe del dataset (potenza di due). */
+    private static final int ROWS = 4096;
+
+    /** Schema del dataset: "attributi discreti:attributi continui". */
+    @Param({"4:1", "8:4", "16:16"})
+    public String schema;
+
+    /** Dataset generato */
+    private Data data;
+    /** Tuple del dataset, lette una volta sola */
+    private Tuple[] tuples;
+    /** Distanze tra gli esempi del dataset con la misura predefinita */
+    private Distances distances;
+    /** Indici di tutti gli esempi */
+    private int[] rows;
+    /** Distanze calcolate a blocchi */
+    private double[] out;
+    /** Posizione corrente nella sequenza di coppie */
+    private int next;
+
+    /**
+     * Genera il dataset e ne legge le tuple.
+     *
+     * @throws Exception se il dataset non puo' essere generato.
+     */
+    @Setup
+    public void setup() throws Exception {
+        String[] parts = schema.split(":");
+        data = new SyntheticTable().rows(ROWS)
+                .discrete(Integer.parseInt(parts[0]), 5)
+                .continuous(Integer.parseInt(parts[1]), SyntheticTable.Distribution.UNIFORM)
+                .load();
+        tuples = new Tuple[data.getNumberOfExamples()];
+        for (int i = 0; i < tuples.length; i++) {
+            tuples[i] = data.getItemSet(i);
+        }
+        distances = DistanceMetric.DEFAULT.bind(data);
+        rows = new int[tuples.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        out = new double[tuples.length];
+    }
+
+    /**
+     * Distanza tra due tuple gia' costruite.
+     *
+     * @return distanza calcolata.
+     * @throws EmptyDatasetException se le tuple non sono confrontabili.
+     */
+    @Benchmark
+    public double distance() throws EmptyDatasetException {
+        int i = next++ & (tuples.length - 1);
+        return tuples[i].getDistance(tuples[(i * 31 + 7) & (tuples.length - 1)]);
+    }
+
+    /**
+     * Costruzione di una tupla a partire dal dataset.
+     *
+     * @return tupla costruita.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     */
+    @Benchmark
+    public Tuple getItemSet() throws EmptyDatasetException {
+        return data.getItemSet(next++ & (tuples.length - 1));
+    }
+
+    /**
+     * Costruzione di due tuple e calcolo della loro distanza, come nel ciclo di {@code QTMiner}.
+     *
+     * @return distanza calcolata.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     */
+    @Benchmark
+    public double getItemSetAndDistance() throws EmptyDatasetException {
+        int i = next++ & (tuples.length - 1);
+        return data.getItemSet(i).getDistance(data.getItemSet((i * 31 + 7) & (tuples.length - 1)));
+    }
+
+    /**
+     * Distanze da un esempio verso tutti gli esempi del dataset, calcolate a blocchi
+     * come nel ciclo di {@code QTMiner}; il tempo va diviso per il numero di righe.
+     *
+     * @return distanze calcolate.
+     */
+    @Benchmark
+    public double[] batchDistances() {
+        distances.distances(next++ & (tuples.length - 1), rows, rows.length, out);
+        return out;
+    }
+}
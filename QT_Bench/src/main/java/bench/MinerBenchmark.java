@@ -0,0 +1,75 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import data.Data;
+import mining.ClusteringRadiusException;
+import mining.QTMiner;
+
+/**
+ * Benchmark di {@link QTMiner#compute(Data)} al variare del numero di tuple,
+ * del raggio e del numero di attributi.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class MinerBenchmark {
+    /** Numero di tuple del dataset. */
+    @Param({"500", "1000", "2000"})
+    public int n;
+
+    /** Raggio del clustering. */
+    @Param({"0.5", "1.0", "2.0"})
+    public double radius;
+
+    /** Schema del dataset: "attributi discreti:attributi continui". */
+    @Param({"3:1", "6:2"})
+    public String schema;
+
+    /** Dataset generato */
+    private Data data;
+
+    /**
+     * Genera il dataset.
+     *
+     * @throws Exception se il dataset non puo' essere generato.
+     */
+    @Setup
+    public void setup() throws Exception {
+        String[] parts = schema.split(":");
+        data = new SyntheticTable().rows(n)
+                .discrete(Integer.parseInt(parts[0]), 3)
+                .continuous(Integer.parseInt(parts[1]), SyntheticTable.Distribution.GAUSSIAN)
+                .load();
+    }
+
+    /**
+     * Clustering completo del dataset.
+     *
+     * @return numero di cluster trovati (0 se tutte le tuple ricadono in un unico cluster).
+     * @throws Exception se il dataset e' vuoto.
+     */
+    @Benchmark
+    public int compute() throws Exception {
+        try {
+            return new QTMiner(radius).compute(data);
+        } catch (ClusteringRadiusException ex) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto di ingresso del jar dei benchmark.
+ *
+ * Accetta le stesse opzioni della riga di comando di JMH; se non viene indicato un formato
+ * dei risultati, questi vengono salvati in formato JSON nel file "jmh-result.json",
+ * in modo da poter confrontare le esecuzioni nel tempo.
+ */
+public class RunBenchmarks {
+
+    /**
+     * Esegue i benchmark selezionati dagli argomenti.
+     *
+     * @param args opzioni di JMH (ad esempio un filtro sui nomi, "-f 1", "-p n=1000").
+     * @throws Exception se le opzioni non sono valide o l'esecuzione fallisce.
+     */
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+        if (!cli.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!cli.getResult().hasValue()) {
+            options.result("jmh-result.json");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,233 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.Random;
+
+import data.Data;
+import data.FileTableReader;
+
+/**
+ * Classe che genera tabelle sintetiche per i benchmark, senza bisogno del database.
+ *
+ * Una tabella ha un numero configurabile di righe, di attributi discreti (con la cardinalita'
+ * indicata) e di attributi continui, i cui valori seguono la distribuzione scelta.
+ * A parita' di parametri e di seme la tabella generata e' sempre la stessa.
+ */
+public class SyntheticTable {
+    /** Distribuzioni dei valori degli attributi continui. */
+    public enum Distribution {
+        /** Valori uniformi in [0, 100). */
+        UNIFORM,
+        /** Valori normali con media 50 e deviazione standard 15. */
+        GAUSSIAN,
+        /** Valori raccolti attorno a cinque centri (10, 30, 50, 70, 90) con deviazione standard 3. */
+        CLUSTERED
+    }
+
+    /** Numero di righe di ciascuna istruzione INSERT del dump SQL. */
+    private static final int ROWS_PER_INSERT = 1000;
+
+    /** Numero di righe */
+    private int rows = 1000;
+    /** Numero di attributi discreti */
+    private int discreteColumns = 3;
+    /** Numero di valori distinti di ogni attributo discreto */
+    private int cardinality = 3;
+    /** Numero di attributi continui */
+    private int continuousColumns = 1;
+    /** Distribuzione dei valori continui */
+    private Distribution distribution = Distribution.UNIFORM;
+    /** Seme del generatore */
+    private long seed = 42;
+
+    /**
+     * Imposta il numero di righe.
+     *
+     * @param rows numero di righe.
+     * @return questa tabella.
+     */
+    public SyntheticTable rows(int rows) {
+        this.rows = rows;
+        return this;
+    }
+
+    /**
+     * Imposta il numero di attributi discreti e la loro cardinalita'.
+     *
+     * @param columns numero di attributi discreti.
+     * @param cardinality numero di valori distinti di ogni attributo.
+     * @return questa tabella.
+     */
+    public SyntheticTable discrete(int columns, int cardinality) {
+        this.discreteColumns = columns;
+        this.cardinality = cardinality;
+        return this;
+    }
+
+    /**
+     * Imposta il numero di attributi continui e la distribuzione dei loro valori.
+     *
+     * @param columns numero di attributi continui.
+     * @param distribution distribuzione dei valori.
+     * @return questa tabella.
+     */
+    public SyntheticTable continuous(int columns, Distribution distribution) {
+        this.continuousColumns = columns;
+        this.distribution = distribution;
+        return this;
+    }
+
+    /**
+     * Imposta il seme del generatore.
+     *
+     * @param seed seme.
+     * @return questa tabella.
+     */
+    public SyntheticTable seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Scrive la tabella in un file CSV, con i nomi delle colonne nella prima riga.
+     * Gli attributi discreti si chiamano d0, d1, ... e assumono i valori v0, v1, ...;
+     * quelli continui si chiamano c0, c1, ... e hanno due cifre decimali.
+     *
+     * @param file file di destinazione.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    public void writeCsv(File file) throws IOException {
+        Random random = new Random(seed);
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder();
+            for (int d = 0; d < discreteColumns; d++) {
+                line.append(line.length() == 0 ? "" : ",").append('d').append(d);
+            }
+            for (int c = 0; c < continuousColumns; c++) {
+                line.append(line.length() == 0 ? "" : ",").append('c').append(c);
+            }
+            out.write(line.toString());
+            out.newLine();
+            for (int r = 0; r < rows; r++) {
+                line.setLength(0);
+                appendRow(random, line, ",", "");
+                out.write(line.toString());
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Scrive la tabella in un file SQL nel formato di mysqldump: istruzione CREATE TABLE
+     * e istruzioni INSERT con piu' righe ciascuna. Il file puo' essere importato in MySQL
+     * oppure letto direttamente dal server come tabella (nome con estensione ".sql").
+     * Colonne e valori sono gli stessi di {@link #writeCsv(File)}.
+     *
+     * @param file file di destinazione.
+     * @param table nome della tabella.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    public void writeSql(File file, String table) throws IOException {
+        Random random = new Random(seed);
+        try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            out.write("DROP TABLE IF EXISTS `" + table + "`;");
+            out.newLine();
+            out.write("CREATE TABLE `" + table + "` (");
+            out.newLine();
+            for (int d = 0; d < discreteColumns; d++) {
+                out.write("  `d" + d + "` varchar(10) DEFAULT NULL");
+                out.write(d + 1 < discreteColumns || continuousColumns > 0 ? "," : "");
+                out.newLine();
+            }
+            for (int c = 0; c < continuousColumns; c++) {
+                out.write("  `c" + c + "` float DEFAULT NULL");
+                out.write(c + 1 < continuousColumns ? "," : "");
+                out.newLine();
+            }
+            out.write(") ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;");
+            out.newLine();
+            out.newLine();
+            out.write("LOCK TABLES `" + table + "` WRITE;");
+            out.newLine();
+            StringBuilder line = new StringBuilder();
+            for (int r = 0; r < rows; r++) {
+                if (r % ROWS_PER_INSERT == 0) {
+                    line.append("INSERT INTO `").append(table).append("` VALUES ");
+                } else {
+                    line.append(',');
+                }
+                line.append('(');
+                appendRow(random, line, ",", "'");
+                line.append(')');
+                if ((r + 1) % ROWS_PER_INSERT == 0 || r + 1 == rows) {
+                    out.write(line.append(';').toString());
+                    out.newLine();
+                    line.setLength(0);
+                }
+            }
+            out.write("UNLOCK TABLES;");
+            out.newLine();
+        }
+    }
+
+    /**
+     * Aggiunge i valori di una riga, separati dal separatore indicato.
+     *
+     * @param random generatore dei valori.
+     * @param line destinazione dei valori.
+     * @param separator separatore dei valori.
+     * @param quote delimitatore dei valori discreti.
+     */
+    private void appendRow(Random random, StringBuilder line, String separator, String quote) {
+        for (int d = 0; d < discreteColumns; d++) {
+            if (d > 0) {
+                line.append(separator);
+            }
+            line.append(quote).append('v').append(random.nextInt(cardinality)).append(quote);
+        }
+        for (int c = 0; c < continuousColumns; c++) {
+            if (discreteColumns > 0 || c > 0) {
+                line.append(separator);
+            }
+            line.append(String.format(Locale.ROOT, "%.2f", nextContinuous(random)));
+        }
+    }
+
+    /**
+     * Genera un valore continuo secondo la distribuzione della tabella.
+     *
+     * @param random generatore.
+     * @return valore generato.
+     */
+    private double nextContinuous(Random random) {
+        switch (distribution) {
+            case GAUSSIAN:
+                return 50 + 15 * random.nextGaussian();
+            case CLUSTERED:
+                return 10 + 20 * random.nextInt(5) + 3 * random.nextGaussian();
+            default:
+                return 100 * random.nextDouble();
+        }
+    }
+
+    /**
+     * Genera la tabella in un file temporaneo e la carica con {@link FileTableReader}.
+     *
+     * @return dataset generato.
+     * @throws Exception se il file non puo' essere scritto o letto.
+     */
+    public Data load() throws Exception {
+        File file = File.createTempFile("qt-bench-", ".csv");
+        try {
+            writeCsv(file);
+            return new FileTableReader(file.getPath(), null).read();
+        } finally {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package load;
+
+/**
+ * Comandi del protocollo inviati dai client simulati, con il codice usato dal client
+ * a riga di comando (0 = tabella, 1 = clustering, 2 = salvataggio, 3 = caricamento da file).
+ */
+enum Command {
+    /** Impostazione della tabella corrente. */
+    STORE_TABLE(0, "storeTable"),
+    /** Clustering della tabella corrente. */
+    LEARN(1, "learn"),
+    /** Salvataggio dell'ultimo clustering su file. */
+    STORE_CLUSTER(2, "storeClusters"),
+    /** Caricamento di un clustering salvato su file. */
+    LOAD_FILE(3, "loadClusters");
+
+    /** Codice del comando */
+    private final int code;
+    /** Nome del comando nel report */
+    private final String label;
+
+    /**
+     * Costruttore del comando.
+     *
+     * @param code codice del comando.
+     * @param label nome del comando nel report.
+     */
+    Command(int code, String label) {
+        this.code = code;
+        this.label = label;
+    }
+
+    /**
+     * Restituisce il codice del comando.
+     *
+     * @return codice del comando.
+     */
+    int getCode() {
+        return code;
+    }
+
+    /**
+     * Restituisce il nome del comando nel report.
+     *
+     * @return nome del comando.
+     */
+    String getLabel() {
+        return label;
+    }
+
+    /**
+     * Restituisce il comando con il codice indicato.
+     *
+     * @param code codice del comando.
+     * @return comando corrispondente.
+     * @throws IllegalArgumentException se il codice non corrisponde a nessun comando.
+     */
+    static Command fromCode(int code) {
+        for (Command command : values()) {
+            if (command.code == code) {
+                return command;
+            }
+        }
+        throw new IllegalArgumentException("Errore: comando " + code + " sconosciuto!");
+    }
+}
@@ -0,0 +1,123 @@
+package load;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import metrics.Counter;
+import metrics.Timer;
+
+/**
+ * Statistiche delle richieste di un tipo eseguite durante uno scenario:
+ * latenza delle richieste riuscite, richieste rifiutate perche' il server era sovraccarico
+ * ed errori (risposte di errore e errori di comunicazione).
+ * Ogni richiesta registrata viene registrata anche nelle statistiche complessive indicate
+ * alla costruzione. Le statistiche possono essere aggiornate da piu' thread.
+ */
+class CommandStats {
+    /** Nome delle richieste nel report */
+    private final String label;
+    /** Latenza delle richieste riuscite */
+    private final Timer latency;
+    /** Richieste rifiutate perche' il server era sovraccarico */
+    private final Counter busy;
+    /** Richieste non riuscite */
+    private final Counter errors;
+    /** Statistiche complessive (null se queste lo sono) */
+    private final CommandStats total;
+
+    /**
+     * Costruttore parametrizzato della classe CommandStats.
+     *
+     * @param label nome delle richieste nel report.
+     * @param total statistiche complessive, aggiornate insieme a queste (null se queste lo sono).
+     */
+    CommandStats(String label, CommandStats total) {
+        this.label = label;
+        this.total = total;
+        this.latency = new Timer(label);
+        this.busy = new Counter(label + ".busy");
+        this.errors = new Counter(label + ".errors");
+    }
+
+    /**
+     * Registra una richiesta riuscita.
+     *
+     * @param startNanos istante di invio della richiesta ({@link System#nanoTime()}).
+     */
+    void success(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        latency.record(nanos);
+        if (total != null) {
+            total.latency.record(nanos);
+        }
+    }
+
+    /**
+     * Registra una richiesta rifiutata perche' il server era sovraccarico.
+     */
+    void busy() {
+        busy.increment();
+        if (total != null) {
+            total.busy();
+        }
+    }
+
+    /**
+     * Registra una richiesta non riuscita.
+     */
+    void error() {
+        errors.increment();
+        if (total != null) {
+            total.error();
+        }
+    }
+
+    /**
+     * Restituisce il numero di richieste riuscite.
+     *
+     * @return richieste riuscite.
+     */
+    long getSuccesses() {
+        return latency.getCount();
+    }
+
+    /**
+     * Restituisce il numero di richieste eseguite, riuscite o no.
+     *
+     * @return richieste eseguite.
+     */
+    long getTotal() {
+        return latency.getCount() + busy.get() + errors.get();
+    }
+
+    /**
+     * Scrive la riga del report: richieste riuscite, rifiutate e non riuscite, richieste
+     * riuscite al secondo, percentuale di errori e latenza (media, 50°, 90°, 99° percentile e massimo).
+     *
+     * @param out destinazione della riga.
+     * @param elapsedNanos durata dello scenario (ns).
+     */
+    void print(StringBuilder out, long elapsedNanos) {
+        long total = getTotal();
+        out.append(String.format(Locale.ROOT,
+                "%-14s %8d %7d %7d %9.1f %6.2f%% %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                label, latency.getCount(), busy.get(), errors.get(),
+                latency.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos,
+                total == 0 ? 0.0 : 100.0 * (busy.get() + errors.get()) / total,
+                latency.getMeanNanos() / 1e6, latency.getPercentileNanos(50) / 1e6,
+                latency.getPercentileNanos(90) / 1e6, latency.getPercentileNanos(99) / 1e6,
+                latency.getMaxNanos() / 1e6));
+    }
+
+    /**
+     * Scrive l'intestazione delle righe del report.
+     *
+     * @param out destinazione dell'intestazione.
+     */
+    static void printHeader(StringBuilder out) {
+        out.append(String.format(java.util.Locale.ROOT,
+                "%-14s %8s %7s %7s %9s %7s %9s %9s %9s %9s %9s%n",
+                "richiesta", "ok", "busy", "errori", "ok/s", "err", "media ms", "p50 ms", "p90 ms",
+                "p99 ms", "max ms"));
+    }
+}
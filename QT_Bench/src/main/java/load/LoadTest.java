@@ -0,0 +1,184 @@
+package load;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import client.ServerException;
+
+/**
+ * Test di carico del server: per ogni scenario genera le tabelle sintetiche, avvia i client
+ * simulati ({@link VirtualClient}) per la durata indicata e riporta, per ogni comando, richieste
+ * al secondo, percentili della latenza e percentuale di errori, insieme alle risorse usate dal server.
+ *
+ * Le tabelle vengono scritte come dump SQL (o CSV) in una cartella locale e indicate al server
+ * con il loro percorso: il server le legge direttamente, senza database, come farebbe con una
+ * tabella MySQL importata dallo stesso dump. Il server deve quindi essere in esecuzione sulla
+ * stessa macchina (o vedere la cartella allo stesso percorso).
+ *
+ * Gli argomenti hanno la forma "nome=valore":
+ * - host, port: indirizzo del server (default localhost e 7070);
+ * - scenarios: nomi degli scenari da eseguire, separati da virgola (default "default");
+ * - dir: cartella di tabelle e clustering salvati (default una cartella temporanea, rimossa al termine);
+ * - sample: intervallo di lettura delle metriche del server in ms (default 1000);
+ * - i parametri degli scenari descritti in {@link Scenario}, eventualmente preceduti dal
+ *   nome dello scenario (ad esempio "wide.discrete=12").
+ */
+public class LoadTest {
+    /** Attesa massima del termine dei client dopo la fine di uno scenario (s). */
+    private static final int GRACE = 30;
+
+    /** Indirizzo del server */
+    private final String host;
+    /** Porta del server */
+    private final int port;
+    /** Intervallo di lettura delle metriche del server (ms) */
+    private final long sample;
+
+    /**
+     * Costruttore parametrizzato della classe LoadTest.
+     *
+     * @param host indirizzo del server.
+     * @param port porta del server.
+     * @param sample intervallo di lettura delle metriche del server (ms).
+     */
+    LoadTest(String host, int port, long sample) {
+        this.host = host;
+        this.port = port;
+        this.sample = sample;
+    }
+
+    /**
+     * Esegue gli scenari indicati negli argomenti e ne stampa il report.
+     *
+     * @param args impostazioni nella forma "nome=valore".
+     * @throws Exception se uno scenario non puo' essere preparato o il server non e' raggiungibile.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> settings = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Errore: argomento " + arg + " non nella forma nome=valore!");
+            }
+            settings.put(arg.substring(0, eq).trim(), arg.substring(eq + 1).trim());
+        }
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String name : settings.getOrDefault("scenarios", "default").split(",")) {
+            scenarios.add(new Scenario(name.trim(), settings));
+        }
+        LoadTest test = new LoadTest(settings.getOrDefault("host", "localhost"),
+                Integer.parseInt(settings.getOrDefault("port", "7070")),
+                Long.parseLong(settings.getOrDefault("sample", "1000")));
+
+        String dirName = settings.get("dir");
+        File dir = dirName != null ? new File(dirName) : Files.createTempDirectory("qt-load-").toFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Errore: impossibile creare la cartella " + dir + "!");
+        }
+        try {
+            for (Scenario scenario : scenarios) {
+                System.out.print(test.run(scenario, dir));
+                System.out.println();
+            }
+        } finally {
+            if (dirName == null) {
+                delete(dir);
+            }
+        }
+    }
+
+    /**
+     * Esegue uno scenario.
+     *
+     * @param scenario scenario da eseguire.
+     * @param dir cartella di tabelle e clustering salvati.
+     * @return report dello scenario.
+     * @throws IOException se le tabelle non possono essere scritte o il server non e' raggiungibile.
+     * @throws ServerException se il server non restituisce le metriche.
+     * @throws InterruptedException se l'attesa dei client viene interrotta.
+     */
+    String run(Scenario scenario, File dir) throws IOException, ServerException, InterruptedException {
+        List<String> tables = scenario.writeTables(dir);
+        CommandStats total = new CommandStats("totale", null);
+        CommandStats[] stats = new CommandStats[Command.values().length];
+        for (Command command : Command.values()) {
+            stats[command.ordinal()] = new CommandStats(command.getCode() + " " + command.getLabel(), total);
+        }
+        CommandStats connects = new CommandStats("connessione", null);
+
+        ServerSampler sampler = new ServerSampler(host, port, sample);
+        Thread samplerThread = new Thread(sampler, "qt-load-metrics");
+        samplerThread.setDaemon(true);
+        samplerThread.start();
+
+        long start = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        long rampUp = TimeUnit.SECONDS.toMillis(scenario.getRampUp());
+        long deadline = start + TimeUnit.SECONDS.toMillis(scenario.getDuration());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < scenario.getClients(); i++) {
+            long startAt = start + rampUp * i / scenario.getClients();
+            Thread thread = new Thread(new VirtualClient(i, scenario, host, port, tables, dir,
+                    stats, connects, startAt, deadline), "qt-load-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        long graceEnd = deadline + TimeUnit.SECONDS.toMillis(GRACE);
+        for (Thread thread : threads) {
+            thread.join(Math.max(1, graceEnd - System.currentTimeMillis()));
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        int stuck = 0;
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                thread.interrupt();
+                stuck++;
+            }
+        }
+
+        samplerThread.interrupt();
+        samplerThread.join();
+        try {
+            sampler.sample();
+        } catch (IOException | ServerException ex) {
+            System.err.println("[!] Metriche finali non disponibili: " + ex.getMessage());
+        }
+        sampler.close();
+
+        StringBuilder out = new StringBuilder();
+        out.append(scenario).append('\n');
+        CommandStats.printHeader(out);
+        connects.print(out, elapsed);
+        for (CommandStats command : stats) {
+            command.print(out, elapsed);
+        }
+        total.print(out, elapsed);
+        if (stuck > 0) {
+            out.append(stuck).append(" client non hanno terminato entro ").append(GRACE).append(" s\n");
+        }
+        sampler.print(out);
+        return out.toString();
+    }
+
+    /**
+     * Elimina una cartella e il suo contenuto.
+     *
+     * @param dir cartella da eliminare.
+     */
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+}
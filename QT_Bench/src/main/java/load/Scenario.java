@@ -0,0 +1,286 @@
+package load;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import bench.SyntheticTable;
+
+/**
+ * Classe che descrive uno scenario di carico: tabelle sintetiche servite al server,
+ * numero di client simulati, durata, composizione delle richieste e pause tra una richiesta e l'altra.
+ *
+ * Ogni parametro viene letto dalle impostazioni con il nome dello scenario come prefisso
+ * ("nome.parametro"), poi senza prefisso ("parametro") e infine dal valore predefinito:
+ * - rows: righe di ogni tabella (default 2000);
+ * - discrete, cardinality: attributi discreti e valori distinti di ciascuno (default 3 e 3);
+ * - continuous, distribution: attributi continui e distribuzione dei valori
+ *   (UNIFORM, GAUSSIAN o CLUSTERED, default 1 e GAUSSIAN);
+ * - tables: numero di tabelle distinte, generate con semi diversi (default 4);
+ * - format: formato delle tabelle, "sql" (dump di mysqldump) o "csv" (default "sql");
+ * - clients: client simulati, ciascuno con la propria connessione (default 500);
+ * - duration: durata in secondi (default 60);
+ * - rampUp: secondi in cui vengono avviati i client (default 5);
+ * - mix: peso di ciascun comando, nella forma "0:1,1:4,2:1,3:2";
+ * - radius: raggi dei clustering, scelti a caso tra quelli indicati (default "1.0");
+ * - think: pausa media tra due richieste in ms, con distribuzione esponenziale (default 100);
+ * - seed: seme dei generatori (default 42).
+ */
+class Scenario {
+    /** Nome dello scenario */
+    private final String name;
+    /** Righe di ogni tabella */
+    private final int rows;
+    /** Attributi discreti */
+    private final int discrete;
+    /** Valori distinti di ogni attributo discreto */
+    private final int cardinality;
+    /** Attributi continui */
+    private final int continuous;
+    /** Distribuzione dei valori continui */
+    private final SyntheticTable.Distribution distribution;
+    /** Numero di tabelle distinte */
+    private final int tables;
+    /** Estensione delle tabelle (".sql" o ".csv") */
+    private final String format;
+    /** Client simulati */
+    private final int clients;
+    /** Durata (s) */
+    private final int duration;
+    /** Secondi in cui vengono avviati i client */
+    private final int rampUp;
+    /** Peso cumulato dei comandi, nell'ordine di {@link Command} */
+    private final int[] mix = new int[Command.values().length];
+    /** Raggi dei clustering */
+    private final double[] radii;
+    /** Pausa media tra due richieste (ms) */
+    private final int think;
+    /** Seme dei generatori */
+    private final long seed;
+
+    /**
+     * Costruisce lo scenario leggendone i parametri dalle impostazioni.
+     *
+     * @param name nome dello scenario.
+     * @param settings impostazioni, per nome.
+     * @throws IllegalArgumentException se un parametro non e' valido.
+     */
+    Scenario(String name, Map<String, String> settings) {
+        this.name = name;
+        rows = positive(settings, "rows", 2000);
+        discrete = count(settings, "discrete", 3);
+        cardinality = positive(settings, "cardinality", 3);
+        continuous = count(settings, "continuous", 1);
+        distribution = SyntheticTable.Distribution.valueOf(
+                get(settings, "distribution", "GAUSSIAN").toUpperCase(Locale.ROOT));
+        tables = positive(settings, "tables", 4);
+        format = "." + get(settings, "format", "sql").toLowerCase(Locale.ROOT);
+        clients = positive(settings, "clients", 500);
+        duration = positive(settings, "duration", 60);
+        rampUp = count(settings, "rampUp", 5);
+        think = count(settings, "think", 100);
+        seed = Long.parseLong(get(settings, "seed", "42"));
+        if (discrete + continuous == 0) {
+            throw new IllegalArgumentException("Errore: lo scenario " + name + " non ha attributi!");
+        }
+        if (!format.equals(".sql") && !format.equals(".csv")) {
+            throw new IllegalArgumentException("Errore: formato " + format + " non supportato!");
+        }
+
+        int[] weights = new int[mix.length];
+        for (String entry : get(settings, "mix", "0:1,1:4,2:1,3:2").split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Errore: composizione " + entry + " non valida!");
+            }
+            weights[Command.fromCode(Integer.parseInt(parts[0].trim())).ordinal()] = Integer.parseInt(parts[1].trim());
+        }
+        int sum = 0;
+        for (int i = 0; i < mix.length; i++) {
+            sum += Math.max(0, weights[i]);
+            mix[i] = sum;
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("Errore: la composizione dello scenario " + name + " e' vuota!");
+        }
+
+        String[] values = get(settings, "radius", "1.0").split(",");
+        radii = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            radii[i] = Double.parseDouble(values[i].trim());
+        }
+    }
+
+    /**
+     * Restituisce il valore di un parametro dello scenario.
+     *
+     * @param settings impostazioni, per nome.
+     * @param key nome del parametro.
+     * @param fallback valore predefinito.
+     * @return valore del parametro.
+     */
+    private String get(Map<String, String> settings, String key, String fallback) {
+        String value = settings.get(name + "." + key);
+        if (value == null) {
+            value = settings.get(key);
+        }
+        return value == null ? fallback : value.trim();
+    }
+
+    /**
+     * Restituisce il valore intero non negativo di un parametro dello scenario.
+     *
+     * @param settings impostazioni, per nome.
+     * @param key nome del parametro.
+     * @param fallback valore predefinito.
+     * @return valore del parametro.
+     * @throws IllegalArgumentException se il valore e' negativo.
+     */
+    private int count(Map<String, String> settings, String key, int fallback) {
+        int value = Integer.parseInt(get(settings, key, Integer.toString(fallback)));
+        if (value < 0) {
+            throw new IllegalArgumentException("Errore: il parametro " + key + " non puo' essere negativo!");
+        }
+        return value;
+    }
+
+    /**
+     * Restituisce il valore intero positivo di un parametro dello scenario.
+     *
+     * @param settings impostazioni, per nome.
+     * @param key nome del parametro.
+     * @param fallback valore predefinito.
+     * @return valore del parametro.
+     * @throws IllegalArgumentException se il valore non e' positivo.
+     */
+    private int positive(Map<String, String> settings, String key, int fallback) {
+        int value = count(settings, key, fallback);
+        if (value == 0) {
+            throw new IllegalArgumentException("Errore: il parametro " + key + " deve essere positivo!");
+        }
+        return value;
+    }
+
+    /**
+     * Genera le tabelle dello scenario nella cartella indicata.
+     *
+     * @param dir cartella di destinazione.
+     * @return percorsi assoluti delle tabelle, da usare come nomi di tabella presso il server.
+     * @throws IOException se una tabella non puo' essere scritta.
+     */
+    List<String> writeTables(File dir) throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (int t = 0; t < tables; t++) {
+            String table = name + "_" + t;
+            File file = new File(dir, table + format).getAbsoluteFile();
+            SyntheticTable generator = new SyntheticTable().rows(rows)
+                    .discrete(discrete, cardinality)
+                    .continuous(continuous, distribution)
+                    .seed(seed + t);
+            if (format.equals(".sql")) {
+                generator.writeSql(file, table);
+            } else {
+                generator.writeCsv(file);
+            }
+            paths.add(file.getPath());
+        }
+        return paths;
+    }
+
+    /**
+     * Sceglie a caso il prossimo comando secondo i pesi della composizione.
+     *
+     * @param random generatore.
+     * @return comando scelto.
+     */
+    Command nextCommand(Random random) {
+        int r = random.nextInt(mix[mix.length - 1]);
+        for (int i = 0; i < mix.length; i++) {
+            if (r < mix[i]) {
+                return Command.values()[i];
+            }
+        }
+        return Command.LEARN;
+    }
+
+    /**
+     * Sceglie a caso il raggio di un clustering.
+     *
+     * @param random generatore.
+     * @return raggio scelto.
+     */
+    double nextRadius(Random random) {
+        return radii[random.nextInt(radii.length)];
+    }
+
+    /**
+     * Sceglie a caso la pausa prima della prossima richiesta.
+     *
+     * @param random generatore.
+     * @return pausa (ms).
+     */
+    long nextThink(Random random) {
+        return think == 0 ? 0 : (long) (-think * Math.log(1 - random.nextDouble()));
+    }
+
+    /**
+     * Restituisce il nome dello scenario.
+     *
+     * @return nome dello scenario.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Restituisce il numero di client simulati.
+     *
+     * @return client simulati.
+     */
+    int getClients() {
+        return clients;
+    }
+
+    /**
+     * Restituisce la durata dello scenario.
+     *
+     * @return durata (s).
+     */
+    int getDuration() {
+        return duration;
+    }
+
+    /**
+     * Restituisce il tempo in cui vengono avviati i client.
+     *
+     * @return durata dell'avvio (s).
+     */
+    int getRampUp() {
+        return rampUp;
+    }
+
+    /**
+     * Restituisce il seme dei generatori.
+     *
+     * @return seme.
+     */
+    long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Restituisce la descrizione dello scenario.
+     *
+     * @return nome, client, durata e forma delle tabelle.
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "Scenario %s: %d client per %d s, %d tabelle%s da %d righe (%d discreti x %d valori, %d continui %s)",
+                name, clients, duration, tables, format, rows, discrete, cardinality, continuous, distribution);
+    }
+}
@@ -0,0 +1,156 @@
+package load;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import client.QTClient;
+import client.ServerException;
+
+/**
+ * Classe che legge periodicamente le metriche del server (comando METRICS) durante uno scenario,
+ * con una propria connessione, e ne ricava le risorse usate dal server: CPU, memoria, thread,
+ * garbage collection, traffico di rete, sessioni e clustering in coda.
+ */
+class ServerSampler implements Runnable {
+    /** Connessione usata per leggere le metriche */
+    private final QTClient client;
+    /** Intervallo tra due letture (ms) */
+    private final long interval;
+    /** Metriche lette all'inizio dello scenario */
+    private Map<String, Double> first;
+    /** Ultime metriche lette */
+    private Map<String, Double> last;
+    /** Valore massimo di ogni metrica tra quelle lette */
+    private final Map<String, Double> max = new HashMap<>();
+    /** Istante della prima lettura (ns) */
+    private long firstAt;
+    /** Istante dell'ultima lettura (ns) */
+    private long lastAt;
+
+    /**
+     * Costruttore parametrizzato della classe ServerSampler; legge subito le metriche iniziali.
+     *
+     * @param host indirizzo del server.
+     * @param port porta del server.
+     * @param interval intervallo tra due letture (ms).
+     * @throws IOException se non e' possibile connettersi al server.
+     * @throws ServerException se il server non restituisce le metriche.
+     */
+    ServerSampler(String host, int port, long interval) throws IOException, ServerException {
+        this.client = new QTClient(host, port);
+        this.interval = interval;
+        sample();
+    }
+
+    /**
+     * Legge le metriche a intervalli regolari fino all'interruzione del thread.
+     */
+    @Override
+    public void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Thread.sleep(interval);
+                try {
+                    sample();
+                } catch (ServerException ex) {
+                    // server sovraccarico: la lettura viene ripetuta al prossimo intervallo
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (IOException ex) {
+            System.err.println("[!] Lettura delle metriche interrotta: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Legge le metriche dal server e aggiorna i valori massimi.
+     *
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il server non restituisce le metriche.
+     */
+    synchronized void sample() throws IOException, ServerException {
+        Map<String, Double> values = parse(client.metrics());
+        lastAt = System.nanoTime();
+        if (first == null) {
+            first = values;
+            firstAt = lastAt;
+        }
+        last = values;
+        for (Map.Entry<String, Double> value : values.entrySet()) {
+            max.merge(value.getKey(), value.getValue(), Math::max);
+        }
+    }
+
+    /**
+     * Interpreta il report delle metriche, una metrica per riga nella forma "nome valore".
+     *
+     * @param report report del server.
+     * @return valori delle metriche, per nome.
+     */
+    static Map<String, Double> parse(String report) {
+        Map<String, Double> values = new HashMap<>();
+        for (String line : report.split("\n")) {
+            int space = line.lastIndexOf(' ');
+            if (space > 0) {
+                try {
+                    values.put(line.substring(0, space), Double.parseDouble(line.substring(space + 1)));
+                } catch (NumberFormatException ex) {
+                    // riga che non contiene una metrica
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Restituisce la variazione di una metrica tra la prima e l'ultima lettura.
+     *
+     * @param name nome della metrica.
+     * @return variazione (0 se la metrica non e' disponibile).
+     */
+    private double delta(String name) {
+        return last.getOrDefault(name, 0.0) - first.getOrDefault(name, 0.0);
+    }
+
+    /**
+     * Scrive le risorse usate dal server tra la prima e l'ultima lettura.
+     *
+     * @param out destinazione del report.
+     */
+    synchronized void print(StringBuilder out) {
+        double seconds = (lastAt - firstAt) / 1e9;
+        if (seconds <= 0) {
+            out.append("Risorse del server: letture insufficienti\n");
+            return;
+        }
+        out.append(String.format(Locale.ROOT,
+                "Risorse del server: CPU %.2f core, heap max %.1f MB, thread max %.0f, GC %.0f (%.0f ms)%n",
+                delta("process.cpuTimeMs") / 1000 / seconds,
+                max.getOrDefault("jvm.heap.usedBytes", 0.0) / (1 << 20),
+                max.getOrDefault("jvm.threads", 0.0),
+                delta("jvm.gc.count"), delta("jvm.gc.timeMs")));
+        out.append(String.format(Locale.ROOT,
+                "Rete: %.1f KB/s in ingresso, %.1f KB/s in uscita; sessioni max %.0f; clustering in coda max %.0f, in esecuzione max %.0f%n",
+                delta("net.bytes.in") / 1024 / seconds, delta("net.bytes.out") / 1024 / seconds,
+                max.getOrDefault("sessions.active", 0.0), max.getOrDefault("compute.queued", 0.0),
+                max.getOrDefault("compute.running", 0.0)));
+        out.append(String.format(Locale.ROOT,
+                "Lavoro: %.0f tuple caricate, %.0f clustering, %.0f distanze calcolate, %.0f richieste con errore%n",
+                delta("load.rows"), delta("compute.time.count"), delta("compute.distances"),
+                delta("protocol.request.errors")));
+    }
+
+    /**
+     * Chiude la connessione usata per leggere le metriche.
+     */
+    void close() {
+        try {
+            client.close();
+        } catch (IOException ex) {
+            // la connessione viene comunque abbandonata
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package load;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import client.QTClient;
+import client.ServerException;
+
+/**
+ * Client simulato: apre una connessione al server e, fino al termine dello scenario,
+ * invia comandi scelti a caso secondo la composizione dello scenario, con una pausa tra l'uno
+ * e l'altro.
+ *
+ * I comandi rispettano l'ordine richiesto dalla sessione sul server: prima di un clustering
+ * viene impostata una tabella, prima di un salvataggio viene eseguito un clustering e prima di
+ * un caricamento viene salvato un clustering. Dopo un errore di comunicazione la connessione
+ * viene riaperta e la sessione ricomincia.
+ */
+class VirtualClient implements Runnable {
+    /** Pausa dopo un rifiuto o un errore di connessione (ms). */
+    private static final long BACKOFF = 500;
+
+    /** Scenario eseguito */
+    private final Scenario scenario;
+    /** Indirizzo del server */
+    private final String host;
+    /** Porta del server */
+    private final int port;
+    /** Tabelle dello scenario */
+    private final List<String> tables;
+    /** File (senza estensione) in cui il client salva i propri clustering */
+    private final String modelFile;
+    /** Statistiche per comando, nell'ordine di {@link Command} */
+    private final CommandStats[] stats;
+    /** Statistiche delle connessioni */
+    private final CommandStats connects;
+    /** Istante di avvio (ms) */
+    private final long startAt;
+    /** Istante di termine (ms) */
+    private final long deadline;
+    /** Generatore delle scelte del client */
+    private final Random random;
+
+    /** Connessione corrente (null se chiusa) */
+    private QTClient client;
+    /** Indica se la sessione ha una tabella corrente */
+    private boolean hasTable;
+    /** Indica se la sessione ha un clustering */
+    private boolean hasResult;
+    /** Indica se il client ha salvato un clustering */
+    private boolean hasModel;
+
+    /**
+     * Costruttore parametrizzato della classe VirtualClient.
+     *
+     * @param index indice del client nello scenario.
+     * @param scenario scenario eseguito.
+     * @param host indirizzo del server.
+     * @param port porta del server.
+     * @param tables tabelle dello scenario.
+     * @param modelDir cartella in cui il client salva i propri clustering.
+     * @param stats statistiche per comando, nell'ordine di {@link Command}.
+     * @param connects statistiche delle connessioni.
+     * @param startAt istante di avvio (ms).
+     * @param deadline istante di termine (ms).
+     */
+    VirtualClient(int index, Scenario scenario, String host, int port, List<String> tables, File modelDir,
+            CommandStats[] stats, CommandStats connects, long startAt, long deadline) {
+        this.scenario = scenario;
+        this.host = host;
+        this.port = port;
+        this.tables = tables;
+        this.modelFile = new File(modelDir, scenario.getName() + "_" + index).getAbsolutePath();
+        this.stats = stats;
+        this.connects = connects;
+        this.startAt = startAt;
+        this.deadline = deadline;
+        this.random = new Random(scenario.getSeed() * 31 + index);
+    }
+
+    /**
+     * Esegue i comandi fino al termine dello scenario, quindi chiude la connessione.
+     */
+    @Override
+    public void run() {
+        try {
+            pause(startAt - System.currentTimeMillis());
+            while (System.currentTimeMillis() < deadline) {
+                if (client == null && !connect()) {
+                    pause(BACKOFF);
+                    continue;
+                }
+                Command command = prerequisite(scenario.nextCommand(random));
+                long start = System.nanoTime();
+                try {
+                    execute(command);
+                    stats[command.ordinal()].success(start);
+                } catch (ServerException ex) {
+                    if (ex.isBusy()) {
+                        stats[command.ordinal()].busy();
+                        pause(BACKOFF);
+                    } else {
+                        stats[command.ordinal()].error();
+                    }
+                } catch (IOException ex) {
+                    stats[command.ordinal()].error();
+                    disconnect();
+                }
+                pause(Math.min(scenario.nextThink(random), deadline - System.currentTimeMillis()));
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            disconnect();
+        }
+    }
+
+    /**
+     * Apre la connessione al server; la sessione parte senza tabella ne' clustering.
+     *
+     * @return true se la connessione e' stata aperta.
+     */
+    private boolean connect() {
+        long start = System.nanoTime();
+        try {
+            client = new QTClient(host, port);
+            connects.success(start);
+        } catch (IOException ex) {
+            connects.error();
+            return false;
+        }
+        hasTable = false;
+        hasResult = false;
+        return true;
+    }
+
+    /**
+     * Chiude la connessione al server, se aperta.
+     */
+    private void disconnect() {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException ex) {
+                // la connessione viene comunque abbandonata
+            }
+            client = null;
+        }
+    }
+
+    /**
+     * Sostituisce il comando scelto con quello che deve precederlo, se la sessione
+     * non e' ancora nello stato richiesto.
+     *
+     * @param command comando scelto.
+     * @return comando da eseguire.
+     */
+    private Command prerequisite(Command command) {
+        if (command == Command.LOAD_FILE && !hasModel) {
+            command = Command.STORE_CLUSTER;
+        }
+        if (command == Command.STORE_CLUSTER && !hasResult) {
+            command = Command.LEARN;
+        }
+        if (command == Command.LEARN && !hasTable) {
+            command = Command.STORE_TABLE;
+        }
+        return command;
+    }
+
+    /**
+     * Esegue un comando e aggiorna lo stato della sessione.
+     *
+     * @param command comando da eseguire.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il server restituisce un errore o e' sovraccarico.
+     */
+    private void execute(Command command) throws IOException, ServerException {
+        switch (command) {
+            case STORE_TABLE:
+                client.storeTable(tables.get(random.nextInt(tables.size())));
+                hasTable = true;
+                hasResult = false;
+                break;
+            case LEARN:
+                client.learn(scenario.nextRadius(random));
+                hasResult = true;
+                break;
+            case STORE_CLUSTER:
+                client.storeClusters(modelFile);
+                hasModel = true;
+                break;
+            default:
+                client.loadClusters(modelFile);
+                break;
+        }
+    }
+
+    /**
+     * Sospende il client per il tempo indicato.
+     *
+     * @param millis durata della pausa (ms); nessuna pausa se non positiva.
+     * @throws InterruptedException se il client viene interrotto.
+     */
+    private static void pause(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package mining;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import bench.SyntheticTable;
+import data.Data;
+import data.Tuple;
+
+/**
+ * Benchmark della costruzione e della visita di un {@link ClusterSet}:
+ * inserimento ordinato dei cluster (che confronta i centroidi) e aggiunta delle tuple.
+ * Si trova nel package {@code mining} per usare i metodi non pubblici usati da {@link QTMiner}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterSetBenchmark {
+    /** Numero di tuple del dataset. */
+    @Param({"1000", "4000"})
+    public int n;
+
+    /** Raggio del clustering da cui si ricavano i cluster. */
+    @Param({"0.5", "1.5"})
+    public double radius;
+
+    /** Dataset generato */
+    private Data data;
+    /** Centroidi del clustering */
+    private Tuple[] centroids;
+    /** Identificativi delle tuple di ogni cluster */
+    private int[][] members;
+    /** Insieme di cluster costruito durante il setup */
+    private ClusterSet clusters;
+
+    /**
+     * Genera il dataset, ne calcola il clustering e ne estrae centroidi e tuple.
+     *
+     * @throws Exception se il dataset non puo' essere generato o clusterizzato.
+     */
+    @Setup
+    public void setup() throws Exception {
+        data = new SyntheticTable().rows(n).discrete(3, 3)
+                .continuous(1, SyntheticTable.Distribution.GAUSSIAN).load();
+        QTMiner miner = new QTMiner(radius);
+        miner.compute(data);
+        clusters = miner.getC();
+        centroids = new Tuple[clusters.size()];
+        members = new int[clusters.size()][];
+        for (int i = 0; i < centroids.length; i++) {
+            centroids[i] = clusters.getCentroid(i);
+            members[i] = clusters.getMembers(i);
+        }
+    }
+
+    /**
+     * Costruzione dell'insieme a partire da centroidi e tuple.
+     *
+     * @return insieme costruito.
+     */
+    @Benchmark
+    public ClusterSet build() {
+        ClusterSet set = new ClusterSet();
+        for (int i = 0; i < centroids.length; i++) {
+            Cluster c = new Cluster(centroids[i]);
+            for (int id : members[i]) {
+                c.addData(id);
+            }
+            set.add(c);
+        }
+        return set;
+    }
+
+    /**
+     * Visita ordinata dei cluster e delle loro tuple.
+     *
+     * @param hole destinazione dei valori letti.
+     */
+    @Benchmark
+    public void iterate(Blackhole hole) {
+        for (Cluster c : clusters) {
+            for (int id : c) {
+                hole.consume(id);
+            }
+        }
+    }
+
+    /**
+     * Calcolo della distanza media dal centroide di ogni cluster.
+     *
+     * @return somma delle distanze medie.
+     * @throws Exception se il dataset e' vuoto.
+     */
+    @Benchmark
+    public double averageDistances() throws Exception {
+        double sum = 0;
+        for (int i = 0; i < clusters.size(); i++) {
+            sum += clusters.getAverageDistance(i, data);
+        }
+        return sum;
+    }
+}
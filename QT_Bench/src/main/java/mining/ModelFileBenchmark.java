@@ -0,0 +1,152 @@
+package mining;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bench.SyntheticTable;
+
+/**
+ * Benchmark del salvataggio e del caricamento di un clustering, sia nel formato binario
+ * ({@link QTMiner#FILE_FORMAT}) sia nel vecchio formato serializzato ({@link QTMiner#LEGACY_FILE_FORMAT}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelFileBenchmark {
+    /** Numero di tuple del dataset. */
+    @Param({"1000", "10000"})
+    public int n;
+
+    /** Clustering da salvare */
+    private ClusterSet clusters;
+    /** Cartella temporanea dei file */
+    private File dir;
+    /** File nel formato binario, gia' scritto */
+    private String binary;
+    /** File nel vecchio formato, gia' scritto */
+    private String legacy;
+
+    /**
+     * Genera il dataset, ne calcola il clustering e lo salva in entrambi i formati.
+     *
+     * @throws Exception se il clustering non puo' essere calcolato o salvato.
+     */
+    @Setup
+    public void setup() throws Exception {
+        QTMiner miner = new QTMiner(1.0);
+        miner.compute(new SyntheticTable().rows(n).discrete(3, 3)
+                .continuous(1, SyntheticTable.Distribution.GAUSSIAN).load());
+        clusters = miner.getC();
+        dir = Files.createTempDirectory("qt-bench-").toFile();
+        binary = new File(dir, "read" + QTMiner.FILE_FORMAT).getPath();
+        legacy = new File(dir, "read" + QTMiner.LEGACY_FILE_FORMAT).getPath();
+        ModelFile.write(clusters, binary);
+        writeLegacy(clusters, legacy);
+    }
+
+    /**
+     * Rimuove i file scritti.
+     */
+    @TearDown
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * Scrive un clustering nel vecchio formato serializzato.
+     *
+     * @param clusters clustering da salvare.
+     * @param fileName nome del file (comprensivo di estensione).
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    private static void writeLegacy(ClusterSet clusters, String fileName) throws IOException {
+        try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)))) {
+            out.writeObject(clusters);
+        }
+    }
+
+    /**
+     * Salvataggio nel formato binario.
+     *
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    @Benchmark
+    public void saveBinary() throws IOException {
+        ModelFile.write(clusters, new File(dir, "write" + QTMiner.FILE_FORMAT).getPath());
+    }
+
+    /**
+     * Salvataggio nel vecchio formato serializzato.
+     *
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    @Benchmark
+    public void saveLegacy() throws IOException {
+        writeLegacy(clusters, new File(dir, "write" + QTMiner.LEGACY_FILE_FORMAT).getPath());
+    }
+
+    /**
+     * Caricamento del formato binario: solo intestazione, centroidi e indice.
+     *
+     * @return clustering caricato.
+     * @throws IOException se il file non e' leggibile.
+     */
+    @Benchmark
+    public ClusterSet loadBinaryIndex() throws IOException {
+        return ModelFile.read(binary);
+    }
+
+    /**
+     * Caricamento del formato binario con lettura delle tuple di tutti i cluster.
+     *
+     * @return numero totale di tuple lette.
+     * @throws IOException se il file non e' leggibile.
+     */
+    @Benchmark
+    public int loadBinaryFull() throws IOException {
+        ClusterSet read = ModelFile.read(binary);
+        int total = 0;
+        for (int i = 0; i < read.size(); i++) {
+            total += read.getMembers(i).length;
+        }
+        return total;
+    }
+
+    /**
+     * Caricamento del vecchio formato serializzato.
+     *
+     * @return clustering caricato.
+     * @throws Exception se il file non e' leggibile.
+     */
+    @Benchmark
+    public ClusterSet loadLegacy() throws Exception {
+        return ModelFile.readLegacy(legacy);
+    }
+}
@@ -1,13 +1,11 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.net.ConnectException;
-import java.net.InetAddress;
-import java.net.Socket;
 import java.net.SocketException;
 
 
+import client.QTClient;
+import client.ServerException;
 import keyboardinput.Keyboard;
 
 
@@ -21,13 +19,12 @@ import keyboardinput.Keyboard;
  * - Salvare i cluster su file.
  * 
  * 
- * L'input da tastiera viene gestito tramite la classe Keyboard.
+ * L'input da tastiera viene gestito tramite la classe Keyboard;
+ * la comunicazione con il server avviene tramite la libreria {@link QTClient}.
  */
 public class MainTest {
-	/** Flusso di output di richieste verso il server */
-	private ObjectOutputStream out;
-	/** Flusso di input risposta dal server */
-	private ObjectInputStream in ; 
+	/** Connessione al server */
+	private QTClient client;
 	
 	
 	/**
@@ -40,12 +37,7 @@ public class MainTest {
      * @throws IOException se si verifica un errore di connessione.
 	 */
 	public MainTest(String ip, int port) throws IOException{
-		InetAddress addr = InetAddress.getByName(ip); 
-		Socket socket = new Socket(addr, port); 
-		System.out.println(socket);
-		
-		out = new ObjectOutputStream(socket.getOutputStream());
-		in = new ObjectInputStream(socket.getInputStream());	; 
+		client = new QTClient(ip, port);
 	}
 	
     /**
@@ -71,20 +63,11 @@ public class MainTest {
      * @throws SocketException       se si verifica un errore di rete.
      * @throws ServerException       se il server restituisce un errore.
      * @throws IOException           se avviene un errore di I/O.
-     * @throws ClassNotFoundException se la risposta del server non e' riconosciuta.
      */
-	private String learningFromFile() throws SocketException,ServerException,IOException,ClassNotFoundException{
-		out.writeObject(3);
-		
+	private String learningFromFile() throws SocketException,ServerException,IOException{
 		System.out.print("File Name:");
 		String fileName=Keyboard.readString();
-		out.writeObject(fileName);
-		String file_clusters = (String)in.readObject();
-		
-		String result = (String)in.readObject();
-		if(result.equals("OK"))
-			return file_clusters;
-		else throw new ServerException(result);
+		return client.loadClusters(fileName);
 		
 	}
 	
@@ -95,42 +78,31 @@ public class MainTest {
      * @throws SocketException       se si verifica un errore di rete.
      * @throws ServerException       se il server restituisce un errore.
      * @throws IOException           se avviene un errore di I/O.
-     * @throws ClassNotFoundException se la risposta del server non e' riconosciuta.
      */
-	private void storeTableFromDb() throws SocketException,ServerException,IOException,ClassNotFoundException{
-		out.writeObject(0);
+	private void storeTableFromDb() throws SocketException,ServerException,IOException{
 		System.out.print("Table name:");
 		String tabName=Keyboard.readString();
-		out.writeObject(tabName);
-		String result = (String)in.readObject();
-		if(!result.equals("OK"))
-			throw new ServerException(result);
+		client.storeTable(tabName);
 		
 	}
 	
     /**
-     * Richiede al server di eseguire il clustering su una tabella del database con uno specifico raggio.
+     * Richiede al server di eseguire il clustering su una tabella del database con uno specifico raggio
+     * e stampa i cluster trovati man mano che il server li invia.
      *
-     * @return stringa contenente i cluster trovati
      * @throws SocketException       se si verifica un errore di rete.
      * @throws ServerException       se il server restituisce un errore.
      * @throws IOException           se avviene un errore di I/O.
-     * @throws ClassNotFoundException se la risposta del server non e' riconosciuta.
      */
-	private String learningFromDbTable() throws SocketException,ServerException,IOException,ClassNotFoundException{
-		out.writeObject(1);
+	private void learningFromDbTable() throws SocketException,ServerException,IOException{
 		double r=1.0;
 		do{
 			System.out.print("Radius:");
 			r=Keyboard.readDouble();
 		} while(r<=0 || Double.isNaN(r));
-		out.writeObject(r);
-		String result = (String)in.readObject();
-		if(result.equals("OK")){
-			System.out.println("Number of Clusters:"+in.readObject());
-			return (String)in.readObject();
-		}
-		else throw new ServerException(result);
+		System.out.println("Number of Clusters:"+client.learn(r).getTotal());
+		client.describeResult(System.out);
+		System.out.println();
 		
 		
 	}
@@ -141,19 +113,10 @@ public class MainTest {
      * @throws SocketException       se si verifica un errore di rete.
      * @throws ServerException       se il server restituisce un errore.
      * @throws IOException           se avviene un errore di I/O.
-     * @throws ClassNotFoundException se la risposta del server non e' riconosciuta.
      */
-	private void storeClusterInFile() throws SocketException,ServerException,IOException,ClassNotFoundException{
-		out.writeObject(2);
-		
+	private void storeClusterInFile() throws SocketException,ServerException,IOException{
 		System.out.print("Backup file name: ");
-		out.writeObject(Keyboard.readString());
-		
-		
-		System.out.println((String)in.readObject());
-		String result = (String)in.readObject();
-		if(!result.equals("OK"))
-			 throw new ServerException(result);
+		System.out.println(client.storeClusters(Keyboard.readString()));
 		
 	}
 	
@@ -199,9 +162,6 @@ public class MainTest {
 					} catch (IOException e) {
 						System.out.println(e);
 						return;
-					} catch (ClassNotFoundException e) {
-						System.out.println(e);
-						return;
 					}
 					catch (ServerException e) {
 						System.out.println(e.getMessage());
@@ -226,9 +186,6 @@ public class MainTest {
 						} catch (IOException e) {
 							System.out.println(e);
 							return;
-						} catch (ClassNotFoundException e) {
-							System.out.println(e);
-							return;
 						}
 						catch (ServerException e) {
 							System.out.println(e.getMessage());
@@ -239,8 +196,7 @@ public class MainTest {
 					do{
 						try
 						{
-							String clusterSet=main.learningFromDbTable();
-							System.out.println(clusterSet);
+							main.learningFromDbTable();
 							
 							main.storeClusterInFile();
 									
@@ -252,11 +208,7 @@ public class MainTest {
 						catch (FileNotFoundException e) {
 							System.out.println(e);
 							return;
-						} 
-						catch (ClassNotFoundException e) {
-							System.out.println(e);
-							return;
-						}catch (IOException e) {
+						} catch (IOException e) {
 							System.out.println(e);
 							return;
 						}
@@ -0,0 +1,67 @@
+package client;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Classe che rappresenta una pagina dei cluster di un clustering: il numero totale di cluster,
+ * l'indice del primo cluster della pagina e i riepiloghi dei cluster della pagina.
+ * Le pagine successive si richiedono con {@link QTClient#clusterPage(int, int)}.
+ */
+public class ClusterPage {
+    /** Numero totale di cluster del clustering */
+    private final int total;
+    /** Indice del primo cluster della pagina */
+    private final int first;
+    /** Cluster della pagina, in ordine di indice */
+    private final List<ClusterSummary> clusters;
+
+    /**
+     * Costruttore parametrizzato della classe ClusterPage.
+     *
+     * @param total numero totale di cluster del clustering.
+     * @param first indice del primo cluster della pagina.
+     * @param clusters cluster della pagina.
+     */
+    ClusterPage(int total, int first, List<ClusterSummary> clusters) {
+        this.total = total;
+        this.first = first;
+        this.clusters = Collections.unmodifiableList(clusters);
+    }
+
+    /**
+     * Restituisce il numero totale di cluster del clustering.
+     *
+     * @return numero totale di cluster.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Restituisce l'indice del primo cluster della pagina.
+     *
+     * @return indice del primo cluster.
+     */
+    public int getFirst() {
+        return first;
+    }
+
+    /**
+     * Restituisce i cluster della pagina, in ordine di indice.
+     *
+     * @return cluster della pagina.
+     */
+    public List<ClusterSummary> getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Indica se esistono cluster successivi a quelli della pagina.
+     *
+     * @return true se la pagina non contiene l'ultimo cluster.
+     */
+    public boolean hasMore() {
+        return first + clusters.size() < total;
+    }
+}
@@ -0,0 +1,95 @@
+package client;
+
+/**
+ * Classe che descrive un cluster trovato dal server: indice, numero di tuple,
+ * centroide e distanza media delle tuple dal centroide.
+ */
+public class ClusterSummary {
+    /** Indice del cluster nel clustering */
+    private final int id;
+    /** Numero di tuple del cluster */
+    private final int size;
+    /** Nomi degli attributi del centroide */
+    private final String[] attributes;
+    /** Valori del centroide */
+    private final Object[] centroid;
+    /** Distanza media delle tuple dal centroide */
+    private final double avgDistance;
+
+    /**
+     * Costruttore parametrizzato della classe ClusterSummary.
+     *
+     * @param id indice del cluster.
+     * @param size numero di tuple del cluster.
+     * @param attributes nomi degli attributi del centroide.
+     * @param centroid valori del centroide.
+     * @param avgDistance distanza media delle tuple dal centroide.
+     */
+    ClusterSummary(int id, int size, String[] attributes, Object[] centroid, double avgDistance) {
+        this.id = id;
+        this.size = size;
+        this.attributes = attributes;
+        this.centroid = centroid;
+        this.avgDistance = avgDistance;
+    }
+
+    /**
+     * Restituisce l'indice del cluster.
+     *
+     * @return indice del cluster.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Restituisce il numero di tuple del cluster.
+     *
+     * @return numero di tuple.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Restituisce i nomi degli attributi del centroide.
+     *
+     * @return nomi degli attributi.
+     */
+    public String[] getAttributes() {
+        return attributes.clone();
+    }
+
+    /**
+     * Restituisce i valori del centroide: String per gli attributi discreti, Double per quelli continui.
+     *
+     * @return valori del centroide.
+     */
+    public Object[] getCentroid() {
+        return centroid.clone();
+    }
+
+    /**
+     * Restituisce la distanza media delle tuple dal centroide.
+     *
+     * @return distanza media.
+     */
+    public double getAvgDistance() {
+        return avgDistance;
+    }
+
+    /**
+     * Restituisce una rappresentazione testuale del cluster.
+     *
+     * @return indice, centroide, numero di tuple e distanza media.
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append(id).append(":Centroid=(");
+        for (Object value : centroid) {
+            str.append(value).append(" ");
+        }
+        return str.append(") Size=").append(size).append(" AvgDistance=").append(avgDistance).toString();
+    }
+}
@@ -0,0 +1,68 @@
+package client;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Classe che decomprime le risposte di una connessione dopo che la compressione e' stata
+ * negoziata con una richiesta HELLO.
+ *
+ * Le risposte compresse hanno l'indicatore {@link Frame#COMPRESSED} nel tipo e contengono
+ * la lunghezza originale dei dati (varint) seguita dalla parte successiva di un unico flusso
+ * deflate, aperto per tutta la connessione: i frame vanno quindi decompressi tutti e
+ * nell'ordine di ricezione.
+ */
+final class FrameInflater {
+    /** Codifica deflate (RFC 1951), l'unica supportata. */
+    static final String DEFLATE = "deflate";
+
+    /** Flusso deflate della connessione */
+    private final Inflater inflater = new Inflater(true);
+
+    /**
+     * Decomprime una risposta, se e' compressa.
+     *
+     * @param frame risposta ricevuta.
+     * @return risposta con i dati originali, oppure quella indicata se non e' compressa.
+     * @throws IOException se i dati compressi non sono validi.
+     */
+    Frame inflate(Frame frame) throws IOException {
+        if ((frame.getType() & Frame.COMPRESSED) == 0) {
+            return frame;
+        }
+        byte[] packed = frame.getPayload();
+        DataInputStream in = frame.payload();
+        int length = Frame.readVarInt(in);
+        if (length < 0 || length > Frame.MAX_LENGTH) {
+            throw new IOException("Errore: frame compresso di lunghezza non valida (" + length + ")!");
+        }
+        int offset = packed.length - in.available();
+        inflater.setInput(packed, offset, packed.length - offset);
+        byte[] payload = new byte[length];
+        try {
+            int n = 0;
+            while (n < length) {
+                int read = inflater.inflate(payload, n, length - n);
+                if (read == 0 && (inflater.needsInput() || inflater.finished() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n < length || inflater.getRemaining() != 0) {
+                throw new IOException("Errore: frame compresso non valido!");
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Errore: frame compresso non valido!", ex);
+        }
+        return new Frame(frame.getRequestId(), (byte) (frame.getType() & ~Frame.COMPRESSED), payload);
+    }
+
+    /**
+     * Libera la memoria del flusso deflate; il decompressore non puo' piu' essere usato.
+     */
+    void end() {
+        inflater.end();
+    }
+}
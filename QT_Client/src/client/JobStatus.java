@@ -0,0 +1,161 @@
+package client;
+
+/**
+ * Classe che descrive lo stato di un clustering asincrono (job) eseguito dal server.
+ */
+public class JobStatus {
+    /** Stati di un job, nell'ordine in cui li codifica il server. */
+    public enum State {
+        /** In attesa di un thread di calcolo. */
+        QUEUED,
+        /** Caricamento del dataset e attesa della memoria e di uno slot di calcolo. */
+        LOADING,
+        /** Clustering in corso. */
+        RUNNING,
+        /** Clustering terminato con successo. */
+        DONE,
+        /** Clustering terminato con errore. */
+        FAILED
+    }
+
+    /** Identificativo del job */
+    private final int jobId;
+    /** Stato del job */
+    private final State state;
+    /** Numero di cluster trovati */
+    private final int clusters;
+    /** Numero di tuple assegnate a un cluster */
+    private final int clustered;
+    /** Numero di tuple del dataset */
+    private final int total;
+    /** Stima del tempo rimanente in ms (-1 se non disponibile) */
+    private final long etaMillis;
+    /** Tempo trascorso dalla sottomissione in ms */
+    private final long elapsedMillis;
+    /** Messaggio di errore (null se assente) */
+    private final String error;
+
+    /**
+     * Costruttore parametrizzato della classe JobStatus.
+     *
+     * @param jobId identificativo del job.
+     * @param state stato del job.
+     * @param clusters numero di cluster trovati.
+     * @param clustered numero di tuple assegnate a un cluster.
+     * @param total numero di tuple del dataset.
+     * @param etaMillis stima del tempo rimanente in ms.
+     * @param elapsedMillis tempo trascorso dalla sottomissione in ms.
+     * @param error messaggio di errore.
+     */
+    JobStatus(int jobId, State state, int clusters, int clustered, int total, long etaMillis,
+            long elapsedMillis, String error) {
+        this.jobId = jobId;
+        this.state = state;
+        this.clusters = clusters;
+        this.clustered = clustered;
+        this.total = total;
+        this.etaMillis = etaMillis;
+        this.elapsedMillis = elapsedMillis;
+        this.error = error;
+    }
+
+    /**
+     * Restituisce l'identificativo del job.
+     *
+     * @return identificativo del job.
+     */
+    public int getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Restituisce lo stato del job.
+     *
+     * @return stato del job.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Verifica se il job e' terminato.
+     *
+     * @return "true" se il job e' terminato, con successo o con errore.
+     */
+    public boolean isFinished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+
+    /**
+     * Restituisce il numero di cluster trovati finora.
+     *
+     * @return numero di cluster.
+     */
+    public int getClusters() {
+        return clusters;
+    }
+
+    /**
+     * Restituisce il numero di tuple gia' assegnate a un cluster.
+     *
+     * @return numero di tuple assegnate.
+     */
+    public int getClustered() {
+        return clustered;
+    }
+
+    /**
+     * Restituisce il numero di tuple del dataset (0 finche' non e' stato caricato).
+     *
+     * @return numero di tuple.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    /**
+     * Restituisce la stima del tempo rimanente.
+     *
+     * @return tempo rimanente in ms, oppure -1 se non ancora stimabile.
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    /**
+     * Restituisce il tempo trascorso dalla sottomissione del job.
+     *
+     * @return tempo trascorso in ms.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Restituisce il messaggio di errore del job.
+     *
+     * @return messaggio di errore, oppure null se il job non e' fallito.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Restituisce una rappresentazione testuale dello stato del job.
+     *
+     * @return stato, avanzamento e stima del tempo rimanente.
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append("Job ").append(jobId).append(": ").append(state);
+        if (state == State.FAILED) {
+            return str.append(" (").append(error).append(")").toString();
+        }
+        str.append(" clusters=").append(clusters).append(" rows=").append(clustered).append("/").append(total);
+        if (etaMillis >= 0 && !isFinished()) {
+            str.append(" eta=").append(etaMillis / 1000.0).append("s");
+        }
+        return str.append(" elapsed=").append(elapsedMillis / 1000.0).append("s").toString();
+    }
+}
@@ -0,0 +1,81 @@
+package client;
+
+/**
+ * Classe che rappresenta una tupla appartenente a un cluster, con la sua distanza dal centroide.
+ */
+public class Member {
+    /** ID della tupla nel dataset */
+    private final int id;
+    /** Nomi degli attributi */
+    private final String[] attributes;
+    /** Valori della tupla */
+    private final Object[] values;
+    /** Distanza della tupla dal centroide del cluster */
+    private final double distance;
+
+    /**
+     * Costruttore parametrizzato della classe Member.
+     *
+     * @param id ID della tupla nel dataset.
+     * @param attributes nomi degli attributi.
+     * @param values valori della tupla.
+     * @param distance distanza della tupla dal centroide.
+     */
+    Member(int id, String[] attributes, Object[] values, double distance) {
+        this.id = id;
+        this.attributes = attributes;
+        this.values = values;
+        this.distance = distance;
+    }
+
+    /**
+     * Restituisce l'ID della tupla nel dataset.
+     *
+     * @return ID della tupla.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Restituisce i nomi degli attributi.
+     *
+     * @return nomi degli attributi.
+     */
+    public String[] getAttributes() {
+        return attributes.clone();
+    }
+
+    /**
+     * Restituisce i valori della tupla: String per gli attributi discreti, Double per quelli continui.
+     *
+     * @return valori della tupla.
+     */
+    public Object[] getValues() {
+        return values.clone();
+    }
+
+    /**
+     * Restituisce la distanza della tupla dal centroide del cluster.
+     *
+     * @return distanza dal centroide.
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * Restituisce una rappresentazione testuale della tupla.
+     *
+     * @return valori della tupla e distanza dal centroide.
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append("[");
+        for (Object value : values) {
+            str.append(value).append(" ");
+        }
+        return str.append("] dist=").append(distance).toString();
+    }
+}
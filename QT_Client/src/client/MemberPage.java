@@ -0,0 +1,66 @@
+package client;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Classe che rappresenta una pagina delle tuple di un cluster, in ordine di ID.
+ * Le pagine successive si richiedono con {@link QTClient#clusterMembers(int, int, int)}.
+ */
+public class MemberPage {
+    /** Numero totale di tuple del cluster */
+    private final int clusterSize;
+    /** Posizione della prima tupla della pagina */
+    private final int offset;
+    /** Tuple della pagina */
+    private final List<Member> members;
+
+    /**
+     * Costruttore parametrizzato della classe MemberPage.
+     *
+     * @param clusterSize numero totale di tuple del cluster.
+     * @param offset posizione della prima tupla della pagina.
+     * @param members tuple della pagina.
+     */
+    MemberPage(int clusterSize, int offset, List<Member> members) {
+        this.clusterSize = clusterSize;
+        this.offset = offset;
+        this.members = Collections.unmodifiableList(members);
+    }
+
+    /**
+     * Restituisce il numero totale di tuple del cluster.
+     *
+     * @return numero di tuple del cluster.
+     */
+    public int getClusterSize() {
+        return clusterSize;
+    }
+
+    /**
+     * Restituisce la posizione della prima tupla della pagina.
+     *
+     * @return posizione della prima tupla.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Restituisce le tuple della pagina, in ordine di ID.
+     *
+     * @return tuple della pagina.
+     */
+    public List<Member> getMembers() {
+        return members;
+    }
+
+    /**
+     * Indica se esistono tuple successive a quelle della pagina.
+     *
+     * @return true se la pagina non contiene l'ultima tupla del cluster.
+     */
+    public boolean hasMore() {
+        return offset + members.size() < clusterSize;
+    }
+}
@@ -0,0 +1,497 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classe client asincrona che invia piu' richieste sulla stessa connessione senza attendere
+ * le risposte precedenti (pipelining).
+ *
+ * Ogni richiesta viene registrata con il proprio identificativo prima di essere inviata e
+ * restituisce un {@link CompletableFuture}; un thread di lettura dedicato riceve i frame di
+ * risposta e completa il future con lo stesso identificativo. Il server esegue le richieste
+ * di una connessione nell'ordine di invio, per cui una sequenza come
+ * {@code storeTable(t)} seguita da {@code learn(r)} puo' essere inviata senza attendere la prima
+ * risposta; se la connessione e' usata da piu' thread, le sequenze che dipendono dallo stato
+ * della sessione vanno inviate con i metodi che le raggruppano (ad esempio {@link #learn(String, double)}).
+ *
+ * I future vengono completati dal thread di lettura: le operazioni dipendenti lunghe o bloccanti
+ * vanno eseguite con le varianti {@code ...Async} di {@link CompletableFuture}, per non ritardare
+ * la ricezione delle altre risposte.
+ */
+public class QTAsyncClient implements Closeable {
+    /** Numero di connessioni aperte, usato per il nome dei thread di lettura */
+    private static final AtomicInteger CONNECTIONS = new AtomicInteger();
+
+    /** Socket della connessione al server */
+    private final Socket socket;
+    /** Flusso di input dal server (usato solo dal thread di lettura) */
+    private final DataInputStream in;
+    /** Flusso di output verso il server (usato in mutua esclusione) */
+    private final DataOutputStream out;
+    /** Decompressore delle risposte, null se non compresse (usato solo dal thread di lettura) */
+    private final FrameInflater inflater;
+    /** Richieste inviate e non ancora completate, per identificativo */
+    private final ConcurrentHashMap<Integer, Pending> pending = new ConcurrentHashMap<>();
+    /** Identificativo dell'ultima richiesta inviata (protetto da {@link #out}) */
+    private int lastRequestId;
+    /** Errore che ha chiuso la connessione (null se aperta) */
+    private volatile IOException failure;
+
+    /**
+     * Costruttore parametrizzato della classe QTAsyncClient.
+     * Apre la connessione con il server, negozia la compressione delle risposte e avvia
+     * il thread di lettura delle risposte.
+     *
+     * @param host indirizzo del server.
+     * @param port porta del server.
+     * @throws IOException se non e' possibile connettersi.
+     */
+    public QTAsyncClient(String host, int port) throws IOException {
+        this(host, port, true);
+    }
+
+    /**
+     * Costruttore parametrizzato della classe QTAsyncClient.
+     * Apre la connessione con il server, se richiesto negozia la compressione delle risposte
+     * (vedi {@link QTClient#QTClient(String, int, boolean)}) e avvia il thread di lettura delle risposte.
+     *
+     * @param host indirizzo del server.
+     * @param port porta del server.
+     * @param compress se chiedere al server di comprimere le risposte piu' grandi.
+     * @throws IOException se non e' possibile connettersi.
+     */
+    public QTAsyncClient(String host, int port, boolean compress) throws IOException {
+        socket = new Socket(host, port);
+        try {
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (compress) {
+                Requests.hello(++lastRequestId, FrameInflater.DEFLATE).write(out);
+                out.flush();
+                inflater = Requests.readHello(Frame.read(in));
+            } else {
+                inflater = null;
+            }
+        } catch (IOException ex) {
+            socket.close();
+            throw ex;
+        }
+        Thread reader = new Thread(this::readLoop, "qt-client-reader-" + CONNECTIONS.incrementAndGet());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Imposta la tabella (o il file) su cui eseguire i clustering.
+     *
+     * @param tableName nome della tabella.
+     * @return future completato quando il server ha impostato la tabella.
+     */
+    public CompletableFuture<Void> storeTable(String tableName) {
+        return call(id -> Requests.storeTable(id, tableName), reply -> null);
+    }
+
+    /**
+     * Esegue il clustering della tabella corrente con il raggio indicato.
+     *
+     * @param radius raggio del clustering.
+     * @return future con la prima pagina dei cluster trovati.
+     */
+    public CompletableFuture<ClusterPage> learn(double radius) {
+        return call(id -> Requests.learn(id, radius), Requests::readClusterPage);
+    }
+
+    /**
+     * Imposta la tabella ed esegue il clustering con il raggio indicato, inviando le due
+     * richieste consecutivamente in modo che nessun'altra richiesta della connessione
+     * possa cambiare la tabella tra le due.
+     *
+     * @param tableName nome della tabella.
+     * @param radius raggio del clustering.
+     * @return future con la prima pagina dei cluster trovati.
+     */
+    public CompletableFuture<ClusterPage> learn(String tableName, double radius) {
+        List<CompletableFuture<DataInputStream>> replies = send(null,
+                id -> Requests.storeTable(id, tableName), id -> Requests.learn(id, radius));
+        return decode(replies.get(0).thenCompose(stored -> replies.get(1)), Requests::readClusterPage);
+    }
+
+    /**
+     * Esegue il clustering gerarchico della tabella corrente con i raggi indicati
+     * (vedi {@link QTClient#learnTree(double...)}).
+     *
+     * @param radii raggi dei livelli, in ordine decrescente.
+     * @return future con la prima pagina dei cluster del primo raggio.
+     */
+    public CompletableFuture<ClusterPage> learnTree(double... radii) {
+        return call(id -> Requests.learnTree(id, radii), Requests::readClusterPage);
+    }
+
+    /**
+     * Sceglie un nodo dell'ultimo clustering gerarchico come ultimo clustering della connessione
+     * (vedi {@link QTClient#treeNode(int...)}).
+     *
+     * @param path indici dei cluster da cui scendere, uno per livello.
+     * @return future con la prima pagina dei cluster del nodo.
+     */
+    public CompletableFuture<ClusterPage> treeNode(int... path) {
+        return call(id -> Requests.treeNode(id, path), Requests::readClusterPage);
+    }
+
+    /**
+     * Restituisce una pagina dei cluster dell'ultimo clustering.
+     *
+     * @param first indice del primo cluster.
+     * @param count numero di cluster richiesti.
+     * @return future con la pagina dei cluster.
+     */
+    public CompletableFuture<ClusterPage> clusterPage(int first, int count) {
+        return call(id -> Requests.clusterPage(id, first, count), Requests::readClusterPage);
+    }
+
+    /**
+     * Restituisce una pagina delle tuple di un cluster dell'ultimo clustering, in ordine di ID.
+     *
+     * @param index indice del cluster.
+     * @param offset posizione della prima tupla.
+     * @param limit numero di tuple richieste.
+     * @return future con la pagina delle tuple.
+     */
+    public CompletableFuture<MemberPage> clusterMembers(int index, int offset, int limit) {
+        return call(id -> Requests.clusterMembers(id, index, offset, limit), Requests::readMemberPage);
+    }
+
+    /**
+     * Restituisce la descrizione testuale completa dell'ultimo clustering.
+     *
+     * @return future con la descrizione dell'ultimo clustering.
+     */
+    public CompletableFuture<String> describeResult() {
+        StringBuilder text = new StringBuilder();
+        return describeResult(text).thenApply(done -> text.toString());
+    }
+
+    /**
+     * Scrive sulla destinazione indicata la descrizione testuale completa dell'ultimo clustering,
+     * man mano che il server la invia. La destinazione viene usata dal thread di lettura.
+     *
+     * @param target destinazione del testo.
+     * @return future completato quando l'intera descrizione e' stata scritta.
+     */
+    public CompletableFuture<Void> describeResult(Appendable target) {
+        return decode(send(target, Requests::resultText).get(0), reply -> null);
+    }
+
+    /**
+     * Restituisce le metriche del server, una per riga nella forma "nome valore".
+     *
+     * @return future con le metriche del server.
+     */
+    public CompletableFuture<String> metrics() {
+        return call(Requests::metrics, Frame::readString);
+    }
+
+    /**
+     * Salva sul server l'ultimo clustering eseguito. Il server accoda il salvataggio e risponde
+     * subito, senza attendere la scrittura del file (vedi {@link #submitSave(String)}).
+     *
+     * @param fileName nome del file (senza estensione).
+     * @return future con il messaggio del server sull'accodamento del salvataggio.
+     */
+    public CompletableFuture<String> storeClusters(String fileName) {
+        return call(id -> Requests.storeClusters(id, fileName), Frame::readString);
+    }
+
+    /**
+     * Accoda sul server il salvataggio dell'ultimo clustering eseguito, senza attenderne la scrittura.
+     *
+     * @param fileName nome del file (senza estensione).
+     * @return future con l'identificativo del salvataggio, completato con {@link ServerException}
+     *         se non e' disponibile alcun clustering.
+     */
+    public CompletableFuture<Integer> submitSave(String fileName) {
+        return call(id -> Requests.storeClusters(id, fileName), reply -> {
+            try {
+                return Requests.readSaveId(reply);
+            } catch (ServerException ex) {
+                throw new CompletionException(ex);
+            }
+        });
+    }
+
+    /**
+     * Attende un aggiornamento dello stato di un salvataggio per al piu' il tempo indicato
+     * e ne restituisce lo stato.
+     *
+     * @param saveId identificativo del salvataggio.
+     * @param timeoutMillis attesa massima in ms (0 per leggere subito lo stato).
+     * @return future con lo stato del salvataggio.
+     */
+    public CompletableFuture<SaveStatus> awaitSave(int saveId, int timeoutMillis) {
+        return call(id -> Requests.saveStatus(id, saveId, timeoutMillis), reply -> Requests.readSaveStatus(saveId, reply));
+    }
+
+    /**
+     * Carica sul server un clustering salvato su file.
+     *
+     * @param fileName nome del file (senza estensione).
+     * @return future con la descrizione dei cluster caricati.
+     */
+    public CompletableFuture<String> loadClusters(String fileName) {
+        return call(id -> Requests.loadClusters(id, fileName), Frame::readString);
+    }
+
+    /**
+     * Sottomette un clustering asincrono (job) senza attenderne il termine.
+     *
+     * @param tableName tabella (o file) da clusterizzare.
+     * @param radius raggio del clustering.
+     * @return future con l'identificativo del job.
+     */
+    public CompletableFuture<Integer> submitJob(String tableName, double radius) {
+        return call(id -> Requests.submitJob(id, tableName, radius), Frame::readVarInt);
+    }
+
+    /**
+     * Attende un aggiornamento dello stato di un job per al piu' il tempo indicato
+     * e ne restituisce lo stato.
+     *
+     * @param jobId identificativo del job.
+     * @param timeoutMillis attesa massima in ms (0 per leggere subito lo stato).
+     * @return future con lo stato del job.
+     */
+    public CompletableFuture<JobStatus> awaitJob(int jobId, int timeoutMillis) {
+        return call(id -> Requests.jobStatus(id, jobId, timeoutMillis), reply -> Requests.readJobStatus(jobId, reply));
+    }
+
+    /**
+     * Restituisce il risultato di un job terminato, che diventa anche l'ultimo clustering
+     * della connessione.
+     *
+     * @param jobId identificativo del job.
+     * @return future con la prima pagina dei cluster trovati.
+     */
+    public CompletableFuture<ClusterPage> jobResult(int jobId) {
+        return call(id -> Requests.jobResult(id, jobId), Requests::readClusterPage);
+    }
+
+    /**
+     * Restituisce il numero di richieste inviate e non ancora completate.
+     *
+     * @return richieste in corso sulla connessione.
+     */
+    public int getInFlight() {
+        return pending.size();
+    }
+
+    /**
+     * Indica se la connessione e' aperta.
+     *
+     * @return true se la connessione puo' ancora essere usata.
+     */
+    public boolean isOpen() {
+        return failure == null;
+    }
+
+    /**
+     * Invia una richiesta e ne decodifica la risposta.
+     *
+     * @param <T> tipo del risultato.
+     * @param request costruttore della richiesta a partire dall'identificativo.
+     * @param decoder decodifica dei dati della risposta.
+     * @return future con il risultato decodificato.
+     */
+    private <T> CompletableFuture<T> call(RequestBuilder request, Decoder<T> decoder) {
+        return decode(send(null, request).get(0), decoder);
+    }
+
+    /**
+     * Decodifica i dati di una risposta quando questa viene ricevuta.
+     *
+     * @param <T> tipo del risultato.
+     * @param reply future con i dati della risposta.
+     * @param decoder decodifica dei dati della risposta.
+     * @return future con il risultato decodificato.
+     */
+    private static <T> CompletableFuture<T> decode(CompletableFuture<DataInputStream> reply, Decoder<T> decoder) {
+        return reply.thenApply(data -> {
+            try {
+                return decoder.decode(data);
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+        });
+    }
+
+    /**
+     * Registra e invia piu' richieste consecutivamente, senza che altre richieste della
+     * connessione possano inserirsi tra esse. Se la connessione e' chiusa o l'invio fallisce,
+     * i future vengono completati con l'errore.
+     *
+     * @param target destinazione delle risposte parziali dell'ultima richiesta (null se non previste).
+     * @param requests costruttori delle richieste a partire dall'identificativo.
+     * @return future con i dati delle risposte, nell'ordine delle richieste.
+     */
+    private List<CompletableFuture<DataInputStream>> send(Appendable target, RequestBuilder... requests) {
+        List<CompletableFuture<DataInputStream>> replies = new ArrayList<>(requests.length);
+        for (int i = 0; i < requests.length; i++) {
+            replies.add(new CompletableFuture<>());
+        }
+        synchronized (out) {
+            try {
+                for (int i = 0; i < requests.length; i++) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    Frame frame = requests[i].build(++lastRequestId);
+                    pending.put(frame.getRequestId(), new Pending(replies.get(i), i == requests.length - 1 ? target : null));
+                    frame.write(out);
+                }
+                out.flush();
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+        if (failure != null) {
+            for (CompletableFuture<DataInputStream> reply : replies) {
+                reply.completeExceptionally(failure);
+            }
+        }
+        return replies;
+    }
+
+    /**
+     * Riceve i frame di risposta e completa le richieste corrispondenti, finche' la connessione
+     * non viene chiusa.
+     */
+    private void readLoop() {
+        try {
+            while (true) {
+                Frame response = Frame.read(in);
+                if (inflater != null) {
+                    response = inflater.inflate(response);
+                }
+                Pending call = pending.get(response.getRequestId());
+                if (call == null) {
+                    throw new IOException("Errore: risposta " + response.getRequestId() + " inattesa!");
+                }
+                if (response.getType() == Frame.CHUNK || (response.getType() == Frame.OK && call.target != null)) {
+                    if (call.target == null) {
+                        throw new IOException("Errore: risposta parziale inattesa!");
+                    }
+                    call.target.append(Frame.readString(response.payload()));
+                    if (response.getType() == Frame.CHUNK) {
+                        continue;
+                    }
+                }
+                pending.remove(response.getRequestId());
+                if (response.getType() == Frame.OK) {
+                    call.future.complete(response.payload());
+                } else {
+                    call.future.completeExceptionally(new ServerException(Frame.readString(response.payload()),
+                            response.getType() == Frame.BUSY));
+                }
+            }
+        } catch (IOException ex) {
+            fail(ex);
+        } finally {
+            if (inflater != null) {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Chiude la connessione e completa con l'errore tutte le richieste in corso.
+     *
+     * @param cause errore che ha chiuso la connessione.
+     */
+    private void fail(IOException cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            cause.addSuppressed(ex);
+        }
+        for (Integer id : pending.keySet()) {
+            Pending call = pending.remove(id);
+            if (call != null) {
+                call.future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Chiude la connessione; le richieste in corso vengono completate con errore.
+     */
+    @Override
+    public void close() {
+        fail(new IOException("Errore: connessione chiusa dal client!"));
+    }
+
+    /**
+     * Costruttore del frame di una richiesta a partire dall'identificativo assegnato.
+     */
+    private interface RequestBuilder {
+        /**
+         * Costruisce il frame della richiesta.
+         *
+         * @param id identificativo della richiesta.
+         * @return frame della richiesta.
+         * @throws IOException se si verifica un errore di codifica.
+         */
+        Frame build(int id) throws IOException;
+    }
+
+    /**
+     * Decodifica dei dati di una risposta.
+     *
+     * @param <T> tipo del risultato.
+     */
+    private interface Decoder<T> {
+        /**
+         * Decodifica i dati di una risposta.
+         *
+         * @param reply dati della risposta.
+         * @return risultato decodificato.
+         * @throws IOException se la risposta non e' valida.
+         */
+        T decode(DataInputStream reply) throws IOException;
+    }
+
+    /**
+     * Richiesta inviata in attesa di risposta.
+     */
+    private static class Pending {
+        /** Future completato alla ricezione della risposta finale */
+        final CompletableFuture<DataInputStream> future;
+        /** Destinazione delle risposte parziali (null se non previste) */
+        final Appendable target;
+
+        /**
+         * Costruttore della richiesta in attesa.
+         *
+         * @param future future da completare alla ricezione della risposta finale.
+         * @param target destinazione delle risposte parziali (null se non previste).
+         */
+        Pending(CompletableFuture<DataInputStream> future, Appendable target) {
+            this.future = future;
+            this.target = target;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+package client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Classe client che comunica con il server di clustering tramite il protocollo binario a frame.
+ *
+ * Ogni richiesta viene inviata come frame con un proprio identificativo e il metodo
+ * attende il frame di risposta corrispondente; i flussi sono bufferizzati e non
+ * viene usata la serializzazione Java. All'apertura della connessione viene negoziata,
+ * se il server la supporta, la compressione delle risposte piu' grandi ({@link FrameInflater}).
+ */
+public class QTClient implements Closeable {
+    /** Socket della connessione al server */
+    private final Socket socket;
+    /** Flusso di input dal server */
+    private final DataInputStream in;
+    /** Flusso di output verso il server */
+    private final DataOutputStream out;
+    /** Decompressore delle risposte (null se non compresse) */
+    private FrameInflater inflater;
+    /** Identificativo dell'ultima richiesta inviata */
+    private int lastRequestId;
+
+    /**
+     * Costruttore parametrizzato della classe QTClient.
+     * Apre la connessione con il server e negozia la compressione delle risposte.
+     *
+     * @param host indirizzo del server.
+     * @param port porta del server.
+     * @throws IOException se non e' possibile connettersi.
+     */
+    public QTClient(String host, int port) throws IOException {
+        this(host, port, true);
+    }
+
+    /**
+     * Costruttore parametrizzato della classe QTClient.
+     * Apre la connessione con il server e, se richiesto, negozia la compressione delle risposte:
+     * conviene su reti lente, mentre in locale costa piu' tempo di CPU di quanto ne risparmi.
+     *
+     * @param host indirizzo del server.
+     * @param port porta del server.
+     * @param compress se chiedere al server di comprimere le risposte piu' grandi.
+     * @throws IOException se non e' possibile connettersi.
+     */
+    public QTClient(String host, int port, boolean compress) throws IOException {
+        socket = new Socket(host, port);
+        try {
+            socket.setTcpNoDelay(true);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (compress) {
+                send(Requests.hello(++lastRequestId, FrameInflater.DEFLATE));
+                inflater = Requests.readHello(Frame.read(in));
+            }
+        } catch (IOException ex) {
+            socket.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Imposta la tabella (o il file) su cui eseguire i clustering.
+     *
+     * @param tableName nome della tabella.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il server restituisce un errore.
+     */
+    public void storeTable(String tableName) throws IOException, ServerException {
+        call(Requests.storeTable(++lastRequestId, tableName));
+    }
+
+    /**
+     * Esegue il clustering della tabella corrente con il raggio indicato.
+     *
+     * Viene restituita solo la prima pagina dei cluster; le successive si richiedono
+     * con {@link #clusterPage(int, int)}.
+     *
+     * @param radius raggio del clustering.
+     * @return prima pagina dei cluster trovati, con il numero totale di cluster.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il server restituisce un errore.
+     */
+    public ClusterPage learn(double radius) throws IOException, ServerException {
+        return Requests.readClusterPage(call(Requests.learn(++lastRequestId, radius)));
+    }
+
+    /**
+     * Esegue il clustering gerarchico della tabella corrente: il dataset viene raggruppato con il primo
+     * raggio, ogni cluster trovato con il secondo e cosi' via. I cluster di ogni livello sono contenuti
+     * in quelli del livello precedente.
+     *
+     * Viene restituita la prima pagina dei cluster del primo raggio, che diventano l'ultimo clustering
+     * della connessione; i livelli successivi si scelgono con {@link #treeNode(int...)}.
+     *
+     * @param radii raggi dei livelli, in ordine decrescente.
+     * @return prima pagina dei cluster del primo raggio, con il numero totale di cluster.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il server restituisce un errore.
+     */
+    public ClusterPage learnTree(double... radii) throws IOException, ServerException {
+        return Requests.readClusterPage(call(Requests.learnTree(++lastRequestId, radii)));
+    }
+
+    /**
+     * Sceglie un nodo dell'ultimo clustering gerarchico, che diventa l'ultimo clustering della connessione
+     * (sfogliabile con {@link #clusterPage(int, int)} e {@link #clusterMembers(int, int, int)},
+     * descrivibile e salvabile). Ad esempio {@code treeNode(3)} restituisce il clustering, con il secondo
+     * raggio, delle tuple del cluster 3 del primo raggio, e {@code treeNode()} torna al primo raggio.
+     *
+     * @param path indici dei cluster da cui scendere, uno per livello.
+     * @return prima pagina dei cluster del nodo, con il numero totale di cluster.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se non e' disponibile un clustering gerarchico o il nodo non esiste.
+     */
+    public ClusterPage treeNode(int... path) throws IOException, ServerException {
+        return Requests.readClusterPage(call(Requests.treeNode(++lastRequestId, path)));
+    }
+
+    /**
+     * Sottomette un clustering asincrono (job) senza attenderne il termine.
+     *
+     * @param tableName tabella (o file) da clusterizzare.
+     * @param radius raggio del clustering.
+     * @return identificativo del job.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il server restituisce un errore o e' sovraccarico.
+     */
+    public int submitJob(String tableName, double radius) throws IOException, ServerException {
+        return Frame.readVarInt(call(Requests.submitJob(++lastRequestId, tableName, radius)));
+    }
+
+    /**
+     * Restituisce lo stato di un job.
+     *
+     * @param jobId identificativo del job.
+     * @return stato del job.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il job non esiste.
+     */
+    public JobStatus jobStatus(int jobId) throws IOException, ServerException {
+        return awaitJob(jobId, 0);
+    }
+
+    /**
+     * Attende un aggiornamento dello stato di un job (nuovo cluster trovato, cambio di stato
+     * o termine) per al piu' il tempo indicato, e ne restituisce lo stato.
+     *
+     * @param jobId identificativo del job.
+     * @param timeoutMillis attesa massima in ms (0 per leggere subito lo stato).
+     * @return stato del job.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il job non esiste.
+     */
+    public JobStatus awaitJob(int jobId, int timeoutMillis) throws IOException, ServerException {
+        return Requests.readJobStatus(jobId, call(Requests.jobStatus(++lastRequestId, jobId, timeoutMillis)));
+    }
+
+    /**
+     * Restituisce il risultato di un job terminato, che diventa anche l'ultimo clustering
+     * della connessione (descrivibile con {@link #describeResult()} e salvabile con
+     * {@link #storeClusters(String)}).
+     *
+     * @param jobId identificativo del job.
+     * @return prima pagina dei cluster trovati, con il numero totale di cluster.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il job non esiste, non e' terminato o e' fallito.
+     */
+    public ClusterPage jobResult(int jobId) throws IOException, ServerException {
+        return Requests.readClusterPage(call(Requests.jobResult(++lastRequestId, jobId)));
+    }
+
+    /**
+     * Restituisce una pagina dei cluster dell'ultimo clustering.
+     * Il server restituisce al piu' 1000 cluster per pagina.
+     *
+     * @param first indice del primo cluster.
+     * @param count numero di cluster richiesti.
+     * @return pagina dei cluster, con il numero totale di cluster.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se non e' disponibile alcun clustering.
+     */
+    public ClusterPage clusterPage(int first, int count) throws IOException, ServerException {
+        return Requests.readClusterPage(call(Requests.clusterPage(++lastRequestId, first, count)));
+    }
+
+    /**
+     * Restituisce una pagina delle tuple di un cluster dell'ultimo clustering, in ordine di ID.
+     * Il server restituisce al piu' 1000 tuple per pagina.
+     *
+     * @param index indice del cluster.
+     * @param offset posizione della prima tupla.
+     * @param limit numero di tuple richieste.
+     * @return pagina delle tuple, con il numero totale di tuple del cluster.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se non e' disponibile alcun clustering o il cluster non esiste.
+     */
+    public MemberPage clusterMembers(int index, int offset, int limit) throws IOException, ServerException {
+        return Requests.readMemberPage(call(Requests.clusterMembers(++lastRequestId, index, offset, limit)));
+    }
+
+    /**
+     * Restituisce la descrizione testuale completa dell'ultimo clustering,
+     * con le tuple di ogni cluster e la loro distanza dal centroide.
+     * Per clustering di grandi dimensioni e' preferibile {@link #describeResult(Appendable)},
+     * che non accumula l'intera descrizione in memoria.
+     *
+     * @return descrizione dell'ultimo clustering.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il server restituisce un errore.
+     */
+    public String describeResult() throws IOException, ServerException {
+        StringBuilder text = new StringBuilder();
+        describeResult(text);
+        return text.toString();
+    }
+
+    /**
+     * Scrive sulla destinazione indicata la descrizione testuale completa dell'ultimo
+     * clustering, man mano che il server la invia.
+     *
+     * @param target destinazione del testo.
+     * @throws IOException se si verifica un errore di comunicazione o di scrittura.
+     * @throws ServerException se il server restituisce un errore; parte della descrizione
+     *         potrebbe essere gia' stata scritta.
+     */
+    public void describeResult(Appendable target) throws IOException, ServerException {
+        Frame request = Requests.resultText(++lastRequestId);
+        send(request);
+        Frame response;
+        do {
+            response = receive(request);
+            target.append(Frame.readString(response.payload()));
+        } while (response.getType() == Frame.CHUNK);
+    }
+
+    /**
+     * Restituisce le metriche del server (tempi di caricamento e di clustering, byte trasferiti,
+     * sessioni attive, clustering in coda...), una per riga nella forma "nome valore".
+     *
+     * @return metriche del server.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il server restituisce un errore.
+     */
+    public String metrics() throws IOException, ServerException {
+        return Frame.readString(call(Requests.metrics(++lastRequestId)));
+    }
+
+    /**
+     * Salva sul server l'ultimo clustering eseguito. Il server accoda il salvataggio e risponde
+     * subito, senza attendere la scrittura del file: per sapere quando il file e' persistente
+     * si usa {@link #submitSave(String)}.
+     *
+     * @param fileName nome del file (senza estensione).
+     * @return messaggio del server sull'accodamento del salvataggio.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il server restituisce un errore o ha troppi salvataggi in attesa.
+     */
+    public String storeClusters(String fileName) throws IOException, ServerException {
+        return Frame.readString(call(Requests.storeClusters(++lastRequestId, fileName)));
+    }
+
+    /**
+     * Accoda sul server il salvataggio dell'ultimo clustering eseguito, senza attenderne la scrittura.
+     *
+     * @param fileName nome del file (senza estensione).
+     * @return identificativo del salvataggio, con cui verificarne la persistenza ({@link #awaitSave(int, int)}).
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se non e' disponibile alcun clustering o il server ha troppi salvataggi in attesa.
+     */
+    public int submitSave(String fileName) throws IOException, ServerException {
+        return Requests.readSaveId(call(Requests.storeClusters(++lastRequestId, fileName)));
+    }
+
+    /**
+     * Restituisce lo stato di un salvataggio.
+     *
+     * @param saveId identificativo del salvataggio.
+     * @return stato del salvataggio.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il salvataggio non esiste.
+     */
+    public SaveStatus saveStatus(int saveId) throws IOException, ServerException {
+        return awaitSave(saveId, 0);
+    }
+
+    /**
+     * Attende un aggiornamento dello stato di un salvataggio (inizio della scrittura o termine)
+     * per al piu' il tempo indicato, e ne restituisce lo stato.
+     *
+     * @param saveId identificativo del salvataggio.
+     * @param timeoutMillis attesa massima in ms (0 per leggere subito lo stato).
+     * @return stato del salvataggio.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il salvataggio non esiste.
+     */
+    public SaveStatus awaitSave(int saveId, int timeoutMillis) throws IOException, ServerException {
+        return Requests.readSaveStatus(saveId, call(Requests.saveStatus(++lastRequestId, saveId, timeoutMillis)));
+    }
+
+    /**
+     * Carica sul server un clustering salvato su file.
+     *
+     * @param fileName nome del file (senza estensione).
+     * @return descrizione dei cluster caricati.
+     * @throws IOException se si verifica un errore di comunicazione.
+     * @throws ServerException se il server restituisce un errore.
+     */
+    public String loadClusters(String fileName) throws IOException, ServerException {
+        return Frame.readString(call(Requests.loadClusters(++lastRequestId, fileName)));
+    }
+
+    /**
+     * Invia una richiesta e ne attende la risposta.
+     *
+     * @param request richiesta da inviare.
+     * @return dati della risposta.
+     * @throws IOException se si verifica un errore di comunicazione o la risposta non corrisponde.
+     * @throws ServerException se il server restituisce un errore o e' sovraccarico.
+     */
+    private DataInputStream call(Frame request) throws IOException, ServerException {
+        send(request);
+        Frame response = receive(request);
+        if (response.getType() != Frame.OK) {
+            throw new IOException("Errore: risposta parziale inattesa!");
+        }
+        return response.payload();
+    }
+
+    /**
+     * Invia una richiesta al server.
+     *
+     * @param request richiesta da inviare.
+     * @throws IOException se si verifica un errore di comunicazione.
+     */
+    private void send(Frame request) throws IOException {
+        request.write(out);
+        out.flush();
+    }
+
+    /**
+     * Legge il prossimo frame di risposta a una richiesta (finale o parziale).
+     *
+     * @param request richiesta a cui si attende la risposta.
+     * @return frame di risposta di tipo OK o CHUNK.
+     * @throws IOException se si verifica un errore di comunicazione o la risposta non corrisponde.
+     * @throws ServerException se il server restituisce un errore o e' sovraccarico.
+     */
+    private Frame receive(Frame request) throws IOException, ServerException {
+        Frame response = Frame.read(in);
+        if (inflater != null) {
+            response = inflater.inflate(response);
+        }
+        if (response.getType() != Frame.OK && response.getType() != Frame.CHUNK) {
+            throw new ServerException(Frame.readString(response.payload()), response.getType() == Frame.BUSY);
+        }
+        if (response.getRequestId() != request.getRequestId()) {
+            throw new IOException("Errore: risposta " + response.getRequestId() + " inattesa!");
+        }
+        return response;
+    }
+
+    /**
+     * Chiude la connessione con il server.
+     *
+     * @throws IOException se si verifica un errore durante la chiusura.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        if (inflater != null) {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Classe che mantiene un insieme di connessioni asincrone ({@link QTAsyncClient}) aperte verso
+ * lo stesso server e distribuisce le richieste sulla connessione con meno richieste in corso.
+ *
+ * Il server esegue le richieste di una connessione una alla volta: distribuendole su piu'
+ * connessioni un clustering lungo non ritarda le richieste inviate sulle altre.
+ * Ogni connessione ha una propria sessione sul server (tabella e ultimo clustering), per cui
+ * i metodi del pool inviano in un'unica sequenza le richieste che dipendono dalla sessione;
+ * per sequenze piu' lunghe si usa direttamente la connessione restituita da {@link #client()}.
+ * Le connessioni chiuse (ad esempio per un errore di rete) vengono riaperte al primo utilizzo.
+ */
+public class QTClientPool implements Closeable {
+    /** Indirizzo del server */
+    private final String host;
+    /** Porta del server */
+    private final int port;
+    /** Connessioni del pool (protette dal pool) */
+    private final QTAsyncClient[] clients;
+    /** Indica se il pool e' stato chiuso */
+    private boolean closed;
+
+    /**
+     * Costruttore parametrizzato della classe QTClientPool.
+     * Apre subito tutte le connessioni, in modo che siano pronte alla prima richiesta.
+     *
+     * @param host indirizzo del server.
+     * @param port porta del server.
+     * @param size numero di connessioni.
+     * @throws IOException se non e' possibile aprire una connessione.
+     */
+    public QTClientPool(String host, int port, int size) throws IOException {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Errore: il pool deve avere almeno una connessione!");
+        }
+        this.host = host;
+        this.port = port;
+        this.clients = new QTAsyncClient[size];
+        try {
+            for (int i = 0; i < size; i++) {
+                clients[i] = new QTAsyncClient(host, port);
+            }
+        } catch (IOException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Restituisce la connessione aperta con meno richieste in corso, riaprendo
+     * quelle chiuse.
+     *
+     * @return connessione da usare per la prossima richiesta.
+     * @throws IOException se il pool e' chiuso o non e' possibile riaprire una connessione.
+     */
+    public synchronized QTAsyncClient client() throws IOException {
+        if (closed) {
+            throw new IOException("Errore: pool di connessioni chiuso!");
+        }
+        QTAsyncClient best = null;
+        for (int i = 0; i < clients.length; i++) {
+            if (!clients[i].isOpen()) {
+                clients[i] = new QTAsyncClient(host, port);
+            }
+            if (best == null || clients[i].getInFlight() < best.getInFlight()) {
+                best = clients[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Imposta la tabella ed esegue il clustering con il raggio indicato su una connessione del pool.
+     *
+     * @param tableName nome della tabella.
+     * @param radius raggio del clustering.
+     * @return future con la prima pagina dei cluster trovati.
+     */
+    public CompletableFuture<ClusterPage> learn(String tableName, double radius) {
+        try {
+            return client().learn(tableName, radius);
+        } catch (IOException ex) {
+            return failed(ex);
+        }
+    }
+
+    /**
+     * Sottomette un clustering asincrono (job) su una connessione del pool.
+     * I job sono condivisi dal server, per cui il loro stato puo' essere letto da qualsiasi connessione.
+     *
+     * @param tableName tabella (o file) da clusterizzare.
+     * @param radius raggio del clustering.
+     * @return future con l'identificativo del job.
+     */
+    public CompletableFuture<Integer> submitJob(String tableName, double radius) {
+        try {
+            return client().submitJob(tableName, radius);
+        } catch (IOException ex) {
+            return failed(ex);
+        }
+    }
+
+    /**
+     * Attende un aggiornamento dello stato di un job per al piu' il tempo indicato.
+     *
+     * @param jobId identificativo del job.
+     * @param timeoutMillis attesa massima in ms (0 per leggere subito lo stato).
+     * @return future con lo stato del job.
+     */
+    public CompletableFuture<JobStatus> awaitJob(int jobId, int timeoutMillis) {
+        try {
+            return client().awaitJob(jobId, timeoutMillis);
+        } catch (IOException ex) {
+            return failed(ex);
+        }
+    }
+
+    /**
+     * Restituisce la prima pagina del risultato di un job terminato.
+     *
+     * @param jobId identificativo del job.
+     * @return future con la prima pagina dei cluster trovati.
+     */
+    public CompletableFuture<ClusterPage> jobResult(int jobId) {
+        try {
+            return client().jobResult(jobId);
+        } catch (IOException ex) {
+            return failed(ex);
+        }
+    }
+
+    /**
+     * Restituisce un future completato con l'errore indicato.
+     *
+     * @param <T> tipo del risultato.
+     * @param cause errore.
+     * @return future completato con errore.
+     */
+    private static <T> CompletableFuture<T> failed(IOException cause) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
+    /**
+     * Chiude tutte le connessioni del pool; le richieste in corso vengono completate con errore.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (QTAsyncClient client : clients) {
+            if (client != null) {
+                client.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classe di utilita' che costruisce i frame delle richieste e decodifica i dati delle risposte,
+ * condivisa dal client sincrono ({@link QTClient}) e da quello asincrono ({@link QTAsyncClient}).
+ */
+final class Requests {
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private Requests() {
+    }
+
+    /**
+     * Costruisce la richiesta che imposta la tabella corrente.
+     *
+     * @param id identificativo della richiesta.
+     * @param tableName nome della tabella.
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame storeTable(int id, String tableName) throws IOException {
+        return Frame.text(id, Frame.STORE_TABLE, tableName);
+    }
+
+    /**
+     * Costruisce la richiesta di clustering della tabella corrente.
+     *
+     * @param id identificativo della richiesta.
+     * @param radius raggio del clustering.
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame learn(int id, double radius) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeDouble(radius);
+        return new Frame(id, Frame.LEARN, bytes.toByteArray());
+    }
+
+    /**
+     * Costruisce la richiesta di clustering gerarchico della tabella corrente.
+     *
+     * @param id identificativo della richiesta.
+     * @param radii raggi dei livelli, in ordine decrescente.
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame learnTree(int id, double[] radii) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        Frame.writeVarInt(payload, radii.length);
+        for (double radius : radii) {
+            payload.writeDouble(radius);
+        }
+        return new Frame(id, Frame.LEARN_TREE, bytes.toByteArray());
+    }
+
+    /**
+     * Costruisce la richiesta di scelta di un nodo dell'ultimo clustering gerarchico.
+     *
+     * @param id identificativo della richiesta.
+     * @param path indici dei cluster da cui scendere, uno per livello.
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame treeNode(int id, int[] path) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        Frame.writeVarInt(payload, path.length);
+        for (int index : path) {
+            Frame.writeVarInt(payload, index);
+        }
+        return new Frame(id, Frame.TREE_NODE, bytes.toByteArray());
+    }
+
+    /**
+     * Costruisce la richiesta di sottomissione di un job.
+     *
+     * @param id identificativo della richiesta.
+     * @param tableName tabella (o file) da clusterizzare.
+     * @param radius raggio del clustering.
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame submitJob(int id, String tableName, double radius) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        Frame.writeString(payload, tableName);
+        payload.writeDouble(radius);
+        return new Frame(id, Frame.SUBMIT_JOB, bytes.toByteArray());
+    }
+
+    /**
+     * Costruisce la richiesta dello stato di un job, con o senza attesa di un aggiornamento.
+     *
+     * @param id identificativo della richiesta.
+     * @param jobId identificativo del job.
+     * @param timeoutMillis attesa massima in ms (0 per leggere subito lo stato).
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame jobStatus(int id, int jobId, int timeoutMillis) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        Frame.writeVarInt(payload, jobId);
+        if (timeoutMillis > 0) {
+            Frame.writeVarInt(payload, timeoutMillis);
+        }
+        return new Frame(id, timeoutMillis > 0 ? Frame.JOB_WAIT : Frame.JOB_STATUS, bytes.toByteArray());
+    }
+
+    /**
+     * Costruisce la richiesta del risultato di un job.
+     *
+     * @param id identificativo della richiesta.
+     * @param jobId identificativo del job.
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame jobResult(int id, int jobId) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Frame.writeVarInt(new DataOutputStream(bytes), jobId);
+        return new Frame(id, Frame.JOB_RESULT, bytes.toByteArray());
+    }
+
+    /**
+     * Costruisce la richiesta di una pagina di cluster dell'ultimo clustering.
+     *
+     * @param id identificativo della richiesta.
+     * @param first indice del primo cluster.
+     * @param count numero di cluster richiesti.
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame clusterPage(int id, int first, int count) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        Frame.writeVarInt(payload, first);
+        Frame.writeVarInt(payload, count);
+        return new Frame(id, Frame.RESULT_PAGE, bytes.toByteArray());
+    }
+
+    /**
+     * Costruisce la richiesta di una pagina delle tuple di un cluster.
+     *
+     * @param id identificativo della richiesta.
+     * @param index indice del cluster.
+     * @param offset posizione della prima tupla.
+     * @param limit numero di tuple richieste.
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame clusterMembers(int id, int index, int offset, int limit) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        Frame.writeVarInt(payload, index);
+        Frame.writeVarInt(payload, offset);
+        Frame.writeVarInt(payload, limit);
+        return new Frame(id, Frame.CLUSTER_MEMBERS, bytes.toByteArray());
+    }
+
+    /**
+     * Costruisce la richiesta della descrizione testuale dell'ultimo clustering.
+     *
+     * @param id identificativo della richiesta.
+     * @return frame della richiesta.
+     */
+    static Frame resultText(int id) {
+        return new Frame(id, Frame.RESULT_TEXT, new byte[0]);
+    }
+
+    /**
+     * Costruisce la richiesta che negozia la compressione delle risposte.
+     *
+     * @param id identificativo della richiesta.
+     * @param codecs codifiche che il client sa decomprimere, in ordine di preferenza.
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame hello(int id, String... codecs) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        Frame.writeVarInt(payload, codecs.length);
+        for (String codec : codecs) {
+            Frame.writeString(payload, codec);
+        }
+        return new Frame(id, Frame.HELLO, bytes.toByteArray());
+    }
+
+    /**
+     * Decodifica la risposta alla negoziazione della compressione. I server che non supportano
+     * la negoziazione rispondono con un errore, trattato come nessuna compressione.
+     *
+     * @param response frame di risposta alla richiesta {@link #hello(int, String...)}.
+     * @return decompressore delle risposte successive, oppure null se il server non le comprime.
+     * @throws IOException se la risposta non e' valida.
+     */
+    static FrameInflater readHello(Frame response) throws IOException {
+        if (response.getType() == Frame.OK && FrameInflater.DEFLATE.equals(Frame.readString(response.payload()))) {
+            return new FrameInflater();
+        }
+        return null;
+    }
+
+    /**
+     * Costruisce la richiesta delle metriche del server.
+     *
+     * @param id identificativo della richiesta.
+     * @return frame della richiesta.
+     */
+    static Frame metrics(int id) {
+        return new Frame(id, Frame.METRICS, new byte[0]);
+    }
+
+    /**
+     * Costruisce la richiesta di salvataggio dell'ultimo clustering.
+     *
+     * @param id identificativo della richiesta.
+     * @param fileName nome del file (senza estensione).
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame storeClusters(int id, String fileName) throws IOException {
+        return Frame.text(id, Frame.STORE_CLUSTER, fileName);
+    }
+
+    /**
+     * Costruisce la richiesta dello stato di un salvataggio, con o senza attesa di un aggiornamento.
+     *
+     * @param id identificativo della richiesta.
+     * @param saveId identificativo del salvataggio.
+     * @param timeoutMillis attesa massima in ms (0 per leggere subito lo stato).
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame saveStatus(int id, int saveId, int timeoutMillis) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(bytes);
+        Frame.writeVarInt(payload, saveId);
+        Frame.writeVarInt(payload, timeoutMillis);
+        return new Frame(id, Frame.SAVE_STATUS, bytes.toByteArray());
+    }
+
+    /**
+     * Costruisce la richiesta di caricamento di un clustering salvato su file.
+     *
+     * @param id identificativo della richiesta.
+     * @param fileName nome del file (senza estensione).
+     * @return frame della richiesta.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    static Frame loadClusters(int id, String fileName) throws IOException {
+        return Frame.text(id, Frame.LOAD_FILE, fileName);
+    }
+
+    /**
+     * Legge lo stato di un job: stato, cluster trovati, tuple assegnate, tuple totali,
+     * tempo stimato, tempo trascorso e messaggio di errore.
+     *
+     * @param jobId identificativo del job.
+     * @param reply dati della risposta.
+     * @return stato del job.
+     * @throws IOException se la risposta non e' valida.
+     */
+    static JobStatus readJobStatus(int jobId, DataInputStream reply) throws IOException {
+        JobStatus.State state = JobStatus.State.values()[reply.readByte()];
+        int clusters = Frame.readVarInt(reply);
+        int clustered = Frame.readVarInt(reply);
+        int total = Frame.readVarInt(reply);
+        long eta = reply.readLong();
+        long elapsed = reply.readLong();
+        String error = Frame.readString(reply);
+        return new JobStatus(jobId, state, clusters, clustered, total, eta, elapsed, error.isEmpty() ? null : error);
+    }
+
+    /**
+     * Legge la risposta al salvataggio dell'ultimo clustering: messaggio e identificativo del salvataggio.
+     *
+     * @param reply dati della risposta.
+     * @return identificativo del salvataggio accodato.
+     * @throws IOException se la risposta non e' valida.
+     * @throws ServerException se non e' disponibile alcun clustering da salvare.
+     */
+    static int readSaveId(DataInputStream reply) throws IOException, ServerException {
+        String message = Frame.readString(reply);
+        int saveId = Frame.readVarInt(reply);
+        if (saveId == 0) {
+            throw new ServerException(message, false);
+        }
+        return saveId;
+    }
+
+    /**
+     * Legge lo stato di un salvataggio: stato, tempo trascorso e messaggio di errore.
+     *
+     * @param saveId identificativo del salvataggio.
+     * @param reply dati della risposta.
+     * @return stato del salvataggio.
+     * @throws IOException se la risposta non e' valida.
+     */
+    static SaveStatus readSaveStatus(int saveId, DataInputStream reply) throws IOException {
+        SaveStatus.State state = SaveStatus.State.values()[reply.readByte()];
+        long elapsed = reply.readLong();
+        String error = Frame.readString(reply);
+        return new SaveStatus(saveId, state, elapsed, error.isEmpty() ? null : error);
+    }
+
+    /**
+     * Legge una pagina del riepilogo dei cluster: numero totale di cluster, primo indice,
+     * numero di cluster della pagina, schema e, per ogni cluster, indice, numero di tuple,
+     * centroide e distanza media.
+     *
+     * @param reply dati della risposta.
+     * @return pagina dei cluster letta.
+     * @throws IOException se la risposta non e' valida.
+     */
+    static ClusterPage readClusterPage(DataInputStream reply) throws IOException {
+        int total = Frame.readVarInt(reply);
+        int first = Frame.readVarInt(reply);
+        int count = Frame.readVarInt(reply);
+        List<ClusterSummary> clusters = new ArrayList<>(count);
+        if (count > 0) {
+            Schema schema = Schema.read(reply);
+            String[] names = schema.getNames();
+            for (int i = 0; i < count; i++) {
+                int id = Frame.readVarInt(reply);
+                int size = Frame.readVarInt(reply);
+                Object[] centroid = schema.readTuple(reply);
+                clusters.add(new ClusterSummary(id, size, names, centroid, reply.readDouble()));
+            }
+        }
+        return new ClusterPage(total, first, clusters);
+    }
+
+    /**
+     * Legge una pagina delle tuple di un cluster: numero di tuple del cluster, prima tupla,
+     * numero di tuple della pagina, schema e, per ogni tupla, ID, valori e distanza dal centroide.
+     *
+     * @param reply dati della risposta.
+     * @return pagina delle tuple letta.
+     * @throws IOException se la risposta non e' valida.
+     */
+    static MemberPage readMemberPage(DataInputStream reply) throws IOException {
+        int clusterSize = Frame.readVarInt(reply);
+        int offset = Frame.readVarInt(reply);
+        int count = Frame.readVarInt(reply);
+        Schema schema = Schema.read(reply);
+        String[] names = schema.getNames();
+        List<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int id = Frame.readVarInt(reply);
+            Object[] values = schema.readTuple(reply);
+            members.add(new Member(id, names, values, reply.readDouble()));
+        }
+        return new MemberPage(clusterSize, offset, members);
+    }
+}
@@ -0,0 +1,103 @@
+package client;
+
+/**
+ * Classe che descrive lo stato del salvataggio su file di un clustering, che il server
+ * esegue in background dopo averlo accodato.
+ */
+public class SaveStatus {
+    /** Stati di un salvataggio, nell'ordine in cui li codifica il server. */
+    public enum State {
+        /** In attesa del thread di scrittura. */
+        QUEUED,
+        /** Scrittura in corso. */
+        WRITING,
+        /** File scritto e forzato su disco: sopravvive a un arresto del server. */
+        DURABLE,
+        /** Salvataggio non riuscito. */
+        FAILED
+    }
+
+    /** Identificativo del salvataggio */
+    private final int saveId;
+    /** Stato del salvataggio */
+    private final State state;
+    /** Tempo trascorso dall'accodamento in ms */
+    private final long elapsedMillis;
+    /** Messaggio di errore (null se assente) */
+    private final String error;
+
+    /**
+     * Costruttore parametrizzato della classe SaveStatus.
+     *
+     * @param saveId identificativo del salvataggio.
+     * @param state stato del salvataggio.
+     * @param elapsedMillis tempo trascorso dall'accodamento in ms.
+     * @param error messaggio di errore.
+     */
+    SaveStatus(int saveId, State state, long elapsedMillis, String error) {
+        this.saveId = saveId;
+        this.state = state;
+        this.elapsedMillis = elapsedMillis;
+        this.error = error;
+    }
+
+    /**
+     * Restituisce l'identificativo del salvataggio.
+     *
+     * @return identificativo del salvataggio.
+     */
+    public int getSaveId() {
+        return saveId;
+    }
+
+    /**
+     * Restituisce lo stato del salvataggio.
+     *
+     * @return stato del salvataggio.
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Verifica se il salvataggio e' terminato.
+     *
+     * @return "true" se il salvataggio e' terminato, con successo o con errore.
+     */
+    public boolean isFinished() {
+        return state == State.DURABLE || state == State.FAILED;
+    }
+
+    /**
+     * Restituisce il tempo trascorso dall'accodamento del salvataggio (fino al termine, se terminato).
+     *
+     * @return tempo trascorso in ms.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Restituisce il messaggio di errore del salvataggio.
+     *
+     * @return messaggio di errore, oppure null se il salvataggio non e' fallito.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Restituisce una rappresentazione testuale dello stato del salvataggio.
+     *
+     * @return stato e tempo trascorso.
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        str.append("Salvataggio ").append(saveId).append(": ").append(state);
+        if (state == State.FAILED) {
+            return str.append(" (").append(error).append(")").toString();
+        }
+        return str.append(" elapsed=").append(elapsedMillis / 1000.0).append("s").toString();
+    }
+}
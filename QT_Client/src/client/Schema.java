@@ -0,0 +1,96 @@
+package client;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * Classe che rappresenta lo schema degli attributi inviato dal server insieme ai centroidi,
+ * e che decodifica i centroidi espressi come codici di dizionario e valori continui.
+ */
+final class Schema {
+    /** Tipo di un attributo discreto nello schema. */
+    private static final byte DISCRETE = 0;
+    /** Tipo di un attributo continuo nello schema. */
+    private static final byte CONTINUOUS = 1;
+
+    /** Nomi degli attributi */
+    private final String[] names;
+    /** Dizionario ordinato dei valori di ogni attributo discreto (null per gli attributi continui) */
+    private final String[][] dictionaries;
+
+    /**
+     * Costruttore privato della classe Schema.
+     *
+     * @param names nomi degli attributi.
+     * @param dictionaries dizionari degli attributi discreti.
+     */
+    private Schema(String[] names, String[][] dictionaries) {
+        this.names = names;
+        this.dictionaries = dictionaries;
+    }
+
+    /**
+     * Legge lo schema: per ogni attributo tipo, indice e nome, seguiti dal dizionario
+     * per gli attributi discreti o da minimo e massimo per quelli continui.
+     *
+     * @param in flusso di origine.
+     * @return schema letto.
+     * @throws IOException se si verifica un errore di lettura o lo schema non e' valido.
+     */
+    static Schema read(DataInput in) throws IOException {
+        int count = Frame.readVarInt(in);
+        String[] names = new String[count];
+        String[][] dictionaries = new String[count][];
+        for (int i = 0; i < count; i++) {
+            byte type = in.readByte();
+            Frame.readVarInt(in);
+            names[i] = in.readUTF();
+            if (type == DISCRETE) {
+                String[] values = new String[Frame.readVarInt(in)];
+                for (int v = 0; v < values.length; v++) {
+                    values[v] = in.readUTF();
+                }
+                dictionaries[i] = values;
+            } else if (type == CONTINUOUS) {
+                in.readDouble();
+                in.readDouble();
+            } else {
+                throw new IOException("Errore: tipo di attributo " + type + " non valido!");
+            }
+        }
+        return new Schema(names, dictionaries);
+    }
+
+    /**
+     * Restituisce i nomi degli attributi.
+     *
+     * @return nomi degli attributi.
+     */
+    String[] getNames() {
+        return names.clone();
+    }
+
+    /**
+     * Legge una tupla: un codice di dizionario (varint) per ogni attributo discreto
+     * e un double per ogni attributo continuo.
+     *
+     * @param in flusso di origine.
+     * @return valori della tupla (String per gli attributi discreti, Double per quelli continui).
+     * @throws IOException se si verifica un errore di lettura o un codice non e' valido.
+     */
+    Object[] readTuple(DataInput in) throws IOException {
+        Object[] values = new Object[names.length];
+        for (int i = 0; i < values.length; i++) {
+            if (dictionaries[i] != null) {
+                int code = Frame.readVarInt(in);
+                if (code >= dictionaries[i].length) {
+                    throw new IOException("Errore: codice " + code + " non valido per l'attributo " + names[i] + "!");
+                }
+                values[i] = dictionaries[i][code];
+            } else {
+                values[i] = in.readDouble();
+            }
+        }
+        return values;
+    }
+}
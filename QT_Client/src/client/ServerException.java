@@ -0,0 +1,47 @@
+package client;
+
+/**
+ * Eccezione lanciata quando si verifica un errore lato server.
+ * 
+ * Viene sollevata quando il server risponde con un messaggio di errore
+ * invece che con la conferma dell’operazione richiesta.
+ */
+public class ServerException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /** Indica se il server ha rifiutato la richiesta perche' sovraccarico */
+    private final boolean busy;
+
+    /**
+     * Costruttore predefinito.
+     * Inizializza l'eccezione con un messaggio specificato.
+     *
+     * @param msg messaggio di errore.
+     */
+    public ServerException(String msg) {
+        this(msg, false);
+    }
+
+    /**
+     * Costruttore parametrizzato.
+     * Inizializza l'eccezione con un messaggio specificato, indicando se la richiesta
+     * e' stata rifiutata perche' il server e' sovraccarico.
+     *
+     * @param msg messaggio di errore.
+     * @param busy "true" se il server ha risposto di riprovare piu' tardi.
+     */
+    public ServerException(String msg, boolean busy) {
+        super(msg);
+        this.busy = busy;
+    }
+
+    /**
+     * Indica se la richiesta e' stata rifiutata perche' il server e' sovraccarico;
+     * in questo caso puo' essere ripetuta piu' tardi.
+     *
+     * @return "true" se il server era sovraccarico.
+     */
+    public boolean isBusy() {
+        return busy;
+    }
+}
@@ -0,0 +1,128 @@
+package data;
+
+import java.io.ObjectStreamException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classe che implementa {@link ColumnStore} su buffer NIO esterni allo heap: porzioni
+ * di un file mappato in memoria in sola lettura ({@link DataSnapshot}) oppure buffer diretti
+ * allocati da {@link Data#toOffHeap()}. Le colonne non occupano spazio nello heap e non
+ * vengono esaminate dal garbage collector; le pagine di un file mappato sono inoltre condivise,
+ * tramite la cache del sistema operativo, da tutti i processi che mappano lo stesso file.
+ *
+ * La memoria dei buffer viene liberata esplicitamente quando viene rilasciato l'ultimo
+ * riferimento al dataset ({@link #release()}); da quel momento le colonne non sono piu' leggibili.
+ */
+class BufferColumnStore implements ColumnStore {
+    private static final long serialVersionUID = 1L;
+
+    /** Colonne dei codici degli attributi discreti (null per gli attributi continui). */
+    private final transient IntBuffer[] codes;
+    /** Colonne dei valori degli attributi continui (null per gli attributi discreti). */
+    private final transient DoubleBuffer[] values;
+    /** Numero di esempi memorizzati. */
+    private final int size;
+    /** Buffer da liberare al rilascio dell'ultimo riferimento (null se affidati al garbage collector). */
+    private final transient ByteBuffer[] owned;
+    /** Riferimenti al dataset non ancora rilasciati. */
+    private final transient AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * Costruttore parametrizzato della classe BufferColumnStore.
+     * La memoria dei buffer viene affidata al garbage collector.
+     *
+     * @param codes colonne dei codici degli attributi discreti.
+     * @param values colonne dei valori degli attributi continui.
+     * @param size numero di esempi memorizzati.
+     */
+    BufferColumnStore(IntBuffer[] codes, DoubleBuffer[] values, int size) {
+        this(codes, values, size, null);
+    }
+
+    /**
+     * Costruttore parametrizzato della classe BufferColumnStore.
+     * I buffer indicati vengono liberati al rilascio dell'ultimo riferimento.
+     *
+     * @param codes colonne dei codici degli attributi discreti.
+     * @param values colonne dei valori degli attributi continui.
+     * @param size numero di esempi memorizzati.
+     * @param owned buffer su cui sono costruite le colonne, da liberare al rilascio.
+     */
+    BufferColumnStore(IntBuffer[] codes, DoubleBuffer[] values, int size, ByteBuffer[] owned) {
+        this.codes = codes;
+        this.values = values;
+        this.size = size;
+        this.owned = owned;
+    }
+
+    @Override
+    public int getCode(int attribute, int row) {
+        return codes[attribute].get(row);
+    }
+
+    @Override
+    public double getValue(int attribute, int row) {
+        return values[attribute].get(row);
+    }
+
+    @Override
+    public boolean isOffHeap() {
+        return true;
+    }
+
+    @Override
+    public void retain() {
+        int count;
+        do {
+            count = references.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Errore: dataset gia' rilasciato!");
+            }
+        } while (!references.compareAndSet(count, count + 1));
+    }
+
+    /**
+     * Rilascia un riferimento; al rilascio dell'ultimo le colonne vengono rese illeggibili
+     * e la memoria dei buffer viene liberata.
+     */
+    @Override
+    public void release() {
+        int count = references.decrementAndGet();
+        if (count < 0) {
+            throw new IllegalStateException("Errore: dataset gia' rilasciato!");
+        }
+        if (count == 0 && owned != null) {
+            for (int a = 0; a < codes.length; a++) {
+                codes[a] = null;
+                values[a] = null;
+            }
+            for (ByteBuffer buffer : owned) {
+                DirectMemory.free(buffer);
+            }
+        }
+    }
+
+    /**
+     * In caso di serializzazione sostituisce i buffer con una copia nello heap.
+     *
+     * @return copia delle colonne in un {@link HeapColumnStore}.
+     * @throws ObjectStreamException mai sollevata.
+     */
+    private Object writeReplace() throws ObjectStreamException {
+        int[][] heapCodes = new int[codes.length][];
+        double[][] heapValues = new double[values.length][];
+        for (int a = 0; a < codes.length; a++) {
+            if (codes[a] != null) {
+                heapCodes[a] = new int[size];
+                codes[a].duplicate().get(heapCodes[a]);
+            } else {
+                heapValues[a] = new double[size];
+                values[a].duplicate().get(heapValues[a]);
+            }
+        }
+        return new HeapColumnStore(heapCodes, heapValues);
+    }
+}
@@ -0,0 +1,390 @@
+package data;
+
+import java.util.Arrays;
+import java.util.List;
+
+import database.Example;
+
+/**
+ * Classe che accumula le tuple di un dataset in forma colonnare.
+ *
+ * Ogni attributo discreto viene memorizzato come colonna di codici interi, pari alla
+ * posizione del valore nel dizionario ordinato dell'attributo ({@link DiscreteAttribute}),
+ * mentre ogni attributo continuo viene memorizzato come colonna di double.
+ * Poiche' i codici rispettano l'ordinamento dei valori, piu' builder costruiti
+ * in parallelo sullo stesso schema producono codici consistenti e possono essere
+ * fusi senza ricodifica.
+ */
+class ColumnBuilder {
+    /** Schema degli attributi. */
+    private final Attribute[] schema;
+    /** Colonne dei codici degli attributi discreti (null per gli attributi continui). */
+    private int[][] codes;
+    /** Colonne dei valori degli attributi continui (null per gli attributi discreti). */
+    private double[][] values;
+    /** Numero di tuple memorizzate. */
+    private int size;
+
+    /**
+     * Costruttore parametrizzato della classe ColumnBuilder.
+     *
+     * @param schema lista degli attributi del dataset.
+     * @param capacity numero di tuple previsto (le colonne crescono se necessario).
+     */
+    ColumnBuilder(List<Attribute> schema, int capacity) {
+        this.schema = schema.toArray(new Attribute[0]);
+        capacity = Math.max(capacity, 16);
+        codes = new int[this.schema.length][];
+        values = new double[this.schema.length][];
+        for (int i = 0; i < this.schema.length; i++) {
+            if (this.schema[i] instanceof DiscreteAttribute) {
+                codes[i] = new int[capacity];
+            } else {
+                values[i] = new double[capacity];
+            }
+        }
+    }
+
+    /**
+     * Restituisce il numero di tuple memorizzate.
+     *
+     * @return numero di tuple.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Restituisce le colonne dei codici discreti, ridimensionate al numero di tuple.
+     *
+     * @return colonne dei codici (null in corrispondenza degli attributi continui).
+     */
+    int[][] getCodes() {
+        trim();
+        return codes;
+    }
+
+    /**
+     * Restituisce le colonne dei valori continui, ridimensionate al numero di tuple.
+     *
+     * @return colonne dei valori (null in corrispondenza degli attributi discreti).
+     */
+    double[][] getValues() {
+        trim();
+        return values;
+    }
+
+    /**
+     * Aggiunge un esempio codificandone i valori secondo lo schema.
+     *
+     * @param ex esempio da aggiungere.
+     * @throws IllegalArgumentException se un valore discreto non appartiene al dizionario dell'attributo.
+     */
+    void add(Example ex) {
+        ensureCapacity(size + 1);
+        for (int i = 0; i < schema.length; i++) {
+            Object value = ex.get(i);
+            if (codes[i] != null) {
+                codes[i][size] = encode((DiscreteAttribute) schema[i], value.toString());
+            } else {
+                values[i][size] = ((Number) value).doubleValue();
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Aggiunge una tupla gia' codificata.
+     *
+     * @param rowCodes codici degli attributi discreti (ignorati per gli attributi continui).
+     * @param rowValues valori degli attributi continui (ignorati per gli attributi discreti).
+     */
+    void add(int[] rowCodes, double[] rowValues) {
+        ensureCapacity(size + 1);
+        for (int i = 0; i < schema.length; i++) {
+            if (codes[i] != null) {
+                codes[i][size] = rowCodes[i];
+            } else {
+                values[i][size] = rowValues[i];
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Ordina le tuple secondo l'ordinamento canonico ed elimina i duplicati.
+     * L'ordinamento e' lessicografico sugli attributi nell'ordine dello schema;
+     * i codici discreti vengono confrontati come interi, il che equivale a confrontare i valori.
+     * Per limitare gli accessi alle colonne, ogni tupla viene prima riassunta in una chiave
+     * di 64 bit che concatena i primi attributi: le tuple vengono confrontate per intero
+     * solo a parita' di chiave.
+     */
+    void sortDistinct() {
+        int[] order = new int[size];
+        long[] keys = new long[size];
+        boolean exact = prefixKeys(keys);
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        mergeSort(keys, order, new long[size], new int[size], 0, size, exact);
+
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || keys[i] != keys[distinct - 1]
+                    || !exact && compare(this, order[i], this, order[distinct - 1]) != 0) {
+                keys[distinct] = keys[i];
+                order[distinct++] = order[i];
+            }
+        }
+        for (int a = 0; a < schema.length; a++) {
+            if (codes[a] != null) {
+                int[] sorted = new int[distinct];
+                for (int i = 0; i < distinct; i++) {
+                    sorted[i] = codes[a][order[i]];
+                }
+                codes[a] = sorted;
+            } else {
+                double[] sorted = new double[distinct];
+                for (int i = 0; i < distinct; i++) {
+                    sorted[i] = values[a][order[i]];
+                }
+                values[a] = sorted;
+            }
+        }
+        size = distinct;
+    }
+
+    /**
+     * Fonde piu' builder gia' ordinati con {@link #sortDistinct()} in un unico builder ordinato,
+     * eliminando le tuple ripetute in builder diversi.
+     *
+     * @param schema lista degli attributi del dataset.
+     * @param parts builder ordinati da fondere.
+     * @return builder ordinato contenente l'unione delle tuple.
+     */
+    static ColumnBuilder merge(List<Attribute> schema, List<ColumnBuilder> parts) {
+        return merge(schema, parts, null);
+    }
+
+    /**
+     * Fonde piu' builder gia' ordinati con {@link #sortDistinct()} in un unico builder ordinato,
+     * eliminando le tuple ripetute in builder diversi e annotando per ogni tupla il builder di provenienza.
+     *
+     * @param schema lista degli attributi del dataset.
+     * @param parts builder ordinati da fondere.
+     * @param sources vettore in cui scrivere, per ogni tupla del risultato, l'indice del builder
+     * da cui proviene (almeno tante posizioni quante le tuple dei builder; null se non richiesto).
+     * @return builder ordinato contenente l'unione delle tuple.
+     */
+    static ColumnBuilder merge(List<Attribute> schema, List<ColumnBuilder> parts, int[] sources) {
+        int total = 0;
+        for (ColumnBuilder part : parts) {
+            total += part.size;
+        }
+        ColumnBuilder merged = new ColumnBuilder(schema, total);
+        int[] heads = new int[parts.size()];
+        while (true) {
+            int best = -1;
+            for (int p = 0; p < parts.size(); p++) {
+                if (heads[p] < parts.get(p).size
+                        && (best < 0 || compare(parts.get(p), heads[p], parts.get(best), heads[best]) < 0)) {
+                    best = p;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            ColumnBuilder part = parts.get(best);
+            if (merged.size == 0 || compare(part, heads[best], merged, merged.size - 1) != 0) {
+                if (sources != null) {
+                    sources[merged.size] = best;
+                }
+                merged.copyRow(part, heads[best]);
+            }
+            heads[best]++;
+        }
+        return merged;
+    }
+
+    /**
+     * Confronta due tuple secondo l'ordinamento canonico.
+     *
+     * @param a builder della prima tupla.
+     * @param i indice della prima tupla.
+     * @param b builder della seconda tupla.
+     * @param j indice della seconda tupla.
+     * @return valore negativo, zero o positivo se la prima tupla precede, coincide o segue la seconda.
+     */
+    private static int compare(ColumnBuilder a, int i, ColumnBuilder b, int j) {
+        for (int k = 0; k < a.schema.length; k++) {
+            int c = a.codes[k] != null
+                    ? Integer.compare(a.codes[k][i], b.codes[k][j])
+                    : Double.compare(a.values[k][i], b.values[k][j]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Calcola per ogni tupla una chiave che concatena i bit dei primi attributi,
+     * in modo che il confronto senza segno delle chiavi rispetti l'ordinamento canonico.
+     * I codici discreti occupano i bit necessari a rappresentare il dizionario,
+     * i valori continui i 64 bit della loro rappresentazione ordinabile (eventualmente troncata).
+     *
+     * @param keys vettore in cui scrivere le chiavi.
+     * @return "true" se la chiave contiene tutti gli attributi per intero
+     * (chiavi uguali implicano tuple uguali), "false" altrimenti.
+     */
+    private boolean prefixKeys(long[] keys) {
+        int used = 0;
+        for (int a = 0; a < schema.length; a++) {
+            int width = codes[a] != null
+                    ? 32 - Integer.numberOfLeadingZeros(Math.max(1, ((DiscreteAttribute) schema[a]).getNumberOfDistinctValues() - 1))
+                    : 64;
+            int take = Math.min(width, 64 - used);
+            if (take == 0) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                long bits;
+                if (codes[a] != null) {
+                    bits = codes[a][i];
+                } else {
+                    bits = Double.doubleToLongBits(values[a][i]);
+                    bits ^= (bits >> 63) | Long.MIN_VALUE;
+                }
+                keys[i] = take == 64 ? bits >>> (width - take) : (keys[i] << take) | (bits >>> (width - take));
+            }
+            used += take;
+            if (take < width) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Ordina (merge sort stabile) una porzione delle chiavi e degli indici di tupla corrispondenti.
+     *
+     * @param keys chiavi da ordinare.
+     * @param order indici di tupla associati alle chiavi.
+     * @param tmpKeys vettore di appoggio per le chiavi.
+     * @param tmpOrder vettore di appoggio per gli indici.
+     * @param from inizio della porzione (incluso).
+     * @param to fine della porzione (escluso).
+     * @param exact "true" se chiavi uguali implicano tuple uguali.
+     */
+    private void mergeSort(long[] keys, int[] order, long[] tmpKeys, int[] tmpOrder, int from, int to, boolean exact) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(keys, order, tmpKeys, tmpOrder, from, mid, exact);
+        mergeSort(keys, order, tmpKeys, tmpOrder, mid, to, exact);
+        if (compare(keys, order, mid - 1, mid, exact) <= 0) {
+            return;
+        }
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to) {
+            if (compare(keys, order, j, i, exact) < 0) {
+                tmpKeys[k] = keys[j];
+                tmpOrder[k++] = order[j++];
+            } else {
+                tmpKeys[k] = keys[i];
+                tmpOrder[k++] = order[i++];
+            }
+        }
+        while (i < mid) {
+            tmpKeys[k] = keys[i];
+            tmpOrder[k++] = order[i++];
+        }
+        while (j < to) {
+            tmpKeys[k] = keys[j];
+            tmpOrder[k++] = order[j++];
+        }
+        System.arraycopy(tmpKeys, from, keys, from, to - from);
+        System.arraycopy(tmpOrder, from, order, from, to - from);
+    }
+
+    /**
+     * Confronta le tuple in due posizioni del vettore ordinato, prima per chiave e poi,
+     * a parita' di chiave non esatta, per intero.
+     *
+     * @param keys chiavi delle tuple.
+     * @param order indici di tupla.
+     * @param i prima posizione.
+     * @param j seconda posizione.
+     * @param exact "true" se chiavi uguali implicano tuple uguali.
+     * @return valore negativo, zero o positivo se la prima tupla precede, coincide o segue la seconda.
+     */
+    private int compare(long[] keys, int[] order, int i, int j, boolean exact) {
+        int c = Long.compareUnsigned(keys[i], keys[j]);
+        if (c != 0 || exact) {
+            return c;
+        }
+        return compare(this, order[i], this, order[j]);
+    }
+
+    /**
+     * Copia in coda una tupla di un altro builder con lo stesso schema.
+     *
+     * @param other builder sorgente.
+     * @param row indice della tupla da copiare.
+     */
+    private void copyRow(ColumnBuilder other, int row) {
+        ensureCapacity(size + 1);
+        for (int i = 0; i < schema.length; i++) {
+            if (codes[i] != null) {
+                codes[i][size] = other.codes[i][row];
+            } else {
+                values[i][size] = other.values[i][row];
+            }
+        }
+        size++;
+    }
+
+    /**
+     * Codifica un valore discreto come posizione nel dizionario dell'attributo.
+     *
+     * @param attribute attributo discreto.
+     * @param value valore da codificare.
+     * @return codice del valore.
+     */
+    private static int encode(DiscreteAttribute attribute, String value) {
+        int code = attribute.getCode(value);
+        if (code < 0) {
+            throw new IllegalArgumentException("Errore: valore " + value + " non previsto per l'attributo " + attribute + "!");
+        }
+        return code;
+    }
+
+    /**
+     * Garantisce che le colonne possano contenere almeno "capacity" tuple.
+     *
+     * @param capacity numero minimo di tuple.
+     */
+    private void ensureCapacity(int capacity) {
+        for (int i = 0; i < schema.length; i++) {
+            if (codes[i] != null && codes[i].length < capacity) {
+                codes[i] = Arrays.copyOf(codes[i], Math.max(capacity, codes[i].length * 2));
+            } else if (values[i] != null && values[i].length < capacity) {
+                values[i] = Arrays.copyOf(values[i], Math.max(capacity, values[i].length * 2));
+            }
+        }
+    }
+
+    /**
+     * Ridimensiona le colonne al numero effettivo di tuple.
+     */
+    private void trim() {
+        for (int i = 0; i < schema.length; i++) {
+            if (codes[i] != null && codes[i].length != size) {
+                codes[i] = Arrays.copyOf(codes[i], size);
+            } else if (values[i] != null && values[i].length != size) {
+                values[i] = Arrays.copyOf(values[i], size);
+            }
+        }
+    }
+}
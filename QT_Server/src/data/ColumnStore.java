@@ -0,0 +1,61 @@
+package data;
+
+import java.io.Serializable;
+
+/**
+ * Interfaccia che rappresenta la memorizzazione per colonne degli esempi di un {@link Data}.
+ *
+ * Ogni attributo discreto e' una colonna di codici del proprio dizionario,
+ * ogni attributo continuo una colonna di double. Le implementazioni possono tenere
+ * le colonne nello heap ({@link HeapColumnStore}) oppure in buffer esterni allo heap,
+ * come i file mappati in memoria o i buffer diretti ({@link BufferColumnStore}).
+ *
+ * Le colonne esterne allo heap hanno un ciclo di vita esplicito: ogni utilizzatore del dataset
+ * ne trattiene un riferimento ({@link #retain()}) e lo rilascia al termine ({@link #release()});
+ * la memoria viene liberata al rilascio dell'ultimo riferimento. Per le colonne nello heap
+ * i due metodi non hanno effetto.
+ */
+interface ColumnStore extends Serializable {
+    /**
+     * Restituisce il codice del valore discreto di un esempio.
+     *
+     * @param attribute indice dell'attributo discreto.
+     * @param row indice dell'esempio.
+     * @return codice del valore nel dizionario dell'attributo.
+     */
+    int getCode(int attribute, int row);
+
+    /**
+     * Restituisce il valore continuo di un esempio.
+     *
+     * @param attribute indice dell'attributo continuo.
+     * @param row indice dell'esempio.
+     * @return valore dell'attributo.
+     */
+    double getValue(int attribute, int row);
+
+    /**
+     * Indica se le colonne risiedono fuori dallo heap.
+     *
+     * @return "true" se le colonne non occupano spazio nello heap.
+     */
+    default boolean isOffHeap() {
+        return false;
+    }
+
+    /**
+     * Acquisisce un ulteriore riferimento alle colonne.
+     *
+     * @throws IllegalStateException se le colonne sono gia' state liberate.
+     */
+    default void retain() {
+    }
+
+    /**
+     * Rilascia un riferimento alle colonne.
+     *
+     * @throws IllegalStateException se i riferimenti sono gia' stati tutti rilasciati.
+     */
+    default void release() {
+    }
+}
@@ -31,6 +31,24 @@ class ContinuousAttribute extends Attribute implements Serializable {
         this.min = min;
     }
 
+    /**
+     * Restituisce il valore minimo dell'attributo.
+     *
+     * @return valore minimo.
+     */
+    double getMin() {
+        return min;
+    }
+
+    /**
+     * Restituisce il valore massimo dell'attributo.
+     *
+     * @return valore massimo.
+     */
+    double getMax() {
+        return max;
+    }
+
     /**
      * Restituisce il valore scalato del parametro passato in input.
      * Il risultato e' compreso nell'intervallo [0,1].
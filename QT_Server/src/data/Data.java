@@ -2,24 +2,41 @@ package data;
 
 import database.*;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import database.QUERY_TYPE;
 
 /**
  * Classe che modella l'insieme di esempi del dataset.
  * Include l'insieme degli esempi, il numero e l'insieme degli attributi.
+ * 
+ * Gli esempi sono memorizzati per colonne: ogni attributo discreto come vettore di codici
+ * del proprio dizionario e ogni attributo continuo come vettore di double.
+ * Gli esempi sono distinti e mantenuti in ordine canonico (lessicografico sugli attributi),
+ * indipendente dall'ordine in cui il database li restituisce e dal numero di connessioni usate.
  */
 public class Data implements Serializable {
 	private static final long serialVersionUID = 1L;
 	
-	/** Lista degli esempi del dataset. */
-	private List<Example> data = new ArrayList<>();
+	/** Colonne degli esempi del dataset. */
+	private ColumnStore columns;
 	/** Numero degli esempi nel dataset. */
     private int numberOfExamples;
     /** Lista degli attributi. */
     private List<Attribute> attributeSet = new LinkedList<>();
+    /** Riferimenti al dataset non ancora rilasciati, qualunque sia la memorizzazione delle colonne. */
+    private transient AtomicInteger references = new AtomicInteger(1);
 
     /**
      * Costruttore parametrizzato della classe Data.
@@ -35,57 +52,313 @@ public class Data implements Serializable {
      * 
      */
     public Data(String tableName) throws SQLException, EmptySetException, DatabaseConnectionException, NoValueException, EmptyTypeException {
-        DbAccess db = new DbAccess();
-        db.initConnection();
+        this(tableName, 1);
+    }
+
+    /**
+     * Costruttore parametrizzato della classe Data.
+     * Carica in memoria il dataset dalla tabella "tableName" leggendo in parallelo
+     * "connections" partizioni della tabella, ciascuna su una propria connessione.
+     * 
+     * @param tableName nome della tabella del database da cui saranno estratti i dati.
+     * @param connections numero di connessioni (e di partizioni) da usare per il caricamento.
+     * @throws SQLException se si e' verificato un errore generico del database 
+     * o se la tabella tableName non e' presente nel database
+     * @throws EmptySetException se il dataset e' vuoto.
+     * @throws DatabaseConnectionException se si e' verificato un errore di connessione al database
+     * @throws NoValueException se viene letto un valore nullo;
+     * @throws EmptyTypeException se viene letto un tipo non corretto dell'attributo
+     */
+    public Data(String tableName, int connections) throws SQLException, EmptySetException, DatabaseConnectionException, NoValueException, EmptyTypeException {
+        ConnectionPool pool = new ConnectionPool(connections);
         try {
-            TableData tableData = new TableData(db);
-            TableSchema schema = new TableSchema(db, tableName);
-            int numColumns = schema.getNumberOfAttributes();
-            if (numColumns != 5) {
-                throw new IllegalArgumentException("Errore: numero di colonne nel database non valido!");
-            }
+            load(pool, tableName);
+        } finally {
+            pool.close();
+        }
+    }
 
-            
-            for (int i = 0; i < numColumns; i++) {
-                TableSchema.Column col = schema.getColumn(i);
-                if (i == 1) { 
-                    if (!col.isNumber()) {
-                        throw new EmptyTypeException("La colonna " + col.getColumnName() + " deve essere numerica!");
-                    }
-                    Object min = tableData.getAggregateColumnValue(tableName, col, QUERY_TYPE.MIN);
-                    Object max = tableData.getAggregateColumnValue(tableName, col, QUERY_TYPE.MAX);
-                    attributeSet.add(new ContinuousAttribute(col.getColumnName(), i, ((Number) min).doubleValue(), ((Number) max).doubleValue()));
-                } else { 
-                    if (col.isNumber()) {
-                        throw new EmptyTypeException("La colonna " + col.getColumnName() + " deve essere discreta!");
-                    }
-                    Set<Object> values = tableData.getDistinctColumnValues(tableName, col);
-                    if (values.isEmpty()) {
-                        throw new EmptySetException();
-                    }
-                    TreeSet<String> stringValues = new TreeSet<>();
-                    for (Object val : values) {
-                        stringValues.add(val.toString());
+    /**
+     * Costruttore parametrizzato della classe Data.
+     * Carica in memoria il dataset dalla tabella "tableName" usando le connessioni di un pool condiviso:
+     * la tabella viene divisa in tante partizioni quante sono le connessioni del pool,
+     * lette in parallelo e fuse in un unico dataset con codici dei dizionari consistenti.
+     * 
+     * @param tableName nome della tabella del database da cui saranno estratti i dati.
+     * @param pool pool di connessioni da cui ottenere le connessioni.
+     * @throws SQLException se si e' verificato un errore generico del database 
+     * o se la tabella tableName non e' presente nel database
+     * @throws EmptySetException se il dataset e' vuoto.
+     * @throws DatabaseConnectionException se si e' verificato un errore di connessione al database
+     * @throws NoValueException se viene letto un valore nullo;
+     * @throws EmptyTypeException se viene letto un tipo non corretto dell'attributo
+     */
+    public Data(String tableName, ConnectionPool pool) throws SQLException, EmptySetException, DatabaseConnectionException, NoValueException, EmptyTypeException {
+        load(pool, tableName);
+    }
+
+    /**
+     * Costruttore parametrizzato della classe Data.
+     * Costruisce il dataset a partire da colonne gia' codificate secondo lo schema,
+     * portandole in ordine canonico ed eliminando gli esempi ripetuti.
+     *
+     * @param attributeSet lista degli attributi.
+     * @param columns colonne degli esempi.
+     */
+    Data(List<Attribute> attributeSet, ColumnBuilder columns) {
+        this.attributeSet.addAll(attributeSet);
+        columns.sortDistinct();
+        setColumns(columns);
+    }
+
+    /**
+     * Costruttore parametrizzato della classe Data.
+     * Costruisce il dataset a partire da colonne gia' in ordine canonico e prive di duplicati.
+     *
+     * @param attributeSet lista degli attributi.
+     * @param numberOfExamples numero di esempi.
+     * @param columns colonne degli esempi.
+     */
+    Data(List<Attribute> attributeSet, int numberOfExamples, ColumnStore columns) {
+        this.attributeSet.addAll(attributeSet);
+        this.numberOfExamples = numberOfExamples;
+        this.columns = columns;
+    }
+
+    /**
+     * Carica schema ed esempi della tabella "tableName".
+     *
+     * @param pool pool di connessioni da cui ottenere le connessioni.
+     * @param tableName nome della tabella del database.
+     * @throws SQLException se si e' verificato un errore generico del database.
+     * @throws EmptySetException se il dataset e' vuoto.
+     * @throws DatabaseConnectionException se si e' verificato un errore di connessione al database.
+     * @throws EmptyTypeException se viene letto un tipo non corretto dell'attributo.
+     */
+    private void load(ConnectionPool pool, String tableName) throws SQLException, EmptySetException, DatabaseConnectionException, EmptyTypeException {
+        try {
+            DbAccess db = pool.acquire();
+            try {
+                TableData tableData = new TableData(db);
+                TableSchema schema = new TableSchema(db, tableName);
+                int numColumns = schema.getNumberOfAttributes();
+                if (numColumns != 5) {
+                    throw new IllegalArgumentException("Errore: numero di colonne nel database non valido!");
+                }
+
+                
+                for (int i = 0; i < numColumns; i++) {
+                    TableSchema.Column col = schema.getColumn(i);
+                    if (i == 1) { 
+                        if (!col.isNumber()) {
+                            throw new EmptyTypeException("La colonna " + col.getColumnName() + " deve essere numerica!");
+                        }
+                        Object min = tableData.getAggregateColumnValue(tableName, col, QUERY_TYPE.MIN);
+                        Object max = tableData.getAggregateColumnValue(tableName, col, QUERY_TYPE.MAX);
+                        attributeSet.add(new ContinuousAttribute(col.getColumnName(), i, ((Number) min).doubleValue(), ((Number) max).doubleValue()));
+                    } else { 
+                        if (col.isNumber()) {
+                            throw new EmptyTypeException("La colonna " + col.getColumnName() + " deve essere discreta!");
+                        }
+                        Set<Object> values = tableData.getDistinctColumnValues(tableName, col);
+                        if (values.isEmpty()) {
+                            throw new EmptySetException();
+                        }
+                        TreeSet<String> stringValues = new TreeSet<>();
+                        for (Object val : values) {
+                            stringValues.add(val.toString());
+                        }
+                        attributeSet.add(new DiscreteAttribute(col.getColumnName(), i, stringValues));
                     }
-                    attributeSet.add(new DiscreteAttribute(col.getColumnName(), i, stringValues));
                 }
+            } finally {
+                pool.release(db);
             }
 
            
-            List<Example> tuples = tableData.getDistinctTransazioni(tableName);
-            data.addAll(tuples);
-            numberOfExamples = data.size();
+            setColumns(loadPartitions(pool, tableName));
             if (numberOfExamples == 0) {
                 throw new EmptySetException();
             }
 
         } catch (NoValueException ex) {
             ex.getMessage();
+        }
+    }
+
+    /**
+     * Legge in parallelo le partizioni della tabella, una per ogni connessione del pool,
+     * e le fonde in un'unica sequenza ordinata di esempi distinti.
+     * Ogni partizione viene codificata e ordinata dal thread che la legge.
+     *
+     * @param pool pool di connessioni da cui ottenere le connessioni.
+     * @param tableName nome della tabella del database.
+     * @return colonne degli esempi della tabella.
+     * @throws SQLException se si e' verificato un errore generico del database.
+     * @throws DatabaseConnectionException se si e' verificato un errore di connessione al database.
+     */
+    private ColumnBuilder loadPartitions(ConnectionPool pool, String tableName) throws SQLException, DatabaseConnectionException {
+        int partitions = pool.getSize();
+        ExecutorService executor = Executors.newFixedThreadPool(partitions);
+        try {
+            List<Future<ColumnBuilder>> futures = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                final int partition = p;
+                futures.add(executor.submit(() -> {
+                    DbAccess db = pool.acquire();
+                    try {
+                        ColumnBuilder part = new ColumnBuilder(attributeSet, 1024);
+                        new TableData(db).scanDistinctTransazioni(tableName, partition, partitions, part::add);
+                        part.sortDistinct();
+                        return part;
+                    } finally {
+                        pool.release(db);
+                    }
+                }));
+            }
+            List<ColumnBuilder> parts = new ArrayList<>();
+            for (Future<ColumnBuilder> future : futures) {
+                parts.add(future.get());
+            }
+            return parts.size() == 1 ? parts.get(0) : ColumnBuilder.merge(attributeSet, parts);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseConnectionException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof DatabaseConnectionException) {
+                throw (DatabaseConnectionException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(cause);
         } finally {
-            db.closeConnection();
+            executor.shutdownNow();
         }
     }
 
+    /**
+     * Imposta le colonne del dataset.
+     *
+     * @param columns colonne degli esempi.
+     */
+    private void setColumns(ColumnBuilder columns) {
+        this.columns = new HeapColumnStore(columns.getCodes(), columns.getValues());
+        numberOfExamples = columns.size();
+    }
+
+    /**
+     * Restituisce le colonne degli esempi.
+     *
+     * @return colonne del dataset.
+     */
+    ColumnStore getColumns() {
+        return columns;
+    }
+
+    /**
+     * Restituisce una copia del dataset con le colonne in buffer diretti, esterni allo heap,
+     * in modo che il dataset non venga esaminato dal garbage collector. Se le colonne sono gia'
+     * esterne allo heap restituisce questo dataset.
+     * La copia ha un riferimento, da rilasciare con {@link #release()} quando non serve piu'.
+     *
+     * @return dataset con le colonne esterne allo heap.
+     */
+    public Data toOffHeap() {
+        if (columns.isOffHeap()) {
+            return this;
+        }
+        int attributes = attributeSet.size();
+        IntBuffer[] codes = new IntBuffer[attributes];
+        DoubleBuffer[] values = new DoubleBuffer[attributes];
+        ByteBuffer[] owned = new ByteBuffer[attributes];
+        int a = 0;
+        for (Attribute attr : attributeSet) {
+            if (attr instanceof DiscreteAttribute) {
+                owned[a] = DirectMemory.allocate(4L * numberOfExamples);
+                codes[a] = owned[a].asIntBuffer();
+                for (int row = 0; row < numberOfExamples; row++) {
+                    codes[a].put(row, columns.getCode(a, row));
+                }
+            } else {
+                owned[a] = DirectMemory.allocate(8L * numberOfExamples);
+                values[a] = owned[a].asDoubleBuffer();
+                for (int row = 0; row < numberOfExamples; row++) {
+                    values[a].put(row, columns.getValue(a, row));
+                }
+            }
+            a++;
+        }
+        return new Data(attributeSet, numberOfExamples, new BufferColumnStore(codes, values, numberOfExamples, owned));
+    }
+
+    /**
+     * Indica se le colonne del dataset risiedono fuori dallo heap.
+     *
+     * @return "true" se le colonne non occupano spazio nello heap.
+     */
+    public boolean isOffHeap() {
+        return columns.isOffHeap();
+    }
+
+    /**
+     * Restituisce la dimensione delle colonne del dataset: 4 byte per ogni valore discreto
+     * e 8 byte per ogni valore continuo (dizionari esclusi).
+     *
+     * @return dimensione delle colonne in byte.
+     */
+    public long getColumnBytes() {
+        long bytesPerRow = 0;
+        for (Attribute attr : attributeSet) {
+            bytesPerRow += attr instanceof DiscreteAttribute ? 4 : 8;
+        }
+        return bytesPerRow * numberOfExamples;
+    }
+
+    /**
+     * Acquisisce un ulteriore riferimento al dataset, che dovra' essere rilasciato con {@link #release()}.
+     * Ha effetto solo per i dataset con colonne esterne allo heap.
+     *
+     * @throws IllegalStateException se il dataset e' gia' stato liberato.
+     */
+    public void retain() {
+        columns.retain();
+        references.incrementAndGet();
+    }
+
+    /**
+     * Rilascia un riferimento al dataset; al rilascio dell'ultimo la memoria esterna allo heap
+     * viene liberata e il dataset non puo' piu' essere letto.
+     */
+    public void release() {
+        references.decrementAndGet();
+        columns.release();
+    }
+
+    /**
+     * Restituisce il numero di riferimenti al dataset non ancora rilasciati, contati anche
+     * per le colonne nello heap: permette di sapere se un dataset e' ancora in uso.
+     *
+     * @return riferimenti non rilasciati (0 se il dataset non e' piu' usato).
+     */
+    public int getReferences() {
+        return Math.max(0, references.get());
+    }
+
+    /**
+     * Ripristina il conteggio dei riferimenti dopo la deserializzazione: la copia ha un solo riferimento.
+     *
+     * @param in flusso da cui viene letto il dataset.
+     * @throws IOException se si verifica un errore di lettura.
+     * @throws ClassNotFoundException se una classe del dataset non viene trovata.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        references = new AtomicInteger(1);
+    }
+
     /**
      * Restituisce il numero di esempi presenti nel dataset.
      * 
@@ -121,7 +394,33 @@ public class Data implements Serializable {
      * @return valore dell'attributo.
      */
     public Object getAttributeValue(int exampleIndex, int attributeIndex) {
-        return data.get(exampleIndex).get(attributeIndex);
+        Attribute attr = attributeSet.get(attributeIndex);
+        if (attr instanceof DiscreteAttribute) {
+            return ((DiscreteAttribute) attr).getValue(columns.getCode(attributeIndex, exampleIndex));
+        }
+        return columns.getValue(attributeIndex, exampleIndex);
+    }
+
+    /**
+     * Verifica se un attributo e' discreto.
+     *
+     * @param attributeIndex indice dell'attributo.
+     * @return "true" se l'attributo e' discreto, "false" se e' continuo.
+     */
+    public boolean isDiscrete(int attributeIndex) {
+        return attributeSet.get(attributeIndex) instanceof DiscreteAttribute;
+    }
+
+    /**
+     * Restituisce il codice di dizionario del valore di un attributo discreto, cioe' la sua posizione
+     * tra i valori ordinati dell'attributo: due esempi hanno lo stesso valore se e solo se hanno lo stesso codice.
+     *
+     * @param exampleIndex indice dell'esempio.
+     * @param attributeIndex indice dell'attributo, che deve essere discreto.
+     * @return codice del valore.
+     */
+    public int getCode(int exampleIndex, int attributeIndex) {
+        return columns.getCode(attributeIndex, exampleIndex);
     }
 
     /**
@@ -142,16 +441,15 @@ public class Data implements Serializable {
      */
     public Tuple getItemSet(int index) {
         Tuple tuple = new Tuple(attributeSet.size());
-        Example ex = data.get(index);
 
         for (int i = 0; i < attributeSet.size(); i++) {
             Attribute attr = attributeSet.get(i);
-            Object value = ex.get(i);
             
             if (attr instanceof DiscreteAttribute) {
-                tuple.add(new DiscreteItem((DiscreteAttribute) attr, value.toString()), i);
+                DiscreteAttribute discrete = (DiscreteAttribute) attr;
+                tuple.add(new DiscreteItem(discrete, discrete.getValue(columns.getCode(i, index))), i);
             } else if (attr instanceof ContinuousAttribute) {
-                tuple.add(new ContinuousItem((ContinuousAttribute) attr, ((Number) value).doubleValue()), i);
+                tuple.add(new ContinuousItem((ContinuousAttribute) attr, columns.getValue(i, index)), i);
             }
         }
         return tuple;
@@ -175,9 +473,8 @@ public class Data implements Serializable {
         // Stampa esempi
         for (int i = 0; i < numberOfExamples; i++) {
             sb.append(i + 1).append(": ");
-            Example ex = data.get(i);
             for (int j = 0; j < attributeSet.size(); j++) {
-                sb.append(ex.get(j));
+                sb.append(getAttributeValue(i, j));
                 if (j < attributeSet.size() - 1) sb.append(",");
             }
             sb.append("\n");
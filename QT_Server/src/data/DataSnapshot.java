@@ -0,0 +1,304 @@
+package data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Classe che salva e riapre un {@link Data} in formato binario colonnare (file ".qtd").
+ *
+ * Struttura del file (little endian):
+ * - intestazione: "QTD" seguito dalla versione del formato, numero di esempi e numero di attributi;
+ * - schema: per ogni attributo tipo, indice e nome; per gli attributi discreti il dizionario
+ *   ordinato dei valori, per quelli continui minimo e massimo;
+ * - tabella delle posizioni: per ogni attributo la posizione della sua colonna nel file;
+ * - colonne, allineate a 8 byte: codici int per gli attributi discreti, double per quelli continui.
+ *
+ * La riapertura legge solo l'intestazione e lo schema e mappa le colonne in sola lettura
+ * con {@link FileChannel#map}: i dati non vengono analizzati ne' copiati nello heap e le pagine
+ * del file sono condivise da tutti i processi che aprono lo stesso snapshot.
+ */
+public final class DataSnapshot {
+    /** Estensione con cui vengono salvati gli snapshot dei dataset. */
+    public static final String FILE_FORMAT = ".qtd";
+    /** Identificativo del formato ("QTD" seguito dalla versione). */
+    private static final int MAGIC = 0x51544400;
+    /** Versione corrente del formato. */
+    private static final int VERSION = 1;
+    /** Tipo di un attributo discreto nello schema. */
+    private static final byte DISCRETE = 0;
+    /** Tipo di un attributo continuo nello schema. */
+    private static final byte CONTINUOUS = 1;
+    /** Contatore dei file temporanei creati dal processo. */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /**
+     * Costruttore privato: la classe offre solo metodi statici.
+     */
+    private DataSnapshot() {
+    }
+
+    /**
+     * Salva il dataset nel file indicato. Il file viene scritto con un nome temporaneo univoco,
+     * nella stessa cartella, e rinominato solo al termine, per non esporre snapshot incompleti
+     * ad altri processi; due salvataggi concorrenti dello stesso dataset non scrivono mai sullo stesso
+     * file temporaneo. In caso di errore il file temporaneo viene rimosso.
+     *
+     * @param data dataset da salvare.
+     * @param fileName nome del file (comprensivo di estensione).
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    public static void save(Data data, String fileName) throws IOException {
+        List<Attribute> schema = data.getAttributeSchema();
+        int rows = data.getNumberOfExamples();
+        ByteBuffer header = encodeSchema(schema, rows);
+        long offset = align(header.capacity() + 8L * schema.size());
+        long[] offsets = new long[schema.size()];
+        for (int a = 0; a < schema.size(); a++) {
+            offsets[a] = offset;
+            offset = align(offset + (long) rows * (schema.get(a) instanceof DiscreteAttribute ? 4 : 8));
+        }
+
+        Path target = Paths.get(fileName);
+        Path temp = Paths.get(fileName + "." + Long.toHexString(SEQUENCE.incrementAndGet()) + ".tmp");
+        try {
+            write(data, schema, rows, header, offsets, temp);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ex) {
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+    }
+
+    /**
+     * Scrive il dataset nel file temporaneo e ne forza la scrittura su disco.
+     *
+     * @param data dataset da salvare.
+     * @param schema attributi del dataset.
+     * @param rows numero di esempi.
+     * @param header intestazione e schema codificati.
+     * @param offsets posizione di ogni colonna nel file.
+     * @param temp file temporaneo, creato dal metodo.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    private static void write(Data data, List<Attribute> schema, int rows, ByteBuffer header, long[] offsets,
+            Path temp) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer table = ByteBuffer.allocate(8 * schema.size()).order(ByteOrder.LITTLE_ENDIAN);
+            for (long o : offsets) {
+                table.putLong(o);
+            }
+            table.flip();
+            writeFully(channel, header, 0);
+            writeFully(channel, table, header.capacity());
+
+            ColumnStore columns = data.getColumns();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            for (int a = 0; a < schema.size(); a++) {
+                long position = offsets[a];
+                boolean discrete = schema.get(a) instanceof DiscreteAttribute;
+                for (int r = 0; r < rows; r++) {
+                    if (buffer.remaining() < 8) {
+                        buffer.flip();
+                        position += writeFully(channel, buffer, position);
+                        buffer.clear();
+                    }
+                    if (discrete) {
+                        buffer.putInt(columns.getCode(a, r));
+                    } else {
+                        buffer.putDouble(columns.getValue(a, r));
+                    }
+                }
+                buffer.flip();
+                writeFully(channel, buffer, position);
+                buffer.clear();
+            }
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Apre uno snapshot mappandone le colonne in memoria in sola lettura.
+     * Le colonne vengono smappate al rilascio dell'ultimo riferimento al dataset ({@link Data#release()}).
+     *
+     * @param fileName nome del file (comprensivo di estensione).
+     * @return dataset le cui colonne risiedono nel file mappato.
+     * @throws IOException se il file non esiste, non e' leggibile o non e' uno snapshot valido.
+     */
+    public static Data open(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, 1 << 20))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (size < 16 || head.getInt() != MAGIC) {
+                throw new IOException("Errore: il file " + fileName + " non e' uno snapshot valido!");
+            }
+            int version = head.getInt();
+            if (version != VERSION) {
+                throw new IOException("Errore: versione " + version + " dello snapshot non supportata!");
+            }
+            int rows = head.getInt();
+            int attributes = head.getInt();
+            int headerLength = head.getInt();
+            if (headerLength + 8L * attributes > head.capacity()) {
+                head = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerLength + 8L * attributes)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                head.position(20);
+            }
+
+            List<Attribute> schema = new ArrayList<>();
+            for (int a = 0; a < attributes; a++) {
+                byte type = head.get();
+                int index = head.getInt();
+                String name = getString(head);
+                if (type == DISCRETE) {
+                    int count = head.getInt();
+                    TreeSet<String> values = new TreeSet<>();
+                    for (int v = 0; v < count; v++) {
+                        values.add(getString(head));
+                    }
+                    schema.add(new DiscreteAttribute(name, index, values));
+                } else {
+                    double min = head.getDouble();
+                    double max = head.getDouble();
+                    schema.add(new ContinuousAttribute(name, index, min, max));
+                }
+            }
+
+            head.position(headerLength);
+            IntBuffer[] codes = new IntBuffer[attributes];
+            DoubleBuffer[] values = new DoubleBuffer[attributes];
+            ByteBuffer[] mapped = new ByteBuffer[attributes];
+            for (int a = 0; a < attributes; a++) {
+                long offset = head.getLong();
+                boolean discrete = schema.get(a) instanceof DiscreteAttribute;
+                long length = (long) rows * (discrete ? 4 : 8);
+                if (offset + length > size) {
+                    throw new IOException("Errore: lo snapshot " + fileName + " e' incompleto!");
+                }
+                ByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, offset, length)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                mapped[a] = column;
+                if (discrete) {
+                    codes[a] = column.asIntBuffer();
+                } else {
+                    values[a] = column.asDoubleBuffer();
+                }
+            }
+            return new Data(schema, rows, new BufferColumnStore(codes, values, rows, mapped));
+        }
+    }
+
+    /**
+     * Codifica intestazione e schema del file.
+     *
+     * @param schema attributi del dataset.
+     * @param rows numero di esempi.
+     * @return buffer pronto per la scrittura, di capacita' pari alla lunghezza dell'intestazione.
+     */
+    private static ByteBuffer encodeSchema(List<Attribute> schema, int rows) {
+        List<byte[]> strings = new ArrayList<>();
+        int length = 20;
+        for (Attribute attribute : schema) {
+            byte[] name = attribute.getName().getBytes(StandardCharsets.UTF_8);
+            strings.add(name);
+            length += 1 + 4 + 4 + name.length;
+            if (attribute instanceof DiscreteAttribute) {
+                length += 4;
+                for (String value : (DiscreteAttribute) attribute) {
+                    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                    strings.add(bytes);
+                    length += 4 + bytes.length;
+                }
+            } else {
+                length += 16;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(schema.size()).putInt(length);
+        int s = 0;
+        for (Attribute attribute : schema) {
+            if (attribute instanceof DiscreteAttribute) {
+                DiscreteAttribute discrete = (DiscreteAttribute) attribute;
+                buffer.put(DISCRETE).putInt(attribute.getIndex());
+                putString(buffer, strings.get(s++));
+                buffer.putInt(discrete.getNumberOfDistinctValues());
+                for (int v = 0; v < discrete.getNumberOfDistinctValues(); v++) {
+                    putString(buffer, strings.get(s++));
+                }
+            } else {
+                ContinuousAttribute continuous = (ContinuousAttribute) attribute;
+                buffer.put(CONTINUOUS).putInt(attribute.getIndex());
+                putString(buffer, strings.get(s++));
+                buffer.putDouble(continuous.getMin()).putDouble(continuous.getMax());
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Scrive una stringa UTF-8 preceduta dalla sua lunghezza.
+     *
+     * @param buffer buffer di destinazione.
+     * @param bytes stringa codificata in UTF-8.
+     */
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putInt(bytes.length).put(bytes);
+    }
+
+    /**
+     * Legge una stringa UTF-8 preceduta dalla sua lunghezza.
+     *
+     * @param buffer buffer sorgente.
+     * @return stringa letta.
+     */
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Scrive per intero il contenuto di un buffer a partire dalla posizione indicata.
+     *
+     * @param channel canale di destinazione.
+     * @param buffer buffer da scrivere.
+     * @param position posizione nel file.
+     * @return numero di byte scritti.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * Arrotonda una posizione al multiplo di 8 successivo.
+     *
+     * @param position posizione da allineare.
+     * @return posizione allineata.
+     */
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
@@ -0,0 +1,85 @@
+package data;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Classe di utilita' che alloca e libera i buffer esterni allo heap su cui risiedono
+ * le colonne dei dataset ({@link BufferColumnStore}).
+ *
+ * I buffer diretti e i file mappati vengono normalmente liberati dal garbage collector, in un momento
+ * imprevedibile; qui la memoria viene invece restituita esplicitamente quando il dataset non e' piu'
+ * usato, tramite il cleaner del buffer (sun.misc.Unsafe.invokeCleaner dalla versione 9 di Java,
+ * il metodo cleaner() del buffer nella versione 8). Se nessuno dei due e' disponibile la memoria
+ * resta affidata al garbage collector.
+ */
+final class DirectMemory {
+    /** Istanza di sun.misc.Unsafe (null se non disponibile). */
+    private static final Object UNSAFE;
+    /** Metodo Unsafe.invokeCleaner(ByteBuffer) (null se non disponibile). */
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private DirectMemory() {
+    }
+
+    /**
+     * Alloca un buffer esterno allo heap, con l'ordine dei byte della piattaforma.
+     *
+     * @param bytes dimensione del buffer.
+     * @return buffer allocato.
+     * @throws IllegalArgumentException se la dimensione supera quella di un buffer.
+     */
+    static ByteBuffer allocate(long bytes) {
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Errore: colonna di " + bytes + " byte troppo grande!");
+        }
+        return ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Libera subito la memoria di un buffer diretto o mappato. Il buffer (e ogni sua vista)
+     * non deve piu' essere usato.
+     *
+     * @param buffer buffer da liberare, cosi' come restituito dall'allocazione o dalla mappatura.
+     */
+    static void free(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // la memoria verra' liberata dal garbage collector
+        }
+    }
+}
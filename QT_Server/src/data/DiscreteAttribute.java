@@ -1,6 +1,7 @@
 package data;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.TreeSet;
 
@@ -14,6 +15,8 @@ class DiscreteAttribute extends Attribute implements Iterable<String>, Serializa
 
     /** Insieme dei valori discreti possibili per l'attributo. */
     private TreeSet<String> values;
+    /** Valori discreti in forma di vettore ordinato: la posizione di un valore ne e' il codice. */
+    private transient String[] dictionary;
 
     /**
      * Costruttore parametrizzato della classe DiscreteAttribute.
@@ -37,6 +40,40 @@ class DiscreteAttribute extends Attribute implements Iterable<String>, Serializa
         return values.size();
     }
 
+    /**
+     * Restituisce il codice di un valore, cioe' la sua posizione nell'insieme ordinato dei valori.
+     *
+     * @param value valore da codificare.
+     * @return codice del valore, oppure un valore negativo se il valore non appartiene all'attributo.
+     */
+    int getCode(String value) {
+        return Arrays.binarySearch(getDictionary(), value);
+    }
+
+    /**
+     * Restituisce il valore corrispondente a un codice.
+     *
+     * @param code codice del valore.
+     * @return valore discreto.
+     */
+    String getValue(int code) {
+        return getDictionary()[code];
+    }
+
+    /**
+     * Restituisce il dizionario dei valori, costruendolo alla prima richiesta.
+     *
+     * @return vettore ordinato dei valori discreti.
+     */
+    private String[] getDictionary() {
+        String[] dict = dictionary;
+        if (dict == null) {
+            dict = values.toArray(new String[0]);
+            dictionary = dict;
+        }
+        return dict;
+    }
+
     /**
      * Restituisce un iteratore sui valori discreti dell'attributo.
      *
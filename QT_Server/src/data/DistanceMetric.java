@@ -0,0 +1,24 @@
+package data;
+
+/**
+ * Interfaccia che rappresenta una misura di distanza tra gli esempi di un dataset.
+ *
+ * Una misura viene prima legata a un dataset ({@link #bind(Data)}), in modo che possa preparare
+ * una volta sola cio' che le serve (schema, scale, pesi, colonne); le distanze vengono poi calcolate
+ * a blocchi, da un esempio (o da un centroide) verso molti esempi alla volta, tramite {@link Distances}.
+ *
+ * La misura predefinita e' {@link MixedDistance}: distanza di Hamming sugli attributi discreti
+ * e differenza assoluta dei valori scalati in [0,1] sugli attributi continui.
+ */
+public interface DistanceMetric {
+    /** Misura predefinita, senza pesi. */
+    DistanceMetric DEFAULT = new MixedDistance();
+
+    /**
+     * Lega la misura a un dataset.
+     *
+     * @param data dataset di cui calcolare le distanze.
+     * @return calcolo delle distanze tra gli esempi del dataset.
+     */
+    Distances bind(Data data);
+}
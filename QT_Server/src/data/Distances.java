@@ -0,0 +1,80 @@
+package data;
+
+/**
+ * Interfaccia che rappresenta una misura di distanza legata a un dataset ({@link DistanceMetric#bind(Data)}).
+ *
+ * Ogni operazione calcola le distanze da un'origine (un esempio del dataset o una tupla, ad esempio
+ * un centroide) verso un insieme di esempi, indicati da un intervallo o da un vettore di indici,
+ * e le scrive in un vettore di double: le implementazioni possono cosi' scorrere le colonne
+ * del dataset un attributo alla volta invece di confrontare una coppia di tuple alla volta.
+ *
+ * Le istanze non sono necessariamente thread safe e vanno usate da un thread alla volta.
+ */
+public interface Distances {
+    /**
+     * Calcola le distanze da un esempio verso gli esempi di un intervallo.
+     *
+     * @param origin indice dell'esempio di origine.
+     * @param from indice del primo esempio (incluso).
+     * @param to indice dell'ultimo esempio (escluso).
+     * @param out destinazione: out[k] e' la distanza dall'esempio from + k.
+     */
+    void distances(int origin, int from, int to, double[] out);
+
+    /**
+     * Calcola le distanze da un esempio verso gli esempi indicati.
+     *
+     * @param origin indice dell'esempio di origine.
+     * @param rows indici degli esempi.
+     * @param count numero di indici da considerare.
+     * @param out destinazione: out[k] e' la distanza dall'esempio rows[k].
+     */
+    void distances(int origin, int[] rows, int count, double[] out);
+
+    /**
+     * Calcola le distanze da una tupla, con lo schema del dataset, verso gli esempi indicati.
+     *
+     * @param origin tupla di origine (ad esempio il centroide di un cluster).
+     * @param rows indici degli esempi.
+     * @param count numero di indici da considerare.
+     * @param out destinazione: out[k] e' la distanza dall'esempio rows[k].
+     * @throws EmptyDatasetException se un valore della tupla e' nullo.
+     */
+    void distances(Tuple origin, int[] rows, int count, double[] out) throws EmptyDatasetException;
+
+    /**
+     * Raccoglie, tra gli esempi indicati, quelli entro il raggio dato da un esempio.
+     *
+     * @param origin indice dell'esempio di origine.
+     * @param rows indici degli esempi, in ordine.
+     * @param count numero di indici da considerare.
+     * @param radius distanza massima (inclusa).
+     * @param scratch vettore di appoggio per le distanze, di almeno "count" elementi.
+     * @param out destinazione degli indici degli esempi entro il raggio, nell'ordine di "rows".
+     * @return numero di esempi entro il raggio.
+     */
+    default int within(int origin, int[] rows, int count, double radius, double[] scratch, int[] out) {
+        distances(origin, rows, count, scratch);
+        int size = 0;
+        for (int k = 0; k < count; k++) {
+            if (scratch[k] <= radius) {
+                out[size++] = rows[k];
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Prepara la ricerca ripetuta dei vicini entro un raggio tra gli esempi indicati.
+     * L'implementazione predefinita calcola ogni volta le distanze verso tutti gli esempi
+     * non ancora rimossi ({@link #within}); le misure possono indicizzare gli esempi.
+     *
+     * @param rows indici degli esempi, in ordine crescente (il vettore viene copiato).
+     * @param count numero di indici da considerare.
+     * @param radius distanza massima (inclusa).
+     * @return ricerca dei vicini tra gli esempi.
+     */
+    default Neighbors neighbors(int[] rows, int count, double radius) {
+        return new ScanNeighbors(this, rows, count, radius);
+    }
+}
@@ -0,0 +1,918 @@
+package data;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import database.EmptySetException;
+import database.EmptyTypeException;
+import database.NoValueException;
+
+/**
+ * Classe che costruisce un {@link Data} direttamente da un file, senza passare per il database.
+ *
+ * Sono supportati due formati, riconosciuti dall'estensione del file:
+ * - ".csv": la prima riga contiene i nomi delle colonne, le righe successive gli esempi
+ *   (campi separati da virgola, eventualmente racchiusi tra doppi apici);
+ * - ".sql": dump prodotto da mysqldump, da cui vengono letti lo schema (CREATE TABLE)
+ *   e le tuple delle istruzioni INSERT della tabella richiesta.
+ *
+ * Il file viene mappato in memoria e suddiviso in porzioni allineate alle righe,
+ * analizzate in parallelo. Il dataset ottenuto coincide con quello prodotto dal caricamento
+ * da database della stessa tabella: stesse colonne (nel dump sono considerati solo i tipi
+ * gestiti da {@link database.TableSchema}), tuple distinte e minimo/massimo degli attributi
+ * continui letti in precisione float come in {@link database.TableData#getAggregateColumnValue}.
+ */
+public class FileTableReader {
+    /** Dimensione indicativa di ciascuna porzione del file analizzata in parallelo. */
+    private static final int CHUNK_SIZE = 8 << 20;
+    /** Numero di righe esaminate per dedurre i tipi delle colonne di un file CSV. */
+    private static final int SAMPLE_ROWS = 1000;
+
+    /** Nome del file da leggere. */
+    private final String fileName;
+    /** Nome della tabella da leggere nel dump (null per la prima tabella). */
+    private final String tableName;
+    /** Indica se il file e' un dump SQL. */
+    private final boolean sqlDump;
+
+    /** Nomi dei campi presenti nel file (tutte le colonne del CSV o della tabella). */
+    private final List<String> fieldNames = new ArrayList<>();
+    /** Tipo SQL di ciascun campo del dump (null per i file CSV). */
+    private final List<String> fieldTypes = new ArrayList<>();
+    /** Prefisso delle istruzioni INSERT della tabella nel dump. */
+    private byte[] insertPrefix;
+
+    /** Per ogni campo, indice della colonna del dataset corrispondente (-1 se il campo viene ignorato). */
+    private int[] fieldToColumn;
+    /** Nomi delle colonne del dataset. */
+    private String[] columnNames;
+    /** Per ogni colonna del dataset, "true" se continua. */
+    private boolean[] continuous;
+
+    /**
+     * Costruttore parametrizzato della classe FileTableReader.
+     *
+     * @param fileName nome del file CSV o del dump SQL.
+     * @param tableName nome della tabella da leggere nel dump (ignorato per i file CSV,
+     * null per la prima tabella del dump).
+     */
+    public FileTableReader(String fileName, String tableName) {
+        this.fileName = fileName;
+        this.tableName = tableName;
+        this.sqlDump = fileName.toLowerCase(Locale.ROOT).endsWith(".sql");
+    }
+
+    /**
+     * Verifica se il nome indicato si riferisce a un file in un formato supportato.
+     *
+     * @param fileName nome del file.
+     * @return "true" se il file ha estensione ".csv" o ".sql", "false" altrimenti.
+     */
+    public static boolean isSupported(String fileName) {
+        String lower = fileName.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".csv") || lower.endsWith(".sql");
+    }
+
+    /**
+     * Legge il file deducendo lo schema: per il dump dai tipi della CREATE TABLE,
+     * per il CSV considerando continue le colonne i cui valori sono tutti numerici.
+     *
+     * @return dataset letto dal file.
+     * @throws IOException se il file non e' accessibile o non e' ben formato.
+     * @throws EmptySetException se il file non contiene esempi.
+     * @throws EmptyTypeException se un valore non e' compatibile con il tipo della colonna.
+     * @throws NoValueException se viene letto un valore nullo.
+     */
+    public Data read() throws IOException, EmptySetException, EmptyTypeException, NoValueException {
+        return read(null);
+    }
+
+    /**
+     * Legge il file usando lo schema indicato.
+     *
+     * @param columnTypes per ogni colonna del dataset, "true" se continua e "false" se discreta
+     * (null per dedurre lo schema dal file).
+     * @return dataset letto dal file.
+     * @throws IOException se il file non e' accessibile o non e' ben formato.
+     * @throws EmptySetException se il file non contiene esempi.
+     * @throws EmptyTypeException se un valore non e' compatibile con il tipo della colonna.
+     * @throws NoValueException se viene letto un valore nullo.
+     */
+    public Data read(boolean[] columnTypes) throws IOException, EmptySetException, EmptyTypeException, NoValueException {
+        fieldNames.clear();
+        fieldTypes.clear();
+        if (sqlDump) {
+            readDumpSchema();
+        } else {
+            readCsvSchema();
+        }
+        if (columnTypes != null) {
+            if (columnTypes.length != columnNames.length) {
+                throw new IllegalArgumentException("Errore: numero di colonne nel file non valido!");
+            }
+            continuous = columnTypes.clone();
+        }
+
+        List<Chunk> chunks = parseChunks();
+
+        List<Attribute> attributes = new ArrayList<>();
+        for (int c = 0; c < columnNames.length; c++) {
+            if (continuous[c]) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (Chunk chunk : chunks) {
+                    min = Math.min(min, chunk.min[c]);
+                    max = Math.max(max, chunk.max[c]);
+                }
+                if (min > max) {
+                    throw new EmptySetException();
+                }
+                attributes.add(new ContinuousAttribute(columnNames[c], c, (float) min, (float) max));
+            } else {
+                TreeSet<String> values = new TreeSet<>();
+                for (Chunk chunk : chunks) {
+                    values.addAll(chunk.dictionaries.get(c).keySet());
+                }
+                if (values.isEmpty()) {
+                    throw new EmptySetException();
+                }
+                attributes.add(new DiscreteAttribute(columnNames[c], c, values));
+            }
+        }
+
+        List<ColumnBuilder> parts = encodeChunks(attributes, chunks);
+        return new Data(attributes, ColumnBuilder.merge(attributes, parts));
+    }
+
+    /**
+     * Legge dal dump la definizione della tabella e ne ricava le colonne del dataset.
+     *
+     * @throws IOException se la tabella non e' presente nel dump.
+     */
+    private void readDumpSchema() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            String line;
+            String table = null;
+            while ((line = reader.readLine()) != null) {
+                if (table == null) {
+                    if (line.startsWith("CREATE TABLE")) {
+                        String name = unquoteIdentifier(line.substring("CREATE TABLE".length()).trim());
+                        if (tableName == null || name.equalsIgnoreCase(tableName)) {
+                            table = name;
+                        }
+                    }
+                } else if (line.startsWith(")")) {
+                    break;
+                } else {
+                    String trimmed = line.trim();
+                    if (trimmed.startsWith("`")) {
+                        int end = trimmed.indexOf('`', 1);
+                        fieldNames.add(trimmed.substring(1, end));
+                        fieldTypes.add(trimmed.substring(end + 1).trim());
+                    }
+                }
+            }
+            if (table == null || fieldNames.isEmpty()) {
+                throw new IOException("Errore: tabella " + tableName + " non trovata nel file " + fileName + "!");
+            }
+            insertPrefix = ("INSERT INTO `" + table + "` VALUES ").getBytes(StandardCharsets.UTF_8);
+        }
+
+        List<String> names = new ArrayList<>();
+        List<Boolean> types = new ArrayList<>();
+        fieldToColumn = new int[fieldNames.size()];
+        for (int f = 0; f < fieldNames.size(); f++) {
+            String type = sqlTypeName(fieldTypes.get(f));
+            boolean number = type.equals("INT") || type.equals("FLOAT") || type.equals("DOUBLE");
+            boolean string = type.equals("CHAR") || type.equals("VARCHAR") || type.equals("BIT");
+            if (number || string) {
+                fieldToColumn[f] = names.size();
+                names.add(fieldNames.get(f));
+                types.add(number);
+            } else {
+                fieldToColumn[f] = -1;
+            }
+        }
+        setColumns(names, types);
+    }
+
+    /**
+     * Legge l'intestazione del file CSV e deduce il tipo di ciascuna colonna
+     * dalle prime righe del file.
+     *
+     * @throws IOException se il file e' vuoto o non e' ben formato.
+     */
+    private void readCsvSchema() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException("Errore: il file " + fileName + " e' vuoto!");
+            }
+            if (header.startsWith("\uFEFF")) {
+                header = header.substring(1);
+            }
+            fieldNames.addAll(splitCsv(header));
+            boolean[] numeric = new boolean[fieldNames.size()];
+            Arrays.fill(numeric, true);
+            String line;
+            int rows = 0;
+            while (rows < SAMPLE_ROWS && (line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                List<String> fields = splitCsv(line);
+                for (int f = 0; f < numeric.length && f < fields.size(); f++) {
+                    if (numeric[f]) {
+                        try {
+                            Double.parseDouble(fields.get(f).trim());
+                        } catch (NumberFormatException ex) {
+                            numeric[f] = false;
+                        }
+                    }
+                }
+                rows++;
+            }
+            List<Boolean> types = new ArrayList<>();
+            fieldToColumn = new int[fieldNames.size()];
+            for (int f = 0; f < numeric.length; f++) {
+                fieldToColumn[f] = f;
+                types.add(numeric[f] && rows > 0);
+            }
+            setColumns(fieldNames, types);
+        }
+    }
+
+    /**
+     * Imposta nomi e tipi delle colonne del dataset.
+     *
+     * @param names nomi delle colonne.
+     * @param types per ogni colonna, "true" se continua.
+     */
+    private void setColumns(List<String> names, List<Boolean> types) {
+        columnNames = names.toArray(new String[0]);
+        continuous = new boolean[types.size()];
+        for (int c = 0; c < continuous.length; c++) {
+            continuous[c] = types.get(c);
+        }
+    }
+
+    /**
+     * Suddivide il file in porzioni allineate alle righe e le analizza in parallelo.
+     *
+     * @return porzioni analizzate, nell'ordine in cui compaiono nel file.
+     * @throws IOException se il file non e' accessibile o non e' ben formato.
+     * @throws EmptyTypeException se un valore non e' compatibile con il tipo della colonna.
+     * @throws NoValueException se viene letto un valore nullo.
+     */
+    private List<Chunk> parseChunks() throws IOException, EmptyTypeException, NoValueException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<long[]> bounds = new ArrayList<>();
+            long start = 0;
+            while (start < size) {
+                long end = nextLine(channel, Math.min(size, start + CHUNK_SIZE));
+                bounds.add(new long[] {start, end});
+                start = end;
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+            try {
+                List<Future<Chunk>> futures = new ArrayList<>();
+                for (long[] bound : bounds) {
+                    boolean skipHeader = !sqlDump && bound[0] == 0;
+                    futures.add(executor.submit(() -> parseChunk(channel, bound[0], bound[1], skipHeader)));
+                }
+                List<Chunk> chunks = new ArrayList<>();
+                for (Future<Chunk> future : futures) {
+                    chunks.add(future.get());
+                }
+                return chunks;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof EmptyTypeException) {
+                    throw (EmptyTypeException) cause;
+                } else if (cause instanceof NoValueException) {
+                    throw (NoValueException) cause;
+                } else if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IOException(cause);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Mappa in memoria una porzione del file, la analizza e libera subito la mappatura,
+     * senza attendere il garbage collector: le porzioni di un file grande non restano
+     * mappate tutte insieme.
+     *
+     * @param channel canale aperto sul file.
+     * @param start inizio della porzione.
+     * @param end fine della porzione (esclusa).
+     * @param skipHeader "true" se la prima riga e' l'intestazione del CSV.
+     * @return porzione analizzata.
+     * @throws IOException se la porzione non e' leggibile o non e' ben formata.
+     * @throws EmptyTypeException se un valore non e' compatibile con il tipo della colonna.
+     * @throws NoValueException se viene letto un valore nullo.
+     */
+    private Chunk parseChunk(FileChannel channel, long start, long end, boolean skipHeader)
+            throws IOException, EmptyTypeException, NoValueException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        try {
+            return new Chunk(columnNames.length).parse(buffer, skipHeader);
+        } finally {
+            DirectMemory.free(buffer);
+        }
+    }
+
+    /**
+     * Codifica in parallelo le porzioni analizzate secondo i dizionari globali degli attributi,
+     * ordinando ciascuna porzione.
+     *
+     * @param attributes attributi del dataset.
+     * @param chunks porzioni analizzate.
+     * @return colonne ordinate di ciascuna porzione.
+     * @throws IOException se la codifica viene interrotta.
+     */
+    private List<ColumnBuilder> encodeChunks(List<Attribute> attributes, List<Chunk> chunks) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Future<ColumnBuilder>> futures = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                futures.add(executor.submit((Callable<ColumnBuilder>) () -> chunk.encode(attributes)));
+            }
+            List<ColumnBuilder> parts = new ArrayList<>();
+            for (Future<ColumnBuilder> future : futures) {
+                parts.add(future.get());
+            }
+            return parts;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Restituisce la posizione successiva al primo fine riga a partire da "position".
+     *
+     * @param channel canale del file.
+     * @param position posizione da cui cercare.
+     * @return posizione di inizio della riga successiva (o la dimensione del file).
+     * @throws IOException se si verifica un errore di lettura.
+     */
+    private static long nextLine(FileChannel channel, long position) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Estrae il nome del tipo SQL dalla definizione di una colonna del dump,
+     * nella forma restituita dai metadati JDBC (es. "float(5,2) DEFAULT NULL" diventa "FLOAT").
+     *
+     * @param definition definizione della colonna, privata del nome.
+     * @return nome del tipo in maiuscolo.
+     */
+    private static String sqlTypeName(String definition) {
+        int end = 0;
+        while (end < definition.length() && Character.isLetter(definition.charAt(end))) {
+            end++;
+        }
+        String type = definition.substring(0, end).toUpperCase(Locale.ROOT);
+        if (definition.toLowerCase(Locale.ROOT).contains(" unsigned")) {
+            type += " UNSIGNED";
+        }
+        return type;
+    }
+
+    /**
+     * Rimuove gli apici inversi dal nome di una tabella nella forma "`nome` (".
+     *
+     * @param text testo che inizia con il nome della tabella.
+     * @return nome della tabella.
+     */
+    private static String unquoteIdentifier(String text) {
+        if (text.startsWith("`")) {
+            return text.substring(1, text.indexOf('`', 1));
+        }
+        int end = 0;
+        while (end < text.length() && !Character.isWhitespace(text.charAt(end)) && text.charAt(end) != '(') {
+            end++;
+        }
+        return text.substring(0, end);
+    }
+
+    /**
+     * Suddivide una riga CSV nei suoi campi.
+     *
+     * @param line riga da suddividere.
+     * @return lista dei campi.
+     */
+    private static List<String> splitCsv(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        List<String> fields = new ArrayList<>();
+        int pos = 0;
+        while (true) {
+            int[] field = new int[3];
+            pos = csvField(buffer, pos, bytes.length, field);
+            fields.add(fieldString(buffer, field));
+            if (pos >= bytes.length || bytes[pos] != ',') {
+                break;
+            }
+            pos++;
+        }
+        return fields;
+    }
+
+    /**
+     * Individua un campo CSV a partire da "pos".
+     *
+     * @param buf buffer contenente la riga.
+     * @param pos posizione di inizio del campo.
+     * @param end fine della riga.
+     * @param field in uscita: inizio, fine del contenuto e 1 se il campo contiene apici doppi da ridurre.
+     * @return posizione del separatore (o della fine della riga) successivo al campo.
+     */
+    private static int csvField(ByteBuffer buf, int pos, int end, int[] field) {
+        if (pos < end && buf.get(pos) == '"') {
+            int start = ++pos;
+            field[2] = 0;
+            while (pos < end) {
+                if (buf.get(pos) == '"') {
+                    if (pos + 1 < end && buf.get(pos + 1) == '"') {
+                        field[2] = 1;
+                        pos += 2;
+                        continue;
+                    }
+                    break;
+                }
+                pos++;
+            }
+            field[0] = start;
+            field[1] = pos;
+            pos++;
+            while (pos < end && buf.get(pos) != ',') {
+                pos++;
+            }
+            return pos;
+        }
+        int start = pos;
+        while (pos < end && buf.get(pos) != ',') {
+            pos++;
+        }
+        field[0] = start;
+        field[1] = pos;
+        field[2] = 0;
+        return pos;
+    }
+
+    /**
+     * Restituisce il contenuto di un campo CSV come stringa, privo di spazi esterni.
+     *
+     * @param buf buffer contenente il campo.
+     * @param field inizio, fine e indicatore di apici doppi del campo.
+     * @return contenuto del campo.
+     */
+    private static String fieldString(ByteBuffer buf, int[] field) {
+        String value = decode(buf, field[0], field[1]).trim();
+        return field[2] == 1 ? value.replace("\"\"", "\"") : value;
+    }
+
+    /**
+     * Decodifica in UTF-8 una porzione di buffer.
+     *
+     * @param buf buffer sorgente.
+     * @param from inizio (incluso).
+     * @param to fine (esclusa).
+     * @return stringa decodificata.
+     */
+    private static String decode(ByteBuffer buf, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(from + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Converte in double un numero scritto in una porzione di buffer.
+     * I numeri decimali semplici fino a 15 cifre vengono convertiti direttamente: la mantissa
+     * (minore di 2^53) e la potenza di dieci (fino a 10^22) sono double esatti, per cui la loro
+     * divisione e' arrotondata una sola volta e coincide con il risultato di {@link Double#parseDouble}.
+     * Con piu' cifre la mantissa verrebbe arrotondata due volte: questi numeri, come tutti gli altri
+     * casi, vengono convertiti con {@link Double#parseDouble}.
+     *
+     * @param buf buffer sorgente.
+     * @param from inizio (incluso).
+     * @param to fine (esclusa).
+     * @return valore numerico.
+     * @throws NumberFormatException se il testo non rappresenta un numero.
+     */
+    private static double parseNumber(ByteBuffer buf, int from, int to) {
+        int pos = from;
+        boolean negative = false;
+        if (pos < to && (buf.get(pos) == '-' || buf.get(pos) == '+')) {
+            negative = buf.get(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; pos < to; pos++) {
+            byte b = buf.get(pos);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                break;
+            }
+        }
+        if (pos != to || digits == 0 || digits > MAX_EXACT_DIGITS || decimals >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(decode(buf, from, to).trim());
+        }
+        double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+        return negative ? -value : value;
+    }
+
+    /** Numero massimo di cifre di una mantissa sempre minore di 2^53, quindi esatta come double. */
+    private static final int MAX_EXACT_DIGITS = 15;
+    /** Potenze di dieci rappresentabili esattamente come double (fino a 10^22). */
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Porzione del file analizzata da un singolo thread.
+     * I valori discreti sono codificati con un dizionario locale alla porzione,
+     * convertito nei codici globali una volta noti tutti i valori.
+     */
+    private class Chunk {
+        /** Dizionari locali dei valori discreti (null per le colonne continue). */
+        final List<HashMap<String, Integer>> dictionaries = new ArrayList<>();
+        /** Codici locali delle colonne discrete. */
+        final int[][] codes;
+        /** Valori delle colonne continue. */
+        final double[][] values;
+        /** Minimo di ciascuna colonna continua. */
+        final double[] min;
+        /** Massimo di ciascuna colonna continua. */
+        final double[] max;
+        /** Numero di righe lette. */
+        int size;
+        /** Campo corrente: inizio, fine e indicatore di apici doppi. */
+        private final int[] field = new int[3];
+
+        /**
+         * Costruttore parametrizzato della porzione.
+         *
+         * @param columns numero di colonne del dataset.
+         */
+        Chunk(int columns) {
+            codes = new int[columns][];
+            values = new double[columns][];
+            min = new double[columns];
+            max = new double[columns];
+            for (int c = 0; c < columns; c++) {
+                if (continuous[c]) {
+                    values[c] = new double[1024];
+                    dictionaries.add(null);
+                } else {
+                    codes[c] = new int[1024];
+                    dictionaries.add(new HashMap<String, Integer>());
+                }
+                min[c] = Double.POSITIVE_INFINITY;
+                max[c] = Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        /**
+         * Analizza tutte le righe della porzione.
+         *
+         * @param buf porzione del file mappata in memoria.
+         * @param skipHeader "true" se la prima riga e' l'intestazione del CSV.
+         * @return la porzione stessa.
+         * @throws EmptyTypeException se un valore non e' compatibile con il tipo della colonna.
+         * @throws NoValueException se viene letto un valore nullo.
+         * @throws IOException se una riga non e' ben formata.
+         */
+        Chunk parse(ByteBuffer buf, boolean skipHeader) throws EmptyTypeException, NoValueException, IOException {
+            int limit = buf.limit();
+            int pos = 0;
+            while (pos < limit) {
+                int end = pos;
+                while (end < limit && buf.get(end) != '\n') {
+                    end++;
+                }
+                int lineEnd = end > pos && buf.get(end - 1) == '\r' ? end - 1 : end;
+                if (skipHeader) {
+                    skipHeader = false;
+                } else if (sqlDump) {
+                    if (startsWith(buf, pos, lineEnd, insertPrefix)) {
+                        parseInsert(buf, pos + insertPrefix.length, lineEnd);
+                    }
+                } else if (lineEnd > pos) {
+                    parseCsvRow(buf, pos, lineEnd);
+                }
+                pos = end + 1;
+            }
+            return this;
+        }
+
+        /**
+         * Analizza una riga CSV.
+         *
+         * @param buf buffer sorgente.
+         * @param pos inizio della riga.
+         * @param end fine della riga.
+         * @throws EmptyTypeException se un valore non e' compatibile con il tipo della colonna.
+         * @throws NoValueException se viene letto un valore vuoto.
+         * @throws IOException se il numero di campi non corrisponde all'intestazione.
+         */
+        private void parseCsvRow(ByteBuffer buf, int pos, int end) throws EmptyTypeException, NoValueException, IOException {
+            ensureCapacity();
+            int f = 0;
+            while (true) {
+                pos = csvField(buf, pos, end, field);
+                if (f >= fieldToColumn.length) {
+                    throw new IOException("Errore: riga con troppi campi nel file " + fileName + "!");
+                }
+                if (field[0] == field[1]) {
+                    throw new NoValueException("Valore mancante nella colonna " + fieldNames.get(f));
+                }
+                store(fieldToColumn[f], buf, field[0], field[1], field[2] == 1 ? '"' : 0);
+                f++;
+                if (pos >= end) {
+                    break;
+                }
+                pos++;
+            }
+            if (f != fieldToColumn.length) {
+                throw new IOException("Errore: riga con pochi campi nel file " + fileName + "!");
+            }
+            size++;
+        }
+
+        /**
+         * Analizza le tuple di un'istruzione INSERT del dump: (v1,v2,...),(v1,v2,...);
+         *
+         * @param buf buffer sorgente.
+         * @param pos inizio della prima tupla.
+         * @param end fine della riga.
+         * @throws EmptyTypeException se un valore non e' compatibile con il tipo della colonna.
+         * @throws NoValueException se viene letto un valore NULL.
+         * @throws IOException se l'istruzione non e' ben formata.
+         */
+        private void parseInsert(ByteBuffer buf, int pos, int end) throws EmptyTypeException, NoValueException, IOException {
+            while (pos < end && buf.get(pos) == '(') {
+                ensureCapacity();
+                pos++;
+                for (int f = 0; f < fieldToColumn.length; f++) {
+                    int column = fieldToColumn[f];
+                    if (buf.get(pos) == '\'') {
+                        int start = ++pos;
+                        boolean escaped = false;
+                        while (buf.get(pos) != '\'' || buf.get(pos - 1) == '\\' && !evenBackslashes(buf, start, pos)) {
+                            escaped |= buf.get(pos) == '\\';
+                            pos++;
+                        }
+                        store(column, buf, start, pos, escaped ? '\\' : 0);
+                        pos++;
+                    } else {
+                        int start = pos;
+                        while (buf.get(pos) != ',' && buf.get(pos) != ')') {
+                            pos++;
+                        }
+                        if (pos - start == 4 && buf.get(start) == 'N') {
+                            throw new NoValueException("Valore NULL nella colonna " + fieldNames.get(f));
+                        }
+                        store(column, buf, start, pos, 0);
+                    }
+                    if (buf.get(pos) == ',') {
+                        pos++;
+                    }
+                }
+                if (buf.get(pos) != ')') {
+                    throw new IOException("Errore: tupla non valida nel file " + fileName + "!");
+                }
+                size++;
+                pos++;
+                if (pos < end && (buf.get(pos) == ',' || buf.get(pos) == ';')) {
+                    pos++;
+                }
+            }
+        }
+
+        /**
+         * Memorizza il valore di un campo nella colonna corrispondente.
+         *
+         * @param column colonna del dataset (-1 se il campo viene ignorato).
+         * @param buf buffer sorgente.
+         * @param from inizio del valore.
+         * @param to fine del valore.
+         * @param escape carattere di escape presente nel valore (0 se assente).
+         * @throws EmptyTypeException se il valore di una colonna continua non e' numerico.
+         */
+        private void store(int column, ByteBuffer buf, int from, int to, int escape) throws EmptyTypeException {
+            if (column < 0) {
+                return;
+            }
+            if (continuous[column]) {
+                double v;
+                try {
+                    v = parseNumber(buf, from, to);
+                } catch (NumberFormatException ex) {
+                    throw new EmptyTypeException("La colonna " + columnNames[column] + " deve essere discreta!");
+                }
+                values[column][size] = v;
+                min[column] = Math.min(min[column], v);
+                max[column] = Math.max(max[column], v);
+            } else {
+                String value = decode(buf, from, to);
+                if (escape == '"') {
+                    value = value.trim().replace("\"\"", "\"");
+                } else if (escape == '\\') {
+                    value = unescapeSql(value);
+                } else if (!sqlDump) {
+                    value = value.trim();
+                }
+                HashMap<String, Integer> dictionary = dictionaries.get(column);
+                Integer code = dictionary.get(value);
+                if (code == null) {
+                    code = dictionary.size();
+                    dictionary.put(value, code);
+                }
+                codes[column][size] = code;
+            }
+        }
+
+        /**
+         * Converte i codici locali nei codici globali degli attributi e ordina la porzione.
+         *
+         * @param attributes attributi del dataset.
+         * @return colonne ordinate della porzione.
+         */
+        ColumnBuilder encode(List<Attribute> attributes) {
+            int columns = attributes.size();
+            int[][] remap = new int[columns][];
+            for (int c = 0; c < columns; c++) {
+                if (!continuous[c]) {
+                    DiscreteAttribute attribute = (DiscreteAttribute) attributes.get(c);
+                    remap[c] = new int[dictionaries.get(c).size()];
+                    for (Map.Entry<String, Integer> e : dictionaries.get(c).entrySet()) {
+                        remap[c][e.getValue()] = attribute.getCode(e.getKey());
+                    }
+                }
+            }
+            ColumnBuilder builder = new ColumnBuilder(attributes, size);
+            int[] rowCodes = new int[columns];
+            double[] rowValues = new double[columns];
+            for (int r = 0; r < size; r++) {
+                for (int c = 0; c < columns; c++) {
+                    if (continuous[c]) {
+                        rowValues[c] = values[c][r];
+                    } else {
+                        rowCodes[c] = remap[c][codes[c][r]];
+                    }
+                }
+                builder.add(rowCodes, rowValues);
+            }
+            builder.sortDistinct();
+            return builder;
+        }
+
+        /**
+         * Garantisce lo spazio per una nuova riga.
+         */
+        private void ensureCapacity() {
+            for (int c = 0; c < codes.length; c++) {
+                if (codes[c] != null && codes[c].length == size) {
+                    codes[c] = Arrays.copyOf(codes[c], size * 2);
+                } else if (values[c] != null && values[c].length == size) {
+                    values[c] = Arrays.copyOf(values[c], size * 2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifica se una riga inizia con il prefisso indicato.
+     *
+     * @param buf buffer sorgente.
+     * @param pos inizio della riga.
+     * @param end fine della riga.
+     * @param prefix prefisso da cercare.
+     * @return "true" se la riga inizia con il prefisso.
+     */
+    private static boolean startsWith(ByteBuffer buf, int pos, int end, byte[] prefix) {
+        if (end - pos < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buf.get(pos + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verifica se l'apice in posizione "pos" e' preceduto da un numero pari di barre rovesciate,
+     * cioe' se chiude la stringa.
+     *
+     * @param buf buffer sorgente.
+     * @param start inizio della stringa.
+     * @param pos posizione dell'apice.
+     * @return "true" se le barre rovesciate che precedono l'apice sono in numero pari.
+     */
+    private static boolean evenBackslashes(ByteBuffer buf, int start, int pos) {
+        int count = 0;
+        for (int i = pos - 1; i >= start && buf.get(i) == '\\'; i--) {
+            count++;
+        }
+        return count % 2 == 0;
+    }
+
+    /**
+     * Rimuove le sequenze di escape di MySQL da una stringa del dump.
+     *
+     * @param value stringa con sequenze di escape.
+     * @return stringa originale.
+     */
+    private static String unescapeSql(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case '0': sb.append('\0'); break;
+                    case 'Z': sb.append('\u001A'); break;
+                    default: sb.append(next);
+                }
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+}
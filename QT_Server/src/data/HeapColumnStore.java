@@ -0,0 +1,34 @@
+package data;
+
+/**
+ * Classe che implementa {@link ColumnStore} con vettori allocati nello heap.
+ */
+class HeapColumnStore implements ColumnStore {
+    private static final long serialVersionUID = 1L;
+
+    /** Colonne dei codici degli attributi discreti (null per gli attributi continui). */
+    private final int[][] codes;
+    /** Colonne dei valori degli attributi continui (null per gli attributi discreti). */
+    private final double[][] values;
+
+    /**
+     * Costruttore parametrizzato della classe HeapColumnStore.
+     *
+     * @param codes colonne dei codici degli attributi discreti.
+     * @param values colonne dei valori degli attributi continui.
+     */
+    HeapColumnStore(int[][] codes, double[][] values) {
+        this.codes = codes;
+        this.values = values;
+    }
+
+    @Override
+    public int getCode(int attribute, int row) {
+        return codes[attribute][row];
+    }
+
+    @Override
+    public double getValue(int attribute, int row) {
+        return values[attribute][row];
+    }
+}
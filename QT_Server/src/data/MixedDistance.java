@@ -0,0 +1,199 @@
+package data;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classe che implementa la misura di distanza predefinita tra esempi: la somma, sugli attributi,
+ * di 1 per ogni valore discreto diverso (distanza di Hamming) e della differenza assoluta
+ * dei valori continui scalati in [0,1] con minimo e massimo dell'attributo.
+ * Senza pesi il risultato coincide con quello di {@link Tuple#getDistance(Tuple)}.
+ *
+ * Ogni attributo puo' avere un peso, per cui moltiplicare il proprio contributo; un attributo
+ * con peso 0 viene ignorato. Le distanze vengono calcolate scorrendo le colonne del dataset
+ * un attributo alla volta, per tutti gli esempi richiesti, sommando i contributi nell'ordine
+ * degli attributi. La ricerca dei vicini entro un raggio e' indicizzata per combinazione
+ * di valori discreti ({@link SignatureNeighbors}).
+ */
+public class MixedDistance implements DistanceMetric {
+    /** Pesi degli attributi, nell'ordine dello schema (null se tutti 1) */
+    private final double[] weights;
+
+    /**
+     * Costruttore della classe MixedDistance senza pesi.
+     */
+    public MixedDistance() {
+        this(null);
+    }
+
+    /**
+     * Costruttore parametrizzato della classe MixedDistance.
+     *
+     * @param weights pesi degli attributi, nell'ordine dello schema (null se tutti 1).
+     * @throws IllegalArgumentException se un peso e' negativo.
+     */
+    public MixedDistance(double[] weights) {
+        if (weights != null) {
+            for (double weight : weights) {
+                if (!(weight >= 0)) {
+                    throw new IllegalArgumentException("Errore: peso " + weight + " non valido!");
+                }
+            }
+        }
+        this.weights = weights == null ? null : weights.clone();
+    }
+
+    /**
+     * Lega la misura a un dataset.
+     *
+     * @param data dataset di cui calcolare le distanze.
+     * @return calcolo delle distanze tra gli esempi del dataset.
+     * @throws IllegalArgumentException se il numero di pesi non corrisponde al numero di attributi.
+     */
+    @Override
+    public Distances bind(Data data) {
+        if (weights != null && weights.length != data.getNumberOfAttributes()) {
+            throw new IllegalArgumentException("Errore: " + weights.length + " pesi per "
+                    + data.getNumberOfAttributes() + " attributi!");
+        }
+        return new Bound(data, weights);
+    }
+
+    /**
+     * Distanze tra gli esempi di un dataset, con lo schema preparato in vettori.
+     */
+    private static final class Bound implements Distances {
+        /** Colonne del dataset */
+        private final ColumnStore columns;
+        /** Attributi del dataset */
+        private final Attribute[] attributes;
+        /** Per ogni attributo, "true" se continuo */
+        private final boolean[] continuous;
+        /** Per ogni attributo continuo, valore minimo */
+        private final double[] min;
+        /** Per ogni attributo continuo, differenza tra valore massimo e minimo */
+        private final double[] range;
+        /** Per ogni attributo, peso */
+        private final double[] weight;
+
+        /**
+         * Prepara lo schema del dataset per il calcolo delle distanze.
+         *
+         * @param data dataset di cui calcolare le distanze.
+         * @param weights pesi degli attributi (null se tutti 1).
+         */
+        Bound(Data data, double[] weights) {
+            List<Attribute> schema = data.getAttributeSchema();
+            columns = data.getColumns();
+            attributes = schema.toArray(new Attribute[0]);
+            continuous = new boolean[attributes.length];
+            min = new double[attributes.length];
+            range = new double[attributes.length];
+            weight = new double[attributes.length];
+            for (int a = 0; a < attributes.length; a++) {
+                if (attributes[a] instanceof ContinuousAttribute) {
+                    ContinuousAttribute attr = (ContinuousAttribute) attributes[a];
+                    continuous[a] = true;
+                    min[a] = attr.getMin();
+                    range[a] = attr.getMax() - attr.getMin();
+                }
+                weight[a] = weights == null ? 1.0 : weights[a];
+            }
+        }
+
+        @Override
+        public void distances(int origin, int from, int to, double[] out) {
+            int count = to - from;
+            Arrays.fill(out, 0, count, 0.0);
+            for (int a = 0; a < attributes.length; a++) {
+                double w = weight[a];
+                if (w == 0) {
+                    continue;
+                }
+                if (continuous[a]) {
+                    double lo = min[a];
+                    double r = range[a];
+                    double s0 = (columns.getValue(a, origin) - lo) / r;
+                    for (int k = 0; k < count; k++) {
+                        out[k] += w * Math.abs(s0 - (columns.getValue(a, from + k) - lo) / r);
+                    }
+                } else {
+                    int c0 = columns.getCode(a, origin);
+                    for (int k = 0; k < count; k++) {
+                        if (columns.getCode(a, from + k) != c0) {
+                            out[k] += w;
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void distances(int origin, int[] rows, int count, double[] out) {
+            int[] codes = new int[attributes.length];
+            double[] scaled = new double[attributes.length];
+            for (int a = 0; a < attributes.length; a++) {
+                if (continuous[a]) {
+                    scaled[a] = (columns.getValue(a, origin) - min[a]) / range[a];
+                } else {
+                    codes[a] = columns.getCode(a, origin);
+                }
+            }
+            gather(codes, scaled, rows, count, out);
+        }
+
+        @Override
+        public void distances(Tuple origin, int[] rows, int count, double[] out) throws EmptyDatasetException {
+            int[] codes = new int[attributes.length];
+            double[] scaled = new double[attributes.length];
+            for (int a = 0; a < attributes.length; a++) {
+                Object value = origin.get(a).getValue();
+                if (continuous[a]) {
+                    scaled[a] = ((Double) value - min[a]) / range[a];
+                } else {
+                    codes[a] = ((DiscreteAttribute) attributes[a]).getCode((String) value);
+                }
+            }
+            gather(codes, scaled, rows, count, out);
+        }
+
+        @Override
+        public Neighbors neighbors(int[] rows, int count, double radius) {
+            return SignatureNeighbors.create(this, columns, continuous, min, range, weight, rows, count, radius);
+        }
+
+        /**
+         * Calcola le distanze da un'origine, gia' codificata, verso gli esempi indicati.
+         *
+         * @param codes codici dei valori discreti dell'origine (negativi se assenti dal dizionario).
+         * @param scaled valori continui scalati dell'origine.
+         * @param rows indici degli esempi.
+         * @param count numero di indici da considerare.
+         * @param out destinazione: out[k] e' la distanza dall'esempio rows[k].
+         */
+        private void gather(int[] codes, double[] scaled, int[] rows, int count, double[] out) {
+            Arrays.fill(out, 0, count, 0.0);
+            for (int a = 0; a < attributes.length; a++) {
+                double w = weight[a];
+                if (w == 0) {
+                    continue;
+                }
+                if (continuous[a]) {
+                    double lo = min[a];
+                    double r = range[a];
+                    double s0 = scaled[a];
+                    for (int k = 0; k < count; k++) {
+                        out[k] += w * Math.abs(s0 - (columns.getValue(a, rows[k]) - lo) / r);
+                    }
+                } else {
+                    int c0 = codes[a];
+                    for (int k = 0; k < count; k++) {
+                        if (columns.getCode(a, rows[k]) != c0) {
+                            out[k] += w;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package data;
+
+/**
+ * Interfaccia per la ricerca ripetuta, tra un insieme di esempi che si riduce nel tempo,
+ * degli esempi entro un raggio dato da un esempio ({@link Distances#neighbors}).
+ *
+ * E' il passo su cui {@link mining.QTMiner} spende quasi tutto il tempo: a ogni iterazione
+ * cerca i vicini di ogni esempio non ancora raggruppato, quindi rimuove gli esempi del cluster scelto.
+ * Le implementazioni possono indicizzare gli esempi per evitare di calcolarne tutte le distanze,
+ * ma devono restituire esattamente gli stessi esempi della scansione completa.
+ *
+ * Le istanze non sono thread safe e vanno usate da un thread alla volta.
+ */
+public interface Neighbors {
+    /**
+     * Raccoglie gli esempi non rimossi entro il raggio dall'esempio indicato.
+     *
+     * @param origin indice dell'esempio di origine.
+     * @param out destinazione degli indici degli esempi entro il raggio, in ordine crescente;
+     *        deve poter contenere tutti gli esempi dell'insieme.
+     * @return numero di esempi entro il raggio.
+     */
+    int within(int origin, int[] out);
+
+    /**
+     * Rimuove un esempio dall'insieme: non verra' piu' restituito da {@link #within}.
+     *
+     * @param row indice dell'esempio (ignorato se non appartiene all'insieme o e' gia' stato rimosso).
+     */
+    void remove(int row);
+
+    /**
+     * Restituisce il numero di distanze calcolate finora.
+     *
+     * @return numero di distanze calcolate.
+     */
+    long getDistances();
+}
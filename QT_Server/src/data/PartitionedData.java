@@ -0,0 +1,205 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import database.EmptySetException;
+import database.Example;
+
+/**
+ * Classe che rappresenta il dataset di una tabella del database diviso in partizioni disgiunte
+ * secondo l'hash delle tuple, la stessa ripartizione usata per il caricamento in parallelo
+ * ({@link database.TableData#scanDistinctTransazioni}), in modo che possa essere aggiornato
+ * una partizione alla volta senza rileggere l'intera tabella.
+ *
+ * Ogni aggiornamento ({@link #patch}) produce un nuovo dataset, mentre quello precedente non viene
+ * modificato e puo' continuare a essere letto. Le tuple delle partizioni non toccate vengono riprese
+ * dal dataset precedente. Dizionari degli attributi discreti ed estremi di quelli continui vengono
+ * ricalcolati sulle tuple risultanti, come in un caricamento completo, e i codici vengono ricodificati:
+ * il risultato coincide con il dataset che si otterrebbe ricaricando la tabella.
+ */
+public class PartitionedData {
+    /** Nomi delle colonne, nell'ordine dello schema */
+    private final String[] names;
+    /** Per ogni colonna, "true" se numerica (attributo continuo) */
+    private final boolean[] numeric;
+    /** Numero di partizioni */
+    private final int partitions;
+    /** Dataset corrente (null se non ancora caricato) */
+    private final Data data;
+    /** Per ogni esempio del dataset, partizione di appartenenza */
+    private final int[] partitionOf;
+
+    /**
+     * Costruttore parametrizzato della classe PartitionedData: dataset ancora vuoto,
+     * da riempire con {@link #patch}.
+     *
+     * @param names nomi delle colonne, nell'ordine dello schema.
+     * @param numeric per ogni colonna, "true" se numerica.
+     * @param partitions numero di partizioni.
+     */
+    public PartitionedData(String[] names, boolean[] numeric, int partitions) {
+        this(names, numeric, partitions, null, new int[0]);
+    }
+
+    /**
+     * Costruttore della classe PartitionedData con dataset e partizioni dei suoi esempi.
+     *
+     * @param names nomi delle colonne.
+     * @param numeric per ogni colonna, "true" se numerica.
+     * @param partitions numero di partizioni.
+     * @param data dataset corrente.
+     * @param partitionOf per ogni esempio, partizione di appartenenza.
+     */
+    private PartitionedData(String[] names, boolean[] numeric, int partitions, Data data, int[] partitionOf) {
+        this.names = names;
+        this.numeric = numeric;
+        this.partitions = partitions;
+        this.data = data;
+        this.partitionOf = partitionOf;
+    }
+
+    /**
+     * Restituisce il dataset corrente.
+     *
+     * @return dataset, oppure null se non ancora caricato.
+     */
+    public Data getData() {
+        return data;
+    }
+
+    /**
+     * Restituisce il numero di partizioni.
+     *
+     * @return numero di partizioni.
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Restituisce lo stesso dataset con gli esempi in un'altra copia, ad esempio quella
+     * esterna allo heap ({@link Data#toOffHeap()}), che verra' letta dai prossimi aggiornamenti.
+     *
+     * @param copy copia del dataset corrente, con gli stessi esempi nello stesso ordine.
+     * @return dataset partizionato che usa la copia.
+     * @throws IllegalArgumentException se la copia ha un numero di esempi diverso.
+     */
+    public PartitionedData withData(Data copy) {
+        if (copy.getNumberOfExamples() != partitionOf.length) {
+            throw new IllegalArgumentException("Errore: la copia del dataset ha " + copy.getNumberOfExamples()
+                    + " esempi invece di " + partitionOf.length + "!");
+        }
+        return new PartitionedData(names, numeric, partitions, copy, partitionOf);
+    }
+
+    /**
+     * Produce il dataset aggiornato: le partizioni indicate vengono sostituite dalle tuple lette,
+     * mentre alle altre vengono aggiunte le tuple lette che vi appartengono.
+     *
+     * @param replaced per ogni partizione, "true" se il suo contenuto va sostituito.
+     * @param rows tuple lette dal database: l'intero contenuto delle partizioni sostituite
+     * e le tuple aggiunte alle altre.
+     * @param rowPartitions per ogni tupla letta, partizione di appartenenza.
+     * @return dataset partizionato aggiornato.
+     * @throws EmptySetException se il dataset aggiornato non ha esempi.
+     */
+    public PartitionedData patch(boolean[] replaced, List<Example> rows, int[] rowPartitions) throws EmptySetException {
+        int attributes = names.length;
+        int oldRows = partitionOf.length;
+        boolean[] keep = new boolean[oldRows];
+        for (int r = 0; r < oldRows; r++) {
+            keep[r] = !replaced[partitionOf[r]];
+        }
+        ColumnStore old = data != null ? data.getColumns() : null;
+        List<Attribute> oldSchema = data != null ? data.getAttributeSchema() : null;
+
+        List<Attribute> schema = new ArrayList<>(attributes);
+        int[][] remap = new int[attributes][];
+        for (int a = 0; a < attributes; a++) {
+            if (numeric[a]) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                for (int r = 0; r < oldRows; r++) {
+                    if (keep[r]) {
+                        double v = old.getValue(a, r);
+                        min = Math.min(min, v);
+                        max = Math.max(max, v);
+                    }
+                }
+                for (Example row : rows) {
+                    double v = ((Number) row.get(a)).doubleValue();
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                // estremi in precisione float, come quelli letti dal database al caricamento
+                schema.add(new ContinuousAttribute(names[a], a, (float) min, (float) max));
+            } else {
+                TreeSet<String> values = new TreeSet<>();
+                DiscreteAttribute oldAttribute = oldSchema != null ? (DiscreteAttribute) oldSchema.get(a) : null;
+                boolean[] used = new boolean[oldAttribute != null ? oldAttribute.getNumberOfDistinctValues() : 0];
+                for (int r = 0; r < oldRows; r++) {
+                    if (keep[r]) {
+                        used[old.getCode(a, r)] = true;
+                    }
+                }
+                for (int code = 0; code < used.length; code++) {
+                    if (used[code]) {
+                        values.add(oldAttribute.getValue(code));
+                    }
+                }
+                for (Example row : rows) {
+                    values.add(row.get(a).toString());
+                }
+                DiscreteAttribute attribute = new DiscreteAttribute(names[a], a, values);
+                remap[a] = new int[used.length];
+                for (int code = 0; code < used.length; code++) {
+                    remap[a][code] = used[code] ? attribute.getCode(oldAttribute.getValue(code)) : -1;
+                }
+                schema.add(attribute);
+            }
+        }
+
+        List<ColumnBuilder> parts = new ArrayList<>(partitions);
+        for (int p = 0; p < partitions; p++) {
+            parts.add(new ColumnBuilder(schema, 16));
+        }
+        int[] codes = new int[attributes];
+        double[] values = new double[attributes];
+        for (int r = 0; r < oldRows; r++) {
+            if (keep[r]) {
+                for (int a = 0; a < attributes; a++) {
+                    if (numeric[a]) {
+                        values[a] = old.getValue(a, r);
+                    } else {
+                        codes[a] = remap[a][old.getCode(a, r)];
+                    }
+                }
+                parts.get(partitionOf[r]).add(codes, values);
+            }
+        }
+        boolean[] added = new boolean[partitions];
+        for (int i = 0; i < rows.size(); i++) {
+            parts.get(rowPartitions[i]).add(rows.get(i));
+            added[rowPartitions[i]] = true;
+        }
+        int total = 0;
+        for (int p = 0; p < partitions; p++) {
+            // i codici ricodificati rispettano l'ordine dei valori: le tuple riprese restano ordinate
+            if (added[p]) {
+                parts.get(p).sortDistinct();
+            }
+            total += parts.get(p).size();
+        }
+        if (total == 0) {
+            throw new EmptySetException();
+        }
+
+        int[] sources = new int[total];
+        ColumnBuilder merged = ColumnBuilder.merge(schema, parts, sources);
+        Data patched = new Data(schema, merged.size(), new HeapColumnStore(merged.getCodes(), merged.getValues()));
+        return new PartitionedData(names, numeric, partitions, patched, Arrays.copyOf(sources, merged.size()));
+    }
+}
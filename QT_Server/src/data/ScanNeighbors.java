@@ -0,0 +1,76 @@
+package data;
+
+import java.util.Arrays;
+
+/**
+ * Ricerca dei vicini per scansione completa: le distanze dall'origine vengono calcolate in blocco
+ * verso tutti gli esempi non ancora rimossi ({@link Distances#within}).
+ */
+final class ScanNeighbors implements Neighbors {
+    /** Distanze tra gli esempi del dataset */
+    private final Distances distances;
+    /** Raggio della ricerca */
+    private final double radius;
+    /** Esempi dell'insieme iniziale, in ordine crescente */
+    private final int[] rows;
+    /** Per ogni esempio dell'insieme iniziale, "true" se e' stato rimosso */
+    private final boolean[] removed;
+    /** Esempi non rimossi, in ordine crescente (da compattare se "dirty") */
+    private final int[] live;
+    /** Numero di esempi non rimossi */
+    private int liveCount;
+    /** Indica se "live" contiene esempi rimossi */
+    private boolean dirty;
+    /** Vettore di appoggio per le distanze */
+    private final double[] scratch;
+    /** Numero di distanze calcolate */
+    private long computed;
+
+    /**
+     * Costruttore della ricerca per scansione.
+     *
+     * @param distances distanze tra gli esempi del dataset.
+     * @param rows indici degli esempi, in ordine crescente.
+     * @param count numero di indici da considerare.
+     * @param radius raggio della ricerca.
+     */
+    ScanNeighbors(Distances distances, int[] rows, int count, double radius) {
+        this.distances = distances;
+        this.radius = radius;
+        this.rows = Arrays.copyOf(rows, count);
+        this.removed = new boolean[count];
+        this.live = Arrays.copyOf(rows, count);
+        this.liveCount = count;
+        this.scratch = new double[count];
+    }
+
+    @Override
+    public int within(int origin, int[] out) {
+        if (dirty) {
+            int kept = 0;
+            for (int k = 0; k < liveCount; k++) {
+                if (!removed[Arrays.binarySearch(rows, live[k])]) {
+                    live[kept++] = live[k];
+                }
+            }
+            liveCount = kept;
+            dirty = false;
+        }
+        computed += liveCount;
+        return distances.within(origin, live, liveCount, radius, scratch, out);
+    }
+
+    @Override
+    public void remove(int row) {
+        int pos = Arrays.binarySearch(rows, row);
+        if (pos >= 0 && !removed[pos]) {
+            removed[pos] = true;
+            dirty = true;
+        }
+    }
+
+    @Override
+    public long getDistances() {
+        return computed;
+    }
+}
@@ -0,0 +1,515 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ricerca dei vicini indicizzata per firma discreta, per la misura di {@link MixedDistance}.
+ *
+ * Ogni valore discreto diverso costa il peso del suo attributo, per cui entro il raggio possono
+ * differire al piu' floor(raggio / peso minimo) attributi discreti: con raggio minore di 1 e pesi
+ * unitari solo esempi con gli stessi valori discreti possono essere vicini. Gli esempi vengono
+ * raggruppati per combinazione di valori discreti (firma); i gruppi le cui firme differiscono da
+ * quella dell'origine per al piu' b attributi si trovano dividendo gli attributi in b+1 blocchi,
+ * con una tabella hash per blocco (multi-index hashing): almeno un blocco deve coincidere.
+ * Dentro ogni gruppo gli esempi sono ordinati per il valore scalato di un attributo continuo e
+ * vengono letti solo quelli il cui contributo lascia la distanza entro il raggio.
+ *
+ * I gruppi e le finestre sono solo un filtro: le distanze degli esempi rimasti vengono calcolate
+ * con la misura esatta, per cui il risultato coincide con quello della scansione completa.
+ * Se le finestre coprono piu' della meta' degli esempi presenti, o i candidati sono piu' di un quarto,
+ * si usa direttamente la scansione.
+ */
+final class SignatureNeighbors implements Neighbors {
+    /** Margine relativo sul raggio, che copre gli arrotondamenti nella somma dei contributi. */
+    private static final double SLACK = 1e-9;
+    /** Numero minimo di posizioni di un gruppo perche' venga compattato. */
+    private static final int COMPACT_MIN = 16;
+
+    /** Distanze esatte tra gli esempi del dataset */
+    private final Distances exact;
+    /** Colonne del dataset */
+    private final ColumnStore columns;
+    /** Raggio della ricerca */
+    private final double radius;
+    /** Raggio con il margine per gli arrotondamenti */
+    private final double bound;
+    /** Attributi discreti con peso positivo, nell'ordine dello schema */
+    private final int[] discrete;
+    /** Peso di ogni attributo discreto della firma */
+    private final double[] discreteWeight;
+    /** Attributo continuo su cui ordinare i gruppi (-1 se nessuno) */
+    private final int sweep;
+    /** Valore minimo dell'attributo di ordinamento */
+    private final double sweepMin;
+    /** Differenza tra valore massimo e minimo dell'attributo di ordinamento */
+    private final double sweepRange;
+    /** Peso dell'attributo di ordinamento */
+    private final double sweepWeight;
+
+    /** Esempi dell'insieme iniziale, in ordine crescente (la posizione identifica l'esempio) */
+    private final int[] rows;
+    /** Per ogni posizione, "true" se l'esempio e' stato rimosso */
+    private final boolean[] removed;
+    /** Numero di esempi non rimossi */
+    private int liveCount;
+    /** Per ogni posizione, gruppo dell'esempio */
+    private final int[] groupOf;
+
+    /** Codici delle firme dei gruppi, "discrete.length" per gruppo */
+    private final int[] signatures;
+    /** Per ogni gruppo, posizioni degli esempi ordinate per valore scalato */
+    private final int[][] members;
+    /** Per ogni gruppo, valori scalati degli esempi nell'ordine di "members" */
+    private final double[][] keys;
+    /** Per ogni gruppo, numero di posizioni valide in "members" */
+    private final int[] entries;
+    /** Per ogni gruppo, numero di esempi non rimossi */
+    private final int[] live;
+
+    /** Inizio di ogni blocco di attributi della firma, piu' la fine dell'ultimo (null se non indicizzata) */
+    private final int[] blocks;
+    /** Per ogni blocco, gruppi per chiave dei codici del blocco */
+    private final List<Map<Long, int[]>> index;
+    /** Per ogni gruppo, ultima ricerca che lo ha gia' esaminato */
+    private final int[] stamp;
+    /** Numero della ricerca corrente */
+    private int epoch;
+
+    /** Gruppo di ogni finestra della ricerca corrente */
+    private final int[] windowGroup;
+    /** Prima posizione di ogni finestra nel suo gruppo (inclusa) */
+    private final int[] windowFrom;
+    /** Ultima posizione di ogni finestra nel suo gruppo (esclusa) */
+    private final int[] windowTo;
+    /** Posizioni dei candidati della ricerca corrente */
+    private final int[] candidates;
+    /** Esempi dei candidati della ricerca corrente */
+    private final int[] candidateRows;
+    /** Vettore di appoggio per le distanze */
+    private final double[] scratch;
+    /** Scansione completa, usata quando i candidati sono troppi */
+    private final ScanNeighbors scan;
+    /** Numero di distanze calcolate sui soli candidati */
+    private long computed;
+
+    /**
+     * Crea la ricerca dei vicini piu' adatta alla misura: indicizzata per firma se ci sono attributi
+     * discreti o un attributo continuo su cui ordinare, altrimenti per scansione completa.
+     *
+     * @param exact distanze esatte tra gli esempi del dataset.
+     * @param columns colonne del dataset.
+     * @param continuous per ogni attributo, "true" se continuo.
+     * @param min per ogni attributo continuo, valore minimo.
+     * @param range per ogni attributo continuo, differenza tra valore massimo e minimo.
+     * @param weight per ogni attributo, peso.
+     * @param rows indici degli esempi, in ordine crescente.
+     * @param count numero di indici da considerare.
+     * @param radius raggio della ricerca.
+     * @return ricerca dei vicini.
+     */
+    static Neighbors create(Distances exact, ColumnStore columns, boolean[] continuous, double[] min,
+            double[] range, double[] weight, int[] rows, int count, double radius) {
+        if (!(radius >= 0) || Double.isInfinite(radius)) {
+            return new ScanNeighbors(exact, rows, count, radius);
+        }
+        int discrete = 0;
+        for (int a = 0; a < weight.length; a++) {
+            if (!continuous[a] && weight[a] > 0) {
+                discrete++;
+            }
+        }
+        int sweep = sweepAttribute(columns, continuous, range, weight, rows, count);
+        if (discrete == 0 && sweep < 0) {
+            return new ScanNeighbors(exact, rows, count, radius);
+        }
+        return new SignatureNeighbors(exact, columns, continuous, min, range, weight, rows, count, radius, sweep);
+    }
+
+    /**
+     * Sceglie l'attributo continuo su cui ordinare i gruppi: quello con il peso maggiore,
+     * tra quelli con intervallo finito e non nullo e senza valori mancanti.
+     *
+     * @param columns colonne del dataset.
+     * @param continuous per ogni attributo, "true" se continuo.
+     * @param range per ogni attributo continuo, differenza tra valore massimo e minimo.
+     * @param weight per ogni attributo, peso.
+     * @param rows indici degli esempi.
+     * @param count numero di indici da considerare.
+     * @return indice dell'attributo, -1 se nessuno e' adatto.
+     */
+    private static int sweepAttribute(ColumnStore columns, boolean[] continuous, double[] range, double[] weight,
+            int[] rows, int count) {
+        int best = -1;
+        for (int a = 0; a < weight.length; a++) {
+            if (!continuous[a] || !(weight[a] > 0) || !(range[a] > 0) || Double.isInfinite(range[a])
+                    || (best >= 0 && weight[a] <= weight[best])) {
+                continue;
+            }
+            boolean finite = true;
+            for (int k = 0; k < count && finite; k++) {
+                double value = columns.getValue(a, rows[k]);
+                finite = !Double.isNaN(value) && !Double.isInfinite(value);
+            }
+            if (finite) {
+                best = a;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Costruisce l'indice degli esempi.
+     *
+     * @param exact distanze esatte tra gli esempi del dataset.
+     * @param columns colonne del dataset.
+     * @param continuous per ogni attributo, "true" se continuo.
+     * @param min per ogni attributo continuo, valore minimo.
+     * @param range per ogni attributo continuo, differenza tra valore massimo e minimo.
+     * @param weight per ogni attributo, peso.
+     * @param rows indici degli esempi, in ordine crescente.
+     * @param count numero di indici da considerare.
+     * @param radius raggio della ricerca.
+     * @param sweep attributo continuo su cui ordinare i gruppi (-1 se nessuno).
+     */
+    private SignatureNeighbors(Distances exact, ColumnStore columns, boolean[] continuous, double[] min,
+            double[] range, double[] weight, int[] rows, int count, double radius, int sweep) {
+        this.exact = exact;
+        this.columns = columns;
+        this.radius = radius;
+        this.bound = radius + SLACK * (1 + radius);
+        this.rows = Arrays.copyOf(rows, count);
+        this.removed = new boolean[count];
+        this.liveCount = count;
+        this.groupOf = new int[count];
+        this.candidates = new int[count];
+        this.candidateRows = new int[count];
+        this.scratch = new double[count];
+        this.scan = new ScanNeighbors(exact, rows, count, radius);
+
+        int attributes = 0;
+        for (int a = 0; a < weight.length; a++) {
+            if (!continuous[a] && weight[a] > 0) {
+                attributes++;
+            }
+        }
+        discrete = new int[attributes];
+        discreteWeight = new double[attributes];
+        double minWeight = Double.POSITIVE_INFINITY;
+        for (int a = 0, j = 0; a < weight.length; a++) {
+            if (!continuous[a] && weight[a] > 0) {
+                discrete[j] = a;
+                discreteWeight[j++] = weight[a];
+                minWeight = Math.min(minWeight, weight[a]);
+            }
+        }
+        this.sweep = sweep;
+        this.sweepMin = sweep < 0 ? 0 : min[sweep];
+        this.sweepRange = sweep < 0 ? 1 : range[sweep];
+        this.sweepWeight = sweep < 0 ? 1 : weight[sweep];
+
+        // gruppi per firma, nell'ordine di prima apparizione
+        Map<Codes, Integer> groups = new HashMap<>();
+        int[] codes = new int[16 * attributes];
+        int[] sizes = new int[16];
+        int groupCount = 0;
+        for (int p = 0; p < count; p++) {
+            int[] signature = new int[attributes];
+            for (int j = 0; j < attributes; j++) {
+                signature[j] = columns.getCode(discrete[j], rows[p]);
+            }
+            Integer group = groups.get(new Codes(signature));
+            if (group == null) {
+                group = groupCount++;
+                groups.put(new Codes(signature), group);
+                if (groupCount > sizes.length) {
+                    sizes = Arrays.copyOf(sizes, sizes.length * 2);
+                    codes = Arrays.copyOf(codes, sizes.length * attributes);
+                }
+                System.arraycopy(signature, 0, codes, group * attributes, attributes);
+            }
+            groupOf[p] = group;
+            sizes[group]++;
+        }
+        signatures = Arrays.copyOf(codes, groupCount * attributes);
+        members = new int[groupCount][];
+        keys = new double[groupCount][];
+        entries = new int[groupCount];
+        live = new int[groupCount];
+        for (int g = 0; g < groupCount; g++) {
+            members[g] = new int[sizes[g]];
+            keys[g] = new double[sizes[g]];
+        }
+
+        // le posizioni vengono distribuite nei gruppi in ordine di valore scalato
+        Integer[] order = new Integer[count];
+        double[] scaled = new double[count];
+        for (int p = 0; p < count; p++) {
+            order[p] = p;
+            scaled[p] = sweep < 0 ? 0 : scaledValue(rows[p]);
+        }
+        if (sweep >= 0) {
+            Arrays.sort(order, (x, y) -> Double.compare(scaled[x], scaled[y]));
+        }
+        for (int p : order) {
+            int g = groupOf[p];
+            members[g][entries[g]] = p;
+            keys[g][entries[g]++] = scaled[p];
+            live[g]++;
+        }
+
+        // con al piu' b attributi diversi, su b+1 blocchi almeno uno coincide
+        int budget = (int) Math.min(attributes, Math.floor(bound / minWeight));
+        stamp = new int[groupCount];
+        windowGroup = new int[groupCount];
+        windowFrom = new int[groupCount];
+        windowTo = new int[groupCount];
+        if (attributes > 0 && budget < attributes) {
+            int parts = budget + 1;
+            blocks = new int[parts + 1];
+            index = new ArrayList<>(parts);
+            for (int b = 0; b < parts; b++) {
+                blocks[b + 1] = attributes * (b + 1) / parts;
+                Map<Long, Integer> counts = new HashMap<>();
+                for (int g = 0; g < groupCount; g++) {
+                    counts.merge(blockKey(g, b), 1, Integer::sum);
+                }
+                Map<Long, int[]> table = new HashMap<>();
+                for (int g = groupCount - 1; g >= 0; g--) {
+                    long key = blockKey(g, b);
+                    int[] list = table.computeIfAbsent(key, k -> new int[counts.get(k)]);
+                    list[counts.merge(key, -1, Integer::sum)] = g;
+                }
+                index.add(table);
+            }
+        } else {
+            blocks = null;
+            index = null;
+        }
+    }
+
+    /**
+     * Calcola il valore scalato dell'attributo di ordinamento di un esempio, come nella misura esatta.
+     *
+     * @param row indice dell'esempio.
+     * @return valore scalato.
+     */
+    private double scaledValue(int row) {
+        return (columns.getValue(sweep, row) - sweepMin) / sweepRange;
+    }
+
+    /**
+     * Calcola la chiave dei codici di un blocco della firma di un gruppo. Chiavi uguali per codici
+     * diversi aggiungono solo candidati, che vengono poi scartati dal confronto delle firme.
+     *
+     * @param group gruppo.
+     * @param block blocco di attributi.
+     * @return chiave del blocco.
+     */
+    private long blockKey(int group, int block) {
+        long key = 17;
+        int base = group * discrete.length;
+        for (int j = blocks[block]; j < blocks[block + 1]; j++) {
+            key = key * 1_000_003L + signatures[base + j];
+        }
+        return key;
+    }
+
+    @Override
+    public int within(int origin, int[] out) {
+        int pos = Arrays.binarySearch(rows, origin);
+        if (pos < 0) {
+            return scan.within(origin, out);
+        }
+        int g0 = groupOf[pos];
+        double s0 = sweep < 0 ? 0 : scaledValue(origin);
+        if (++epoch == 0) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+
+        // prima le finestre dei gruppi, poi gli esempi: se le finestre coprono piu' della meta'
+        // degli esempi presenti la scansione costa meno e non serve leggerle
+        int windows = 0;
+        if (index != null) {
+            for (int b = 0; b < index.size(); b++) {
+                int[] list = index.get(b).get(blockKey(g0, b));
+                for (int g : list) {
+                    if (stamp[g] != epoch) {
+                        stamp[g] = epoch;
+                        windows = window(g, g0, s0, windows);
+                    }
+                }
+            }
+        } else {
+            for (int g = 0; g < members.length; g++) {
+                windows = window(g, g0, s0, windows);
+            }
+        }
+        long span = 0;
+        for (int w = 0; w < windows; w++) {
+            span += windowTo[w] - windowFrom[w];
+        }
+        if (span * 2 > liveCount) {
+            return scan.within(origin, out);
+        }
+
+        int m = 0;
+        int limit = liveCount / 4;
+        for (int w = 0; w < windows; w++) {
+            int[] group = members[windowGroup[w]];
+            for (int i = windowFrom[w]; i < windowTo[w]; i++) {
+                int p = group[i];
+                if (!removed[p]) {
+                    if (m == limit) {
+                        return scan.within(origin, out);
+                    }
+                    candidates[m++] = p;
+                }
+            }
+        }
+
+        // in ordine di posizione, cioe' di indice come nella scansione
+        Arrays.sort(candidates, 0, m);
+        for (int k = 0; k < m; k++) {
+            candidateRows[k] = rows[candidates[k]];
+        }
+        computed += m;
+        return exact.within(origin, candidateRows, m, radius, scratch, out);
+    }
+
+    /**
+     * Aggiunge alle finestre della ricerca corrente quella di un gruppo, se la sua firma lascia
+     * la distanza entro il raggio: le posizioni del gruppo il cui valore scalato dista dall'origine
+     * al piu' quanto resta del raggio (tutte, senza attributo di ordinamento).
+     *
+     * @param g gruppo da esaminare.
+     * @param g0 gruppo dell'origine.
+     * @param s0 valore scalato dell'origine.
+     * @param windows numero di finestre gia' raccolte.
+     * @return numero di finestre raccolte.
+     */
+    private int window(int g, int g0, double s0, int windows) {
+        if (live[g] == 0) {
+            return windows;
+        }
+        // somma nell'ordine degli attributi, come nella misura esatta: non supera la distanza
+        double cost = 0;
+        int base = g * discrete.length;
+        int base0 = g0 * discrete.length;
+        for (int j = 0; j < discrete.length && cost <= bound; j++) {
+            if (signatures[base + j] != signatures[base0 + j]) {
+                cost += discreteWeight[j];
+            }
+        }
+        if (cost > bound) {
+            return windows;
+        }
+        if (live[g] * 2 <= entries[g] && entries[g] >= COMPACT_MIN) {
+            compact(g);
+        }
+
+        int from = 0;
+        int to = entries[g];
+        if (sweep >= 0) {
+            double half = (bound - cost) / sweepWeight + SLACK;
+            from = lowerBound(keys[g], to, s0 - half);
+            to = lowerBound(keys[g], to, Math.nextUp(s0 + half));
+        }
+        if (from < to) {
+            windowGroup[windows] = g;
+            windowFrom[windows] = from;
+            windowTo[windows++] = to;
+        }
+        return windows;
+    }
+
+    /**
+     * Rimuove da un gruppo le posizioni degli esempi rimossi, mantenendo l'ordine.
+     *
+     * @param g gruppo da compattare.
+     */
+    private void compact(int g) {
+        int[] group = members[g];
+        double[] key = keys[g];
+        int kept = 0;
+        for (int i = 0; i < entries[g]; i++) {
+            if (!removed[group[i]]) {
+                group[kept] = group[i];
+                key[kept++] = key[i];
+            }
+        }
+        entries[g] = kept;
+    }
+
+    /**
+     * Cerca la prima posizione con valore non minore di quello indicato.
+     *
+     * @param values valori ordinati.
+     * @param size numero di valori validi.
+     * @param value valore cercato.
+     * @return prima posizione con valore maggiore o uguale, "size" se nessuna.
+     */
+    private static int lowerBound(double[] values, int size, double value) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @Override
+    public void remove(int row) {
+        int pos = Arrays.binarySearch(rows, row);
+        if (pos >= 0 && !removed[pos]) {
+            removed[pos] = true;
+            liveCount--;
+            live[groupOf[pos]]--;
+            scan.remove(row);
+        }
+    }
+
+    @Override
+    public long getDistances() {
+        return computed + scan.getDistances();
+    }
+
+    /**
+     * Codici della firma di un esempio, usati come chiave dei gruppi.
+     */
+    private static final class Codes {
+        /** Codici dei valori discreti */
+        private final int[] codes;
+        /** Hash dei codici */
+        private final int hash;
+
+        /**
+         * Costruttore della chiave.
+         *
+         * @param codes codici dei valori discreti.
+         */
+        Codes(int[] codes) {
+            this.codes = codes;
+            this.hash = Arrays.hashCode(codes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Codes && Arrays.equals(codes, ((Codes) o).codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -56,6 +56,24 @@ public class Tuple implements Serializable {
         tuple[i] = c;
     }
 
+    /**
+     * Restituisce una rappresentazione testuale della tupla, con i valori degli item separati da virgola.
+     * E' usata anche per ordinare in modo deterministico i cluster di pari cardinalita'.
+     *
+     * @return valori degli item in formato stringa.
+     */
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < tuple.length; i++) {
+            if (i > 0) {
+                str.append(",");
+            }
+            str.append(tuple[i]);
+        }
+        return str.toString();
+    }
+
     /**
      * Calcola la distanza tra la tupla considerata e un'altra tupla.
      * La distanza totale e' la somma delle distanze tra i singoli
@@ -0,0 +1,163 @@
+package data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.TreeSet;
+
+/**
+ * Classe che codifica in formato binario compatto lo schema degli attributi e le tuple che vi si riferiscono.
+ *
+ * Lo schema viene scritto una sola volta (tipo, indice e nome di ogni attributo, dizionario ordinato
+ * dei valori discreti, minimo e massimo dei valori continui); ogni tupla viene poi scritta come
+ * sequenza di codici di dizionario in formato {@link VarInt} per gli item discreti
+ * e di double per quelli continui.
+ */
+public final class TupleCodec {
+    /** Tipo di un attributo discreto nello schema. */
+    private static final byte DISCRETE = 0;
+    /** Tipo di un attributo continuo nello schema. */
+    private static final byte CONTINUOUS = 1;
+
+    /** Attributi dello schema. */
+    private final Attribute[] schema;
+
+    /**
+     * Costruttore parametrizzato della classe TupleCodec.
+     * Ricava lo schema dagli attributi degli item di una tupla.
+     *
+     * @param prototype tupla da cui ricavare lo schema.
+     */
+    public TupleCodec(Tuple prototype) {
+        schema = new Attribute[prototype.getLength()];
+        for (int i = 0; i < schema.length; i++) {
+            schema[i] = prototype.get(i).getAttribute();
+        }
+    }
+
+    /**
+     * Costruttore privato della classe TupleCodec.
+     *
+     * @param schema attributi dello schema.
+     */
+    private TupleCodec(Attribute[] schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * Restituisce il numero di attributi dello schema.
+     *
+     * @return numero di attributi.
+     */
+    public int getNumberOfAttributes() {
+        return schema.length;
+    }
+
+    /**
+     * Scrive lo schema degli attributi.
+     *
+     * @param out flusso di destinazione.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    public void writeSchema(DataOutput out) throws IOException {
+        VarInt.write(out, schema.length);
+        for (Attribute attribute : schema) {
+            if (attribute instanceof DiscreteAttribute) {
+                DiscreteAttribute discrete = (DiscreteAttribute) attribute;
+                out.writeByte(DISCRETE);
+                VarInt.write(out, attribute.getIndex());
+                out.writeUTF(attribute.getName());
+                VarInt.write(out, discrete.getNumberOfDistinctValues());
+                for (String value : discrete) {
+                    out.writeUTF(value);
+                }
+            } else {
+                ContinuousAttribute continuous = (ContinuousAttribute) attribute;
+                out.writeByte(CONTINUOUS);
+                VarInt.write(out, attribute.getIndex());
+                out.writeUTF(attribute.getName());
+                out.writeDouble(continuous.getMin());
+                out.writeDouble(continuous.getMax());
+            }
+        }
+    }
+
+    /**
+     * Legge uno schema scritto con {@link #writeSchema(DataOutput)}.
+     *
+     * @param in flusso sorgente.
+     * @return codec per lo schema letto.
+     * @throws IOException se si verifica un errore di lettura o lo schema non e' valido.
+     */
+    public static TupleCodec readSchema(DataInput in) throws IOException {
+        Attribute[] schema = new Attribute[VarInt.read(in)];
+        for (int i = 0; i < schema.length; i++) {
+            byte type = in.readByte();
+            int index = VarInt.read(in);
+            String name = in.readUTF();
+            if (type == DISCRETE) {
+                int count = VarInt.read(in);
+                TreeSet<String> values = new TreeSet<>();
+                for (int v = 0; v < count; v++) {
+                    values.add(in.readUTF());
+                }
+                schema[i] = new DiscreteAttribute(name, index, values);
+            } else if (type == CONTINUOUS) {
+                schema[i] = new ContinuousAttribute(name, index, in.readDouble(), in.readDouble());
+            } else {
+                throw new IOException("Errore: tipo di attributo " + type + " non valido!");
+            }
+        }
+        return new TupleCodec(schema);
+    }
+
+    /**
+     * Scrive una tupla dello schema.
+     *
+     * @param tuple tupla da scrivere.
+     * @param out flusso di destinazione.
+     * @throws IOException se si verifica un errore di scrittura o la tupla non appartiene allo schema.
+     */
+    public void writeTuple(Tuple tuple, DataOutput out) throws IOException {
+        try {
+            for (int i = 0; i < schema.length; i++) {
+                Object value = tuple.get(i).getValue();
+                if (schema[i] instanceof DiscreteAttribute) {
+                    int code = ((DiscreteAttribute) schema[i]).getCode(value.toString());
+                    if (code < 0) {
+                        throw new IOException("Errore: valore " + value + " non previsto per l'attributo " + schema[i] + "!");
+                    }
+                    VarInt.write(out, code);
+                } else {
+                    out.writeDouble(((Number) value).doubleValue());
+                }
+            }
+        } catch (EmptyDatasetException ex) {
+            throw new IOException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Legge una tupla scritta con {@link #writeTuple(Tuple, DataOutput)}.
+     *
+     * @param in flusso sorgente.
+     * @return tupla letta.
+     * @throws IOException se si verifica un errore di lettura.
+     */
+    public Tuple readTuple(DataInput in) throws IOException {
+        Tuple tuple = new Tuple(schema.length);
+        for (int i = 0; i < schema.length; i++) {
+            if (schema[i] instanceof DiscreteAttribute) {
+                DiscreteAttribute discrete = (DiscreteAttribute) schema[i];
+                int code = VarInt.read(in);
+                if (code >= discrete.getNumberOfDistinctValues()) {
+                    throw new IOException("Errore: codice " + code + " non valido per l'attributo " + discrete + "!");
+                }
+                tuple.add(new DiscreteItem(discrete, discrete.getValue(code)), i);
+            } else {
+                tuple.add(new ContinuousItem(schema[i], in.readDouble()), i);
+            }
+        }
+        return tuple;
+    }
+}
@@ -0,0 +1,69 @@
+package data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Classe di utilita' per la codifica di interi non negativi a lunghezza variabile (varint):
+ * ogni byte contiene 7 bit del valore e il bit piu' significativo indica
+ * se seguono altri byte. I valori piccoli, come codici di dizionario e differenze
+ * tra identificativi ordinati, occupano cosi' uno o due byte.
+ */
+public final class VarInt {
+
+    /**
+     * Costruttore privato: la classe offre solo metodi statici.
+     */
+    private VarInt() {
+    }
+
+    /**
+     * Scrive un intero non negativo in formato varint.
+     *
+     * @param out flusso di destinazione.
+     * @param value valore da scrivere.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    public static void write(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Legge un intero scritto in formato varint.
+     *
+     * @param in flusso sorgente.
+     * @return valore letto.
+     * @throws IOException se si verifica un errore di lettura o il valore non e' valido.
+     */
+    public static int read(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Errore: intero in formato varint non valido!");
+    }
+
+    /**
+     * Restituisce il numero di byte occupati da un intero in formato varint.
+     *
+     * @param value valore da codificare.
+     * @return numero di byte.
+     */
+    public static int size(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,107 @@
+package database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Classe che gestisce un insieme limitato di connessioni {@link DbAccess} riutilizzabili.
+ *
+ * Le connessioni vengono aperte in modo pigro fino alla dimensione massima del pool;
+ * oltre tale limite chi richiede una connessione resta in attesa che un'altra
+ * venga restituita. In questo modo piu' richieste (o piu' partizioni della stessa
+ * tabella) possono interrogare il database in parallelo senza superare il numero
+ * di connessioni consentito dal DBMS.
+ */
+public class ConnectionPool {
+    /** Numero massimo di connessioni aperte contemporaneamente. */
+    private final int size;
+    /** Connessioni aperte e attualmente libere. */
+    private final LinkedBlockingQueue<DbAccess> idle = new LinkedBlockingQueue<>();
+    /** Tutte le connessioni aperte dal pool. */
+    private final List<DbAccess> opened = new ArrayList<>();
+    /** Indica se il pool e' stato chiuso. */
+    private boolean closed;
+
+    /**
+     * Costruttore parametrizzato della classe ConnectionPool.
+     *
+     * @param size numero massimo di connessioni che il pool puo' aprire.
+     */
+    public ConnectionPool(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Errore: il pool deve contenere almeno una connessione!");
+        }
+        this.size = size;
+    }
+
+    /**
+     * Restituisce il numero massimo di connessioni del pool.
+     *
+     * @return dimensione del pool.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Ottiene una connessione dal pool, aprendone una nuova se il limite non e' stato raggiunto
+     * oppure attendendo che un'altra venga restituita.
+     *
+     * @return connessione pronta all'uso.
+     * @throws DatabaseConnectionException se non e' possibile stabilire la connessione
+     * o se l'attesa viene interrotta.
+     * @throws SQLException se si verifica un errore SQL durante la connessione.
+     */
+    public DbAccess acquire() throws DatabaseConnectionException, SQLException {
+        DbAccess db = idle.poll();
+        if (db == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new DatabaseConnectionException();
+                }
+                if (opened.size() < size) {
+                    db = new DbAccess();
+                    db.initConnection();
+                    opened.add(db);
+                    return db;
+                }
+            }
+            try {
+                db = idle.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new DatabaseConnectionException();
+            }
+        }
+        if (!db.getConnection().isValid(2)) {
+            db.closeConnection();
+            db.initConnection();
+        }
+        return db;
+    }
+
+    /**
+     * Restituisce al pool una connessione ottenuta con {@link #acquire()}.
+     *
+     * @param db connessione da restituire.
+     */
+    public void release(DbAccess db) {
+        idle.offer(db);
+    }
+
+    /**
+     * Chiude tutte le connessioni aperte dal pool.
+     *
+     * @throws SQLException se si verifica un errore durante la chiusura di una connessione.
+     */
+    public synchronized void close() throws SQLException {
+        closed = true;
+        for (DbAccess db : opened) {
+            db.closeConnection();
+        }
+        opened.clear();
+        idle.clear();
+    }
+}
@@ -5,10 +5,11 @@ import java.sql.SQLException;
 import java.sql.Statement;
 
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Consumer;
 
 
 
@@ -47,42 +48,85 @@ public class TableData {
      * 
      */
     public List<Example> getDistinctTransazioni(String table) throws SQLException, EmptySetException{
-        LinkedList<Example> transSet = new LinkedList<Example>();
+        List<Example> transSet = getDistinctTransazioni(table, 0, 1);
+        if(transSet.isEmpty()) throw new EmptySetException();
+
+        return transSet;
+
+    }
+
+    /**
+     * Restituisce le tuple distinte di una tabella che ricadono nella partizione specificata.
+     *
+     * @param table nome della tabella.
+     * @param partition indice della partizione richiesta (da 0 a partitions-1).
+     * @param partitions numero totale di partizioni.
+     * @return lista di {@link Example} contenente le tuple della partizione (eventualmente vuota).
+     * @throws SQLException se si verifica un errore SQL.
+     * @see #scanDistinctTransazioni(String, int, int, Consumer)
+     */
+    public List<Example> getDistinctTransazioni(String table, int partition, int partitions) throws SQLException{
+        List<Example> transSet = new ArrayList<Example>();
+        scanDistinctTransazioni(table, partition, partitions, transSet::add);
+        return transSet;
+    }
+
+    /**
+     * Legge le tuple distinte di una tabella che ricadono nella partizione specificata,
+     * passandole una alla volta a "consumer" senza mantenerle in memoria.
+     *
+     * La tabella viene suddivisa in "partitions" partizioni disgiunte tramite il predicato
+     * MOD(CRC32(CONCAT_WS('|', colonne...)), partitions) = partition.
+     * L'hash e' calcolato sull'intera tupla, per cui tuple identiche ricadono sempre
+     * nella stessa partizione e l'unione delle partizioni coincide con l'insieme
+     * delle tuple distinte dell'intera tabella.
+     * Con una sola partizione non viene aggiunto alcun predicato.
+     *
+     * @param table nome della tabella.
+     * @param partition indice della partizione richiesta (da 0 a partitions-1).
+     * @param partitions numero totale di partizioni.
+     * @param consumer destinatario delle tuple lette.
+     * @return numero di tuple lette.
+     * @throws SQLException se si verifica un errore SQL.
+     */
+    public int scanDistinctTransazioni(String table, int partition, int partitions, Consumer<Example> consumer) throws SQLException{
         Statement statement;
         TableSchema tSchema=new TableSchema(db,table);
 
+        if(tSchema.getNumberOfAttributes()==0)
+            throw new SQLException();
 
-        String query="select distinct ";
-
+        String columns="";
         for(int i=0;i<tSchema.getNumberOfAttributes();i++){
             Column c=tSchema.getColumn(i);
             if(i>0)
-                query+=",";
-            query += c.getColumnName();
+                columns+=",";
+            columns += c.getColumnName();
         }
-        if(tSchema.getNumberOfAttributes()==0)
-            throw new SQLException();
-        query += (" FROM "+table);
+
+        String query="select distinct " + columns + " FROM " + table;
+        if(partitions>1)
+            query += " WHERE MOD(CRC32(CONCAT_WS('|'," + columns + "))," + partitions + ")=" + partition;
 
         statement = db.getConnection().createStatement();
+        // Con MySQL Connector/J un fetch size pari a Integer.MIN_VALUE attiva la lettura in streaming
+        statement.setFetchSize(Integer.MIN_VALUE);
         ResultSet rs = statement.executeQuery(query);
-        boolean empty=true;
+        int count=0;
         while (rs.next()) {
-            empty=false;
             Example currentTuple=new Example();
             for(int i=0;i<tSchema.getNumberOfAttributes();i++)
                 if(tSchema.getColumn(i).isNumber())
                     currentTuple.add(rs.getDouble(i+1));
                 else
                     currentTuple.add(rs.getString(i+1));
-            transSet.add(currentTuple);
+            consumer.accept(currentTuple);
+            count++;
         }
         rs.close();
         statement.close();
-        if(empty) throw new EmptySetException();
-
 
-        return transSet;
+        return count;
 
     }
 
@@ -0,0 +1,206 @@
+package database;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.ObjIntConsumer;
+
+import database.TableSchema.Column;
+
+/**
+ * Classe che interroga una tabella per scoprire se e dove e' cambiata, senza trasferirne le righe,
+ * e per leggere solo le righe cambiate.
+ *
+ * Le righe sono divise in partizioni secondo l'hash delle colonne dello schema, con la stessa
+ * espressione usata da {@link TableData#scanDistinctTransazioni}. Per ogni partizione il database
+ * calcola numero di righe e somma di un secondo hash delle righe ({@link #checksums}): confrontando
+ * le somme con quelle di un controllo precedente si individuano le partizioni da rileggere.
+ * Sono disponibili anche sonde piu' economiche su colonne scelte dall'utente, come il numero di righe,
+ * il massimo di una chiave crescente o della data di ultima modifica ({@link #aggregate}).
+ */
+public class TableProbe {
+    /** Connessione al database */
+    private final DbAccess db;
+
+    /**
+     * Costruttore parametrizzato della classe TableProbe.
+     *
+     * @param db connessione al database.
+     */
+    public TableProbe(DbAccess db) {
+        this.db = db;
+    }
+
+    /**
+     * Verifica se la tabella ha la colonna indicata.
+     *
+     * @param table nome della tabella.
+     * @param column nome della colonna.
+     * @return "true" se la colonna esiste.
+     * @throws SQLException se si e' verificato un errore del database.
+     */
+    public boolean hasColumn(String table, String column) throws SQLException {
+        DatabaseMetaData meta = db.getConnection().getMetaData();
+        try (ResultSet rs = meta.getColumns(null, null, table, column)) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * Calcola alcune espressioni aggregate sulla tabella, ad esempio "COUNT(*)" o "MAX(id)".
+     *
+     * @param table nome della tabella.
+     * @param where condizione sulle righe (null per tutte le righe).
+     * @param expressions espressioni aggregate.
+     * @return valori delle espressioni in forma testuale (null per i valori nulli).
+     * @throws SQLException se si e' verificato un errore del database.
+     */
+    public String[] aggregate(String table, String where, String... expressions) throws SQLException {
+        String query = "select " + String.join(",", expressions) + " FROM " + table;
+        if (where != null) {
+            query += " WHERE " + where;
+        }
+        String[] values = new String[expressions.length];
+        try (Statement statement = db.getConnection().createStatement();
+             ResultSet rs = statement.executeQuery(query)) {
+            if (rs.next()) {
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = rs.getString(i + 1);
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Calcola, per ogni partizione, il numero di righe e la somma dell'hash delle righe.
+     *
+     * @param table nome della tabella.
+     * @param partitions numero di partizioni.
+     * @param where condizione sulle righe (null per tutte le righe).
+     * @return per ogni partizione, numero di righe (posizione 0) e somma degli hash (posizione 1).
+     * @throws SQLException se si e' verificato un errore del database.
+     */
+    public long[][] checksums(String table, int partitions, String where) throws SQLException {
+        String columns = columns(table);
+        String query = "select " + partition(columns, partitions) + " AS part, COUNT(*), SUM(CRC32(CONCAT_WS('#',"
+                + columns + "))) FROM " + table;
+        if (where != null) {
+            query += " WHERE " + where;
+        }
+        query += " GROUP BY part";
+        long[][] sums = new long[partitions][2];
+        try (Statement statement = db.getConnection().createStatement();
+             ResultSet rs = statement.executeQuery(query)) {
+            while (rs.next()) {
+                int part = rs.getInt(1);
+                sums[part][0] = rs.getLong(2);
+                sums[part][1] = rs.getLong(3);
+            }
+        }
+        return sums;
+    }
+
+    /**
+     * Legge le tuple distinte della tabella che soddisfano la condizione, insieme alla partizione
+     * di appartenenza di ciascuna.
+     *
+     * @param table nome della tabella.
+     * @param partitions numero di partizioni.
+     * @param where condizione sulle righe (null per tutte le righe).
+     * @param consumer destinatario di ogni tupla e della sua partizione.
+     * @return numero di tuple lette.
+     * @throws SQLException se si e' verificato un errore del database.
+     */
+    public int scan(String table, int partitions, String where, ObjIntConsumer<Example> consumer) throws SQLException {
+        TableSchema schema = new TableSchema(db, table);
+        String columns = columns(schema);
+        String query = "select distinct " + columns + "," + partition(columns, partitions) + " FROM " + table;
+        if (where != null) {
+            query += " WHERE " + where;
+        }
+        int count = 0;
+        try (Statement statement = db.getConnection().createStatement()) {
+            // Con MySQL Connector/J un fetch size pari a Integer.MIN_VALUE attiva la lettura in streaming
+            statement.setFetchSize(Integer.MIN_VALUE);
+            try (ResultSet rs = statement.executeQuery(query)) {
+                int n = schema.getNumberOfAttributes();
+                while (rs.next()) {
+                    Example row = new Example();
+                    for (int i = 0; i < n; i++) {
+                        if (schema.getColumn(i).isNumber()) {
+                            row.add(rs.getDouble(i + 1));
+                        } else {
+                            row.add(rs.getString(i + 1));
+                        }
+                    }
+                    consumer.accept(row, rs.getInt(n + 1));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Restituisce la condizione che seleziona le righe delle partizioni indicate.
+     *
+     * @param table nome della tabella.
+     * @param partitions numero di partizioni.
+     * @param selected partizioni da selezionare.
+     * @return condizione SQL.
+     * @throws SQLException se si e' verificato un errore del database.
+     */
+    public String inPartitions(String table, int partitions, int[] selected) throws SQLException {
+        StringBuilder where = new StringBuilder(partition(columns(table), partitions)).append(" IN (");
+        for (int i = 0; i < selected.length; i++) {
+            if (i > 0) {
+                where.append(',');
+            }
+            where.append(selected[i]);
+        }
+        return where.append(')').toString();
+    }
+
+    /**
+     * Restituisce l'elenco delle colonne dello schema della tabella, separate da virgola.
+     *
+     * @param table nome della tabella.
+     * @return elenco delle colonne.
+     * @throws SQLException se si e' verificato un errore del database.
+     */
+    private String columns(String table) throws SQLException {
+        return columns(new TableSchema(db, table));
+    }
+
+    /**
+     * Restituisce l'elenco delle colonne di uno schema, separate da virgola.
+     *
+     * @param schema schema della tabella.
+     * @return elenco delle colonne.
+     */
+    private static String columns(TableSchema schema) {
+        StringBuilder columns = new StringBuilder();
+        for (int i = 0; i < schema.getNumberOfAttributes(); i++) {
+            Column c = schema.getColumn(i);
+            if (i > 0) {
+                columns.append(',');
+            }
+            columns.append(c.getColumnName());
+        }
+        return columns.toString();
+    }
+
+    /**
+     * Restituisce l'espressione della partizione di una riga, la stessa usata da
+     * {@link TableData#scanDistinctTransazioni}.
+     *
+     * @param columns elenco delle colonne.
+     * @param partitions numero di partizioni.
+     * @return espressione SQL.
+     */
+    private static String partition(String columns, int partitions) {
+        return "MOD(CRC32(CONCAT_WS('|'," + columns + "))," + partitions + ")";
+    }
+}
@@ -0,0 +1,60 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classe che rappresenta un contatore monotono.
+ * Gli incrementi concorrenti non si contendono una singola variabile ({@link LongAdder}),
+ * per cui il contatore puo' essere usato anche nei percorsi piu' frequenti.
+ */
+public final class Counter {
+    /** Nome del contatore */
+    private final String name;
+    /** Valore del contatore */
+    private final LongAdder value = new LongAdder();
+
+    /**
+     * Costruttore parametrizzato della classe Counter.
+     * Il contatore creato direttamente non compare tra le metriche del server:
+     * per registrarlo si usa {@link Metrics#counter(String)}.
+     *
+     * @param name nome del contatore.
+     */
+    public Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Restituisce il nome del contatore.
+     *
+     * @return nome del contatore.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Incrementa il contatore di uno.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Incrementa il contatore della quantita' indicata.
+     *
+     * @param delta incremento.
+     */
+    public void add(long delta) {
+        value.add(delta);
+    }
+
+    /**
+     * Restituisce il valore del contatore.
+     *
+     * @return valore corrente.
+     */
+    public long get() {
+        return value.sum();
+    }
+}
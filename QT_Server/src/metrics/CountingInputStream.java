@@ -0,0 +1,42 @@
+package metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Flusso di input che conta i byte letti in un {@link Counter}.
+ */
+public class CountingInputStream extends FilterInputStream {
+    /** Contatore dei byte letti */
+    private final Counter counter;
+
+    /**
+     * Costruttore parametrizzato della classe CountingInputStream.
+     *
+     * @param in flusso da cui leggere.
+     * @param counter contatore dei byte letti.
+     */
+    public CountingInputStream(InputStream in, Counter counter) {
+        super(in);
+        this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+            counter.increment();
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+            counter.add(n);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,36 @@
+package metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Flusso di output che conta i byte scritti in un {@link Counter}.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+    /** Contatore dei byte scritti */
+    private final Counter counter;
+
+    /**
+     * Costruttore parametrizzato della classe CountingOutputStream.
+     *
+     * @param out flusso su cui scrivere.
+     * @param counter contatore dei byte scritti.
+     */
+    public CountingOutputStream(OutputStream out, Counter counter) {
+        super(out);
+        this.counter = counter;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        counter.increment();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        counter.add(len);
+    }
+}
@@ -0,0 +1,201 @@
+package metrics;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Registro delle metriche del server: contatori, misure di durata delle fasi e valori istantanei.
+ *
+ * Le metriche usate nei percorsi piu' frequenti sono campi statici, per cui aggiornarle costa
+ * un solo incremento senza ricerche per nome. Le metriche sono esposte come attributi
+ * dell'MBean {@link #OBJECT_NAME} e come testo da {@link #report()}.
+ */
+public final class Metrics {
+    /** Nome JMX dell'MBean delle metriche. */
+    public static final String OBJECT_NAME = "qt.server:type=Metrics";
+
+    /** Contatori registrati, in ordine di registrazione */
+    private static final CopyOnWriteArrayList<Counter> COUNTERS = new CopyOnWriteArrayList<>();
+    /** Fasi registrate, in ordine di registrazione */
+    private static final CopyOnWriteArrayList<Timer> TIMERS = new CopyOnWriteArrayList<>();
+    /** Valori istantanei registrati, per nome */
+    private static final Map<String, LongSupplier> GAUGES = new ConcurrentHashMap<>();
+
+    /** Durata del caricamento di un dataset dal database o da file. */
+    public static final Timer LOAD_TIME = timer("load.time");
+    /** Tuple caricate dal database o da file. */
+    public static final Counter LOAD_ROWS = counter("load.rows");
+    /** Durata di un clustering ({@code QTMiner.compute}). */
+    public static final Timer COMPUTE_TIME = timer("compute.time");
+    /** Iterazioni del clustering (cluster trovati). */
+    public static final Counter COMPUTE_ITERATIONS = counter("compute.iterations");
+    /** Cluster candidati costruiti. */
+    public static final Counter COMPUTE_CANDIDATES = counter("compute.candidates");
+    /** Distanze tra tuple calcolate. */
+    public static final Counter COMPUTE_DISTANCES = counter("compute.distances");
+    /** Durata del salvataggio di un clustering su file. */
+    public static final Timer MODEL_SAVE_TIME = timer("model.save.time");
+    /** Durata del caricamento di un clustering da file. */
+    public static final Timer MODEL_LOAD_TIME = timer("model.load.time");
+    /** Durata della codifica delle risposte (riepiloghi, pagine e testo). */
+    public static final Timer ENCODE_TIME = timer("protocol.encode.time");
+    /** Durata dell'esecuzione di una richiesta del protocollo binario. */
+    public static final Timer REQUEST_TIME = timer("protocol.request.time");
+    /** Richieste eseguite con esito negativo o rifiutate. */
+    public static final Counter REQUEST_ERRORS = counter("protocol.request.errors");
+    /** Byte ricevuti dai client. */
+    public static final Counter BYTES_IN = counter("net.bytes.in");
+    /** Byte inviati ai client. */
+    public static final Counter BYTES_OUT = counter("net.bytes.out");
+
+    static {
+        gauge("compute.clustersPerSecond", () -> {
+            long nanos = COMPUTE_TIME.getTotalNanos();
+            return nanos == 0 ? 0 : COMPUTE_ITERATIONS.get() * 1_000_000_000L / nanos;
+        });
+        registerJvmGauges();
+    }
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private Metrics() {
+    }
+
+    /**
+     * Registra i valori istantanei sulle risorse usate dal processo: memoria heap, thread,
+     * garbage collection e tempo di CPU (se la JVM lo rende disponibile).
+     */
+    private static void registerJvmGauges() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        gauge("jvm.heap.usedBytes", () -> memory.getHeapMemoryUsage().getUsed());
+        gauge("jvm.heap.committedBytes", () -> memory.getHeapMemoryUsage().getCommitted());
+        gauge("jvm.threads", threads::getThreadCount);
+        gauge("jvm.gc.count", () -> {
+            long count = 0;
+            for (GarbageCollectorMXBean gc : collectors) {
+                count += Math.max(0, gc.getCollectionCount());
+            }
+            return count;
+        });
+        gauge("jvm.gc.timeMs", () -> {
+            long time = 0;
+            for (GarbageCollectorMXBean gc : collectors) {
+                time += Math.max(0, gc.getCollectionTime());
+            }
+            return time;
+        });
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            com.sun.management.OperatingSystemMXBean process = (com.sun.management.OperatingSystemMXBean) os;
+            gauge("process.cpuTimeMs", () -> process.getProcessCpuTime() / 1_000_000);
+        }
+    }
+
+    /**
+     * Crea e registra un contatore.
+     *
+     * @param name nome del contatore.
+     * @return contatore registrato.
+     */
+    public static Counter counter(String name) {
+        Counter counter = new Counter(name);
+        COUNTERS.add(counter);
+        return counter;
+    }
+
+    /**
+     * Crea e registra la misura di durata di una fase.
+     *
+     * @param name nome della fase.
+     * @return misura registrata.
+     */
+    public static Timer timer(String name) {
+        Timer timer = new Timer(name);
+        TIMERS.add(timer);
+        return timer;
+    }
+
+    /**
+     * Registra un valore istantaneo (ad esempio la lunghezza di una coda), letto solo quando
+     * le metriche vengono consultate. Un valore con lo stesso nome viene sostituito.
+     *
+     * @param name nome del valore.
+     * @param value funzione che restituisce il valore corrente.
+     */
+    public static void gauge(String name, LongSupplier value) {
+        GAUGES.put(name, value);
+    }
+
+    /**
+     * Restituisce il valore corrente di tutte le metriche, per nome. Per ogni fase vengono
+     * riportati numero di esecuzioni, durata media, 50°, 99° percentile e massimo in ms.
+     *
+     * @return valori delle metriche.
+     */
+    public static Map<String, Number> snapshot() {
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (Counter counter : COUNTERS) {
+            values.put(counter.getName(), counter.get());
+        }
+        for (Map.Entry<String, LongSupplier> gauge : GAUGES.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        for (Timer timer : TIMERS) {
+            values.put(timer.getName() + ".count", timer.getCount());
+            values.put(timer.getName() + ".meanMs", timer.getMeanNanos() / 1e6);
+            values.put(timer.getName() + ".p50Ms", timer.getPercentileNanos(50) / 1e6);
+            values.put(timer.getName() + ".p99Ms", timer.getPercentileNanos(99) / 1e6);
+            values.put(timer.getName() + ".maxMs", timer.getMaxNanos() / 1e6);
+        }
+        return values;
+    }
+
+    /**
+     * Restituisce il valore corrente di tutte le metriche come testo, una per riga.
+     *
+     * @return metriche in formato "nome valore".
+     */
+    public static String report() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Number> metric : snapshot().entrySet()) {
+            Number value = metric.getValue();
+            text.append(metric.getKey()).append(' ');
+            if (value instanceof Double) {
+                text.append(String.format(Locale.ROOT, "%.3f", value.doubleValue()));
+            } else {
+                text.append(value);
+            }
+            text.append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Registra l'MBean delle metriche presso il server JMX della piattaforma,
+     * se non e' gia' registrato.
+     *
+     * @throws JMException se la registrazione non riesce.
+     */
+    public static synchronized void registerMBean() throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMBean(), name);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Classe che misura la durata di una fase: numero di esecuzioni, tempo totale, massimo
+ * e distribuzione delle durate.
+ *
+ * La distribuzione e' un istogramma a intervalli logaritmici (come HdrHistogram):
+ * ogni potenza di due e' divisa in {@link #SUB_BUCKETS} intervalli, per cui i percentili
+ * hanno un errore relativo inferiore al 13% con una quantita' di memoria fissa e
+ * una registrazione senza lock.
+ */
+public final class Timer {
+    /** Bit usati per suddividere ogni potenza di due. */
+    private static final int SUB_BITS = 3;
+    /** Numero di intervalli per potenza di due. */
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    /** Nome della fase */
+    private final String name;
+    /** Numero di esecuzioni */
+    private final LongAdder count = new LongAdder();
+    /** Durata totale (ns) */
+    private final LongAdder total = new LongAdder();
+    /** Durata massima (ns) */
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+    /** Numero di esecuzioni per intervallo di durata */
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+
+    /**
+     * Costruttore parametrizzato della classe Timer.
+     * La misura creata direttamente non compare tra le metriche del server:
+     * per registrarla si usa {@link Metrics#timer(String)}.
+     *
+     * @param name nome della fase.
+     */
+    public Timer(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Restituisce il nome della fase.
+     *
+     * @return nome della fase.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Registra un'esecuzione della fase iniziata all'istante indicato.
+     *
+     * @param startNanos istante di inizio restituito da {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Registra un'esecuzione della fase.
+     *
+     * @param nanos durata dell'esecuzione (ns).
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+        buckets.incrementAndGet(bucket(value));
+    }
+
+    /**
+     * Restituisce il numero di esecuzioni.
+     *
+     * @return numero di esecuzioni.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Restituisce la durata totale delle esecuzioni.
+     *
+     * @return durata totale (ns).
+     */
+    public long getTotalNanos() {
+        return total.sum();
+    }
+
+    /**
+     * Restituisce la durata massima di un'esecuzione.
+     *
+     * @return durata massima (ns).
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Restituisce la durata media di un'esecuzione.
+     *
+     * @return durata media (ns), 0 se non ci sono esecuzioni.
+     */
+    public double getMeanNanos() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getTotalNanos() / n;
+    }
+
+    /**
+     * Restituisce una stima del percentile indicato delle durate: il limite superiore
+     * dell'intervallo dell'istogramma che lo contiene.
+     *
+     * @param percentile percentile richiesto (tra 0 e 100).
+     * @return durata stimata (ns), 0 se non ci sono esecuzioni.
+     */
+    public long getPercentileNanos(double percentile) {
+        long[] snapshot = new long[buckets.length()];
+        long n = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = buckets.get(i);
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * n);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && snapshot[i] > 0) {
+                return Math.min(upperBound(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * Restituisce l'intervallo dell'istogramma che contiene la durata indicata.
+     *
+     * @param value durata (ns).
+     * @return indice dell'intervallo.
+     */
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Restituisce la durata massima contenuta in un intervallo dell'istogramma.
+     *
+     * @param index indice dell'intervallo.
+     * @return limite superiore dell'intervallo (ns).
+     */
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = index % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
@@ -0,0 +1,217 @@
+package mining;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.Data;
+
+/**
+ * Classe che divide le tuple di un dataset in canopy: gruppi di tuple vicine, che possono sovrapporsi,
+ * su cui {@link QTMiner} esegue il clustering separatamente e in parallelo.
+ *
+ * Come distanza approssimata viene usato il numero di attributi discreti con valore diverso, che
+ * non supera la distanza esatta (ogni valore discreto diverso costa 1): le tuple vengono prima
+ * raggruppate per combinazione di valori discreti (firma) e le canopy vengono costruite sulle firme.
+ * Finche' restano firme non ancora scelte, la prima diventa il centro di una nuova canopy, che contiene
+ * le tuple di tutte le firme che differiscono dal centro per al piu' "loose" attributi; le firme che
+ * differiscono per al piu' "tight" attributi non possono piu' diventare centri.
+ *
+ * Il costo del clustering di ogni canopy cresce con il quadrato delle sue tuple invece che con
+ * quello dell'intero dataset. Il risultato e' un'approssimazione del clustering esatto: cluster
+ * che attraverserebbero piu' canopy possono essere divisi. Senza attributi discreti le tuple
+ * formano un'unica canopy e il clustering e' quello esatto.
+ */
+public class Canopies {
+    /** Numero massimo di attributi discreti diversi tra il centro e le tuple di una canopy */
+    private final int loose;
+    /** Numero massimo di attributi discreti diversi tra il centro e le firme che non diventano centri */
+    private final int tight;
+    /** Numero minimo di tuple del dataset perche' venga diviso in canopy */
+    private final int minRows;
+    /** Numero massimo di canopy raggruppate contemporaneamente, se il clustering non riceve un esecutore */
+    private final int threads;
+
+    /**
+     * Costruttore parametrizzato della classe Canopies.
+     *
+     * @param loose numero massimo di attributi discreti diversi tra il centro e le tuple di una canopy.
+     * @param tight numero massimo di attributi discreti diversi tra il centro e le firme che non diventano
+     *        a loro volta centri (al piu' "loose").
+     * @param minRows numero minimo di tuple del dataset perche' venga diviso in canopy.
+     * @param threads numero massimo di canopy raggruppate contemporaneamente, se il clustering
+     *        non riceve un esecutore ({@link QTMiner#compute(Data, ProgressListener, Workers)}).
+     * @throws IllegalArgumentException se le soglie non sono valide.
+     */
+    public Canopies(int loose, int tight, int minRows, int threads) {
+        if (tight < 0 || loose < tight) {
+            throw new IllegalArgumentException("Errore: soglie delle canopy " + loose + "/" + tight + " non valide!");
+        }
+        this.loose = loose;
+        this.tight = tight;
+        this.minRows = minRows;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Verifica se il dataset e' abbastanza grande da essere diviso in canopy.
+     *
+     * @param data dataset da raggruppare.
+     * @return "true" se il clustering del dataset va eseguito per canopy.
+     */
+    boolean appliesTo(Data data) {
+        return data.getNumberOfExamples() >= minRows;
+    }
+
+    /**
+     * Restituisce il numero massimo di canopy raggruppate contemporaneamente.
+     *
+     * @return numero di thread.
+     */
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Divide le tuple del dataset in canopy.
+     *
+     * @param data dataset da dividere.
+     * @return indici delle tuple di ogni canopy, in ordine crescente; ogni tupla appartiene
+     *         ad almeno una canopy.
+     */
+    List<int[]> partition(Data data) {
+        int[] discrete = new int[data.getNumberOfAttributes()];
+        int attributes = 0;
+        for (int a = 0; a < discrete.length; a++) {
+            if (data.isDiscrete(a)) {
+                discrete[attributes++] = a;
+            }
+        }
+
+        Map<Signature, RowList> groups = new LinkedHashMap<>();
+        for (int row = 0; row < data.getNumberOfExamples(); row++) {
+            int[] codes = new int[attributes];
+            for (int k = 0; k < attributes; k++) {
+                codes[k] = data.getCode(row, discrete[k]);
+            }
+            groups.computeIfAbsent(new Signature(codes), s -> new RowList()).add(row);
+        }
+        Signature[] signatures = groups.keySet().toArray(new Signature[0]);
+        RowList[] rows = groups.values().toArray(new RowList[0]);
+
+        List<int[]> canopies = new ArrayList<>();
+        boolean[] covered = new boolean[signatures.length];
+        for (int center = 0; center < signatures.length; center++) {
+            if (covered[center]) {
+                continue;
+            }
+            RowList canopy = new RowList();
+            for (int s = 0; s < signatures.length; s++) {
+                int mismatches = signatures[center].mismatches(signatures[s], loose);
+                if (mismatches <= loose) {
+                    canopy.addAll(rows[s]);
+                }
+                if (mismatches <= tight) {
+                    covered[s] = true;
+                }
+            }
+            int[] sorted = canopy.toArray();
+            Arrays.sort(sorted);
+            canopies.add(sorted);
+        }
+        return canopies;
+    }
+
+    /**
+     * Combinazione dei codici dei valori discreti di una tupla.
+     */
+    private static final class Signature {
+        /** Codici dei valori discreti, nell'ordine degli attributi */
+        private final int[] codes;
+        /** Hash dei codici */
+        private final int hash;
+
+        /**
+         * Costruttore della firma.
+         *
+         * @param codes codici dei valori discreti.
+         */
+        Signature(int[] codes) {
+            this.codes = codes;
+            this.hash = Arrays.hashCode(codes);
+        }
+
+        /**
+         * Conta gli attributi con valore diverso rispetto a un'altra firma, fermandosi oltre il limite.
+         *
+         * @param other altra firma.
+         * @param limit limite oltre cui il conteggio non e' piu' necessario.
+         * @return numero di attributi diversi, oppure un valore maggiore del limite.
+         */
+        int mismatches(Signature other, int limit) {
+            int count = 0;
+            for (int k = 0; k < codes.length && count <= limit; k++) {
+                if (codes[k] != other.codes[k]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Signature && Arrays.equals(codes, ((Signature) o).codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Lista di indici di tuple che cresce senza boxing.
+     */
+    private static final class RowList {
+        /** Indici delle tuple */
+        private int[] rows = new int[8];
+        /** Numero di indici */
+        private int size;
+
+        /**
+         * Aggiunge un indice.
+         *
+         * @param row indice della tupla.
+         */
+        void add(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        /**
+         * Aggiunge tutti gli indici di un'altra lista.
+         *
+         * @param other lista da aggiungere.
+         */
+        void addAll(RowList other) {
+            if (size + other.size > rows.length) {
+                rows = Arrays.copyOf(rows, Math.max(rows.length * 2, size + other.size));
+            }
+            System.arraycopy(other.rows, 0, rows, size, other.size);
+            size += other.size;
+        }
+
+        /**
+         * Restituisce gli indici in un vettore della dimensione esatta.
+         *
+         * @return indici delle tuple.
+         */
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+    }
+}
@@ -2,10 +2,15 @@ package mining;
 
 import data.Data;
 
+import data.DistanceMetric;
+import data.Distances;
 import data.EmptyDatasetException;
 import data.Tuple;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -21,8 +26,12 @@ class Cluster implements Iterable<Integer>, Comparable<Cluster>, Serializable {
 	
 	/** Centroide del cluster, rappresentato come tupla. */
     private Tuple centroid;
-    /** Insieme degli ID delle tuple del dataset appartenenti al cluster. */
-    private Set<Integer> clusteredData;
+    /** Insieme degli ID delle tuple del dataset appartenenti al cluster (null finche' non viene caricato). */
+    private volatile Set<Integer> clusteredData;
+    /** Sorgente da cui caricare su richiesta gli ID delle tuple (null se gia' caricati). */
+    private transient MemberLoader loader;
+    /** Numero di tuple del cluster, noto prima del caricamento degli ID. */
+    private transient int lazySize;
 
     /**
      * Costruttore parametrizzato della classe Cluser.
@@ -35,6 +44,63 @@ class Cluster implements Iterable<Integer>, Comparable<Cluster>, Serializable {
         clusteredData = new HashSet<>();
     }
 
+    /**
+     * Costruttore parametrizzato della classe Cluster.
+     * Costruisce un cluster i cui ID delle tuple vengono caricati solo al primo utilizzo.
+     *
+     * @param centroid centroide del cluster.
+     * @param size numero di tuple del cluster.
+     * @param loader sorgente da cui caricare gli ID delle tuple.
+     */
+    Cluster(Tuple centroid, int size, MemberLoader loader) {
+        this.centroid = centroid;
+        this.lazySize = size;
+        this.loader = loader;
+    }
+
+    /**
+     * Restituisce l'insieme degli ID delle tuple, caricandolo se necessario.
+     *
+     * @return insieme degli ID delle tuple del cluster.
+     * @throws UncheckedIOException se il caricamento degli ID non va a buon fine.
+     */
+    private Set<Integer> members() {
+        Set<Integer> data = clusteredData;
+        return data != null ? data : loadMembers();
+    }
+
+    /**
+     * Carica gli ID delle tuple dalla sorgente del cluster, se non gia' caricati.
+     *
+     * @return insieme degli ID delle tuple del cluster.
+     * @throws UncheckedIOException se il caricamento degli ID non va a buon fine.
+     */
+    private synchronized Set<Integer> loadMembers() {
+        if (clusteredData == null) {
+            try {
+                int[] ids = loader.load();
+                Set<Integer> loaded = new HashSet<>();
+                for (int id : ids) {
+                    loaded.add(id);
+                }
+                clusteredData = loaded;
+                loader = null;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return clusteredData;
+    }
+
+    /**
+     * Verifica se gli ID delle tuple sono gia' stati caricati.
+     *
+     * @return "true" se gli ID sono in memoria, "false" se verranno caricati al primo utilizzo.
+     */
+    boolean isLoaded() {
+        return clusteredData != null;
+    }
+
     /**
      * Restituisce il centroide del cluster.
      *
@@ -52,7 +118,7 @@ class Cluster implements Iterable<Integer>, Comparable<Cluster>, Serializable {
      *         
      */
     boolean addData(int id) {
-        return clusteredData.add(id);
+        return members().add(id);
     }
 
     /**
@@ -63,7 +129,7 @@ class Cluster implements Iterable<Integer>, Comparable<Cluster>, Serializable {
      * 
      */
     boolean contain(int id) {
-        return clusteredData.contains(id);
+        return members().contains(id);
     }
 
     /**
@@ -73,7 +139,7 @@ class Cluster implements Iterable<Integer>, Comparable<Cluster>, Serializable {
      * 
      */
     void removeTuple(int id) {
-        clusteredData.remove(id);
+        members().remove(id);
     }
 
     /**
@@ -83,7 +149,8 @@ class Cluster implements Iterable<Integer>, Comparable<Cluster>, Serializable {
      * 
      */
     int getSize() {
-        return clusteredData.size();
+        Set<Integer> data = clusteredData;
+        return data != null ? data.size() : lazySize;
     }
 
     /**
@@ -94,7 +161,7 @@ class Cluster implements Iterable<Integer>, Comparable<Cluster>, Serializable {
      */
     @Override
     public Iterator<Integer> iterator() {
-        return clusteredData.iterator();
+        return members().iterator();
     }
 
     
@@ -141,20 +208,89 @@ class Cluster implements Iterable<Integer>, Comparable<Cluster>, Serializable {
      * @throws EmptyDatasetException se il dataset e' vuoto.
      */
     public String toString(Data data) throws EmptyDatasetException {
-        StringBuilder str = new StringBuilder("Centroid=(");
+        StringBuilder str = new StringBuilder();
+        try {
+            describe(data, DistanceMetric.DEFAULT.bind(data), str);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return str.toString();
+    }
+
+    /**
+     * Scrive la rappresentazione estesa del cluster (la stessa di {@link #toString(Data)})
+     * man mano che viene prodotta, senza costruirla per intero in memoria.
+     *
+     * Le distanze dal centroide vengono calcolate in blocco per tutte le tuple del cluster.
+     *
+     * @param data l'oggetto {@link Data} che contiene le tuple.
+     * @param distances distanze tra le tuple del dataset.
+     * @param str destinazione del testo.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    void describe(Data data, Distances distances, Appendable str) throws EmptyDatasetException, IOException {
+        str.append("Centroid=(");
         for (int i = 0; i < centroid.getLength(); i++)
-            str.append(centroid.get(i)).append(" ");
+            str.append(String.valueOf(centroid.get(i))).append(" ");
         str.append(")\nExamples:\n");
 
-        for (Integer id : clusteredData) {
+        int[] ids = memberArray();
+        double[] dist = new double[ids.length];
+        distances.distances(centroid, ids, ids.length, dist);
+        double sum = 0.0;
+        for (int k = 0; k < ids.length; k++) {
             str.append("[");
             for (int j = 0; j < data.getNumberOfAttributes(); j++)
-                str.append(data.getAttributeValue(id, j)).append(" ");
-            str.append("] dist=").append(getCentroid().getDistance(data.getItemSet(id))).append("\n");
+                str.append(String.valueOf(data.getAttributeValue(ids[k], j))).append(" ");
+            str.append("] dist=").append(String.valueOf(dist[k])).append("\n");
+            sum += dist[k];
         }
 
-        str.append("\nAvgDistance=").append(getCentroid().avgDistance(data, clusteredData));
+        str.append("\nAvgDistance=").append(String.valueOf(sum / ids.length));
+    }
 
-        return str.toString();
+    /**
+     * Restituisce la distanza media delle tuple del cluster dal centroide.
+     *
+     * @param distances distanze tra le tuple del dataset.
+     * @return distanza media dal centroide.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     */
+    double getAverageDistance(Distances distances) throws EmptyDatasetException {
+        int[] ids = memberArray();
+        double[] dist = new double[ids.length];
+        distances.distances(centroid, ids, ids.length, dist);
+        double sum = 0.0;
+        for (double d : dist) {
+            sum += d;
+        }
+        return sum / ids.length;
+    }
+
+    /**
+     * Restituisce gli ID delle tuple del cluster in un vettore, nell'ordine di iterazione.
+     *
+     * @return ID delle tuple.
+     */
+    private int[] memberArray() {
+        Set<Integer> ids = members();
+        int[] array = new int[ids.size()];
+        int k = 0;
+        for (int id : ids) {
+            array[k++] = id;
+        }
+        return array;
+    }
+
+    /**
+     * Carica gli ID delle tuple prima della serializzazione del cluster.
+     *
+     * @param out flusso di serializzazione.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        members();
+        out.defaultWriteObject();
     }
 }
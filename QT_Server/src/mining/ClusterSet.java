@@ -1,10 +1,17 @@
 package mining;
 
 import data.Data;
+import data.DistanceMetric;
+import data.Distances;
 import data.EmptyDatasetException;
+import data.Tuple;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -17,6 +24,36 @@ public class ClusterSet implements Iterable<Cluster>, Serializable {
 
     /** Insieme ordinato dei cluster. */
     private Set<Cluster> C = new TreeSet<>();
+    /** Cluster in ordine, per l'accesso tramite indice (null se da ricostruire). */
+    private transient List<Cluster> byIndex;
+    /** Misura di distanza del clustering (null per la misura predefinita). */
+    private transient DistanceMetric metric;
+
+    /**
+     * Costruttore della classe ClusterSet: insieme vuoto, descritto con la misura di distanza predefinita.
+     */
+    ClusterSet() {
+    }
+
+    /**
+     * Costruttore parametrizzato della classe ClusterSet: insieme vuoto, le cui distanze dai centroidi
+     * vengono calcolate con la misura di distanza del clustering.
+     *
+     * @param metric misura di distanza del clustering.
+     */
+    ClusterSet(DistanceMetric metric) {
+        this.metric = metric;
+    }
+
+    /**
+     * Restituisce la misura di distanza con cui vengono calcolate le distanze dai centroidi.
+     * Per i clustering letti da file e' la misura predefinita.
+     *
+     * @return misura di distanza.
+     */
+    public DistanceMetric getMetric() {
+        return metric != null ? metric : DistanceMetric.DEFAULT;
+    }
 
     /**
      * Aggiunge un cluster all'insieme.
@@ -25,6 +62,74 @@ public class ClusterSet implements Iterable<Cluster>, Serializable {
      */
     void add(Cluster c) {
         C.add(c);
+        byIndex = null;
+    }
+
+    /**
+     * Restituisce il cluster di indice dato, nell'ordine dell'insieme.
+     *
+     * @param index indice del cluster.
+     * @return cluster richiesto.
+     */
+    private Cluster get(int index) {
+        List<Cluster> list = byIndex;
+        if (list == null) {
+            list = new ArrayList<>(C);
+            byIndex = list;
+        }
+        return list.get(index);
+    }
+
+    /**
+     * Restituisce il numero di cluster dell'insieme.
+     *
+     * @return numero di cluster.
+     */
+    public int size() {
+        return C.size();
+    }
+
+    /**
+     * Restituisce il centroide del cluster di indice dato.
+     * Gli indici seguono l'ordine usato da {@link #toString(Data)}.
+     *
+     * @param index indice del cluster.
+     * @return centroide del cluster.
+     */
+    public Tuple getCentroid(int index) {
+        return get(index).getCentroid();
+    }
+
+    /**
+     * Restituisce il numero di tuple del cluster di indice dato.
+     *
+     * @param index indice del cluster.
+     * @return numero di tuple del cluster.
+     */
+    public int getClusterSize(int index) {
+        return get(index).getSize();
+    }
+
+    /**
+     * Restituisce gli ID delle tuple del cluster di indice dato, in ordine crescente.
+     *
+     * @param index indice del cluster.
+     * @return ID delle tuple del cluster.
+     */
+    public int[] getMembers(int index) {
+        return ModelFile.sortedMembers(get(index));
+    }
+
+    /**
+     * Restituisce la distanza media delle tuple del cluster di indice dato dal suo centroide.
+     *
+     * @param index indice del cluster.
+     * @param data dataset di riferimento.
+     * @return distanza media dal centroide.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     */
+    public double getAverageDistance(int index, Data data) throws EmptyDatasetException {
+        return get(index).getAverageDistance(getMetric().bind(data));
     }
 
     /**
@@ -65,11 +170,31 @@ public class ClusterSet implements Iterable<Cluster>, Serializable {
      */
     public String toString(Data data) throws EmptyDatasetException {
         StringBuilder str = new StringBuilder();
+        try {
+            describe(data, str);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return str.toString();
+    }
+
+    /**
+     * Scrive la rappresentazione estesa dell'insieme dei cluster (la stessa di {@link #toString(Data)})
+     * un cluster alla volta, senza costruirla per intero in memoria.
+     *
+     * @param data il dataset di riferimento.
+     * @param str destinazione del testo.
+     * @throws EmptyDatasetException se il dataset risulta vuoto.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    public void describe(Data data, Appendable str) throws EmptyDatasetException, IOException {
+        Distances distances = getMetric().bind(data);
         int i = 0;
         for (Cluster c : C) {
-            str.append(i).append(":").append(c.toString(data)).append("\n");
+            str.append(String.valueOf(i)).append(":");
+            c.describe(data, distances, str);
+            str.append("\n");
             i++;
         }
-        return str.toString();
     }
 }
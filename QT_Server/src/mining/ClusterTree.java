@@ -0,0 +1,106 @@
+package mining;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classe che rappresenta un nodo dell'albero di clustering prodotto da {@link HierarchicalQTMiner}.
+ *
+ * La radice contiene il clustering dell'intero dataset con il raggio maggiore; il figlio di indice i
+ * di un nodo contiene il clustering, con il raggio del livello successivo, delle sole tuple del cluster
+ * di indice i del nodo (nell'ordine di {@link ClusterSet#getCentroid(int)}). I cluster di ogni livello
+ * sono quindi contenuti in quelli del livello precedente. Gli ID delle tuple di tutti i nodi sono
+ * quelli del dataset su cui e' stato eseguito il clustering.
+ */
+public class ClusterTree {
+    /** Raggio del clustering del nodo */
+    private final double radius;
+    /** Clustering delle tuple del nodo */
+    private final QTMiner miner;
+    /** Per ogni cluster del nodo, il suo clustering con il raggio successivo (vuoto all'ultimo livello) */
+    private final List<ClusterTree> children = new ArrayList<>();
+
+    /**
+     * Costruttore parametrizzato della classe ClusterTree: nodo ancora senza figli.
+     *
+     * @param radius raggio del clustering del nodo.
+     * @param miner miner con il clustering delle tuple del nodo.
+     */
+    ClusterTree(double radius, QTMiner miner) {
+        this.radius = radius;
+        this.miner = miner;
+    }
+
+    /**
+     * Aggiunge al nodo i clustering dei suoi cluster, nell'ordine dei cluster.
+     *
+     * @param children nodi figli, uno per ogni cluster del nodo.
+     */
+    void setChildren(List<ClusterTree> children) {
+        this.children.clear();
+        this.children.addAll(children);
+    }
+
+    /**
+     * Restituisce il raggio del clustering del nodo.
+     *
+     * @return raggio del clustering.
+     */
+    public double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Restituisce il miner con il clustering del nodo, che puo' essere salvato o descritto
+     * come quello di un clustering non gerarchico.
+     *
+     * @return miner del nodo.
+     */
+    public QTMiner getMiner() {
+        return miner;
+    }
+
+    /**
+     * Restituisce i cluster del nodo.
+     *
+     * @return cluster del nodo.
+     */
+    public ClusterSet getClusters() {
+        return miner.getC();
+    }
+
+    /**
+     * Restituisce il numero di livelli dell'albero a partire da questo nodo (1 per l'ultimo livello).
+     *
+     * @return numero di livelli.
+     */
+    public int getDepth() {
+        return children.isEmpty() ? 1 : 1 + children.get(0).getDepth();
+    }
+
+    /**
+     * Restituisce il clustering, con il raggio del livello successivo, delle tuple di un cluster del nodo.
+     *
+     * @param index indice del cluster.
+     * @return nodo figlio.
+     * @throws IndexOutOfBoundsException se il cluster non esiste o il nodo e' all'ultimo livello.
+     */
+    public ClusterTree getChild(int index) {
+        return children.get(index);
+    }
+
+    /**
+     * Restituisce il nodo raggiunto scendendo dai cluster indicati, uno per livello.
+     *
+     * @param path indici dei cluster da cui scendere (vuoto per questo nodo).
+     * @return nodo raggiunto.
+     * @throws IndexOutOfBoundsException se un cluster non esiste o il percorso supera l'ultimo livello.
+     */
+    public ClusterTree getNode(int[] path) {
+        ClusterTree node = this;
+        for (int index : path) {
+            node = node.getChild(index);
+        }
+        return node;
+    }
+}
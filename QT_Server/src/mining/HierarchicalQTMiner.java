@@ -0,0 +1,255 @@
+package mining;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import data.Data;
+import data.DistanceMetric;
+import data.EmptyDatasetException;
+import metrics.Metrics;
+import metrics.Timer;
+
+/**
+ * Classe che esegue il clustering QT gerarchico, a piu' risoluzioni, dal raggio maggiore al minore.
+ *
+ * Il dataset viene prima raggruppato con il raggio maggiore; ogni cluster trovato viene poi raggruppato,
+ * separatamente dagli altri, con il raggio successivo, e cosi' via fino al raggio minore
+ * ({@link ClusterTree}). Poiche' il costo di QT cresce con il quadrato del numero di tuple, raggruppare
+ * i soli cluster del livello precedente costa molto meno che raggruppare ogni volta l'intero dataset.
+ * I sottoproblemi di uno stesso livello sono indipendenti e vengono eseguiti in parallelo
+ * da un esecutore ({@link Workers}), a partire dai piu' grandi.
+ *
+ * I cluster di un livello non coincidono in generale con quelli di un clustering non gerarchico
+ * dell'intero dataset con lo stesso raggio, ma sono contenuti in quelli del livello precedente.
+ */
+public class HierarchicalQTMiner {
+    /** Durata di un clustering gerarchico, compresi tutti i livelli. */
+    private static final Timer TIME = Metrics.timer("compute.tree.time");
+
+    /** Raggi dei livelli, in ordine decrescente */
+    private final double[] radii;
+    /** Misura di distanza tra le tuple */
+    private final DistanceMetric metric;
+    /** Numero massimo di sottoproblemi eseguiti contemporaneamente, se non viene indicato un esecutore */
+    private final int threads;
+
+    /**
+     * Costruttore parametrizzato della classe HierarchicalQTMiner, con la misura di distanza predefinita
+     * e un sottoproblema alla volta per ogni processore.
+     *
+     * @param radii raggi dei livelli, in ordine strettamente decrescente.
+     * @throws IllegalArgumentException se non ci sono raggi o non sono in ordine strettamente decrescente.
+     */
+    public HierarchicalQTMiner(double[] radii) {
+        this(radii, DistanceMetric.DEFAULT, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Costruttore parametrizzato della classe HierarchicalQTMiner.
+     *
+     * @param radii raggi dei livelli, in ordine strettamente decrescente.
+     * @param metric misura di distanza tra le tuple.
+     * @param threads numero massimo di sottoproblemi eseguiti contemporaneamente, se non viene indicato
+     *        un esecutore.
+     * @throws IllegalArgumentException se non ci sono raggi o non sono in ordine strettamente decrescente.
+     */
+    public HierarchicalQTMiner(double[] radii, DistanceMetric metric, int threads) {
+        if (radii.length == 0) {
+            throw new IllegalArgumentException("Errore: nessun raggio indicato!");
+        }
+        for (int i = 0; i < radii.length; i++) {
+            if (!(radii[i] >= 0) || (i > 0 && !(radii[i] < radii[i - 1]))) {
+                throw new IllegalArgumentException("Errore: i raggi devono essere non negativi e decrescenti!");
+            }
+        }
+        this.radii = radii.clone();
+        this.metric = metric;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Esegue il clustering gerarchico del dataset.
+     *
+     * @param data dataset da raggruppare.
+     * @return albero dei clustering, con radice al raggio maggiore.
+     * @throws ClusteringRadiusException se con il raggio maggiore tutte le tuple ricadono in un unico cluster.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     * @throws InterruptedException se l'attesa dei sottoproblemi viene interrotta.
+     */
+    public ClusterTree compute(Data data)
+            throws ClusteringRadiusException, EmptyDatasetException, InterruptedException {
+        return compute(data, null);
+    }
+
+    /**
+     * Esegue il clustering gerarchico del dataset, notificando l'avanzamento dopo ogni cluster trovato
+     * a qualsiasi livello: il numero totale di tuple e' quello del dataset per il numero di livelli.
+     * I sottoproblemi vengono eseguiti su un pool con il numero di thread indicato alla costruzione.
+     *
+     * @param data dataset da raggruppare.
+     * @param listener destinatario delle notifiche di avanzamento (null se non richieste).
+     * @return albero dei clustering, con radice al raggio maggiore.
+     * @throws ClusteringRadiusException se con il raggio maggiore tutte le tuple ricadono in un unico cluster.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     * @throws InterruptedException se l'attesa dei sottoproblemi viene interrotta.
+     */
+    public ClusterTree compute(Data data, ProgressListener listener)
+            throws ClusteringRadiusException, EmptyDatasetException, InterruptedException {
+        return compute(data, listener, Workers.threads(threads));
+    }
+
+    /**
+     * Esegue il clustering gerarchico del dataset, notificando l'avanzamento dopo ogni cluster trovato
+     * a qualsiasi livello: il numero totale di tuple e' quello del dataset per il numero di livelli.
+     * Le notifiche arrivano da un thread alla volta, non necessariamente quello chiamante; i sottoproblemi
+     * notificano inoltre il punto di controllo del thread che li esegue ({@link Workers.Task}).
+     *
+     * @param data dataset da raggruppare.
+     * @param listener destinatario delle notifiche di avanzamento (null se non richieste).
+     * @param workers esecutore dei sottoproblemi di ogni livello.
+     * @return albero dei clustering, con radice al raggio maggiore.
+     * @throws ClusteringRadiusException se con il raggio maggiore tutte le tuple ricadono in un unico cluster.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     * @throws InterruptedException se l'attesa dei sottoproblemi viene interrotta.
+     */
+    public ClusterTree compute(Data data, ProgressListener listener, Workers workers)
+            throws ClusteringRadiusException, EmptyDatasetException, InterruptedException {
+        long start = System.nanoTime();
+        Progress progress = new Progress(listener, (long) data.getNumberOfExamples() * radii.length);
+        try {
+            QTMiner miner = new QTMiner(radii[0], metric);
+            miner.compute(data, progress.task(null));
+            ClusterTree root = new ClusterTree(radii[0], miner);
+            List<ClusterTree> level = Collections.singletonList(root);
+            for (int l = 1; l < radii.length; l++) {
+                level = refine(workers, data, level, radii[l], progress);
+            }
+            return root;
+        } finally {
+            TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Raggruppa con il raggio indicato le tuple di ogni cluster dei nodi di un livello,
+     * in parallelo, e aggiunge ai nodi i figli ottenuti.
+     *
+     * @param workers esecutore dei sottoproblemi.
+     * @param data dataset del clustering.
+     * @param level nodi del livello da raffinare.
+     * @param radius raggio del livello successivo.
+     * @param progress avanzamento del clustering.
+     * @return nodi del livello successivo.
+     * @throws ClusteringRadiusException se un sottoproblema contiene tutte le tuple del dataset.
+     * @throws InterruptedException se l'attesa dei sottoproblemi viene interrotta.
+     */
+    private List<ClusterTree> refine(Workers workers, Data data, List<ClusterTree> level, double radius,
+            Progress progress) throws ClusteringRadiusException, InterruptedException {
+        List<int[]> subsets = new ArrayList<>();
+        for (ClusterTree node : level) {
+            ClusterSet clusters = node.getClusters();
+            for (int i = 0; i < clusters.size(); i++) {
+                subsets.add(clusters.getMembers(i));
+            }
+        }
+        // i sottoproblemi piu' grandi vengono avviati per primi, per bilanciare il carico dei thread
+        List<Integer> order = new ArrayList<>(subsets.size());
+        for (int k = 0; k < subsets.size(); k++) {
+            order.add(k);
+        }
+        order.sort((x, y) -> Integer.compare(subsets.get(y).length, subsets.get(x).length));
+        List<Workers.Task<ClusterTree>> tasks = new ArrayList<>(subsets.size());
+        for (int k : order) {
+            int[] members = subsets.get(k);
+            tasks.add(checkpoint -> {
+                QTMiner miner = new QTMiner(radius, metric);
+                miner.compute(data, metric.bind(data), members, members.length, progress.task(checkpoint));
+                return new ClusterTree(radius, miner);
+            });
+        }
+
+        List<ClusterTree> next = new ArrayList<>(Collections.nCopies(subsets.size(), null));
+        try {
+            List<ClusterTree> results = workers.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i++) {
+                next.set(order.get(i), results.get(i));
+            }
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ClusteringRadiusException) {
+                throw (ClusteringRadiusException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        int k = 0;
+        for (ClusterTree node : level) {
+            int size = node.getClusters().size();
+            node.setChildren(next.subList(k, k + size));
+            k += size;
+        }
+        return next;
+    }
+
+    /**
+     * Avanzamento complessivo di un clustering gerarchico, aggiornato dai sottoproblemi.
+     */
+    private static final class Progress {
+        /** Destinatario delle notifiche (null se non richieste) */
+        private final ProgressListener listener;
+        /** Numero totale di tuple da raggruppare, su tutti i livelli */
+        private final int total;
+        /** Numero di cluster trovati finora */
+        private int clusters;
+        /** Numero di tuple raggruppate finora */
+        private int clustered;
+
+        /**
+         * Costruttore dell'avanzamento.
+         *
+         * @param listener destinatario delle notifiche (null se non richieste).
+         * @param total numero totale di tuple da raggruppare, su tutti i livelli.
+         */
+        Progress(ProgressListener listener, long total) {
+            this.listener = listener;
+            this.total = (int) Math.min(Integer.MAX_VALUE, total);
+        }
+
+        /**
+         * Restituisce il destinatario delle notifiche di un sottoproblema, che le somma all'avanzamento complessivo
+         * e notifica il punto di controllo del thread che esegue il sottoproblema.
+         *
+         * @param checkpoint punto di controllo del thread (null se assente o coincidente con il destinatario
+         *        delle notifiche complessive).
+         * @return destinatario delle notifiche del sottoproblema.
+         */
+        ProgressListener task(ProgressListener checkpoint) {
+            int[] last = new int[1];
+            return (n, done, count) -> {
+                found(done - last[0]);
+                last[0] = done;
+                if (checkpoint != null && checkpoint != listener) {
+                    checkpoint.clusterFound(n, done, count);
+                }
+            };
+        }
+
+        /**
+         * Registra un cluster trovato e ne notifica l'avanzamento.
+         *
+         * @param tuples numero di tuple raggruppate dal cluster.
+         */
+        private synchronized void found(int tuples) {
+            clusters++;
+            clustered = (int) Math.min(total, (long) clustered + tuples);
+            if (listener != null) {
+                listener.clusterFound(clusters, clustered, total);
+            }
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package mining;
+
+import java.io.IOException;
+
+/**
+ * Interfaccia che rappresenta una sorgente da cui caricare su richiesta
+ * gli ID delle tuple di un {@link Cluster}, ad esempio la sezione di un file di clustering.
+ */
+interface MemberLoader {
+    /**
+     * Carica gli ID delle tuple del cluster.
+     *
+     * @return ID delle tuple in ordine crescente.
+     * @throws IOException se la sorgente non e' leggibile o e' danneggiata.
+     */
+    int[] load() throws IOException;
+}
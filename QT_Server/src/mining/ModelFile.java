@@ -0,0 +1,501 @@
+package mining;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+
+import data.Tuple;
+import data.TupleCodec;
+import data.VarInt;
+
+/**
+ * Classe che salva e carica un {@link ClusterSet} in formato binario compatto (file ".qtm"),
+ * in sostituzione della serializzazione Java dei file ".dmp".
+ *
+ * Struttura del file (versione 2):
+ * - intestazione: identificativo "QTM", versione del formato e numero di cluster;
+ * - dizionario degli attributi, scritto una sola volta con {@link TupleCodec};
+ * - tabella dei centroidi (codici di dizionario e valori continui);
+ * - indice: per ogni cluster posizione e lunghezza della lista dei membri nel file,
+ *   numero di tuple, primo e ultimo identificativo e CRC32 della lista;
+ * - CRC32 di tutti i byte precedenti (intestazione, schema, centroidi e indice);
+ * - liste dei membri: identificativi delle tuple ordinati e codificati come differenze varint
+ *   oppure, se piu' compatta, come bitmap.
+ *
+ * L'apertura legge solo intestazione, centroidi e indice: le liste dei membri vengono lette
+ * e decodificate solo quando un cluster viene effettivamente consultato, per cui il tempo
+ * di apertura non dipende dal numero di tuple clusterizzate. Il file resta aperto finche'
+ * tutte le liste sono state lette: se nel frattempo viene sostituito da un nuovo salvataggio
+ * con lo stesso nome, le liste vengono comunque lette dal file aperto.
+ * La lettura non istanzia classi scelte dal contenuto del file; restano leggibili
+ * i file della versione 1, in cui le liste dei membri seguono ciascun centroide.
+ * I vecchi file ".dmp" restano leggibili tramite {@link #readLegacy(String)}, che accetta
+ * solo le classi del modello.
+ */
+final class ModelFile {
+    /** Identificativo del formato ("QTM"). */
+    private static final int MAGIC = 0x51544D00;
+    /** Versione corrente del formato. */
+    private static final int VERSION = 2;
+    /** Versione del formato senza indice, con i membri di ciascun cluster subito dopo il centroide. */
+    private static final int VERSION_UNINDEXED = 1;
+    /** Lunghezza in byte di una voce dell'indice. */
+    private static final int INDEX_ENTRY = 28;
+    /** Membri codificati come differenze varint tra identificativi ordinati. */
+    private static final byte MEMBERS_DELTA = 0;
+    /** Membri codificati come bitmap a partire dal primo identificativo. */
+    private static final byte MEMBERS_BITMAP = 1;
+
+    /** Classi ammesse nella lettura dei vecchi file ".dmp". */
+    private static final Set<String> LEGACY_CLASSES = new HashSet<>(Arrays.asList(
+            "mining.ClusterSet", "mining.Cluster",
+            "data.Tuple", "[Ldata.Item;", "data.Item", "data.DiscreteItem", "data.ContinuousItem",
+            "data.Attribute", "data.DiscreteAttribute", "data.ContinuousAttribute",
+            "java.util.TreeSet", "java.util.HashSet",
+            "java.lang.Integer", "java.lang.Double", "java.lang.Number", "java.lang.String"));
+
+    /**
+     * Costruttore privato: la classe offre solo metodi statici.
+     */
+    private ModelFile() {
+    }
+
+    /**
+     * Salva un insieme di cluster nel file indicato, in modo atomico ({@link StagedModel}):
+     * il file viene scritto con un nome temporaneo, reso persistente e solo allora rinominato,
+     * per cui un'interruzione durante la scrittura non lascia un file troncato.
+     *
+     * @param clusters insieme di cluster da salvare.
+     * @param fileName nome del file (comprensivo di estensione).
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    static void write(ClusterSet clusters, String fileName) throws IOException {
+        StagedModel staged = StagedModel.write(clusters, fileName);
+        try {
+            staged.sync();
+            staged.commit();
+        } catch (IOException ex) {
+            staged.discard();
+            throw ex;
+        }
+        StagedModel.syncDirectory(staged.getDirectory());
+    }
+
+    /**
+     * Scrive un insieme di cluster sul flusso indicato, nel formato del file.
+     *
+     * @param clusters insieme di cluster da salvare.
+     * @param output flusso di destinazione, che non viene chiuso.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    static void write(ClusterSet clusters, OutputStream output) throws IOException {
+        List<byte[]> blocks = new ArrayList<>();
+        List<int[]> stats = new ArrayList<>();
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        DataOutputStream headOut = new DataOutputStream(head);
+        TupleCodec codec = null;
+        for (Cluster c : clusters) {
+            if (codec == null) {
+                codec = new TupleCodec(c.getCentroid());
+            }
+            int[] ids = sortedMembers(c);
+            ByteArrayOutputStream block = new ByteArrayOutputStream();
+            writeMembers(new DataOutputStream(block), ids);
+            blocks.add(block.toByteArray());
+            stats.add(new int[] {ids.length, ids.length > 0 ? ids[0] : -1, ids.length > 0 ? ids[ids.length - 1] : -1});
+        }
+
+        headOut.writeInt(MAGIC);
+        headOut.writeInt(VERSION);
+        VarInt.write(headOut, blocks.size());
+        if (codec != null) {
+            codec.writeSchema(headOut);
+            for (Cluster c : clusters) {
+                codec.writeTuple(c.getCentroid(), headOut);
+            }
+        }
+        long offset = head.size() + (long) INDEX_ENTRY * blocks.size() + 4;
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < blocks.size(); i++) {
+            byte[] block = blocks.get(i);
+            crc.reset();
+            crc.update(block, 0, block.length);
+            headOut.writeLong(offset);
+            headOut.writeInt(block.length);
+            headOut.writeInt(stats.get(i)[0]);
+            headOut.writeInt(stats.get(i)[1]);
+            headOut.writeInt(stats.get(i)[2]);
+            headOut.writeInt((int) crc.getValue());
+            offset += block.length;
+        }
+        crc.reset();
+        crc.update(head.toByteArray(), 0, head.size());
+
+        DataOutputStream out = new DataOutputStream(output);
+        head.writeTo(out);
+        out.writeInt((int) crc.getValue());
+        for (byte[] block : blocks) {
+            out.write(block);
+        }
+        out.flush();
+    }
+
+    /**
+     * Apre un insieme di cluster salvato con {@link #write(ClusterSet, String)}.
+     * Vengono letti solo intestazione, centroidi e indice; gli identificativi delle tuple
+     * di ciascun cluster vengono letti al primo accesso dal file aperto qui, che resta aperto
+     * finche' non sono stati letti quelli di tutti i cluster.
+     *
+     * @param fileName nome del file (comprensivo di estensione).
+     * @return insieme di cluster letto.
+     * @throws IOException se il file non e' leggibile, non e' nel formato atteso o e' danneggiato.
+     */
+    static ClusterSet read(String fileName) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        try {
+            return read(fileName, channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Legge intestazione, centroidi e indice dal file aperto; le liste dei membri dei cluster
+     * restituiti vengono lette dallo stesso file, chiuso dopo l'ultima lista letta
+     * (o subito, se non ci sono liste da leggere).
+     *
+     * @param fileName nome del file, per i messaggi di errore.
+     * @param channel file aperto, posizionato all'inizio.
+     * @return insieme di cluster letto.
+     * @throws IOException se il file non e' leggibile, non e' nel formato atteso o e' danneggiato.
+     */
+    private static ClusterSet read(String fileName, FileChannel channel) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(
+                new BufferedInputStream(Channels.newInputStream(channel), 1 << 16), new CRC32());
+        DataInputStream in = new DataInputStream(checked);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Errore: il file " + fileName + " non contiene un clustering valido!");
+        }
+        int version = in.readInt();
+        if (version == VERSION_UNINDEXED) {
+            ClusterSet clusters = readUnindexed(fileName, checked, in);
+            channel.close();
+            return clusters;
+        } else if (version != VERSION) {
+            throw new IOException("Errore: versione " + version + " del file non supportata!");
+        }
+        int count = VarInt.read(in);
+        Tuple[] centroids = new Tuple[count];
+        if (count > 0) {
+            TupleCodec codec = TupleCodec.readSchema(in);
+            for (int i = 0; i < count; i++) {
+                centroids[i] = codec.readTuple(in);
+            }
+        }
+        ModelSource source = new ModelSource(fileName, channel, count);
+        ClusterSet clusters = new ClusterSet();
+        for (int i = 0; i < count; i++) {
+            long offset = in.readLong();
+            int length = in.readInt();
+            int size = in.readInt();
+            in.readInt();
+            in.readInt();
+            int crc = in.readInt();
+            clusters.add(new Cluster(centroids[i], size, new MemberBlock(source, offset, length, crc)));
+        }
+        int expected = (int) checked.getChecksum().getValue();
+        if (in.readInt() != expected) {
+            throw new IOException("Errore: il file " + fileName + " e' danneggiato!");
+        }
+        if (count == 0) {
+            channel.close();
+        }
+        return clusters;
+    }
+
+    /**
+     * Legge per intero un file della versione 1, privo di indice.
+     *
+     * @param fileName nome del file.
+     * @param checked flusso che calcola il CRC32 dei byte letti.
+     * @param in flusso posizionato dopo la versione del formato.
+     * @return insieme di cluster letto.
+     * @throws IOException se il file non e' leggibile o e' danneggiato.
+     */
+    private static ClusterSet readUnindexed(String fileName, CheckedInputStream checked, DataInputStream in) throws IOException {
+        ClusterSet clusters = new ClusterSet();
+        int count = VarInt.read(in);
+        if (count > 0) {
+            TupleCodec codec = TupleCodec.readSchema(in);
+            for (int i = 0; i < count; i++) {
+                Cluster c = new Cluster(codec.readTuple(in));
+                for (int id : readMembers(in)) {
+                    c.addData(id);
+                }
+                clusters.add(c);
+            }
+        }
+        int expected = (int) checked.getChecksum().getValue();
+        if (in.readInt() != expected) {
+            throw new IOException("Errore: il file " + fileName + " e' danneggiato!");
+        }
+        return clusters;
+    }
+
+    /**
+     * Carica un insieme di cluster da un vecchio file ".dmp" scritto con la serializzazione Java,
+     * rifiutando qualsiasi classe estranea al modello.
+     *
+     * @param fileName nome del file (comprensivo di estensione).
+     * @return insieme di cluster letto.
+     * @throws IOException se il file non e' leggibile o contiene classi non ammesse.
+     * @throws ClassNotFoundException se la deserializzazione fallisce.
+     */
+    static ClusterSet readLegacy(String fileName) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new LegacyInputStream(new BufferedInputStream(new FileInputStream(fileName)))) {
+            return (ClusterSet) in.readObject();
+        }
+    }
+
+    /**
+     * Restituisce gli identificativi delle tuple di un cluster in ordine crescente.
+     *
+     * @param c cluster.
+     * @return identificativi ordinati.
+     */
+    static int[] sortedMembers(Cluster c) {
+        int[] ids = new int[c.getSize()];
+        int i = 0;
+        for (int id : c) {
+            ids[i++] = id;
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    /**
+     * Scrive gli identificativi ordinati dei membri di un cluster, scegliendo la codifica piu' compatta
+     * tra differenze varint e bitmap.
+     *
+     * @param out flusso di destinazione.
+     * @param ids identificativi ordinati.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    static void writeMembers(DataOutputStream out, int[] ids) throws IOException {
+        VarInt.write(out, ids.length);
+        if (ids.length == 0) {
+            return;
+        }
+        int deltaSize = 0;
+        for (int i = 0; i < ids.length; i++) {
+            deltaSize += VarInt.size(i == 0 ? ids[0] : ids[i] - ids[i - 1]);
+        }
+        int bitmapSize = (ids[ids.length - 1] - ids[0]) / 8 + 1;
+        if (bitmapSize < deltaSize) {
+            out.writeByte(MEMBERS_BITMAP);
+            VarInt.write(out, ids[0]);
+            VarInt.write(out, bitmapSize);
+            byte[] bitmap = new byte[bitmapSize];
+            for (int id : ids) {
+                int bit = id - ids[0];
+                bitmap[bit >>> 3] |= 1 << (bit & 7);
+            }
+            out.write(bitmap);
+        } else {
+            out.writeByte(MEMBERS_DELTA);
+            int previous = 0;
+            for (int id : ids) {
+                VarInt.write(out, id - previous);
+                previous = id;
+            }
+        }
+    }
+
+    /**
+     * Legge gli identificativi dei membri di un cluster scritti con {@link #writeMembers(DataOutputStream, int[])}.
+     *
+     * @param in flusso sorgente.
+     * @return identificativi in ordine crescente.
+     * @throws IOException se si verifica un errore di lettura o la codifica non e' valida.
+     */
+    static int[] readMembers(DataInputStream in) throws IOException {
+        int[] ids = new int[VarInt.read(in)];
+        if (ids.length == 0) {
+            return ids;
+        }
+        byte encoding = in.readByte();
+        if (encoding == MEMBERS_BITMAP) {
+            int base = VarInt.read(in);
+            byte[] bitmap = new byte[VarInt.read(in)];
+            in.readFully(bitmap);
+            int n = 0;
+            for (int i = 0; i < bitmap.length; i++) {
+                for (int b = 0; b < 8; b++) {
+                    if ((bitmap[i] & (1 << b)) != 0) {
+                        if (n == ids.length) {
+                            throw new IOException("Errore: bitmap dei membri non valida!");
+                        }
+                        ids[n++] = base + i * 8 + b;
+                    }
+                }
+            }
+            if (n != ids.length) {
+                throw new IOException("Errore: bitmap dei membri non valida!");
+            }
+        } else if (encoding == MEMBERS_DELTA) {
+            int previous = 0;
+            for (int i = 0; i < ids.length; i++) {
+                previous += VarInt.read(in);
+                ids[i] = previous;
+            }
+        } else {
+            throw new IOException("Errore: codifica dei membri " + encoding + " non valida!");
+        }
+        return ids;
+    }
+
+    /**
+     * File aperto da cui vengono lette le liste dei membri di un insieme di cluster.
+     * Viene chiuso quando tutte le liste sono state lette.
+     */
+    private static class ModelSource {
+        /** Nome del file. */
+        private final String fileName;
+        /** File aperto. */
+        private final FileChannel channel;
+        /** Liste dei membri non ancora lette. */
+        private int pending;
+
+        /**
+         * Costruttore parametrizzato del file aperto.
+         *
+         * @param fileName nome del file.
+         * @param channel file aperto.
+         * @param pending numero di liste dei membri da leggere.
+         */
+        ModelSource(String fileName, FileChannel channel, int pending) {
+            this.fileName = fileName;
+            this.channel = channel;
+            this.pending = pending;
+        }
+
+        /**
+         * Legge una sezione del file.
+         *
+         * @param offset posizione della sezione nel file.
+         * @param length lunghezza in byte della sezione.
+         * @return byte letti.
+         * @throws IOException se si verifica un errore di lettura o il file e' incompleto.
+         */
+        synchronized byte[] read(long offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Errore: il file " + fileName + " e' incompleto!");
+                }
+            }
+            return buffer.array();
+        }
+
+        /**
+         * Segnala che una lista dei membri e' stata letta e decodificata; dopo l'ultima il file
+         * viene chiuso.
+         *
+         * @throws IOException se il file non puo' essere chiuso.
+         */
+        synchronized void loaded() throws IOException {
+            if (--pending == 0) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Lista dei membri di un cluster memorizzata in una sezione del file, letta al primo accesso.
+     */
+    private static class MemberBlock implements MemberLoader {
+        /** File aperto da cui leggere la lista. */
+        private final ModelSource source;
+        /** Posizione della lista nel file. */
+        private final long offset;
+        /** Lunghezza in byte della lista. */
+        private final int length;
+        /** CRC32 atteso della lista. */
+        private final int crc;
+
+        /**
+         * Costruttore parametrizzato della sezione.
+         *
+         * @param source file aperto da cui leggere la lista.
+         * @param offset posizione della lista nel file.
+         * @param length lunghezza in byte della lista.
+         * @param crc CRC32 atteso della lista.
+         */
+        MemberBlock(ModelSource source, long offset, int length, int crc) {
+            this.source = source;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+        }
+
+        @Override
+        public int[] load() throws IOException {
+            byte[] block = source.read(offset, length);
+            CRC32 check = new CRC32();
+            check.update(block, 0, length);
+            if ((int) check.getValue() != crc) {
+                throw new IOException("Errore: il file " + source.fileName + " e' danneggiato!");
+            }
+            int[] ids = readMembers(new DataInputStream(new ByteArrayInputStream(block)));
+            source.loaded();
+            return ids;
+        }
+    }
+
+    /**
+     * Flusso di deserializzazione che ammette solo le classi del modello.
+     */
+    private static class LegacyInputStream extends ObjectInputStream {
+
+        /**
+         * Costruttore parametrizzato del flusso.
+         *
+         * @param in flusso sorgente.
+         * @throws IOException se l'intestazione del flusso non e' valida.
+         */
+        LegacyInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!LEGACY_CLASSES.contains(desc.getName())) {
+                throw new InvalidClassException(desc.getName(), "classe non ammessa in un file di clustering");
+            }
+            return super.resolveClass(desc);
+        }
+    }
+}
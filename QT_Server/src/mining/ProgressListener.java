@@ -0,0 +1,16 @@
+package mining;
+
+/**
+ * Interfaccia per ricevere l'avanzamento di un clustering eseguito da {@link QTMiner}.
+ * Viene notificata dopo ogni cluster trovato, dal thread che esegue il clustering.
+ */
+public interface ProgressListener {
+    /**
+     * Notifica che e' stato trovato un nuovo cluster.
+     *
+     * @param clusters numero di cluster trovati finora.
+     * @param clustered numero di tuple gia' assegnate a un cluster.
+     * @param total numero totale di tuple del dataset.
+     */
+    void clusterFound(int clusters, int clustered, int total);
+}
@@ -1,10 +1,16 @@
 package mining;
 
 import data.Data;
+import data.DistanceMetric;
+import data.Distances;
 import data.EmptyDatasetException;
-import data.Tuple;
+import data.Neighbors;
+import metrics.Metrics;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 /**
  * Classe che implementa l'algoritmo di clustering QT (Quality Threshold).
  * 
@@ -14,7 +20,9 @@ import java.io.*;
  */
 public class QTMiner {
     /** Estensione con cui verranno salvati i file del clustering. */
-    public static final String FILE_FORMAT = ".dmp";
+    public static final String FILE_FORMAT = ".qtm";
+    /** Estensione dei vecchi file del clustering, serializzati con ObjectOutputStream. */
+    public static final String LEGACY_FILE_FORMAT = ".dmp";
 
     /** Insieme dei cluster trovati dall’algoritmo. */
     private ClusterSet C;
@@ -22,19 +30,53 @@ public class QTMiner {
     /** Raggio massimo di distanza per l’inclusione di una tupla in un cluster. */
     private double radius;
 
+    /** Misura di distanza tra le tuple. */
+    private DistanceMetric metric;
+
+    /** Divisione in canopy dei dataset grandi (null per il clustering esatto). */
+    private Canopies canopies;
+
     /**
      * Costruttore parametrizzato delal classe QTMiner.
      * Inizializza un nuovo miner con raggio dato.
      * @param radius distanza (raggio) massima entro la quale includere le tuple in un cluster.
      */
     public QTMiner(double radius) {
-        C = new ClusterSet();
+        this(radius, DistanceMetric.DEFAULT);
+    }
+
+    /**
+     * Costruttore parametrizzato della classe QTMiner.
+     * Inizializza un nuovo miner con raggio e misura di distanza dati.
+     *
+     * @param radius distanza (raggio) massima entro la quale includere le tuple in un cluster.
+     * @param metric misura di distanza tra le tuple, usata anche per descrivere i cluster.
+     */
+    public QTMiner(double radius, DistanceMetric metric) {
+        this(radius, metric, null);
+    }
+
+    /**
+     * Costruttore parametrizzato della classe QTMiner.
+     * Inizializza un nuovo miner che, sui dataset abbastanza grandi, esegue il clustering
+     * separatamente e in parallelo sulle canopy del dataset (vedi {@link Canopies}).
+     *
+     * @param radius distanza (raggio) massima entro la quale includere le tuple in un cluster.
+     * @param metric misura di distanza tra le tuple, usata anche per descrivere i cluster.
+     * @param canopies divisione in canopy dei dataset grandi (null per il clustering esatto).
+     */
+    public QTMiner(double radius, DistanceMetric metric, Canopies canopies) {
+        C = new ClusterSet(metric);
         this.radius = radius;
+        this.metric = metric;
+        this.canopies = canopies;
     }
 
     /**
      * Costruttore parametrizzato della classe QTMiner.
      * Carica da file un clastering precedentemente dalvato.
+     * Se il file nel formato binario ({@link #FILE_FORMAT}) non esiste, viene letto
+     * il vecchio file serializzato ({@link #LEGACY_FILE_FORMAT}).
      * 
      * @param fileName nome del file da cui caricare il clustering.
      * @throws IOException se il file non e' accessibile o non esiste.
@@ -42,24 +84,40 @@ public class QTMiner {
      * 
      */
     public QTMiner(String fileName) throws IOException, ClassNotFoundException{
-        FileInputStream inFile = new FileInputStream(fileName + FILE_FORMAT);
-        ObjectInputStream inStream = new ObjectInputStream(inFile);
-        C = (ClusterSet) inStream.readObject();
-        inStream.close();
+        long start = System.nanoTime();
+        if (new File(fileName + FILE_FORMAT).exists()) {
+            C = ModelFile.read(fileName + FILE_FORMAT);
+        } else {
+            C = ModelFile.readLegacy(fileName + LEGACY_FILE_FORMAT);
+        }
+        metric = C.getMetric();
+        Metrics.MODEL_LOAD_TIME.recordSince(start);
     }
 
     /**
-     * Salva su file il clustering attuale serializzando l’insieme dei cluster.
+     * Salva su file il clustering attuale nel formato binario compatto.
+     * Il file viene sostituito in modo atomico ({@link StagedModel}), senza mai restare troncato.
      *
      * @param fileName nome del file (senza estensione) in cui salvare il clustering.
      * @throws IOException se si verifica un errore di scrittura.
      * 
      */
     public void salva(String fileName) throws FileNotFoundException, IOException{
-        FileOutputStream outFile = new FileOutputStream(fileName + FILE_FORMAT);
-        ObjectOutputStream outStream = new ObjectOutputStream(outFile);
-        outStream.writeObject(C);
-        outStream.close();
+        long start = System.nanoTime();
+        ModelFile.write(C, fileName + FILE_FORMAT);
+        Metrics.MODEL_SAVE_TIME.recordSince(start);
+    }
+
+    /**
+     * Converte un vecchio file serializzato ({@link #LEGACY_FILE_FORMAT}) nel formato binario
+     * ({@link #FILE_FORMAT}). Il vecchio file non viene rimosso.
+     *
+     * @param fileName nome del file (senza estensione) da convertire.
+     * @throws IOException se si verifica un errore di lettura o di scrittura.
+     * @throws ClassNotFoundException se la deserializzazione fallisce.
+     */
+    public static void migrate(String fileName) throws IOException, ClassNotFoundException {
+        ModelFile.write(ModelFile.readLegacy(fileName + LEGACY_FILE_FORMAT), fileName + FILE_FORMAT);
     }
 
     /**
@@ -80,71 +138,242 @@ public class QTMiner {
      * @throws EmptyDatasetException se il dataset è vuoto.
      */
     public int compute(Data data) throws ClusteringRadiusException, EmptyDatasetException {
-        int numclusters = 0;
-        boolean[]  isClustered = new boolean[data.getNumberOfExamples()];
-        for (int i = 0; i < isClustered.length; i++)
-            isClustered[i] = false;
+        return compute(data, null);
+    }
 
+    /**
+     * Esegue l’algoritmo di clustering QT sul dataset dato, notificando l'avanzamento
+     * dopo ogni cluster trovato.
+     * Durata, iterazioni, candidati costruiti e distanze calcolate vengono registrati in {@link Metrics}.
+     *
+     * @param data dataset su cui verrà eseguito l'algoritmo.
+     * @param listener destinatario delle notifiche di avanzamento (null se non richieste).
+     * @return restituisce il numero di cluster trovati.
+     * @throws ClusteringRadiusException se tutte le tuple vengono raggruppate in un unico cluster.
+     * @throws EmptyDatasetException se il dataset è vuoto.
+     */
+    public int compute(Data data, ProgressListener listener) throws ClusteringRadiusException, EmptyDatasetException {
+        return compute(data, listener, null);
+    }
+
+    /**
+     * Esegue l’algoritmo di clustering QT sul dataset dato, notificando l'avanzamento
+     * dopo ogni cluster trovato. Se il clustering viene eseguito sulle canopy, queste vengono
+     * raggruppate dall'esecutore indicato e notificano il punto di controllo del thread che
+     * le esegue ({@link Workers.Task}).
+     *
+     * @param data dataset su cui verrà eseguito l'algoritmo.
+     * @param listener destinatario delle notifiche di avanzamento (null se non richieste).
+     * @param workers esecutore delle canopy (null per un pool con il numero di thread indicato da {@link Canopies}).
+     * @return restituisce il numero di cluster trovati.
+     * @throws ClusteringRadiusException se tutte le tuple vengono raggruppate in un unico cluster.
+     * @throws EmptyDatasetException se il dataset è vuoto.
+     */
+    public int compute(Data data, ProgressListener listener, Workers workers)
+            throws ClusteringRadiusException, EmptyDatasetException {
         if (data.getNumberOfExamples() == 0) {
             throw new EmptyDatasetException();
         }
 
-        int countClustered = 0;
-        while (countClustered != data.getNumberOfExamples()) {
-           
-            Cluster c = buildCandidateCluster(data, isClustered);
+        long start = System.nanoTime();
+        try {
+            if (canopies != null && canopies.appliesTo(data)) {
+                List<int[]> parts = canopies.partition(data);
+                if (parts.size() > 1) {
+                    return computeCanopies(data, parts, listener,
+                            workers != null ? workers : Workers.threads(canopies.getThreads()));
+                }
+            }
+            int[] rows = new int[data.getNumberOfExamples()];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = i;
+            }
+            return compute(data, metric.bind(data), rows, rows.length, listener);
+        } finally {
+            Metrics.COMPUTE_TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Ciclo principale dell'algoritmo: costruisce il cluster candidato piu' popolato tra le tuple
+     * non ancora raggruppate finche' tutte le tuple indicate non appartengono a un cluster.
+     * Puo' essere eseguito su una parte del dataset (ad esempio le tuple di un cluster trovato
+     * con un raggio maggiore, vedi {@link HierarchicalQTMiner}): gli ID dei cluster restano
+     * quelli del dataset.
+     *
+     * @param data dataset su cui verrà eseguito l'algoritmo.
+     * @param distances distanze tra le tuple del dataset.
+     * @param rows indici delle tuple da raggruppare, in ordine crescente; il vettore viene modificato.
+     * @param count numero di tuple da raggruppare.
+     * @param listener destinatario delle notifiche di avanzamento (null se non richieste).
+     * @return restituisce il numero di cluster trovati.
+     * @throws ClusteringRadiusException se tutte le tuple del dataset vengono raggruppate in un unico cluster.
+     */
+    int compute(Data data, Distances distances, int[] rows, int count, ProgressListener listener)
+            throws ClusteringRadiusException {
+        int numclusters = 0;
+        int remaining = count;
+        Neighbors neighbors = distances.neighbors(rows, count, radius);
+        long computed = 0;
+        while (remaining > 0) {
+            Cluster c = buildCandidateCluster(data, neighbors, rows, remaining);
             C.add(c);
             numclusters++;
-
-            
-            for (Integer id : c) {   
-                isClustered[id] = true;
-            }
-            countClustered += c.getSize();
+            Metrics.COMPUTE_ITERATIONS.increment();
+            Metrics.COMPUTE_CANDIDATES.add(remaining);
+            Metrics.COMPUTE_DISTANCES.add(neighbors.getDistances() - computed);
+            computed = neighbors.getDistances();
 
             if ((numclusters == 1) && (c.getSize() == data.getNumberOfExamples())) {
                 throw new ClusteringRadiusException();
             }
+
+            // le tuple non raggruppate restano in ordine crescente
+            int kept = 0;
+            for (int k = 0; k < remaining; k++) {
+                if (!c.contain(rows[k])) {
+                    rows[kept++] = rows[k];
+                } else {
+                    neighbors.remove(rows[k]);
+                }
+            }
+            remaining = kept;
+            if (listener != null) {
+                listener.clusterFound(numclusters, count - remaining, count);
+            }
         }
         return numclusters;
     }
 
     /**
-     * Costruisce un cluster candidato a partire da un centroide includendo tutte le tuple entro il "radius"
+     * Esegue il clustering separatamente e in parallelo su ogni canopy, quindi fonde i risultati.
+     * Poiche' le canopy si sovrappongono, una tupla puo' appartenere a cluster di canopy diverse:
+     * i cluster vengono accettati dal piu' popolato, scartando quelli che contengono tuple gia'
+     * assegnate, e le tuple rimaste senza cluster vengono raggruppate alla fine con l'algoritmo esatto.
+     * Ogni cluster del risultato contiene quindi il proprio centroide e solo tuple entro il raggio.
      *
-     * @param data dataset contenente le tuple.
-     * @param isClustered array booleano che indica quali tuple sono gia' state assegnate.
-     * @return il cluster candidato più popolato che e' stato trovato
-     * @throws EmptyDatasetException se il dataset e' vuoto.
+     * @param data dataset su cui verrà eseguito l'algoritmo.
+     * @param parts indici delle tuple di ogni canopy, in ordine crescente.
+     * @param listener destinatario delle notifiche di avanzamento (null se non richieste).
+     * @param workers esecutore delle canopy.
+     * @return restituisce il numero di cluster trovati.
+     * @throws ClusteringRadiusException se tutte le tuple vengono raggruppate in un unico cluster.
      */
-    private Cluster buildCandidateCluster(Data data, boolean[] isClustered) throws EmptyDatasetException {
-        Cluster bestCluster = null;
-        int maxSize = -1;
-        for (int i = 0; i < data.getNumberOfExamples(); i++) {
-            if (!isClustered[i]) { 
-                Tuple centroid = data.getItemSet(i);
-                Cluster candidate = new Cluster(centroid);
-
-                for (int j = 0; j < data.getNumberOfExamples(); j++) {
-                    if (!isClustered[j]) { 
-                        Tuple current = data.getItemSet(j);
-                        double dist = centroid.getDistance(current);
-
-                        if (dist <= radius) {
-                            candidate.addData(j);
-
+    private int computeCanopies(Data data, List<int[]> parts, ProgressListener listener, Workers workers)
+            throws ClusteringRadiusException {
+        int n = data.getNumberOfExamples();
+        List<Cluster> candidates = new ArrayList<>();
+        int[] found = new int[1];
+        try {
+            List<Workers.Task<ClusterSet>> tasks = new ArrayList<>(parts.size());
+            for (int[] part : parts) {
+                tasks.add(checkpoint -> {
+                    QTMiner miner = new QTMiner(radius, metric);
+                    miner.compute(data, metric.bind(data), part, part.length, checkpoint);
+                    if (listener != null) {
+                        synchronized (found) {
+                            found[0] += miner.getC().size();
+                            // finche' i cluster non sono fusi nessuna tupla e' assegnata in modo definitivo
+                            listener.clusterFound(found[0], 0, n);
                         }
                     }
+                    return miner.getC();
+                });
+            }
+            for (ClusterSet clusters : workers.invokeAll(tasks)) {
+                for (Cluster c : clusters) {
+                    candidates.add(c);
                 }
-                if (candidate.getSize() > maxSize) {
-                    bestCluster = candidate;
-                    maxSize = candidate.getSize();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Errore: clustering interrotto!");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ClusteringRadiusException) {
+                throw (ClusteringRadiusException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+
+        // dal piu' popolato; a parita' vale l'ordine delle canopy
+        candidates.sort((a, b) -> Integer.compare(b.getSize(), a.getSize()));
+        boolean[] assigned = new boolean[n];
+        int clustered = 0;
+        for (Cluster c : candidates) {
+            boolean free = true;
+            for (int id : c) {
+                if (assigned[id]) {
+                    free = false;
+                    break;
+                }
+            }
+            if (free) {
+                C.add(c);
+                for (int id : c) {
+                    assigned[id] = true;
                 }
+                clustered += c.getSize();
             }
         }
+        if (C.size() == 1 && clustered == n) {
+            throw new ClusteringRadiusException();
+        }
+
+        int[] rows = new int[n - clustered];
+        int remaining = 0;
+        for (int i = 0; i < n; i++) {
+            if (!assigned[i]) {
+                rows[remaining++] = i;
+            }
+        }
+        int merged = C.size();
+        int base = clustered;
+        if (listener != null) {
+            listener.clusterFound(merged, base, n);
+        }
+        compute(data, metric.bind(data), rows, remaining, listener == null ? null
+                : (clusters, done, count) -> listener.clusterFound(merged + clusters, base + done, n));
+        return C.size();
+    }
 
+    /**
+     * Costruisce un cluster candidato a partire da ogni tupla non ancora raggruppata, includendo
+     * tutte le tuple entro il "radius", e restituisce il piu' popolato.
+     * Le tuple entro il raggio da ogni tupla vengono cercate tra quelle non raggruppate
+     * ({@link Neighbors#within}) e i candidati vengono raccolti in vettori di indici:
+     * il cluster viene costruito solo per il migliore.
+     *
+     * @param data dataset contenente le tuple.
+     * @param neighbors ricerca dei vicini tra le tuple non ancora raggruppate.
+     * @param rows indici delle tuple non ancora raggruppate, in ordine crescente.
+     * @param count numero di tuple non ancora raggruppate.
+     * @return il cluster candidato più popolato che e' stato trovato
+     */
+    private Cluster buildCandidateCluster(Data data, Neighbors neighbors, int[] rows, int count) {
+        int[] candidate = new int[count];
+        int[] best = new int[count];
+        int bestCentroid = -1;
+        int maxSize = -1;
+        for (int k = 0; k < count; k++) {
+            int size = neighbors.within(rows[k], candidate);
+            if (size > maxSize) {
+                int[] swap = best;
+                best = candidate;
+                candidate = swap;
+                bestCentroid = rows[k];
+                maxSize = size;
+            }
+        }
 
+        Cluster bestCluster = new Cluster(data.getItemSet(bestCentroid));
+        for (int k = 0; k < maxSize; k++) {
+            bestCluster.addData(best[k]);
+        }
         return bestCluster;
     }
 }
-
@@ -0,0 +1,134 @@
+package mining;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Classe che salva un insieme di cluster su file in piu' fasi, per poter raggruppare
+ * le operazioni costose di piu' salvataggi:
+ * - {@link #write(ClusterSet, String)} scrive il file ({@link ModelFile}) con un nome temporaneo,
+ *   nella stessa cartella, attraverso un canale bufferizzato;
+ * - {@link #sync()} ne forza la scrittura su disco;
+ * - {@link #commit()} lo rinomina in modo atomico con il nome definitivo, sostituendo
+ *   l'eventuale file precedente;
+ * - {@link #syncDirectory(Path)} forza su disco la cartella, e con essa i nomi dei file rinominati:
+ *   dopo un'interruzione resta il file precedente oppure quello nuovo, mai un file troncato.
+ * Un salvataggio non completato va scartato con {@link #discard()}.
+ */
+public final class StagedModel {
+    /** Contatore dei file temporanei creati dal processo. */
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    /** File temporaneo */
+    private final Path temp;
+    /** File definitivo */
+    private final Path target;
+    /** Canale aperto sul file temporaneo (null dopo la chiusura) */
+    private FileChannel channel;
+
+    /**
+     * Costruttore del salvataggio.
+     *
+     * @param temp file temporaneo gia' scritto.
+     * @param target file definitivo.
+     * @param channel canale aperto sul file temporaneo.
+     */
+    private StagedModel(Path temp, Path target, FileChannel channel) {
+        this.temp = temp;
+        this.target = target;
+        this.channel = channel;
+    }
+
+    /**
+     * Scrive un insieme di cluster in un file temporaneo accanto al file indicato,
+     * senza forzarne la scrittura su disco.
+     *
+     * @param clusters insieme di cluster da salvare.
+     * @param fileName nome del file definitivo (comprensivo di estensione).
+     * @return salvataggio da completare con {@link #sync()} e {@link #commit()}.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    public static StagedModel write(ClusterSet clusters, String fileName) throws IOException {
+        Path target = Paths.get(fileName).toAbsolutePath();
+        Path temp = Paths.get(target + "." + Long.toHexString(SEQUENCE.incrementAndGet()) + ".tmp");
+        FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            ModelFile.write(clusters, new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            Files.deleteIfExists(temp);
+            throw ex;
+        }
+        return new StagedModel(temp, target, channel);
+    }
+
+    /**
+     * Forza su disco il contenuto del file temporaneo e lo chiude.
+     *
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    public void sync() throws IOException {
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Rinomina il file temporaneo con il nome definitivo, in modo atomico.
+     *
+     * @throws IOException se non e' possibile rinominare il file.
+     */
+    public void commit() throws IOException {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Scarta un salvataggio non completato, rimuovendo il file temporaneo.
+     */
+    public void discard() {
+        try {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            Files.deleteIfExists(temp);
+        } catch (IOException ex) {
+            System.err.println("[!] File temporaneo " + temp + " non rimosso: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Restituisce la cartella del file definitivo.
+     *
+     * @return cartella del file.
+     */
+    public Path getDirectory() {
+        return target.getParent();
+    }
+
+    /**
+     * Forza su disco una cartella, rendendo persistenti i file rinominati al suo interno.
+     * Sui sistemi che non permettono di aprire una cartella (Windows) non fa nulla.
+     *
+     * @param directory cartella da forzare su disco.
+     */
+    public static void syncDirectory(Path directory) {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ex) {
+            // cartella non apribile come file: nulla da forzare
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package mining;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Esecutore dei sottoproblemi di un clustering su un pool di thread creato per ogni chiamata,
+ * usato fuori dal server ({@link Workers#threads(int)}).
+ */
+final class ThreadWorkers implements Workers {
+    /** Numero massimo di sottoproblemi eseguiti contemporaneamente */
+    private final int threads;
+
+    /**
+     * Costruttore parametrizzato della classe ThreadWorkers.
+     *
+     * @param threads numero massimo di sottoproblemi eseguiti contemporaneamente.
+     */
+    ThreadWorkers(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    @Override
+    public <T> List<T> invokeAll(List<? extends Task<T>> tasks) throws ExecutionException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+        try {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Task<T> task : tasks) {
+                futures.add(executor.submit(() -> task.run(null)));
+            }
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package mining;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Interfaccia degli esecutori dei sottoproblemi indipendenti di un clustering, come i cluster
+ * da raffinare di un livello di {@link HierarchicalQTMiner}.
+ *
+ * Il server fornisce un esecutore che occupa uno slot di calcolo per ogni thread usato, in modo che
+ * i sottoproblemi rientrino nei limiti e nella condivisione equa dei clustering; fuori dal server
+ * si usa un esecutore con un numero fisso di thread ({@link #threads(int)}).
+ */
+public interface Workers {
+    /**
+     * Esegue tutti i sottoproblemi, avviandoli nell'ordine indicato, e ne attende il termine.
+     * Se un sottoproblema non va a buon fine, quelli non ancora avviati non vengono eseguiti.
+     *
+     * @param <T> tipo del risultato dei sottoproblemi.
+     * @param tasks sottoproblemi da eseguire.
+     * @return risultati dei sottoproblemi, nello stesso ordine.
+     * @throws ExecutionException se un sottoproblema non va a buon fine (la causa e' il suo errore).
+     * @throws InterruptedException se l'attesa viene interrotta.
+     */
+    <T> List<T> invokeAll(List<? extends Task<T>> tasks) throws ExecutionException, InterruptedException;
+
+    /**
+     * Restituisce un esecutore che usa al piu' il numero di thread indicato, creati per ogni chiamata.
+     *
+     * @param threads numero massimo di sottoproblemi eseguiti contemporaneamente.
+     * @return esecutore dei sottoproblemi.
+     */
+    static Workers threads(int threads) {
+        return new ThreadWorkers(threads);
+    }
+
+    /**
+     * Sottoproblema di un clustering.
+     *
+     * @param <T> tipo del risultato.
+     */
+    interface Task<T> {
+        /**
+         * Esegue il sottoproblema.
+         *
+         * @param checkpoint punto di controllo del thread che esegue il sottoproblema, da notificare
+         *        dopo ogni cluster trovato (null se non richiesto).
+         * @return risultato del sottoproblema.
+         * @throws Exception se il sottoproblema non va a buon fine.
+         */
+        T run(ProgressListener checkpoint) throws Exception;
+    }
+}
@@ -0,0 +1,355 @@
+package server;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import data.Data;
+import data.DistanceMetric;
+import data.EmptyDatasetException;
+import database.DatabaseConnectionException;
+import database.EmptyTypeException;
+import database.NoValueException;
+import mining.ClusterSet;
+import mining.ClusterTree;
+import mining.ClusteringRadiusException;
+import mining.HierarchicalQTMiner;
+import mining.QTMiner;
+
+/**
+ * Classe che contiene lo stato di un client e ne esegue i comandi
+ * (scelta della tabella, clustering, salvataggio e caricamento da file),
+ * indipendentemente dal protocollo con cui i comandi vengono ricevuti.
+ * Usata sia dalle sessioni {@link ServerOneClient} sia dal server non bloccante {@link NioServer}.
+ */
+class ClientSession {
+    /** Servizi condivisi del server */
+    private final ServerContext context;
+    /** Identificativo del client presso lo scheduler dei clustering (indirizzo dell'host) */
+    private final String tenant;
+    /** Nome della tabella corrente del database */
+    private String tableName;
+    /** Ultimo clustering eseguito */
+    private QTMiner lastMiner;
+    /** Dataset dell'ultimo clustering eseguito */
+    private Data lastData;
+    /** Albero dell'ultimo clustering gerarchico (null se l'ultimo clustering non e' gerarchico) */
+    private ClusterTree lastTree;
+    /** Memoria prenotata dalla sessione, corrente e massima */
+    private final MemoryGovernor.Account memory = new MemoryGovernor.Account();
+    /** Memoria prenotata per l'ultimo clustering eseguito dalla sessione (null se nessuna) */
+    private MemoryGovernor.Reservation lastMemory;
+
+    /**
+     * Costruttore parametrizzato della classe ClientSession.
+     *
+     * @param context servizi condivisi del server.
+     * @param tenant identificativo del client presso lo scheduler dei clustering.
+     */
+    ClientSession(ServerContext context, String tenant) {
+        this.context = context;
+        this.tenant = tenant;
+    }
+
+    /**
+     * Restituisce i servizi condivisi del server.
+     *
+     * @return servizi condivisi.
+     */
+    ServerContext getContext() {
+        return context;
+    }
+
+    /**
+     * Restituisce l'identificativo del client presso lo scheduler dei clustering.
+     *
+     * @return identificativo del client.
+     */
+    String getTenant() {
+        return tenant;
+    }
+
+    /**
+     * Restituisce la memoria prenotata dalla sessione per i propri clustering e risultati.
+     *
+     * @return contabilita' della memoria della sessione.
+     */
+    MemoryGovernor.Account getMemory() {
+        return memory;
+    }
+
+    /**
+     * Imposta la tabella (o il file) su cui verranno eseguiti i clustering.
+     *
+     * @param tableName nome della tabella o del file.
+     */
+    void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+    /**
+     * Restituisce la tabella corrente.
+     *
+     * @return nome della tabella o del file corrente.
+     */
+    String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Acquisisce dalla cache il dataset della tabella corrente.
+     *
+     * @return dataset della tabella corrente, da rilasciare al termine.
+     * @throws SQLException se la tabella non e' stata impostata o si e' verificato un errore del database.
+     * @throws DatabaseConnectionException se non e' possibile connettersi al database.
+     * @throws NoValueException se viene letto un valore nullo.
+     * @throws EmptyTypeException se una colonna ha un tipo non corretto.
+     * @throws IOException se il file non e' leggibile.
+     * @throws ServerBusyException se la memoria per il dataset caricato non basta.
+     * @throws InterruptedException se l'attesa della memoria viene interrotta.
+     */
+    private Data acquireTable() throws SQLException, DatabaseConnectionException, NoValueException,
+            EmptyTypeException, IOException, ServerBusyException, InterruptedException {
+        if (tableName == null) {
+            throw new SQLException("Errore: tabella non trovata!");
+        }
+        return context.getCache().acquire(tableName);
+    }
+
+    /**
+     * Carica la tabella corrente ed esegue il clustering con il raggio indicato.
+     *
+     * @param radius raggio del clustering.
+     * @return numero di cluster trovati.
+     * @throws SQLException se si e' verificato un errore del database.
+     * @throws DatabaseConnectionException se non e' possibile connettersi al database.
+     * @throws NoValueException se viene letto un valore nullo.
+     * @throws EmptyTypeException se una colonna ha un tipo non corretto.
+     * @throws IOException se il file non e' leggibile.
+     * @throws ClusteringRadiusException se tutte le tuple ricadono in un unico cluster.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     * @throws ServerBusyException se la coda dei clustering e' piena o la memoria non basta.
+     * @throws InterruptedException se l'attesa del clustering viene interrotta.
+     */
+    int learn(double radius) throws SQLException, DatabaseConnectionException, NoValueException,
+            EmptyTypeException, IOException, ClusteringRadiusException, EmptyDatasetException,
+            ServerBusyException, InterruptedException {
+        Data data = acquireTable();
+        try {
+            QTMiner miner = context.getCompute().newMiner(radius);
+            int numClusters;
+            MemoryGovernor.Reservation work = context.getGovernor().reserve(memory,
+                    Footprint.clustering(data, radius, 1));
+            try {
+                numClusters = context.getCompute().compute(tenant, miner, data);
+            } finally {
+                work.close();
+            }
+            setLast(miner, data);
+            lastMemory = context.getGovernor().charge(memory, Footprint.result(data, numClusters));
+            return numClusters;
+        } finally {
+            data.release();
+        }
+    }
+
+    /**
+     * Carica la tabella corrente ed esegue il clustering gerarchico con i raggi indicati.
+     * L'ultimo clustering della sessione diventa il livello con il raggio maggiore;
+     * gli altri livelli si scelgono con {@link #selectTreeNode(int[])}.
+     *
+     * @param radii raggi dei livelli, in ordine decrescente.
+     * @return numero di cluster del livello con il raggio maggiore.
+     * @throws SQLException se si e' verificato un errore del database.
+     * @throws DatabaseConnectionException se non e' possibile connettersi al database.
+     * @throws NoValueException se viene letto un valore nullo.
+     * @throws EmptyTypeException se una colonna ha un tipo non corretto.
+     * @throws IOException se il file non e' leggibile.
+     * @throws ClusteringRadiusException se con il raggio maggiore tutte le tuple ricadono in un unico cluster.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     * @throws ServerBusyException se la coda dei clustering e' piena o la memoria non basta.
+     * @throws InterruptedException se l'attesa del clustering viene interrotta.
+     */
+    int learnTree(double[] radii) throws SQLException, DatabaseConnectionException, NoValueException,
+            EmptyTypeException, IOException, ClusteringRadiusException, EmptyDatasetException,
+            ServerBusyException, InterruptedException {
+        HierarchicalQTMiner miner = new HierarchicalQTMiner(radii, DistanceMetric.DEFAULT,
+                context.getCompute().getThreads());
+        Data data = acquireTable();
+        try {
+            ClusterTree tree;
+            MemoryGovernor.Reservation work = context.getGovernor().reserve(memory,
+                    Footprint.clustering(data, radii[radii.length - 1], radii.length));
+            try {
+                tree = context.getCompute().compute(tenant, miner, data);
+            } finally {
+                work.close();
+            }
+            setLast(tree.getMiner(), data);
+            lastTree = tree;
+            lastMemory = context.getGovernor().charge(memory, Footprint.result(data, tree));
+            return tree.getClusters().size();
+        } finally {
+            data.release();
+        }
+    }
+
+    /**
+     * Sceglie come ultimo clustering della sessione un nodo dell'ultimo clustering gerarchico,
+     * in modo che possa essere sfogliato, descritto o salvato.
+     *
+     * @param path indici dei cluster da cui scendere a partire dal livello con il raggio maggiore
+     *        (vuoto per tornare a quel livello).
+     * @return cluster del nodo scelto.
+     * @throws IllegalStateException se l'ultimo clustering non e' gerarchico.
+     * @throws IllegalArgumentException se il percorso non corrisponde a un nodo dell'albero.
+     */
+    ClusterSet selectTreeNode(int[] path) {
+        if (lastTree == null) {
+            throw new IllegalStateException("Errore: nessun clustering gerarchico disponibile!");
+        }
+        ClusterTree node;
+        try {
+            node = lastTree.getNode(path);
+        } catch (IndexOutOfBoundsException ex) {
+            throw new IllegalArgumentException("Errore: nodo " + Arrays.toString(path) + " inesistente!");
+        }
+        lastMiner = node.getMiner();
+        return node.getClusters();
+    }
+
+    /**
+     * Imposta l'ultimo clustering della sessione, ad esempio il risultato di un job,
+     * che potra' poi essere descritto o salvato. La sessione acquisisce un riferimento
+     * al dataset e rilascia quello del clustering precedente.
+     *
+     * @param miner miner con il risultato del clustering.
+     * @param data dataset del clustering.
+     */
+    void setLast(QTMiner miner, Data data) {
+        data.retain();
+        if (lastData != null) {
+            lastData.release();
+        }
+        lastMiner = miner;
+        lastData = data;
+        lastTree = null;
+        if (lastMemory != null) {
+            lastMemory.close();
+            lastMemory = null;
+        }
+    }
+
+    /**
+     * Chiude la sessione, rilasciando il dataset dell'ultimo clustering.
+     */
+    void close() {
+        if (lastData != null) {
+            lastData.release();
+            lastData = null;
+            lastMiner = null;
+            lastTree = null;
+        }
+        if (lastMemory != null) {
+            lastMemory.close();
+            lastMemory = null;
+        }
+    }
+
+    /**
+     * Restituisce i cluster dell'ultimo clustering eseguito.
+     *
+     * @return cluster dell'ultimo clustering, oppure null se non ne e' stato eseguito nessuno.
+     */
+    ClusterSet getLastClusters() {
+        return lastMiner != null ? lastMiner.getC() : null;
+    }
+
+    /**
+     * Restituisce il dataset dell'ultimo clustering eseguito.
+     *
+     * @return dataset dell'ultimo clustering, oppure null se non ne e' stato eseguito nessuno.
+     */
+    Data getLastData() {
+        return lastData;
+    }
+
+    /**
+     * Restituisce la descrizione dell'ultimo clustering, con le tuple di ogni cluster.
+     *
+     * @return descrizione dell'ultimo clustering.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     */
+    String describeLast() throws EmptyDatasetException {
+        return lastMiner.getC().toString(lastData);
+    }
+
+    /**
+     * Accoda il salvataggio su file dell'ultimo clustering eseguito ({@link ModelWriter}),
+     * senza attenderne la scrittura.
+     *
+     * @param fileName nome del file (senza estensione).
+     * @return salvataggio accodato, oppure null se non e' disponibile alcun clustering.
+     * @throws ServerBusyException se i salvataggi in attesa sono troppi.
+     */
+    SaveHandle save(String fileName) throws ServerBusyException {
+        if (lastMiner == null) {
+            return null;
+        }
+        return context.getWriter().submit(lastMiner.getC(), fileName);
+    }
+
+    /**
+     * Restituisce il messaggio da inviare al client per un salvataggio accodato.
+     *
+     * @param save salvataggio accodato, oppure null se non e' disponibile alcun clustering.
+     * @return messaggio da inviare al client.
+     */
+    static String saveMessage(SaveHandle save) {
+        if (save == null) {
+            return "Errore: nessun clustering disponibile da salvare!";
+        }
+        return "Salvataggio del clustering in " + save.getFileName() + " accodato (n. " + save.getId() + ")";
+    }
+
+    /**
+     * Carica un clustering salvato su file, dopo aver atteso l'eventuale salvataggio
+     * dello stesso file ancora in corso.
+     *
+     * @param fileName nome del file (senza estensione).
+     * @return descrizione dei cluster caricati.
+     * @throws IOException se il file non e' leggibile.
+     * @throws ClassNotFoundException se un vecchio file contiene classi sconosciute.
+     * @throws InterruptedException se l'attesa del salvataggio viene interrotta.
+     */
+    String load(String fileName) throws IOException, ClassNotFoundException, InterruptedException {
+        context.getWriter().awaitFile(fileName);
+        return "Cluster recuperati dal file: \n" + new QTMiner(fileName).getC();
+    }
+
+    /**
+     * Restituisce il messaggio di errore da inviare al client per un clustering non riuscito.
+     *
+     * @param ex eccezione sollevata da {@link #learn(double)}.
+     * @return messaggio di errore.
+     */
+    String learnError(Exception ex) {
+        return learnError(ex, tableName);
+    }
+
+    /**
+     * Restituisce il messaggio di errore da inviare al client per un clustering non riuscito.
+     *
+     * @param ex eccezione sollevata dal caricamento del dataset o dal clustering.
+     * @param tableName tabella (o file) del clustering.
+     * @return messaggio di errore.
+     */
+    static String learnError(Exception ex, String tableName) {
+        if (ex instanceof SQLException) {
+            return "Errore: tabella non trovata!";
+        } else if (ex instanceof IOException) {
+            return "Errore: file " + tableName + " non leggibile!";
+        }
+        return ex.getMessage();
+    }
+}
@@ -0,0 +1,59 @@
+package server;
+
+/**
+ * Classe che negozia la compressione delle risposte con i client del protocollo binario.
+ *
+ * All'apertura della connessione il client invia una richiesta HELLO con le codifiche che sa
+ * decomprimere, in ordine di preferenza; il server risponde con la codifica scelta (vuota se
+ * nessuna) e da quel momento comprime le risposte piu' grandi ({@link FrameDeflater}).
+ * L'unica codifica supportata e' deflate, disponibile nel JDK. I client che non inviano HELLO,
+ * compresi quelli del vecchio protocollo basato sulla serializzazione Java, ricevono risposte
+ * non compresse; i server precedenti rispondono a HELLO con un errore, che il client tratta
+ * come nessuna compressione.
+ */
+final class Compression {
+    /** Codifica deflate (RFC 1951). */
+    static final String DEFLATE = "deflate";
+
+    /** Livello di compressione, 0 se disattivata */
+    private final int level;
+    /** Numero minimo di byte di dati perche' una risposta venga compressa */
+    private final int threshold;
+
+    /**
+     * Costruttore parametrizzato della classe Compression.
+     *
+     * @param level livello di compressione deflate, da 1 (piu' veloce) a 9 (piu' compatto); 0 la disattiva.
+     * @param threshold numero minimo di byte di dati perche' una risposta venga compressa.
+     */
+    Compression(int level, int threshold) {
+        this.level = Math.min(level, 9);
+        this.threshold = Math.max(0, threshold);
+    }
+
+    /**
+     * Sceglie la codifica tra quelle offerte dal client.
+     *
+     * @param offered codifiche supportate dal client, in ordine di preferenza.
+     * @return codifica scelta, oppure null se nessuna e' supportata o la compressione e' disattivata.
+     */
+    String choose(String[] offered) {
+        if (level > 0) {
+            for (String codec : offered) {
+                if (DEFLATE.equals(codec)) {
+                    return codec;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Crea il compressore delle risposte di una connessione per la codifica scelta.
+     *
+     * @return compressore della connessione.
+     */
+    FrameDeflater open() {
+        return new FrameDeflater(level, threshold);
+    }
+}
@@ -0,0 +1,363 @@
+package server;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import data.Data;
+import data.DistanceMetric;
+import data.EmptyDatasetException;
+import mining.Canopies;
+import mining.ClusterTree;
+import mining.ClusteringRadiusException;
+import mining.HierarchicalQTMiner;
+import mining.ProgressListener;
+import mining.QTMiner;
+import mining.Workers;
+
+/**
+ * Classe che esegue i clustering su un numero limitato di slot di calcolo.
+ *
+ * Le sessioni dei client (che possono essere molte e girare su virtual thread) non eseguono
+ * direttamente {@link QTMiner#compute(Data)}, che impegna la CPU per tutta la sua durata,
+ * ma lo affidano a questo pool, che lo esegue su un thread di piattaforma quando
+ * {@link FairScheduler} gli assegna uno slot. Quando la coda totale o quella del client sono
+ * piene la richiesta viene rifiutata con {@link ServerBusyException}.
+ */
+class ComputePool {
+    /** Thread su cui vengono eseguiti i clustering (in esecuzione o in attesa di uno slot). */
+    private final ThreadPoolExecutor executor;
+    /** Assegnazione degli slot di calcolo ai client. */
+    private final FairScheduler scheduler;
+    /** Numero di clustering eseguiti contemporaneamente. */
+    private final int threads;
+    /** Divisione in canopy dei dataset grandi (null per il clustering esatto). */
+    private final Canopies canopies;
+
+    /**
+     * Costruttore parametrizzato della classe ComputePool.
+     *
+     * @param threads numero di clustering eseguiti contemporaneamente.
+     * @param queue numero massimo di clustering in attesa.
+     * @param tenantSlots numero massimo di clustering di uno stesso client eseguiti contemporaneamente.
+     * @param tenantQueue numero massimo di clustering di uno stesso client in attesa.
+     * @param weights pesi dei client nella condivisione degli slot.
+     * @param canopies divisione in canopy dei dataset grandi (null per il clustering esatto).
+     */
+    ComputePool(int threads, int queue, int tenantSlots, int tenantQueue, Map<String, Integer> weights,
+            Canopies canopies) {
+        executor = new ThreadPoolExecutor(threads, threads + queue, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), SessionThreads.named("qt-compute-"));
+        scheduler = new FairScheduler(threads, tenantSlots, queue, tenantQueue, weights);
+        this.threads = threads;
+        this.canopies = canopies;
+    }
+
+    /**
+     * Crea il miner per un clustering con il raggio indicato, che esegue il clustering sulle canopy
+     * dei dataset grandi se configurate.
+     *
+     * @param radius raggio del clustering.
+     * @return miner da eseguire con {@link #compute(String, QTMiner, Data)}.
+     */
+    QTMiner newMiner(double radius) {
+        return new QTMiner(radius, DistanceMetric.DEFAULT, canopies);
+    }
+
+    /**
+     * Restituisce il numero di clustering eseguiti contemporaneamente, usato anche come numero
+     * massimo di thread che eseguono i sottoproblemi di un clustering ({@link SlotWorkers}).
+     *
+     * @return numero di slot di calcolo.
+     */
+    int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Esegue il clustering del dataset per conto del client indicato e ne attende il termine.
+     * Le canopy dei dataset grandi vengono raggruppate in parallelo solo sugli slot che il client
+     * riesce a ottenere, ciascuno addebitato al client ({@link SlotWorkers}).
+     *
+     * @param tenant identificativo del client.
+     * @param miner miner su cui eseguire il clustering.
+     * @param data dataset da clusterizzare.
+     * @return numero di cluster trovati.
+     * @throws ClusteringRadiusException se tutte le tuple ricadono in un unico cluster.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     * @throws ServerBusyException se la coda dei clustering (totale o del client) e' piena.
+     * @throws InterruptedException se l'attesa viene interrotta.
+     */
+    int compute(String tenant, QTMiner miner, Data data)
+            throws ClusteringRadiusException, EmptyDatasetException, ServerBusyException, InterruptedException {
+        return call(tenant, ticket -> miner.compute(data, ticket, workers(ticket)));
+    }
+
+    /**
+     * Esegue il clustering gerarchico del dataset per conto del client indicato e ne attende il termine.
+     * I sottoproblemi di ogni livello vengono eseguiti in parallelo solo sugli slot che il client
+     * riesce a ottenere, ciascuno addebitato al client ({@link SlotWorkers}).
+     *
+     * @param tenant identificativo del client.
+     * @param miner miner gerarchico su cui eseguire il clustering.
+     * @param data dataset da clusterizzare.
+     * @return albero dei clustering.
+     * @throws ClusteringRadiusException se con il raggio maggiore tutte le tuple ricadono in un unico cluster.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     * @throws ServerBusyException se la coda dei clustering (totale o del client) e' piena.
+     * @throws InterruptedException se l'attesa viene interrotta.
+     */
+    ClusterTree compute(String tenant, HierarchicalQTMiner miner, Data data)
+            throws ClusteringRadiusException, EmptyDatasetException, ServerBusyException, InterruptedException {
+        return call(tenant, ticket -> miner.compute(data, ticket, workers(ticket)));
+    }
+
+    /**
+     * Restituisce l'esecutore dei sottoproblemi di un clustering in esecuzione.
+     *
+     * @param ticket biglietto del clustering, che occupa uno slot.
+     * @return esecutore che esegue i sottoproblemi sul thread del clustering e su slot aggiuntivi del client.
+     */
+    private Workers workers(FairScheduler.Ticket ticket) {
+        return new SlotWorkers(this, ticket, threads);
+    }
+
+    /**
+     * Ammette un clustering ausiliario del client indicato, che quando ottiene uno slot esegue
+     * i sottoproblemi di un altro clustering dello stesso client ({@link SlotWorkers}).
+     * Il clustering ausiliario riceve il proprio biglietto come punto di controllo.
+     *
+     * @param tenant identificativo del client.
+     * @param work lavoro da eseguire sullo slot ottenuto.
+     * @return operazione che annulla il clustering ausiliario se non ha ancora ottenuto uno slot,
+     *         oppure null se la coda dei clustering (totale o del client) e' piena.
+     */
+    Runnable help(String tenant, Consumer<ProgressListener> work) {
+        FairScheduler.Ticket ticket;
+        try {
+            ticket = scheduler.admit(tenant);
+        } catch (ServerBusyException ex) {
+            return null;
+        }
+        AtomicBoolean started = new AtomicBoolean();
+        Future<?> future;
+        try {
+            future = executor.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return;
+                }
+                try {
+                    scheduler.acquire(ticket);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                try {
+                    work.accept(ticket);
+                } finally {
+                    scheduler.release(ticket);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            scheduler.cancel(ticket);
+            return null;
+        }
+        return () -> {
+            if (started.compareAndSet(false, true)) {
+                scheduler.cancel(ticket);
+            }
+            future.cancel(true);
+        };
+    }
+
+    /**
+     * Esegue un clustering per conto del client indicato, quando gli viene assegnato uno slot,
+     * e ne attende il termine.
+     *
+     * @param <T> tipo del risultato del clustering.
+     * @param tenant identificativo del client.
+     * @param task clustering da eseguire, che riceve il punto di controllo da notificare
+     *        al termine di ogni iterazione.
+     * @return risultato del clustering.
+     * @throws ClusteringRadiusException se tutte le tuple ricadono in un unico cluster.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     * @throws ServerBusyException se la coda dei clustering (totale o del client) e' piena.
+     * @throws InterruptedException se l'attesa viene interrotta.
+     */
+    private <T> T call(String tenant, Task<T> task)
+            throws ClusteringRadiusException, EmptyDatasetException, ServerBusyException, InterruptedException {
+        FairScheduler.Ticket ticket = scheduler.admit(tenant);
+        AtomicBoolean started = new AtomicBoolean();
+        Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                if (!started.compareAndSet(false, true)) {
+                    return null;
+                }
+                scheduler.acquire(ticket);
+                try {
+                    return task.run(ticket);
+                } finally {
+                    scheduler.release(ticket);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            scheduler.cancel(ticket);
+            throw new ServerBusyException();
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            if (started.compareAndSet(false, true)) {
+                scheduler.cancel(ticket);
+            }
+            result.cancel(true);
+            throw ex;
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof ClusteringRadiusException) {
+                throw (ClusteringRadiusException) cause;
+            } else if (cause instanceof EmptyDatasetException) {
+                throw (EmptyDatasetException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Accoda un'attivita' (tipicamente un job di clustering) del client indicato senza attenderne
+     * il termine. L'attivita' viene avviata subito su un thread del pool e riceve il proprio slot
+     * di calcolo ancora da ottenere ({@link Slot#acquire()}): puo' cosi' preparare il clustering
+     * (caricare il dataset, prenotarne la memoria) senza occupare uno slot.
+     *
+     * @param tenant identificativo del client.
+     * @param task attivita' da eseguire.
+     * @throws ServerBusyException se la coda dei clustering (totale o del client) e' piena.
+     */
+    void submit(String tenant, Consumer<Slot> task) throws ServerBusyException {
+        FairScheduler.Ticket ticket = scheduler.admit(tenant);
+        try {
+            executor.execute(() -> {
+                Slot slot = new Slot(ticket);
+                try {
+                    task.accept(slot);
+                } finally {
+                    slot.finish();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            scheduler.cancel(ticket);
+            throw new ServerBusyException();
+        }
+    }
+
+    /**
+     * Restituisce il numero di clustering in attesa di iniziare.
+     *
+     * @return numero di clustering accodati.
+     */
+    int getQueued() {
+        return scheduler.getQueued();
+    }
+
+    /**
+     * Restituisce il numero di clustering in esecuzione.
+     *
+     * @return numero di slot di calcolo occupati.
+     */
+    int getRunning() {
+        return scheduler.getRunning();
+    }
+
+    /**
+     * Arresta il pool dopo i clustering gia' accodati.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Slot di calcolo di un'attivita' accodata con {@link #submit}, ottenuto su richiesta
+     * e restituito al termine dell'attivita'.
+     */
+    final class Slot {
+        /** Biglietto dell'attivita' presso lo scheduler */
+        private final FairScheduler.Ticket ticket;
+        /** Indica se lo slot e' stato richiesto */
+        private boolean requested;
+        /** Indica se lo slot e' stato ottenuto */
+        private boolean granted;
+
+        /**
+         * Costruttore dello slot di un'attivita'.
+         *
+         * @param ticket biglietto dell'attivita', gia' ammesso presso lo scheduler.
+         */
+        private Slot(FairScheduler.Ticket ticket) {
+            this.ticket = ticket;
+        }
+
+        /**
+         * Attende che lo scheduler assegni lo slot all'attivita'; va chiamato una sola volta.
+         *
+         * @throws InterruptedException se l'attesa viene interrotta.
+         */
+        void acquire() throws InterruptedException {
+            requested = true;
+            scheduler.acquire(ticket);
+            granted = true;
+        }
+
+        /**
+         * Restituisce il punto di controllo da notificare al termine di ogni iterazione del clustering.
+         *
+         * @return punto di controllo dello scheduler.
+         */
+        ProgressListener getCheckpoint() {
+            return ticket;
+        }
+
+        /**
+         * Restituisce l'esecutore dei sottoproblemi del clustering, da usare dopo aver ottenuto lo slot.
+         *
+         * @return esecutore dei sottoproblemi.
+         */
+        Workers getWorkers() {
+            return workers(ticket);
+        }
+
+        /**
+         * Restituisce lo slot ottenuto, oppure ritira il biglietto se lo slot non e' mai stato richiesto.
+         */
+        private void finish() {
+            if (!requested) {
+                scheduler.cancel(ticket);
+            } else if (granted) {
+                scheduler.release(ticket);
+            }
+        }
+    }
+
+    /**
+     * Clustering eseguito su uno slot di calcolo.
+     *
+     * @param <T> tipo del risultato del clustering.
+     */
+    private interface Task<T> {
+        /**
+         * Esegue il clustering.
+         *
+         * @param ticket punto di controllo da notificare al termine di ogni iterazione.
+         * @return risultato del clustering.
+         * @throws Exception se il clustering non va a buon fine.
+         */
+        T run(FairScheduler.Ticket ticket) throws Exception;
+    }
+}
@@ -0,0 +1,426 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.Data;
+import data.DataSnapshot;
+import data.FileTableReader;
+import database.DatabaseConnectionException;
+import database.EmptyTypeException;
+import database.NoValueException;
+import metrics.Counter;
+import metrics.Metrics;
+
+/**
+ * Classe che mantiene in memoria i dataset caricati, in modo che i clustering successivi
+ * sulla stessa tabella (o sullo stesso file) non debbano ricaricarla.
+ *
+ * I dataset possono essere copiati fuori dallo heap ({@link Data#toOffHeap()}): in questo caso
+ * non vengono esaminati dal garbage collector e la loro memoria viene liberata esplicitamente.
+ * Ogni dataset restituito da {@link #acquire(String)} porta con se' un riferimento che il chiamante
+ * deve rilasciare con {@link Data#release()}; la cache ne trattiene uno proprio finche' il dataset
+ * non viene rimosso. La memoria viene liberata quando il dataset e' stato rimosso dalla cache
+ * e tutti gli utilizzatori (sessioni, job, clustering in corso) lo hanno rilasciato.
+ *
+ * Quando la dimensione complessiva delle colonne supera il limite vengono rimossi i dataset
+ * usati meno di recente. Un dataset letto da file viene ricaricato se il file e' cambiato,
+ * uno letto dal database dopo il tempo massimo di permanenza indicato, oppure viene aggiornato
+ * in background ({@link DatasetRefresher}) e sostituito con {@link #replace}: chi sta usando
+ * il dataset precedente continua a leggerlo finche' non lo rilascia. I dataset usati meno di recente
+ * vengono rimossi anche quando la memoria serve ai clustering ({@link #evictEldest()}), ma solo
+ * se nessuno li sta usando: rimuoverli non libererebbe memoria.
+ *
+ * I dataset rimossi ma non ancora rilasciati da tutti gli utilizzatori restano contati nella memoria
+ * usata ({@link #getUsedBytes()}) fino all'ultimo rilascio. Un dataset caricato viene ammesso dal
+ * {@link MemoryGovernor}, se impostato, prima di essere copiato fuori dallo heap e memorizzato.
+ */
+class DatasetCache {
+    /** Dataset trovati in memoria. */
+    private static final Counter HITS = Metrics.counter("cache.hits");
+    /** Dataset caricati perche' assenti o non piu' validi. */
+    private static final Counter MISSES = Metrics.counter("cache.misses");
+    /** Dataset rimossi per rispettare il limite di memoria. */
+    private static final Counter EVICTIONS = Metrics.counter("cache.evictions");
+
+    /** Caricamento dei dataset */
+    private final DatasetLoader loader;
+    /** Dimensione massima delle colonne dei dataset in memoria (byte), 0 per non trattenerli */
+    private final long budget;
+    /** Indica se i dataset vengono copiati fuori dallo heap */
+    private final boolean offHeap;
+    /** Tempo massimo di permanenza dei dataset letti dal database (ns), 0 se illimitato */
+    private final long ttlNanos;
+    /** Dataset in memoria, dal meno al piu' recentemente usato */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Dataset rimossi ma ancora usati, contati finche' non vengono rilasciati */
+    private final List<Entry> detached = new ArrayList<>();
+    /** Contabilita' della memoria prenotata per i dataset caricati */
+    private final MemoryGovernor.Account account = new MemoryGovernor.Account();
+    /** Limite della memoria che ammette i dataset caricati (null se non impostato) */
+    private volatile MemoryGovernor governor;
+    /** Dimensione complessiva delle colonne dei dataset in memoria (byte) */
+    private long bytes;
+
+    /**
+     * Costruttore parametrizzato della classe DatasetCache.
+     *
+     * @param loader caricamento dei dataset.
+     * @param budget dimensione massima delle colonne dei dataset in memoria in byte (0 per non trattenerli).
+     * @param offHeap "true" per copiare i dataset fuori dallo heap.
+     * @param ttlMillis tempo massimo di permanenza dei dataset letti dal database, in millisecondi
+     * (0 se vengono aggiornati in background).
+     */
+    DatasetCache(DatasetLoader loader, long budget, boolean offHeap, long ttlMillis) {
+        this.loader = loader;
+        this.budget = budget;
+        this.offHeap = offHeap;
+        this.ttlNanos = ttlMillis * 1_000_000;
+    }
+
+    /**
+     * Imposta il limite della memoria che deve ammettere i dataset caricati prima che vengano
+     * copiati fuori dallo heap e memorizzati.
+     *
+     * @param governor limite della memoria dei clustering.
+     */
+    void setGovernor(MemoryGovernor governor) {
+        this.governor = governor;
+    }
+
+    /**
+     * Restituisce il dataset indicato, caricandolo se non e' in memoria o non e' piu' valido.
+     * Il chiamante deve rilasciare il dataset con {@link Data#release()} quando non lo usa piu'.
+     *
+     * @param name nome della tabella o del file.
+     * @return dataset richiesto.
+     * @throws SQLException se si e' verificato un errore del database.
+     * @throws DatabaseConnectionException se non e' possibile connettersi al database.
+     * @throws NoValueException se viene letto un valore nullo.
+     * @throws EmptyTypeException se una colonna ha un tipo non corretto.
+     * @throws IOException se il file non e' leggibile o lo snapshot non puo' essere scritto.
+     * @throws ServerBusyException se la memoria per il dataset caricato non basta.
+     * @throws InterruptedException se l'attesa della memoria viene interrotta.
+     */
+    Data acquire(String name) throws SQLException, DatabaseConnectionException, NoValueException,
+            EmptyTypeException, IOException, ServerBusyException, InterruptedException {
+        Data cached = lookup(name);
+        if (cached != null) {
+            HITS.increment();
+            return cached;
+        }
+        MISSES.increment();
+        long stamp = stamp(name);
+        Data data = loader.load(name);
+        MemoryGovernor admission = governor;
+        MemoryGovernor.Reservation load = admission == null ? null
+                : admission.reserve(account, offHeap ? 2 * data.getColumnBytes() : data.getColumnBytes());
+        try {
+            if (offHeap) {
+                data = data.toOffHeap();
+            }
+            return store(name, stamp, data);
+        } finally {
+            if (load != null) {
+                load.close();
+            }
+        }
+    }
+
+    /**
+     * Memorizza un dataset appena caricato, a meno che nel frattempo non ne sia stata memorizzata
+     * una versione valida, che viene restituita al suo posto.
+     *
+     * @param name nome della tabella o del file.
+     * @param stamp impronta del file letto.
+     * @param data dataset caricato.
+     * @return dataset da restituire al chiamante, con un riferimento acquisito.
+     */
+    private synchronized Data store(String name, long stamp, Data data) {
+        Entry entry = new Entry(data, stamp);
+        if (budget <= 0) {
+            detached.add(entry);
+            return data;
+        }
+        Entry current = entries.get(name);
+        if (current != null && isFresh(name, current)) {
+            current.data.retain();
+            data.release();
+            return current.data;
+        }
+        if (current != null) {
+            remove(name);
+        }
+        entries.put(name, entry);
+        bytes += entry.bytes;
+        data.retain();
+        evict();
+        return data;
+    }
+
+    /**
+     * Cerca un dataset valido in memoria e ne acquisisce un riferimento; un dataset non piu' valido
+     * viene rimosso.
+     *
+     * @param name nome della tabella o del file.
+     * @return dataset trovato, oppure null se deve essere caricato.
+     */
+    private synchronized Data lookup(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        if (!isFresh(name, entry)) {
+            remove(name);
+            return null;
+        }
+        entry.data.retain();
+        return entry.data;
+    }
+
+    /**
+     * Indica se un dataset in memoria e' ancora valido: per i file, se il file non e' cambiato;
+     * per le tabelle del database, se non e' trascorso il tempo massimo di permanenza (se previsto).
+     *
+     * @param name nome della tabella o del file.
+     * @param entry dataset in memoria.
+     * @return "true" se il dataset puo' essere usato.
+     */
+    private boolean isFresh(String name, Entry entry) {
+        if (isFile(name)) {
+            return entry.stamp == stamp(name);
+        }
+        return ttlNanos <= 0 || System.nanoTime() - entry.loadedAt < ttlNanos;
+    }
+
+    /**
+     * Indica se il nome si riferisce a un file (snapshot, CSV o dump SQL) invece che a una tabella.
+     *
+     * @param name nome della tabella o del file.
+     * @return "true" se il dataset viene letto da file.
+     */
+    private static boolean isFile(String name) {
+        return name.endsWith(DataSnapshot.FILE_FORMAT) || FileTableReader.isSupported(name);
+    }
+
+    /**
+     * Restituisce un'impronta della versione di un file (data di modifica e dimensione).
+     *
+     * @param name nome della tabella o del file.
+     * @return impronta del file, 0 per le tabelle del database.
+     */
+    private static long stamp(String name) {
+        if (!isFile(name)) {
+            return 0;
+        }
+        File file = new File(name);
+        return file.lastModified() * 31 + file.length();
+    }
+
+    /**
+     * Rimuove i dataset usati meno di recente finche' la memoria occupata supera il limite.
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > budget && it.hasNext()) {
+            Entry entry = it.next().getValue();
+            it.remove();
+            detach(entry);
+            EVICTIONS.increment();
+        }
+    }
+
+    /**
+     * Rimuove il dataset usato meno di recente tra quelli che nessuno sta usando, quando la memoria
+     * serve ai clustering ({@link MemoryGovernor}): la sua memoria viene liberata subito.
+     *
+     * @return "true" se un dataset e' stato rimosso, "false" se tutti i dataset in memoria sono in uso.
+     */
+    synchronized boolean evictEldest() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.data.getReferences() == 1) {
+                it.remove();
+                detach(entry);
+                EVICTIONS.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Rimuove un dataset e ne rilascia il riferimento della cache.
+     *
+     * @param name nome della tabella o del file.
+     */
+    private void remove(String name) {
+        Entry entry = entries.remove(name);
+        if (entry != null) {
+            detach(entry);
+        }
+    }
+
+    /**
+     * Rilascia il riferimento della cache a un dataset gia' tolto dalla mappa; se il dataset
+     * e' ancora usato continua a essere contato finche' non viene rilasciato.
+     *
+     * @param entry dataset rimosso.
+     */
+    private void detach(Entry entry) {
+        bytes -= entry.bytes;
+        entry.data.release();
+        if (entry.data.getReferences() > 0) {
+            detached.add(entry);
+        }
+    }
+
+    /**
+     * Restituisce i nomi delle tabelle del database presenti in memoria.
+     *
+     * @return nomi delle tabelle.
+     */
+    synchronized List<String> getTableNames() {
+        List<String> names = new ArrayList<>();
+        for (String name : entries.keySet()) {
+            if (!isFile(name)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Restituisce il dataset indicato se e' in memoria, senza caricarlo ne' verificarne la validita'.
+     * Il chiamante deve rilasciare il dataset con {@link Data#release()}.
+     *
+     * @param name nome della tabella o del file.
+     * @return dataset in memoria, oppure null se assente.
+     */
+    synchronized Data peek(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        entry.data.retain();
+        return entry.data;
+    }
+
+    /**
+     * Sostituisce un dataset in memoria con la sua versione aggiornata, se nel frattempo non e' stato
+     * rimosso o ricaricato. Le richieste successive ricevono la nuova versione; chi usa quella
+     * precedente continua a leggerla finche' non la rilascia.
+     *
+     * @param name nome della tabella o del file.
+     * @param expected dataset da sostituire.
+     * @param updated dataset aggiornato.
+     * @return dataset memorizzato (la copia esterna allo heap, se previsto), oppure null se la sostituzione
+     * non e' avvenuta.
+     */
+    Data replace(String name, Data expected, Data updated) {
+        Data stored = offHeap ? updated.toOffHeap() : updated;
+        synchronized (this) {
+            Entry current = entries.get(name);
+            if (current != null && current.data == expected) {
+                Entry entry = new Entry(stored, current.stamp);
+                entries.put(name, entry);
+                bytes += entry.bytes;
+                detach(current);
+                evict();
+                return entries.get(name) == entry ? stored : null;
+            }
+        }
+        stored.release();
+        return null;
+    }
+
+    /**
+     * Rimuove il dataset indicato, che verra' ricaricato alla prossima richiesta.
+     *
+     * @param name nome della tabella o del file.
+     */
+    synchronized void invalidate(String name) {
+        remove(name);
+    }
+
+    /**
+     * Rimuove tutti i dataset in memoria.
+     */
+    synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            detach(entry);
+        }
+        entries.clear();
+    }
+
+    /**
+     * Restituisce il numero di dataset in memoria.
+     *
+     * @return numero di dataset.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Restituisce la dimensione complessiva delle colonne dei dataset in memoria.
+     *
+     * @return memoria occupata in byte.
+     */
+    synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Restituisce la memoria occupata dai dataset: quelli in memoria e quelli rimossi
+     * che qualcuno non ha ancora rilasciato.
+     *
+     * @return memoria usata in byte.
+     */
+    synchronized long getUsedBytes() {
+        long used = bytes;
+        Iterator<Entry> it = detached.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.data.getReferences() == 0) {
+                it.remove();
+            } else {
+                used += entry.bytes;
+            }
+        }
+        return used;
+    }
+
+    /**
+     * Dataset in memoria.
+     */
+    private static final class Entry {
+        /** Dataset (la cache ne trattiene un riferimento) */
+        final Data data;
+        /** Dimensione delle colonne (byte) */
+        final long bytes;
+        /** Impronta del file letto, 0 per le tabelle del database */
+        final long stamp;
+        /** Istante del caricamento (ns) */
+        final long loadedAt = System.nanoTime();
+
+        /**
+         * Costruttore di un dataset in memoria.
+         *
+         * @param data dataset caricato.
+         * @param stamp impronta del file letto.
+         */
+        Entry(Data data, long stamp) {
+            this.data = data;
+            this.bytes = data.getColumnBytes();
+            this.stamp = stamp;
+        }
+    }
+}
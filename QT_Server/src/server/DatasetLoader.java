@@ -0,0 +1,82 @@
+package server;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+
+import data.Data;
+import data.DataSnapshot;
+import data.FileTableReader;
+import database.ConnectionPool;
+import database.DatabaseConnectionException;
+import database.EmptyTypeException;
+import database.NoValueException;
+import metrics.Metrics;
+
+/**
+ * Classe che carica i dataset richiesti dai client, dal database o da file.
+ * Condivisa da tutte le sessioni e dai job del server.
+ */
+class DatasetLoader {
+    /** Pool di connessioni al database condiviso */
+    private final ConnectionPool pool;
+
+    /**
+     * Costruttore parametrizzato della classe DatasetLoader.
+     *
+     * @param pool pool di connessioni al database condiviso.
+     */
+    DatasetLoader(ConnectionPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Carica il dataset indicato dal client.
+     * Il nome puo' riferirsi a uno snapshot (".qtd"), a un file CSV o dump SQL (".csv", ".sql")
+     * oppure a una tabella del database; in quest'ultimo caso, se la proprieta' di sistema
+     * "qt.snapshot.dir" indica una cartella, il dataset caricato viene salvato anche come snapshot.
+     *
+     * @param name nome della tabella o del file.
+     * @return dataset caricato.
+     * @throws SQLException se si e' verificato un errore del database.
+     * @throws DatabaseConnectionException se non e' possibile connettersi al database.
+     * @throws NoValueException se viene letto un valore nullo.
+     * @throws EmptyTypeException se una colonna ha un tipo non corretto.
+     * @throws IOException se il file non e' leggibile o lo snapshot non puo' essere scritto.
+     */
+    Data load(String name) throws SQLException, DatabaseConnectionException, NoValueException,
+            EmptyTypeException, IOException {
+        long start = System.nanoTime();
+        Data data = read(name);
+        Metrics.LOAD_TIME.recordSince(start);
+        Metrics.LOAD_ROWS.add(data.getNumberOfExamples());
+        return data;
+    }
+
+    /**
+     * Legge il dataset indicato dalla sorgente corrispondente al nome.
+     *
+     * @param name nome della tabella o del file.
+     * @return dataset letto.
+     * @throws SQLException se si e' verificato un errore del database.
+     * @throws DatabaseConnectionException se non e' possibile connettersi al database.
+     * @throws NoValueException se viene letto un valore nullo.
+     * @throws EmptyTypeException se una colonna ha un tipo non corretto.
+     * @throws IOException se il file non e' leggibile o lo snapshot non puo' essere scritto.
+     */
+    private Data read(String name) throws SQLException, DatabaseConnectionException, NoValueException,
+            EmptyTypeException, IOException {
+        if (name.endsWith(DataSnapshot.FILE_FORMAT)) {
+            return DataSnapshot.open(name);
+        }
+        if (FileTableReader.isSupported(name)) {
+            return new FileTableReader(name, null).read();
+        }
+        Data data = new Data(name, pool);
+        String snapshotDir = System.getProperty("qt.snapshot.dir");
+        if (snapshotDir != null) {
+            DataSnapshot.save(data, new File(snapshotDir, name + DataSnapshot.FILE_FORMAT).getPath());
+        }
+        return data;
+    }
+}
@@ -0,0 +1,305 @@
+package server;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import data.Data;
+import data.PartitionedData;
+import database.ConnectionPool;
+import database.DatabaseConnectionException;
+import database.DbAccess;
+import database.EmptySetException;
+import database.Example;
+import database.TableProbe;
+import database.TableSchema;
+import metrics.Counter;
+import metrics.Metrics;
+import metrics.Timer;
+
+/**
+ * Classe che mantiene aggiornati, in background, i dataset letti dal database e presenti in memoria
+ * ({@link DatasetCache}), leggendo solo le righe cambiate.
+ *
+ * A ogni esecuzione, per ogni tabella in memoria:
+ * - una sonda economica legge numero di righe e, se configurate, il massimo della chiave crescente
+ *   e della colonna con la data di ultima modifica; se non sono cambiati la tabella non viene letta
+ *   (senza colonna di modifica si assume che le righe non vengano modificate sul posto, ma solo
+ *   inserite o cancellate);
+ * - se sono state solo inserite righe con chiave maggiore di quella gia' letta, vengono lette
+ *   soltanto quelle;
+ * - altrimenti il database calcola una somma di controllo per ogni partizione della tabella
+ *   ({@link TableProbe#checksums}) e vengono rilette solo le partizioni la cui somma e' cambiata.
+ * Il dataset aggiornato ({@link PartitionedData#patch}) sostituisce quello in memoria senza bloccare
+ * chi lo sta usando. La prima esecuzione su una tabella la rilegge per intero, annotando la partizione
+ * di ogni tupla.
+ */
+class DatasetRefresher implements Runnable {
+    /** Controlli eseguiti sulle tabelle. */
+    private static final Counter CHECKS = Metrics.counter("refresh.checks");
+    /** Dataset aggiornati. */
+    private static final Counter PATCHES = Metrics.counter("refresh.patches");
+    /** Tuple lette dagli aggiornamenti. */
+    private static final Counter ROWS = Metrics.counter("refresh.rows");
+    /** Durata di un controllo, compreso l'eventuale aggiornamento. */
+    private static final Timer TIME = Metrics.timer("refresh.time");
+
+    /** Dataset in memoria */
+    private final DatasetCache cache;
+    /** Pool di connessioni al database condiviso */
+    private final ConnectionPool pool;
+    /** Numero di partizioni delle tabelle */
+    private final int partitions;
+    /** Nome della colonna con chiave crescente (null se non configurata) */
+    private final String keyColumn;
+    /** Nome della colonna con la data di ultima modifica (null se non configurata) */
+    private final String updateColumn;
+    /** Stato dell'aggiornamento di ogni tabella (usato solo dal thread dell'aggiornamento) */
+    private final Map<String, TableState> states = new HashMap<>();
+
+    /**
+     * Costruttore parametrizzato della classe DatasetRefresher.
+     *
+     * @param cache dataset in memoria.
+     * @param pool pool di connessioni al database condiviso.
+     * @param partitions numero di partizioni delle tabelle.
+     * @param keyColumn nome della colonna con chiave crescente (null o vuoto se non presente).
+     * @param updateColumn nome della colonna con la data di ultima modifica (null o vuoto se non presente).
+     */
+    DatasetRefresher(DatasetCache cache, ConnectionPool pool, int partitions, String keyColumn, String updateColumn) {
+        this.cache = cache;
+        this.pool = pool;
+        this.partitions = partitions;
+        this.keyColumn = keyColumn == null || keyColumn.isEmpty() ? null : keyColumn;
+        this.updateColumn = updateColumn == null || updateColumn.isEmpty() ? null : updateColumn;
+    }
+
+    /**
+     * Controlla e, se necessario, aggiorna tutte le tabelle in memoria. Un errore su una tabella
+     * non interrompe il controllo delle altre: la tabella verra' riletta per intero al prossimo controllo.
+     */
+    @Override
+    public void run() {
+        List<String> names = cache.getTableNames();
+        states.keySet().retainAll(names);
+        for (String name : names) {
+            long start = System.nanoTime();
+            try {
+                refresh(name);
+            } catch (EmptySetException ex) {
+                states.remove(name);
+                cache.invalidate(name);
+            } catch (Exception ex) {
+                states.remove(name);
+                System.err.println("[!] Aggiornamento della tabella " + name + " non riuscito: " + ex.getMessage());
+            } finally {
+                TIME.recordSince(start);
+            }
+        }
+    }
+
+    /**
+     * Controlla una tabella e, se e' cambiata, ne aggiorna il dataset in memoria.
+     *
+     * @param name nome della tabella.
+     * @throws SQLException se si e' verificato un errore del database.
+     * @throws DatabaseConnectionException se non e' possibile connettersi al database.
+     */
+    private void refresh(String name) throws SQLException, DatabaseConnectionException {
+        Data current = cache.peek(name);
+        if (current == null) {
+            return;
+        }
+        try {
+            DbAccess db = pool.acquire();
+            try {
+                CHECKS.increment();
+                TableProbe probe = new TableProbe(db);
+                TableState state = states.get(name);
+                if (state == null || state.table.getData() != current) {
+                    initialize(name, current, probe, db);
+                } else {
+                    update(name, current, probe, state);
+                }
+            } finally {
+                pool.release(db);
+            }
+        } finally {
+            current.release();
+        }
+    }
+
+    /**
+     * Rilegge per intero una tabella annotando la partizione di ogni tupla, in modo che i controlli
+     * successivi possano rileggerne solo le parti cambiate.
+     *
+     * @param name nome della tabella.
+     * @param current dataset in memoria.
+     * @param probe sonde sulla tabella.
+     * @param db connessione al database.
+     * @throws SQLException se si e' verificato un errore del database.
+     */
+    private void initialize(String name, Data current, TableProbe probe, DbAccess db) throws SQLException {
+        TableSchema schema = new TableSchema(db, name);
+        String[] names = new String[schema.getNumberOfAttributes()];
+        boolean[] numeric = new boolean[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = schema.getColumn(i).getColumnName();
+            numeric[i] = schema.getColumn(i).isNumber();
+        }
+        TableState state = new TableState(new PartitionedData(names, numeric, partitions),
+                keyColumn != null && probe.hasColumn(name, keyColumn),
+                updateColumn != null && probe.hasColumn(name, updateColumn));
+        // le sonde precedono la lettura: le modifiche successive verranno rilevate al prossimo controllo
+        state.summary = probe.aggregate(name, null, state.summaryExpressions());
+        state.sums = probe.checksums(name, partitions, null);
+        boolean[] replaced = new boolean[partitions];
+        Arrays.fill(replaced, true);
+        apply(name, current, state, probe, replaced, null);
+    }
+
+    /**
+     * Controlla una tabella gia' partizionata e ne rilegge solo le righe cambiate.
+     *
+     * @param name nome della tabella.
+     * @param current dataset in memoria.
+     * @param probe sonde sulla tabella.
+     * @param state stato dell'aggiornamento della tabella.
+     * @throws SQLException se si e' verificato un errore del database.
+     */
+    private void update(String name, Data current, TableProbe probe, TableState state) throws SQLException {
+        String[] summary = probe.aggregate(name, null, state.summaryExpressions());
+        boolean same = Arrays.equals(summary, state.summary);
+        if (same && (state.hasKey || state.hasUpdate)) {
+            return;
+        }
+
+        if (state.hasKey && state.summary[1] != null && summary[1] != null && !same) {
+            String appended = keyColumn + " > " + state.summary[1] + " AND " + keyColumn + " <= " + summary[1];
+            long count = Long.parseLong(probe.aggregate(name, appended, "COUNT(*)")[0]);
+            boolean onlyAppended = Long.parseLong(state.summary[0]) + count == Long.parseLong(summary[0]);
+            if (onlyAppended && state.hasUpdate && state.summary[2] != null) {
+                String modified = keyColumn + " <= " + state.summary[1] + " AND " + updateColumn + " > " + quote(state.summary[2]);
+                onlyAppended = Long.parseLong(probe.aggregate(name, modified, "COUNT(*)")[0]) == 0;
+            }
+            if (onlyAppended) {
+                long[][] added = probe.checksums(name, partitions, appended);
+                for (int p = 0; p < partitions; p++) {
+                    state.sums[p][0] += added[p][0];
+                    state.sums[p][1] += added[p][1];
+                }
+                state.summary = summary;
+                apply(name, current, state, probe, new boolean[partitions], appended);
+                return;
+            }
+        }
+
+        long[][] sums = probe.checksums(name, partitions, null);
+        List<Integer> changed = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            if (sums[p][0] != state.sums[p][0] || sums[p][1] != state.sums[p][1]) {
+                changed.add(p);
+            }
+        }
+        state.summary = summary;
+        state.sums = sums;
+        if (changed.isEmpty()) {
+            return;
+        }
+        boolean[] replaced = new boolean[partitions];
+        int[] selected = new int[changed.size()];
+        for (int i = 0; i < selected.length; i++) {
+            selected[i] = changed.get(i);
+            replaced[selected[i]] = true;
+        }
+        apply(name, current, state, probe, replaced, probe.inPartitions(name, partitions, selected));
+    }
+
+    /**
+     * Legge le tuple indicate, aggiorna il dataset e lo sostituisce a quello in memoria.
+     *
+     * @param name nome della tabella.
+     * @param current dataset in memoria.
+     * @param state stato dell'aggiornamento della tabella.
+     * @param probe sonde sulla tabella.
+     * @param replaced per ogni partizione, "true" se il suo contenuto va sostituito.
+     * @param where condizione delle righe da leggere (null per l'intera tabella).
+     * @throws SQLException se si e' verificato un errore del database.
+     */
+    private void apply(String name, Data current, TableState state, TableProbe probe, boolean[] replaced, String where)
+            throws SQLException {
+        List<Example> rows = new ArrayList<>();
+        int[][] rowPartitions = {new int[64]};
+        probe.scan(name, partitions, where, (row, partition) -> {
+            if (rows.size() == rowPartitions[0].length) {
+                rowPartitions[0] = Arrays.copyOf(rowPartitions[0], rows.size() * 2);
+            }
+            rowPartitions[0][rows.size()] = partition;
+            rows.add(row);
+        });
+        ROWS.add(rows.size());
+        PartitionedData patched = state.table.patch(replaced, rows, rowPartitions[0]);
+        Data stored = cache.replace(name, current, patched.getData());
+        if (stored == null) {
+            states.remove(name);
+            return;
+        }
+        state.table = patched.withData(stored);
+        states.put(name, state);
+        PATCHES.increment();
+    }
+
+    /**
+     * Racchiude un valore tra apici per usarlo come letterale SQL.
+     *
+     * @param value valore letto dal database.
+     * @return letterale SQL.
+     */
+    private static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    /**
+     * Stato dell'aggiornamento di una tabella: dataset partizionato e risultati dell'ultimo controllo.
+     */
+    private final class TableState {
+        /** Dataset partizionato, con gli esempi del dataset in memoria */
+        PartitionedData table;
+        /** Indica se la tabella ha la colonna con chiave crescente */
+        final boolean hasKey;
+        /** Indica se la tabella ha la colonna con la data di ultima modifica */
+        final boolean hasUpdate;
+        /** Numero di righe, massimo della chiave e della data di modifica all'ultimo controllo */
+        String[] summary;
+        /** Per ogni partizione, numero di righe e somma degli hash all'ultimo controllo */
+        long[][] sums;
+
+        /**
+         * Costruttore dello stato di una tabella.
+         *
+         * @param table dataset partizionato ancora vuoto.
+         * @param hasKey "true" se la tabella ha la colonna con chiave crescente.
+         * @param hasUpdate "true" se la tabella ha la colonna con la data di ultima modifica.
+         */
+        TableState(PartitionedData table, boolean hasKey, boolean hasUpdate) {
+            this.table = table;
+            this.hasKey = hasKey;
+            this.hasUpdate = hasUpdate;
+        }
+
+        /**
+         * Restituisce le espressioni della sonda economica: numero di righe, massimo della chiave
+         * e massimo della data di modifica (le ultime due solo se presenti, sempre nelle posizioni 1 e 2).
+         *
+         * @return espressioni aggregate.
+         */
+        String[] summaryExpressions() {
+            return new String[] {"COUNT(*)",
+                    hasKey ? "MAX(" + keyColumn + ")" : "NULL",
+                    hasUpdate ? "MAX(" + updateColumn + ")" : "NULL"};
+        }
+    }
+}
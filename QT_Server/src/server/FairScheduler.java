@@ -0,0 +1,340 @@
+package server;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import mining.ProgressListener;
+
+/**
+ * Classe che assegna i posti di calcolo (slot) ai clustering dei diversi client
+ * con una politica di condivisione equa pesata.
+ *
+ * Ogni client (tenant) accumula un tempo virtuale pari al tempo di calcolo usato diviso per
+ * il proprio peso; quando uno slot si libera viene assegnato al clustering in attesa del tenant
+ * con il tempo virtuale minore, purche' questi non occupi gia' il numero massimo di slot per tenant.
+ * Un tenant che torna attivo dopo un periodo di inattivita' riparte dal tempo virtuale corrente,
+ * senza poter accumulare credito mentre non usa il server.
+ *
+ * I clustering in esecuzione chiamano {@link Ticket#clusterFound(int, int, int)} dopo ogni
+ * cluster trovato: se tutti gli slot sono occupati e un altro tenant con tempo virtuale minore
+ * e' in attesa, il clustering cede il proprio slot e riprende quando gli viene riassegnato,
+ * per cui un clustering breve puo' superare uno lungo al termine di un'iterazione. Contano solo
+ * le notifiche del thread che ha ottenuto lo slot: quelle di altri thread (ad esempio i sottoproblemi
+ * di un clustering eseguiti su slot propri, vedi {@link SlotWorkers}) vengono ignorate.
+ *
+ * L'ammissione e' limitata sia in totale sia per tenant: oltre i limiti la richiesta viene
+ * rifiutata con {@link ServerBusyException}.
+ */
+class FairScheduler {
+    /** Numero di slot di calcolo */
+    private final int slots;
+    /** Numero massimo di slot occupati da un tenant */
+    private final int tenantSlots;
+    /** Numero massimo di clustering in attesa di iniziare */
+    private final int maxQueued;
+    /** Numero massimo di clustering di un tenant in attesa di iniziare */
+    private final int tenantQueued;
+    /** Pesi dei tenant (peso 1 per quelli non indicati) */
+    private final Map<String, Integer> weights;
+    /** Tenant attivi o con tempo virtuale superiore a quello corrente */
+    private final Map<String, Tenant> tenants = new HashMap<>();
+    /** Slot occupati */
+    private int running;
+    /** Clustering ammessi e non ancora iniziati */
+    private int queued;
+    /** Tempo virtuale corrente: tempo virtuale dell'ultimo tenant servito */
+    private double virtualTime;
+
+    /**
+     * Costruttore parametrizzato della classe FairScheduler.
+     *
+     * @param slots numero di slot di calcolo.
+     * @param tenantSlots numero massimo di slot occupati da un tenant.
+     * @param maxQueued numero massimo di clustering in attesa di iniziare.
+     * @param tenantQueued numero massimo di clustering di un tenant in attesa di iniziare.
+     * @param weights pesi dei tenant.
+     */
+    FairScheduler(int slots, int tenantSlots, int maxQueued, int tenantQueued, Map<String, Integer> weights) {
+        this.slots = slots;
+        this.tenantSlots = Math.max(1, Math.min(tenantSlots, slots));
+        this.maxQueued = maxQueued;
+        this.tenantQueued = tenantQueued;
+        this.weights = new HashMap<>(weights);
+    }
+
+    /**
+     * Ammette un nuovo clustering del tenant indicato, riservandogli un posto in coda.
+     *
+     * @param tenant identificativo del tenant.
+     * @return biglietto con cui il clustering richiedera' e rilascera' lo slot.
+     * @throws ServerBusyException se la coda totale o quella del tenant sono piene.
+     */
+    synchronized Ticket admit(String tenant) throws ServerBusyException {
+        Tenant owner = tenants.get(tenant);
+        if (queued >= maxQueued || (owner != null && owner.queued >= tenantQueued)) {
+            throw new ServerBusyException();
+        }
+        if (owner == null) {
+            owner = new Tenant(tenant, weights.getOrDefault(tenant, 1));
+            tenants.put(tenant, owner);
+        }
+        if (owner.isIdle()) {
+            owner.pass = Math.max(owner.pass, virtualTime);
+        }
+        owner.queued++;
+        owner.admitted++;
+        queued++;
+        return new Ticket(owner);
+    }
+
+    /**
+     * Annulla l'ammissione di un clustering che non ha ancora richiesto lo slot.
+     *
+     * @param ticket biglietto del clustering.
+     */
+    synchronized void cancel(Ticket ticket) {
+        ticket.owner.queued--;
+        ticket.owner.admitted--;
+        queued--;
+        forgetIdle();
+    }
+
+    /**
+     * Attende che al clustering venga assegnato uno slot.
+     *
+     * @param ticket biglietto del clustering.
+     * @throws InterruptedException se l'attesa viene interrotta; il biglietto viene rilasciato.
+     */
+    synchronized void acquire(Ticket ticket) throws InterruptedException {
+        ticket.holder = Thread.currentThread();
+        ticket.owner.waiting.add(ticket);
+        dispatch();
+        try {
+            while (!ticket.granted) {
+                wait();
+            }
+        } catch (InterruptedException ex) {
+            if (!ticket.granted) {
+                ticket.owner.waiting.remove(ticket);
+                cancel(ticket);
+            } else {
+                ticket.owner.queued--;
+                queued--;
+                release(ticket);
+            }
+            throw ex;
+        }
+        ticket.owner.queued--;
+        queued--;
+    }
+
+    /**
+     * Rilascia lo slot del clustering, addebitandone il tempo di calcolo al tenant.
+     *
+     * @param ticket biglietto del clustering.
+     */
+    synchronized void release(Ticket ticket) {
+        charge(ticket);
+        ticket.granted = false;
+        ticket.owner.running--;
+        ticket.owner.admitted--;
+        running--;
+        forgetIdle();
+        dispatch();
+    }
+
+    /**
+     * Punto di controllo al termine di un'iterazione: addebita il tempo di calcolo e, se un altro
+     * tenant con tempo virtuale minore e' in attesa di uno slot, cede lo slot e attende di riaverlo.
+     * L'attesa non e' interrompibile; lo stato di interruzione del thread viene conservato.
+     * Non fa nulla se chiamato da un thread diverso da quello che ha richiesto lo slot.
+     *
+     * @param ticket biglietto del clustering.
+     */
+    private synchronized void checkpoint(Ticket ticket) {
+        if (Thread.currentThread() != ticket.holder) {
+            return;
+        }
+        charge(ticket);
+        Tenant next = next();
+        if (next == null || next == ticket.owner || next.pass >= ticket.owner.pass) {
+            return;
+        }
+        ticket.granted = false;
+        ticket.owner.running--;
+        running--;
+        ticket.owner.waiting.addFirst(ticket);
+        dispatch();
+        boolean interrupted = false;
+        while (!ticket.granted) {
+            try {
+                wait();
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Assegna gli slot liberi ai clustering in attesa, scegliendo ogni volta il tenant
+     * con il tempo virtuale minore.
+     */
+    private void dispatch() {
+        boolean granted = false;
+        Tenant next;
+        while (running < slots && (next = next()) != null) {
+            Ticket ticket = next.waiting.poll();
+            ticket.granted = true;
+            ticket.since = System.nanoTime();
+            next.running++;
+            running++;
+            virtualTime = Math.max(virtualTime, next.pass);
+            granted = true;
+        }
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Restituisce il tenant con clustering in attesa, slot disponibili e tempo virtuale minore.
+     *
+     * @return tenant da servire, oppure null se nessuno puo' esserlo.
+     */
+    private Tenant next() {
+        Tenant best = null;
+        for (Tenant tenant : tenants.values()) {
+            if (!tenant.waiting.isEmpty() && tenant.running < tenantSlots
+                    && (best == null || tenant.pass < best.pass)) {
+                best = tenant;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Addebita al tenant il tempo di calcolo usato dal clustering dall'ultimo addebito,
+     * diviso per il peso del tenant.
+     *
+     * @param ticket biglietto del clustering.
+     */
+    private void charge(Ticket ticket) {
+        long now = System.nanoTime();
+        ticket.owner.pass += (double) (now - ticket.since) / ticket.owner.weight;
+        ticket.since = now;
+    }
+
+    /**
+     * Rimuove i tenant inattivi che non hanno tempo virtuale da scontare.
+     */
+    private void forgetIdle() {
+        Iterator<Tenant> it = tenants.values().iterator();
+        while (it.hasNext()) {
+            Tenant t = it.next();
+            if (t.isIdle() && t.pass <= virtualTime) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Restituisce il numero di clustering ammessi e non ancora iniziati.
+     *
+     * @return numero di clustering in coda.
+     */
+    synchronized int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Restituisce il numero di slot occupati.
+     *
+     * @return numero di clustering in esecuzione.
+     */
+    synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Stato di un tenant presso lo scheduler.
+     */
+    private static class Tenant {
+        /** Identificativo del tenant */
+        final String name;
+        /** Peso del tenant */
+        final int weight;
+        /** Tempo virtuale: tempo di calcolo usato diviso per il peso (ns) */
+        double pass;
+        /** Slot occupati */
+        int running;
+        /** Clustering ammessi e non ancora iniziati */
+        int queued;
+        /** Clustering ammessi e non ancora terminati */
+        int admitted;
+        /** Clustering in attesa di uno slot, nell'ordine in cui lo riceveranno */
+        final ArrayDeque<Ticket> waiting = new ArrayDeque<>();
+
+        /**
+         * Costruttore dello stato di un tenant.
+         *
+         * @param name identificativo del tenant.
+         * @param weight peso del tenant.
+         */
+        Tenant(String name, int weight) {
+            this.name = name;
+            this.weight = Math.max(1, weight);
+        }
+
+        /**
+         * Indica se il tenant non ha clustering ammessi.
+         *
+         * @return true se il tenant e' inattivo.
+         */
+        boolean isIdle() {
+            return admitted == 0;
+        }
+    }
+
+    /**
+     * Biglietto di un clustering ammesso: identifica il tenant e, durante l'esecuzione,
+     * fa da punto di controllo al termine di ogni iterazione di {@link mining.QTMiner}.
+     */
+    class Ticket implements ProgressListener {
+        /** Tenant del clustering */
+        private final Tenant owner;
+        /** Indica se il clustering occupa uno slot */
+        private boolean granted;
+        /** Istante dell'ultimo addebito del tempo di calcolo (ns) */
+        private long since;
+        /** Thread che ha richiesto lo slot (null prima della richiesta) */
+        private Thread holder;
+
+        /**
+         * Costruttore del biglietto.
+         *
+         * @param owner tenant del clustering.
+         */
+        private Ticket(Tenant owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Restituisce l'identificativo del tenant del clustering.
+         *
+         * @return identificativo del tenant.
+         */
+        String getTenant() {
+            return owner.name;
+        }
+
+        @Override
+        public void clusterFound(int clusters, int clustered, int total) {
+            checkpoint(this);
+        }
+    }
+}
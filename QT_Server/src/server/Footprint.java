@@ -0,0 +1,117 @@
+package server;
+
+import data.Data;
+import data.DistanceMetric;
+import data.Distances;
+import mining.ClusterSet;
+import mining.ClusterTree;
+
+/**
+ * Classe che stima la memoria occupata da dataset, clustering in corso e risultati,
+ * usata da {@link MemoryGovernor} per decidere se un clustering puo' iniziare.
+ *
+ * Le stime sono per una JVM a 64 bit con riferimenti compressi:
+ * - un dataset occupa le sue colonne ({@link Data#getColumnBytes()});
+ * - un clustering in corso occupa, per ogni tupla, la ricerca dei vicini (indice per firma e
+ *   scansione, compresa l'ordinazione durante la costruzione) e i vettori di indici dei candidati;
+ * - un risultato occupa, per ogni tupla, un elemento dell'insieme di ID del suo cluster e,
+ *   per ogni cluster, il centroide con un valore per attributo.
+ * Il numero di cluster viene stimato dal raggio su un campione di tuple: se ogni tupla
+ * ha |N(i)| vicini entro il raggio, i cluster sono circa la somma di 1/|N(i)|, con |N(i)|
+ * stimato dai vicini nel campione (1 per le tuple senza altri vicini, per eccesso).
+ */
+final class Footprint {
+    /** Byte per tupla della ricerca dei vicini e dei vettori di indici di un clustering in corso. */
+    static final long SEARCH_BYTES_PER_ROW = 96;
+    /** Byte per tupla dell'insieme di ID dei cluster di un risultato. */
+    static final long MEMBER_BYTES = 48;
+    /** Byte per cluster di un risultato, escluso il centroide. */
+    static final long CLUSTER_BYTES = 96;
+    /** Byte per valore del centroide di un cluster. */
+    static final long ITEM_BYTES = 40;
+    /** Numero massimo di tuple del campione per la stima del numero di cluster. */
+    static final int SAMPLE = 256;
+
+    /**
+     * Costruttore privato: la classe contiene solo metodi statici.
+     */
+    private Footprint() {
+    }
+
+    /**
+     * Stima la memoria di un clustering in corso, compreso il risultato in costruzione
+     * (escluso il dataset).
+     *
+     * @param data dataset da raggruppare.
+     * @param radius raggio minore del clustering.
+     * @param levels numero di livelli (1 per un clustering non gerarchico), ognuno con un risultato.
+     * @return memoria stimata in byte.
+     */
+    static long clustering(Data data, double radius, int levels) {
+        long rows = data.getNumberOfExamples();
+        return rows * SEARCH_BYTES_PER_ROW + levels * result(data, clusters(data, radius));
+    }
+
+    /**
+     * Stima la memoria di un albero di clustering gia' costruito, sommando i cluster di tutti i nodi.
+     *
+     * @param data dataset del clustering.
+     * @param tree albero dei clustering.
+     * @return memoria stimata in byte.
+     */
+    static long result(Data data, ClusterTree tree) {
+        ClusterSet clusters = tree.getClusters();
+        boolean leaf = tree.getDepth() == 1;
+        long bytes = clusters.size() * (CLUSTER_BYTES + data.getNumberOfAttributes() * ITEM_BYTES);
+        for (int i = 0; i < clusters.size(); i++) {
+            bytes += clusters.getClusterSize(i) * MEMBER_BYTES;
+            if (!leaf) {
+                bytes += result(data, tree.getChild(i));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Stima la memoria di un risultato.
+     *
+     * @param data dataset del clustering.
+     * @param clusters numero di cluster.
+     * @return memoria stimata in byte.
+     */
+    static long result(Data data, long clusters) {
+        return data.getNumberOfExamples() * MEMBER_BYTES
+                + clusters * (CLUSTER_BYTES + data.getNumberOfAttributes() * ITEM_BYTES);
+    }
+
+    /**
+     * Stima il numero di cluster di un clustering con il raggio indicato, dai vicini
+     * di un campione di tuple distribuite sull'intero dataset.
+     *
+     * @param data dataset da raggruppare.
+     * @param radius raggio del clustering.
+     * @return numero di cluster stimato, tra 1 e il numero di tuple.
+     */
+    static long clusters(Data data, double radius) {
+        int n = data.getNumberOfExamples();
+        if (n == 0) {
+            return 0;
+        }
+        int size = Math.min(n, SAMPLE);
+        int[] sample = new int[size];
+        for (int k = 0; k < size; k++) {
+            sample[k] = (int) ((long) k * n / size);
+        }
+        Distances distances = DistanceMetric.DEFAULT.bind(data);
+        double[] scratch = new double[size];
+        int[] out = new int[size];
+        double scale = (double) n / size;
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            int neighbors = distances.within(sample[k], sample, size, radius, scratch, out);
+            // una tupla senza altri vicini nel campione puo' essere da sola nel suo cluster
+            sum += neighbors <= 1 ? 1 : 1 / (neighbors * scale);
+        }
+        return Math.max(1, Math.min(n, Math.round(sum / size * n)));
+    }
+}
@@ -0,0 +1,258 @@
+package server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Classe che rappresenta un messaggio (frame) del protocollo binario del server.
+ *
+ * Ogni frame e' preceduto dalla sua lunghezza ed e' composto da:
+ * - lunghezza in byte del resto del frame (int);
+ * - identificativo della richiesta, ripetuto nella risposta (int);
+ * - tipo: codice del comando nelle richieste, esito nelle risposte (byte);
+ * - dati del comando o della risposta.
+ * Se la compressione e' stata negoziata con una richiesta HELLO, le risposte piu' grandi hanno
+ * l'indicatore {@link #COMPRESSED} nel tipo e i dati compressi ({@link FrameDeflater}).
+ */
+final class Frame {
+    /** Byte di intestazione che seguono la lunghezza (identificativo e tipo). */
+    static final int HEADER = 5;
+    /** Lunghezza massima accettata per un frame. */
+    static final int MAX_LENGTH = 16 << 20;
+
+    /** Richiesta: imposta la tabella corrente (nome). */
+    static final byte STORE_TABLE = 0;
+    /** Richiesta: clustering della tabella corrente (raggio). */
+    static final byte LEARN = 1;
+    /** Richiesta: salvataggio dell'ultimo clustering (nome del file). */
+    static final byte STORE_CLUSTER = 2;
+    /** Richiesta: caricamento di un clustering da file (nome del file). */
+    static final byte LOAD_FILE = 3;
+    /** Richiesta: descrizione testuale completa dell'ultimo clustering. */
+    static final byte RESULT_TEXT = 4;
+    /** Richiesta: sottomissione di un clustering asincrono (tabella, raggio). */
+    static final byte SUBMIT_JOB = 5;
+    /** Richiesta: stato di un job (identificativo). */
+    static final byte JOB_STATUS = 6;
+    /** Richiesta: attesa di un aggiornamento di un job (identificativo, attesa massima in ms). */
+    static final byte JOB_WAIT = 7;
+    /** Richiesta: risultato di un job terminato (identificativo). */
+    static final byte JOB_RESULT = 8;
+    /** Richiesta: pagina di cluster dell'ultimo clustering (primo indice, numero di cluster). */
+    static final byte RESULT_PAGE = 9;
+    /** Richiesta: pagina di tuple di un cluster (indice del cluster, prima tupla, numero di tuple). */
+    static final byte CLUSTER_MEMBERS = 10;
+    /** Richiesta: metriche del server in formato testo. */
+    static final byte METRICS = 11;
+    /** Richiesta: clustering gerarchico della tabella corrente (raggi in ordine decrescente). */
+    static final byte LEARN_TREE = 12;
+    /** Richiesta: scelta di un nodo dell'ultimo clustering gerarchico (indici dei cluster da cui scendere). */
+    static final byte TREE_NODE = 13;
+    /** Richiesta: negoziazione della compressione delle risposte (codifiche supportate dal client). */
+    static final byte HELLO = 14;
+    /** Richiesta: stato di un salvataggio (identificativo, attesa massima di un aggiornamento in ms). */
+    static final byte SAVE_STATUS = 15;
+
+    /** Risposta: comando eseguito. */
+    static final byte OK = 0;
+    /** Risposta: comando non eseguito (messaggio di errore). */
+    static final byte ERROR = 1;
+    /** Risposta: server sovraccarico (messaggio). */
+    static final byte BUSY = 2;
+    /** Risposta parziale: seguono altri frame per la stessa richiesta. */
+    static final byte CHUNK = 3;
+    /** Indicatore, sommato al tipo di una risposta, dei dati compressi con la codifica negoziata. */
+    static final byte COMPRESSED = 0x40;
+
+    /** Identificativo della richiesta */
+    private final int requestId;
+    /** Tipo del frame */
+    private final byte type;
+    /** Dati del frame */
+    private final byte[] payload;
+
+    /**
+     * Costruttore parametrizzato della classe Frame.
+     *
+     * @param requestId identificativo della richiesta.
+     * @param type tipo del frame.
+     * @param payload dati del frame.
+     */
+    Frame(int requestId, byte type, byte[] payload) {
+        this.requestId = requestId;
+        this.type = type;
+        this.payload = payload;
+    }
+
+    /**
+     * Crea un frame che contiene solo un messaggio testuale.
+     *
+     * @param requestId identificativo della richiesta.
+     * @param type tipo del frame.
+     * @param text messaggio.
+     * @return frame creato.
+     */
+    static Frame message(int requestId, byte type, String text) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeString(new DataOutputStream(bytes), text);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new Frame(requestId, type, bytes.toByteArray());
+    }
+
+    /**
+     * Restituisce l'identificativo della richiesta.
+     *
+     * @return identificativo della richiesta.
+     */
+    int getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Restituisce il tipo del frame.
+     *
+     * @return tipo del frame.
+     */
+    byte getType() {
+        return type;
+    }
+
+    /**
+     * Restituisce un flusso per leggere i dati del frame.
+     *
+     * @return flusso sui dati del frame.
+     */
+    DataInputStream payload() {
+        return new DataInputStream(new ByteArrayInputStream(payload));
+    }
+
+    /**
+     * Restituisce i dati del frame, senza copiarli.
+     *
+     * @return dati del frame.
+     */
+    byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * Codifica il frame, lunghezza compresa, in un buffer pronto per la scrittura.
+     *
+     * @return buffer contenente il frame.
+     */
+    ByteBuffer toBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + HEADER + payload.length);
+        buffer.putInt(HEADER + payload.length).putInt(requestId).put(type).put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Scrive il frame, lunghezza compresa, sul flusso indicato.
+     *
+     * @param out flusso di destinazione.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(HEADER + payload.length);
+        out.writeInt(requestId);
+        out.writeByte(type);
+        out.write(payload);
+    }
+
+    /**
+     * Legge un frame completo dal flusso indicato.
+     *
+     * @param in flusso di origine.
+     * @return frame letto.
+     * @throws IOException se il flusso termina o il frame non e' valido.
+     */
+    static Frame read(DataInput in) throws IOException {
+        int length = checkLength(in.readInt());
+        int requestId = in.readInt();
+        byte type = in.readByte();
+        byte[] payload = new byte[length - HEADER];
+        in.readFully(payload);
+        return new Frame(requestId, type, payload);
+    }
+
+    /**
+     * Estrae un frame dal buffer, se questo lo contiene per intero.
+     * Se il frame e' incompleto il buffer non viene modificato.
+     *
+     * @param buffer buffer in modalita' lettura.
+     * @return frame estratto, oppure null se il buffer non contiene un frame completo.
+     * @throws IOException se la lunghezza del frame non e' valida.
+     */
+    static Frame decode(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 4) {
+            return null;
+        }
+        int length = checkLength(buffer.getInt(buffer.position()));
+        if (buffer.remaining() < 4 + length) {
+            return null;
+        }
+        buffer.getInt();
+        int requestId = buffer.getInt();
+        byte type = buffer.get();
+        byte[] payload = new byte[length - HEADER];
+        buffer.get(payload);
+        return new Frame(requestId, type, payload);
+    }
+
+    /**
+     * Verifica la lunghezza dichiarata di un frame.
+     *
+     * @param length lunghezza dichiarata.
+     * @return lunghezza verificata.
+     * @throws IOException se la lunghezza non e' valida.
+     */
+    private static int checkLength(int length) throws IOException {
+        if (length < HEADER || length > MAX_LENGTH) {
+            throw new IOException("Errore: frame di lunghezza non valida (" + length + ")!");
+        }
+        return length;
+    }
+
+    /**
+     * Scrive una stringa come lunghezza in byte seguita dalla codifica UTF-8.
+     * A differenza di {@link DataOutput#writeUTF(String)} non ha limiti di lunghezza.
+     *
+     * @param out flusso di destinazione.
+     * @param text stringa da scrivere.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    static void writeString(DataOutput out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Legge una stringa scritta con {@link #writeString(DataOutput, String)}.
+     *
+     * @param in flusso di origine.
+     * @return stringa letta.
+     * @throws IOException se si verifica un errore di lettura.
+     */
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_LENGTH) {
+            throw new IOException("Errore: stringa di lunghezza non valida (" + length + ")!");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,80 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import data.VarInt;
+import metrics.Counter;
+import metrics.Metrics;
+
+/**
+ * Classe che comprime le risposte di una connessione dopo che la compressione e' stata negoziata
+ * ({@link Compression}).
+ *
+ * Le risposte con almeno {@link #threshold} byte di dati vengono inviate con l'indicatore
+ * {@link Frame#COMPRESSED} nel tipo; i dati sono la lunghezza originale (varint) seguita dalla
+ * parte di un unico flusso deflate (senza intestazione zlib) che li codifica, chiusa con un
+ * SYNC_FLUSH in modo che il client possa decomprimerla appena ricevuta. Il flusso resta aperto
+ * per tutta la connessione: i riferimenti all'indietro possono puntare ai frame precedenti,
+ * per cui anche la descrizione testuale di un clustering, inviata in frame CHUNK limitati,
+ * sfrutta le ripetizioni tra un frame e l'altro senza mai essere accumulata per intero.
+ * Di conseguenza ogni frame compresso va inviato, e decompresso, nell'ordine di compressione.
+ */
+final class FrameDeflater {
+    /** Byte dei dati delle risposte compresse, prima della compressione. */
+    private static final Counter BYTES_IN = Metrics.counter("net.compress.bytes.in");
+    /** Byte dei dati delle risposte compresse, dopo la compressione. */
+    private static final Counter BYTES_OUT = Metrics.counter("net.compress.bytes.out");
+
+    /** Flusso deflate della connessione */
+    private final Deflater deflater;
+    /** Numero minimo di byte di dati perche' una risposta venga compressa */
+    private final int threshold;
+    /** Vettore di appoggio per i byte compressi */
+    private final byte[] buffer = new byte[8192];
+
+    /**
+     * Costruttore parametrizzato della classe FrameDeflater.
+     *
+     * @param level livello di compressione (da 1 a 9).
+     * @param threshold numero minimo di byte di dati perche' una risposta venga compressa.
+     */
+    FrameDeflater(int level, int threshold) {
+        this.deflater = new Deflater(level, true);
+        this.threshold = threshold;
+    }
+
+    /**
+     * Comprime una risposta, se i suoi dati raggiungono la soglia.
+     *
+     * @param frame risposta da inviare.
+     * @return risposta compressa, oppure quella indicata se e' sotto la soglia.
+     * @throws IOException se si verifica un errore di codifica.
+     */
+    Frame compress(Frame frame) throws IOException {
+        byte[] payload = frame.getPayload();
+        if (payload.length < threshold) {
+            return frame;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length / 4 + 16);
+        VarInt.write(new DataOutputStream(bytes), payload.length);
+        deflater.setInput(payload);
+        int n;
+        do {
+            n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            bytes.write(buffer, 0, n);
+        } while (n == buffer.length);
+        BYTES_IN.add(payload.length);
+        BYTES_OUT.add(bytes.size());
+        return new Frame(frame.getRequestId(), (byte) (frame.getType() | Frame.COMPRESSED), bytes.toByteArray());
+    }
+
+    /**
+     * Libera la memoria del flusso deflate; il compressore non puo' piu' essere usato.
+     */
+    void end() {
+        deflater.end();
+    }
+}
@@ -0,0 +1,634 @@
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import data.Data;
+import data.EmptyDatasetException;
+import data.Tuple;
+import data.TupleCodec;
+import data.VarInt;
+import metrics.Metrics;
+import mining.ClusterSet;
+
+/**
+ * Classe che esegue le richieste del protocollo binario ({@link Frame}) su una {@link ClientSession}
+ * e ne costruisce le risposte. Le richieste di una stessa sessione devono essere eseguite
+ * una alla volta, nell'ordine di arrivo.
+ *
+ * Dati delle richieste e delle risposte (le stringhe sono scritte con {@link Frame#writeString}):
+ * - STORE_TABLE: nome della tabella; risposta "OK";
+ * - LEARN: raggio (double); risposta con la prima pagina dei cluster (vedi RESULT_PAGE);
+ * - RESULT_PAGE: primo indice e numero di cluster (varint); risposta con il numero totale di cluster,
+ *   il primo indice e il numero di cluster restituiti (varint) e, se ve ne sono, lo schema degli
+ *   attributi ({@link TupleCodec}) seguito, per ogni cluster, da indice e numero di tuple (varint),
+ *   centroide (codici di dizionario e valori continui) e distanza media (double);
+ * - CLUSTER_MEMBERS: indice del cluster, prima tupla e numero di tuple (varint); risposta con il
+ *   numero di tuple del cluster, la prima tupla e il numero di tuple restituite (varint), lo schema
+ *   e, per ogni tupla in ordine di ID, ID (varint), valori (codici e double) e distanza dal centroide;
+ * - METRICS: nessun dato; risposta con le metriche del server in formato testo ({@link Metrics#report()}),
+ *   seguite dalla memoria prenotata dalla sessione, corrente e massima ({@link MemoryGovernor});
+ * - LEARN_TREE: numero di raggi (varint) e raggi in ordine decrescente (double); clustering gerarchico
+ *   ({@link mining.HierarchicalQTMiner}), risposta come per LEARN con i cluster del raggio maggiore;
+ * - TREE_NODE: numero di livelli da scendere e indice del cluster di ogni livello (varint); il clustering
+ *   delle tuple del cluster raggiunto, con il raggio del livello successivo (nessun indice per il raggio
+ *   maggiore), diventa l'ultimo clustering della sessione; risposta come per LEARN;
+ * - RESULT_TEXT: nessun dato; la descrizione testuale completa dell'ultimo clustering viene inviata
+ *   un cluster alla volta in frame CHUNK di dimensione limitata, seguiti da un frame OK con l'ultima parte;
+ * - STORE_CLUSTER: nome del file; il salvataggio viene accodato ({@link ModelWriter}) e la risposta,
+ *   immediata, contiene il messaggio per l'utente seguito dall'identificativo del salvataggio (varint,
+ *   0 se non e' disponibile alcun clustering);
+ * - SAVE_STATUS: identificativo del salvataggio e attesa massima in ms (varint); risposta con lo stato
+ *   ({@link SaveHandle#writeStatus}) non appena cambia, quando il file e' persistente o allo scadere dell'attesa;
+ * - LOAD_FILE: nome del file; risposta con la descrizione dei cluster caricati;
+ * - SUBMIT_JOB: tabella e raggio; risposta con l'identificativo del job (varint);
+ * - JOB_STATUS: identificativo del job (varint); risposta con lo stato ({@link Job#writeStatus});
+ * - JOB_WAIT: identificativo del job e attesa massima in ms (varint); risposta con lo stato
+ *   non appena cambia, quando il job termina o allo scadere dell'attesa;
+ * - JOB_RESULT: identificativo del job (varint); risposta come per LEARN. Il risultato diventa
+ *   l'ultimo clustering della sessione, che puo' quindi essere descritto o salvato.
+ * - HELLO: numero di codifiche (varint) e nomi delle codifiche che il client sa decomprimere, in ordine
+ *   di preferenza; risposta con la codifica scelta ({@link Compression}), vuota se nessuna. Da quel momento
+ *   le risposte piu' grandi vengono compresse ({@link FrameDeflater}).
+ * Le risposte ERROR e BUSY contengono il messaggio da mostrare all'utente.
+ * Pagine di cluster e di tuple sono limitate a {@link #MAX_PAGE} elementi, per cui la memoria
+ * usata dal server per una risposta non dipende dalla dimensione del clustering.
+ */
+class FrameProtocol {
+    /** Numero massimo di cluster o di tuple in una pagina. */
+    static final int MAX_PAGE = 1000;
+    /** Numero di caratteri di testo oltre il quale viene inviato un frame CHUNK. */
+    private static final int CHUNK_CHARS = 16 * 1024;
+
+    /** Stato e comandi del client */
+    private final ClientSession session;
+    /** Compressore delle risposte (null se la compressione non e' stata negoziata) */
+    private FrameDeflater deflater;
+
+    /**
+     * Costruttore parametrizzato della classe FrameProtocol.
+     *
+     * @param session sessione su cui eseguire le richieste.
+     */
+    FrameProtocol(ClientSession session) {
+        this.session = session;
+    }
+
+    /**
+     * Esegue una richiesta e ne invia la risposta, eventualmente suddivisa in piu' frame.
+     *
+     * @param request richiesta ricevuta.
+     * @param sink destinazione delle risposte.
+     * @throws IOException se non e' possibile inviare le risposte al client.
+     */
+    void handle(Frame request, FrameSink sink) throws IOException {
+        FrameDeflater compressor = deflater;
+        if (compressor != null && request.getType() != Frame.HELLO) {
+            FrameSink plain = sink;
+            sink = frame -> plain.send(compressor.compress(frame));
+        }
+        long start = System.nanoTime();
+        if (request.getType() == Frame.RESULT_TEXT) {
+            streamText(request.getRequestId(), sink);
+        } else {
+            Frame response = reply(request);
+            Metrics.REQUEST_TIME.recordSince(start);
+            if (response.getType() != Frame.OK) {
+                Metrics.REQUEST_ERRORS.increment();
+            }
+            sink.send(response);
+        }
+    }
+
+    /**
+     * Esegue una richiesta che prevede una sola risposta e la restituisce.
+     *
+     * @param request richiesta ricevuta.
+     * @return risposta da inviare al client.
+     */
+    private Frame reply(Frame request) {
+        int id = request.getRequestId();
+        try {
+            DataInputStream in = request.payload();
+            switch (request.getType()) {
+                case Frame.STORE_TABLE:
+                    System.out.println("[!] Richiesta storeTableFromDb");
+                    session.setTableName(Frame.readString(in));
+                    return Frame.message(id, Frame.OK, "OK");
+                case Frame.LEARN:
+                    System.out.println("[!] Richiesta learningFromDbTable");
+                    return learn(id, in.readDouble());
+                case Frame.LEARN_TREE:
+                    System.out.println("[!] Richiesta learningTree");
+                    return learnTree(id, readDoubles(in));
+                case Frame.TREE_NODE:
+                    return treeNode(id, readVarInts(in));
+                case Frame.RESULT_PAGE:
+                    return resultPage(id, VarInt.read(in), VarInt.read(in));
+                case Frame.CLUSTER_MEMBERS:
+                    return clusterMembers(id, VarInt.read(in), VarInt.read(in), VarInt.read(in));
+                case Frame.SUBMIT_JOB:
+                    System.out.println("[!] Richiesta submitJob");
+                    return submitJob(id, Frame.readString(in), in.readDouble());
+                case Frame.JOB_STATUS:
+                    return jobStatus(id, VarInt.read(in), 0);
+                case Frame.JOB_WAIT:
+                    return jobStatus(id, VarInt.read(in), VarInt.read(in));
+                case Frame.JOB_RESULT:
+                    return jobResult(id, VarInt.read(in));
+                case Frame.STORE_CLUSTER:
+                    System.out.println("[!] Richiesta storeClusterInFile");
+                    return storeClusters(id, Frame.readString(in));
+                case Frame.SAVE_STATUS:
+                    return saveStatus(id, VarInt.read(in), VarInt.read(in));
+                case Frame.METRICS:
+                    return Frame.message(id, Frame.OK, Metrics.report()
+                            + "session.memory.currentBytes " + session.getMemory().getCurrent() + "\n"
+                            + "session.memory.peakBytes " + session.getMemory().getPeak() + "\n");
+                case Frame.HELLO:
+                    return hello(id, readStrings(in));
+                case Frame.LOAD_FILE:
+                    System.out.println("[!] Richiesta learningFromFile");
+                    try {
+                        return Frame.message(id, Frame.OK, session.load(Frame.readString(in)));
+                    } catch (IOException ex) {
+                        return Frame.message(id, Frame.ERROR, "Errore: File non trovato!");
+                    }
+                default:
+                    return Frame.message(id, Frame.ERROR, "Errore: comando " + request.getType() + " sconosciuto!");
+            }
+        } catch (ServerBusyException ex) {
+            return Frame.message(id, Frame.BUSY, ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Frame.message(id, Frame.ERROR, "Errore: richiesta interrotta!");
+        } catch (Exception ex) {
+            return Frame.message(id, Frame.ERROR, String.valueOf(ex.getMessage()));
+        }
+    }
+
+    /**
+     * Negozia la compressione delle risposte successive. Una nuova negoziazione sostituisce
+     * la precedente, e il client deve ricominciare la decompressione da un nuovo flusso.
+     *
+     * @param id identificativo della richiesta.
+     * @param offered codifiche supportate dal client, in ordine di preferenza.
+     * @return risposta con la codifica scelta (vuota se nessuna), da inviare non compressa.
+     */
+    private Frame hello(int id, String[] offered) {
+        close();
+        String codec = session.getContext().getCompression().choose(offered);
+        if (codec != null) {
+            deflater = session.getContext().getCompression().open();
+        }
+        return Frame.message(id, Frame.OK, codec == null ? "" : codec);
+    }
+
+    /**
+     * Esegue il clustering della tabella corrente.
+     * La risposta contiene il numero di cluster e, per ciascuno, indice, numero di tuple,
+     * centroide e distanza media.
+     *
+     * @param id identificativo della richiesta.
+     * @param radius raggio del clustering.
+     * @return risposta da inviare al client.
+     * @throws ServerBusyException se la coda dei clustering e' piena.
+     * @throws InterruptedException se l'attesa del clustering viene interrotta.
+     * @throws IOException se si verifica un errore nella costruzione della risposta.
+     */
+    private Frame learn(int id, double radius) throws ServerBusyException, InterruptedException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            session.learn(radius);
+            writeSummary(out, session.getLastClusters(), session.getLastData(), 0, MAX_PAGE);
+        } catch (ServerBusyException | InterruptedException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            return Frame.message(id, Frame.ERROR, String.valueOf(session.learnError(ex)));
+        }
+        return new Frame(id, Frame.OK, bytes.toByteArray());
+    }
+
+    /**
+     * Esegue il clustering gerarchico della tabella corrente.
+     * La risposta contiene la prima pagina dei cluster del livello con il raggio maggiore.
+     *
+     * @param id identificativo della richiesta.
+     * @param radii raggi dei livelli, in ordine decrescente.
+     * @return risposta da inviare al client.
+     * @throws ServerBusyException se la coda dei clustering e' piena.
+     * @throws InterruptedException se l'attesa del clustering viene interrotta.
+     * @throws IOException se si verifica un errore nella costruzione della risposta.
+     */
+    private Frame learnTree(int id, double[] radii) throws ServerBusyException, InterruptedException, IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            session.learnTree(radii);
+            writeSummary(out, session.getLastClusters(), session.getLastData(), 0, MAX_PAGE);
+        } catch (ServerBusyException | InterruptedException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            return Frame.message(id, Frame.ERROR, String.valueOf(session.learnError(ex)));
+        }
+        return new Frame(id, Frame.OK, bytes.toByteArray());
+    }
+
+    /**
+     * Sceglie un nodo dell'ultimo clustering gerarchico come ultimo clustering della sessione.
+     * La risposta contiene la prima pagina dei cluster del nodo.
+     *
+     * @param id identificativo della richiesta.
+     * @param path indici dei cluster da cui scendere, uno per livello.
+     * @return risposta da inviare al client.
+     * @throws IOException se si verifica un errore nella costruzione della risposta.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     */
+    private Frame treeNode(int id, int[] path) throws IOException, EmptyDatasetException {
+        ClusterSet clusters = session.selectTreeNode(path);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeSummary(new DataOutputStream(bytes), clusters, session.getLastData(), 0, MAX_PAGE);
+        return new Frame(id, Frame.OK, bytes.toByteArray());
+    }
+
+    /**
+     * Sottomette un job di clustering asincrono.
+     *
+     * @param id identificativo della richiesta.
+     * @param tableName tabella (o file) da clusterizzare.
+     * @param radius raggio del clustering.
+     * @return risposta con l'identificativo del job.
+     * @throws ServerBusyException se la coda dei clustering e' piena.
+     * @throws IOException se si verifica un errore nella costruzione della risposta.
+     */
+    private Frame submitJob(int id, String tableName, double radius) throws ServerBusyException, IOException {
+        JobManager jobs = session.getContext().getJobs();
+        Job job = jobs.submit(session.getTenant(), session.getMemory(), tableName, radius);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        VarInt.write(new DataOutputStream(bytes), job.getId());
+        return new Frame(id, Frame.OK, bytes.toByteArray());
+    }
+
+    /**
+     * Restituisce lo stato di un job, eventualmente dopo averne atteso un aggiornamento.
+     *
+     * @param id identificativo della richiesta.
+     * @param jobId identificativo del job.
+     * @param waitMillis attesa massima di un aggiornamento in ms (0 per rispondere subito).
+     * @return risposta con lo stato del job.
+     * @throws InterruptedException se l'attesa viene interrotta.
+     * @throws IOException se si verifica un errore nella costruzione della risposta.
+     */
+    private Frame jobStatus(int id, int jobId, int waitMillis) throws InterruptedException, IOException {
+        Job job = session.getContext().getJobs().get(jobId);
+        if (job == null) {
+            return Frame.message(id, Frame.ERROR, "Errore: job " + jobId + " inesistente!");
+        }
+        if (waitMillis > 0) {
+            job.awaitUpdate(waitMillis);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        job.writeStatus(new DataOutputStream(bytes));
+        return new Frame(id, Frame.OK, bytes.toByteArray());
+    }
+
+    /**
+     * Accoda il salvataggio dell'ultimo clustering senza attenderne la scrittura.
+     *
+     * @param id identificativo della richiesta.
+     * @param fileName nome del file (senza estensione).
+     * @return risposta con il messaggio per l'utente e l'identificativo del salvataggio.
+     * @throws ServerBusyException se i salvataggi in attesa sono troppi.
+     * @throws IOException se si verifica un errore nella costruzione della risposta.
+     */
+    private Frame storeClusters(int id, String fileName) throws ServerBusyException, IOException {
+        SaveHandle save = session.save(fileName);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Frame.writeString(out, ClientSession.saveMessage(save));
+        VarInt.write(out, save != null ? save.getId() : 0);
+        return new Frame(id, Frame.OK, bytes.toByteArray());
+    }
+
+    /**
+     * Restituisce lo stato di un salvataggio, eventualmente dopo averne atteso un aggiornamento.
+     *
+     * @param id identificativo della richiesta.
+     * @param saveId identificativo del salvataggio.
+     * @param waitMillis attesa massima di un aggiornamento in ms (0 per rispondere subito).
+     * @return risposta con lo stato del salvataggio.
+     * @throws InterruptedException se l'attesa viene interrotta.
+     * @throws IOException se si verifica un errore nella costruzione della risposta.
+     */
+    private Frame saveStatus(int id, int saveId, int waitMillis) throws InterruptedException, IOException {
+        SaveHandle save = session.getContext().getWriter().get(saveId);
+        if (save == null) {
+            return Frame.message(id, Frame.ERROR, "Errore: salvataggio " + saveId + " inesistente!");
+        }
+        if (waitMillis > 0) {
+            save.awaitUpdate(waitMillis);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        save.writeStatus(new DataOutputStream(bytes));
+        return new Frame(id, Frame.OK, bytes.toByteArray());
+    }
+
+    /**
+     * Restituisce il risultato di un job terminato e lo rende l'ultimo clustering della sessione.
+     *
+     * @param id identificativo della richiesta.
+     * @param jobId identificativo del job.
+     * @return risposta con il riepilogo dei cluster, oppure con l'errore del job.
+     * @throws IOException se si verifica un errore nella costruzione della risposta.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     */
+    private Frame jobResult(int id, int jobId) throws IOException, EmptyDatasetException {
+        Job job = session.getContext().getJobs().get(jobId);
+        if (job == null) {
+            return Frame.message(id, Frame.ERROR, "Errore: job " + jobId + " inesistente!");
+        }
+        if (job.getState() == Job.State.FAILED) {
+            return Frame.message(id, Frame.ERROR, job.getError());
+        }
+        if (job.getState() != Job.State.DONE) {
+            return Frame.message(id, Frame.ERROR, "Errore: job " + jobId + " non ancora terminato!");
+        }
+        Data data = job.acquireData();
+        if (data == null) {
+            return Frame.message(id, Frame.ERROR, "Errore: job " + jobId + " inesistente!");
+        }
+        try {
+            session.setLast(job.getMiner(), data);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeSummary(new DataOutputStream(bytes), job.getClusters(), data, 0, MAX_PAGE);
+            return new Frame(id, Frame.OK, bytes.toByteArray());
+        } finally {
+            data.release();
+        }
+    }
+
+    /**
+     * Restituisce una pagina di cluster dell'ultimo clustering.
+     *
+     * @param id identificativo della richiesta.
+     * @param first indice del primo cluster.
+     * @param count numero di cluster richiesti.
+     * @return risposta con il riepilogo dei cluster richiesti.
+     * @throws IOException se si verifica un errore nella costruzione della risposta.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     */
+    private Frame resultPage(int id, int first, int count) throws IOException, EmptyDatasetException {
+        ClusterSet clusters = session.getLastClusters();
+        if (clusters == null) {
+            return Frame.message(id, Frame.ERROR, "Errore: nessun clustering disponibile!");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeSummary(new DataOutputStream(bytes), clusters, session.getLastData(), first, count);
+        return new Frame(id, Frame.OK, bytes.toByteArray());
+    }
+
+    /**
+     * Restituisce una pagina delle tuple di un cluster dell'ultimo clustering, in ordine di ID.
+     *
+     * @param id identificativo della richiesta.
+     * @param index indice del cluster.
+     * @param offset posizione della prima tupla richiesta.
+     * @param count numero di tuple richieste.
+     * @return risposta con le tuple richieste e la loro distanza dal centroide.
+     * @throws IOException se si verifica un errore nella costruzione della risposta.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     */
+    private Frame clusterMembers(int id, int index, int offset, int count) throws IOException, EmptyDatasetException {
+        ClusterSet clusters = session.getLastClusters();
+        Data data = session.getLastData();
+        if (clusters == null) {
+            return Frame.message(id, Frame.ERROR, "Errore: nessun clustering disponibile!");
+        }
+        if (index >= clusters.size()) {
+            return Frame.message(id, Frame.ERROR, "Errore: cluster " + index + " inesistente!");
+        }
+        long start = System.nanoTime();
+        int[] members = clusters.getMembers(index);
+        int from = Math.min(offset, members.length);
+        int to = Math.min(members.length, from + Math.min(count, MAX_PAGE));
+        Tuple centroid = clusters.getCentroid(index);
+        TupleCodec codec = new TupleCodec(centroid);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        VarInt.write(out, members.length);
+        VarInt.write(out, from);
+        VarInt.write(out, to - from);
+        codec.writeSchema(out);
+        int[] page = Arrays.copyOfRange(members, from, to);
+        double[] distances = new double[page.length];
+        clusters.getMetric().bind(data).distances(centroid, page, page.length, distances);
+        for (int k = 0; k < page.length; k++) {
+            VarInt.write(out, page[k]);
+            codec.writeTuple(data.getItemSet(page[k]), out);
+            out.writeDouble(distances[k]);
+        }
+        Metrics.ENCODE_TIME.recordSince(start);
+        return new Frame(id, Frame.OK, bytes.toByteArray());
+    }
+
+    /**
+     * Invia la descrizione testuale completa dell'ultimo clustering un cluster alla volta,
+     * in frame CHUNK di al piu' {@link #CHUNK_CHARS} caratteri seguiti da un frame OK finale.
+     * Se la descrizione non puo' essere completata viene inviato un frame ERROR.
+     *
+     * @param id identificativo della richiesta.
+     * @param sink destinazione delle risposte.
+     * @throws IOException se non e' possibile inviare le risposte al client.
+     */
+    private void streamText(int id, FrameSink sink) throws IOException {
+        long start = System.nanoTime();
+        ClusterSet clusters = session.getLastClusters();
+        if (clusters == null) {
+            Metrics.REQUEST_ERRORS.increment();
+            sink.send(Frame.message(id, Frame.ERROR, "Errore: nessun clustering disponibile!"));
+            return;
+        }
+        System.out.println("[!] Richiesta resultText");
+        TextChunks chunks = new TextChunks(id, sink);
+        try {
+            clusters.describe(session.getLastData(), chunks);
+        } catch (EmptyDatasetException ex) {
+            Metrics.REQUEST_ERRORS.increment();
+            sink.send(Frame.message(id, Frame.ERROR, ex.getMessage()));
+            return;
+        }
+        sink.send(Frame.message(id, Frame.OK, chunks.rest()));
+        Metrics.REQUEST_TIME.recordSince(start);
+    }
+
+    /**
+     * Scrive una pagina del riepilogo dei cluster: numero totale di cluster, primo indice,
+     * numero di cluster della pagina, schema e, per ogni cluster, indice, numero di tuple,
+     * centroide e distanza media.
+     *
+     * @param out flusso di destinazione.
+     * @param clusters cluster da descrivere.
+     * @param data dataset del clustering.
+     * @param first indice del primo cluster della pagina.
+     * @param count numero di cluster richiesti (al piu' {@link #MAX_PAGE}).
+     * @throws IOException se si verifica un errore di scrittura.
+     * @throws EmptyDatasetException se il dataset e' vuoto.
+     */
+    static void writeSummary(DataOutputStream out, ClusterSet clusters, Data data, int first, int count)
+            throws IOException, EmptyDatasetException {
+        long start = System.nanoTime();
+        int total = clusters.size();
+        int from = Math.min(first, total);
+        int to = Math.min(total, from + Math.min(count, MAX_PAGE));
+        VarInt.write(out, total);
+        VarInt.write(out, from);
+        VarInt.write(out, to - from);
+        if (to > from) {
+            TupleCodec codec = new TupleCodec(clusters.getCentroid(from));
+            codec.writeSchema(out);
+            for (int i = from; i < to; i++) {
+                VarInt.write(out, i);
+                VarInt.write(out, clusters.getClusterSize(i));
+                codec.writeTuple(clusters.getCentroid(i), out);
+                out.writeDouble(clusters.getAverageDistance(i, data));
+            }
+        }
+        Metrics.ENCODE_TIME.recordSince(start);
+    }
+
+    /**
+     * Legge un vettore di stringhe preceduto dalla sua lunghezza (varint).
+     *
+     * @param in dati della richiesta.
+     * @return vettore letto.
+     * @throws IOException se i dati non sono validi.
+     */
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int count = VarInt.read(in);
+        if (count > in.available() / Integer.BYTES) {
+            throw new IOException("Errore: richiesta non valida!");
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = Frame.readString(in);
+        }
+        return values;
+    }
+
+    /**
+     * Legge un vettore di double preceduto dalla sua lunghezza (varint).
+     *
+     * @param in dati della richiesta.
+     * @return vettore letto.
+     * @throws IOException se i dati non sono validi.
+     */
+    private static double[] readDoubles(DataInputStream in) throws IOException {
+        int count = VarInt.read(in);
+        if (count > in.available() / Double.BYTES) {
+            throw new IOException("Errore: richiesta non valida!");
+        }
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = in.readDouble();
+        }
+        return values;
+    }
+
+    /**
+     * Legge un vettore di varint preceduto dalla sua lunghezza (varint).
+     *
+     * @param in dati della richiesta.
+     * @return vettore letto.
+     * @throws IOException se i dati non sono validi.
+     */
+    private static int[] readVarInts(DataInputStream in) throws IOException {
+        int count = VarInt.read(in);
+        if (count > in.available()) {
+            throw new IOException("Errore: richiesta non valida!");
+        }
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = VarInt.read(in);
+        }
+        return values;
+    }
+
+    /**
+     * Libera il compressore delle risposte, se la compressione era stata negoziata.
+     * Va chiamato alla chiusura della connessione, quando nessuna richiesta e' in esecuzione.
+     */
+    void close() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    /**
+     * Destinazione di testo che invia un frame CHUNK ogni {@link #CHUNK_CHARS} caratteri.
+     */
+    private static class TextChunks implements Appendable {
+        /** Identificativo della richiesta */
+        private final int id;
+        /** Destinazione dei frame */
+        private final FrameSink sink;
+        /** Testo non ancora inviato */
+        private final StringBuilder buffer = new StringBuilder(CHUNK_CHARS + 256);
+
+        /**
+         * Costruttore della destinazione di testo.
+         *
+         * @param id identificativo della richiesta.
+         * @param sink destinazione dei frame.
+         */
+        TextChunks(int id, FrameSink sink) {
+            this.id = id;
+            this.sink = sink;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) throws IOException {
+            buffer.append(csq);
+            return flushIfFull();
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) throws IOException {
+            buffer.append(csq, start, end);
+            return flushIfFull();
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            buffer.append(c);
+            return flushIfFull();
+        }
+
+        /**
+         * Invia il testo accumulato se ha raggiunto la dimensione di un frame CHUNK.
+         *
+         * @return questa destinazione.
+         * @throws IOException se non e' possibile inviare il frame.
+         */
+        private Appendable flushIfFull() throws IOException {
+            if (buffer.length() >= CHUNK_CHARS) {
+                sink.send(Frame.message(id, Frame.CHUNK, buffer.toString()));
+                buffer.setLength(0);
+            }
+            return this;
+        }
+
+        /**
+         * Restituisce il testo non ancora inviato.
+         *
+         * @return ultima parte del testo.
+         */
+        String rest() {
+            return buffer.toString();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package server;
+
+import java.io.IOException;
+
+/**
+ * Interfaccia verso cui {@link FrameProtocol} invia le risposte di una richiesta.
+ * Una richiesta puo' produrre piu' frame (risposte parziali seguite da quella finale);
+ * l'invio puo' bloccare finche' il client non ha ricevuto i frame precedenti.
+ */
+interface FrameSink {
+    /**
+     * Invia un frame al client.
+     *
+     * @param frame frame da inviare.
+     * @throws IOException se la connessione e' stata chiusa o si verifica un errore di scrittura.
+     */
+    void send(Frame frame) throws IOException;
+}
@@ -0,0 +1,303 @@
+package server;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+import data.Data;
+import data.VarInt;
+import mining.ClusterSet;
+import mining.ProgressListener;
+import mining.QTMiner;
+
+/**
+ * Classe che rappresenta un clustering asincrono (job): tabella e raggio richiesti,
+ * stato di avanzamento, stima del tempo rimanente e, al termine, risultato o errore.
+ *
+ * La stima del tempo rimanente sfrutta il costo del QT: la ricerca di un cluster confronta
+ * tra loro tutte le tuple non ancora assegnate, per cui la durata di un'iterazione cresce col
+ * quadrato di tali tuple. Dalla durata dell'ultima iterazione si ricava il costo per coppia
+ * di tuple; supponendo che i prossimi cluster abbiano la dimensione media di quelli gia' trovati,
+ * il tempo rimanente e' circa costo * u^3 / (3 * dimensione media), con u tuple ancora da assegnare.
+ */
+class Job implements ProgressListener {
+    /** Stati di un job. */
+    enum State {
+        /** In attesa di un thread di calcolo. */
+        QUEUED,
+        /** Caricamento del dataset e attesa della memoria e di uno slot di calcolo. */
+        LOADING,
+        /** Clustering in corso. */
+        RUNNING,
+        /** Clustering terminato con successo. */
+        DONE,
+        /** Clustering terminato con errore. */
+        FAILED
+    }
+
+    /** Identificativo del job */
+    private final int id;
+    /** Tabella (o file) da clusterizzare */
+    private final String tableName;
+    /** Raggio del clustering */
+    private final double radius;
+    /** Stato del job */
+    private State state = State.QUEUED;
+    /** Numero di modifiche dello stato, per l'attesa di aggiornamenti */
+    private long version;
+    /** Numero di cluster trovati */
+    private int clusters;
+    /** Numero di tuple assegnate a un cluster */
+    private int clustered;
+    /** Numero di tuple del dataset */
+    private int total;
+    /** Istante di sottomissione (ns) */
+    private final long submittedAt = System.nanoTime();
+    /** Istante di fine dell'ultima iterazione, o di inizio del clustering (ns) */
+    private long lastTick;
+    /** Stima del tempo rimanente in ms (-1 se non disponibile) */
+    private long etaMillis = -1;
+    /** Istante di termine del job (ns), 0 se non terminato */
+    private long finishedAt;
+    /** Miner con il risultato del clustering */
+    private QTMiner miner;
+    /** Dataset del clustering */
+    private Data data;
+    /** Memoria prenotata per il risultato, restituita quando il job viene rimosso (null se nessuna) */
+    private MemoryGovernor.Reservation memory;
+    /** Messaggio di errore, se il job e' fallito */
+    private String error;
+
+    /**
+     * Costruttore parametrizzato della classe Job.
+     *
+     * @param id identificativo del job.
+     * @param tableName tabella (o file) da clusterizzare.
+     * @param radius raggio del clustering.
+     */
+    Job(int id, String tableName, double radius) {
+        this.id = id;
+        this.tableName = tableName;
+        this.radius = radius;
+    }
+
+    /**
+     * Restituisce l'identificativo del job.
+     *
+     * @return identificativo del job.
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Restituisce la tabella da clusterizzare.
+     *
+     * @return nome della tabella o del file.
+     */
+    String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * Restituisce il raggio del clustering.
+     *
+     * @return raggio del clustering.
+     */
+    double getRadius() {
+        return radius;
+    }
+
+    /**
+     * Restituisce lo stato del job.
+     *
+     * @return stato del job.
+     */
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Segna l'inizio del caricamento del dataset, seguito dall'attesa della memoria e dello slot.
+     */
+    synchronized void loading() {
+        update(State.LOADING);
+    }
+
+    /**
+     * Segna l'inizio del clustering sul dataset caricato.
+     * Il job diventa titolare del riferimento al dataset ricevuto, che rilascia
+     * in caso di errore o quando viene rimosso ({@link #discard()}).
+     *
+     * @param data dataset caricato.
+     */
+    synchronized void running(Data data) {
+        this.data = data;
+        total = data.getNumberOfExamples();
+        lastTick = System.nanoTime();
+        update(State.RUNNING);
+    }
+
+    @Override
+    public synchronized void clusterFound(int clusters, int clustered, int total) {
+        long now = System.nanoTime();
+        int unclusteredBefore = total - this.clustered;
+        int remaining = total - clustered;
+        double costPerPair = (double) (now - lastTick) / ((double) unclusteredBefore * unclusteredBefore);
+        double meanSize = (double) clustered / clusters;
+        etaMillis = (long) (costPerPair * Math.pow(remaining, 3) / (3 * meanSize) / 1_000_000);
+        this.clusters = clusters;
+        this.clustered = clustered;
+        this.total = total;
+        lastTick = now;
+        update(State.RUNNING);
+    }
+
+    /**
+     * Segna il termine con successo del job.
+     *
+     * @param miner miner con il risultato del clustering.
+     * @param memory memoria prenotata per il risultato, restituita quando il job viene rimosso.
+     */
+    synchronized void done(QTMiner miner, MemoryGovernor.Reservation memory) {
+        this.miner = miner;
+        this.memory = memory;
+        this.clusters = miner.getC().size();
+        this.clustered = total;
+        etaMillis = 0;
+        finishedAt = System.nanoTime();
+        update(State.DONE);
+    }
+
+    /**
+     * Segna il termine con errore del job.
+     *
+     * @param message messaggio di errore.
+     */
+    synchronized void failed(String message) {
+        error = message;
+        discard();
+        etaMillis = 0;
+        finishedAt = System.nanoTime();
+        update(State.FAILED);
+    }
+
+    /**
+     * Aggiorna lo stato e risveglia chi attende un aggiornamento.
+     *
+     * @param state nuovo stato.
+     */
+    private void update(State state) {
+        this.state = state;
+        version++;
+        notifyAll();
+    }
+
+    /**
+     * Verifica se il job e' terminato.
+     *
+     * @return "true" se il job e' terminato, con successo o con errore.
+     */
+    synchronized boolean isFinished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+
+    /**
+     * Restituisce da quanto tempo il job e' terminato.
+     *
+     * @param now istante corrente (ns).
+     * @return tempo trascorso dal termine in ns, oppure -1 se il job non e' terminato.
+     */
+    synchronized long finishedFor(long now) {
+        return finishedAt == 0 ? -1 : now - finishedAt;
+    }
+
+    /**
+     * Attende un aggiornamento dello stato, il termine del job o lo scadere del tempo indicato.
+     *
+     * @param timeoutMillis attesa massima in millisecondi.
+     * @throws InterruptedException se l'attesa viene interrotta.
+     */
+    synchronized void awaitUpdate(long timeoutMillis) throws InterruptedException {
+        long seen = version;
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        while (version == seen && !isFinished()) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return;
+            }
+            wait(Math.max(1, left / 1_000_000));
+        }
+    }
+
+    /**
+     * Restituisce il risultato del job.
+     *
+     * @return miner con il risultato, oppure null se il job non e' terminato con successo.
+     */
+    synchronized QTMiner getMiner() {
+        return miner;
+    }
+
+    /**
+     * Restituisce il dataset del job con un ulteriore riferimento, che il chiamante
+     * deve rilasciare con {@link Data#release()}.
+     *
+     * @return dataset del clustering, oppure null se non caricato o gia' rilasciato.
+     */
+    synchronized Data acquireData() {
+        if (data != null) {
+            data.retain();
+        }
+        return data;
+    }
+
+    /**
+     * Rilascia il dataset del job e restituisce la memoria del risultato, quando il job fallisce o viene rimosso.
+     */
+    synchronized void discard() {
+        if (data != null) {
+            data.release();
+            data = null;
+        }
+        if (memory != null) {
+            memory.close();
+            memory = null;
+        }
+    }
+
+    /**
+     * Restituisce il risultato del job.
+     *
+     * @return cluster trovati, oppure null se il job non e' terminato con successo.
+     */
+    synchronized ClusterSet getClusters() {
+        return miner != null ? miner.getC() : null;
+    }
+
+    /**
+     * Restituisce il messaggio di errore del job.
+     *
+     * @return messaggio di errore, oppure null se il job non e' fallito.
+     */
+    synchronized String getError() {
+        return error;
+    }
+
+    /**
+     * Scrive lo stato del job: stato (byte), cluster trovati, tuple assegnate e tuple totali (varint),
+     * stima del tempo rimanente e tempo trascorso in ms (long) e messaggio di errore (stringa vuota se assente).
+     *
+     * @param out flusso di destinazione.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    synchronized void writeStatus(DataOutput out) throws IOException {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        out.writeByte(state.ordinal());
+        VarInt.write(out, clusters);
+        VarInt.write(out, clustered);
+        VarInt.write(out, total);
+        out.writeLong(state == State.RUNNING || isFinished() ? etaMillis : -1);
+        out.writeLong((end - submittedAt) / 1_000_000);
+        Frame.writeString(out, error != null ? error : "");
+    }
+}
@@ -0,0 +1,163 @@
+package server;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import data.Data;
+import mining.ProgressListener;
+import mining.QTMiner;
+
+/**
+ * Classe che gestisce i clustering asincroni (job) sottomessi dai client.
+ *
+ * Un job riceve subito un identificativo e viene eseguito sul {@link ComputePool} condiviso:
+ * nessuna sessione resta occupata in attesa del risultato. I job terminati restano consultabili
+ * per il tempo di conservazione indicato, poi vengono rimossi; quando la memoria serve ad altri
+ * clustering ({@link MemoryGovernor}) vengono rimossi prima, dal meno recente ({@link #shed()}).
+ */
+class JobManager {
+    /** Dataset in memoria */
+    private final DatasetCache cache;
+    /** Pool su cui vengono eseguiti i job */
+    private final ComputePool compute;
+    /** Limite della memoria dei clustering */
+    private final MemoryGovernor governor;
+    /** Tempo di conservazione dei job terminati (ns) */
+    private final long retentionNanos;
+    /** Job noti, per identificativo */
+    private final Map<Integer, Job> jobs = new ConcurrentHashMap<>();
+    /** Ultimo identificativo assegnato */
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    /**
+     * Costruttore parametrizzato della classe JobManager.
+     *
+     * @param cache dataset in memoria.
+     * @param compute pool su cui eseguire i job.
+     * @param governor limite della memoria dei clustering.
+     * @param retentionMillis tempo di conservazione dei job terminati, in millisecondi.
+     */
+    JobManager(DatasetCache cache, ComputePool compute, MemoryGovernor governor, long retentionMillis) {
+        this.cache = cache;
+        this.compute = compute;
+        this.governor = governor;
+        this.retentionNanos = retentionMillis * 1_000_000;
+    }
+
+    /**
+     * Sottomette un nuovo job per conto del client indicato.
+     *
+     * @param tenant identificativo del client.
+     * @param account contabilita' della memoria della sessione che sottomette il job.
+     * @param tableName tabella (o file) da clusterizzare.
+     * @param radius raggio del clustering.
+     * @return job sottomesso.
+     * @throws ServerBusyException se la coda dei clustering (totale o del client) e' piena.
+     */
+    Job submit(String tenant, MemoryGovernor.Account account, String tableName, double radius)
+            throws ServerBusyException {
+        purge();
+        Job job = new Job(lastId.incrementAndGet(), tableName, radius);
+        jobs.put(job.getId(), job);
+        try {
+            compute.submit(tenant, slot -> run(job, account, slot));
+        } catch (ServerBusyException ex) {
+            jobs.remove(job.getId());
+            throw ex;
+        }
+        return job;
+    }
+
+    /**
+     * Restituisce il job con l'identificativo indicato.
+     *
+     * @param id identificativo del job.
+     * @return job richiesto, oppure null se inesistente o gia' rimosso.
+     */
+    Job get(int id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * Esegue un job: carica il dataset e ne prenota la memoria prima di occupare uno slot di calcolo,
+     * in modo che l'attesa della memoria non tenga fermo uno slot; ottenuto lo slot esegue
+     * il clustering, aggiornandone l'avanzamento e notificando il punto di controllo dello scheduler
+     * dopo ogni cluster trovato. Il risultato resta contabilizzato finche' il job non viene rimosso.
+     *
+     * @param job job da eseguire.
+     * @param account contabilita' della memoria della sessione che ha sottomesso il job.
+     * @param slot slot di calcolo del job, ancora da ottenere.
+     */
+    private void run(Job job, MemoryGovernor.Account account, ComputePool.Slot slot) {
+        Data data = null;
+        boolean owned = false;
+        MemoryGovernor.Reservation work = null;
+        try {
+            job.loading();
+            data = cache.acquire(job.getTableName());
+            work = governor.reserve(account, Footprint.clustering(data, job.getRadius(), 1));
+            slot.acquire();
+            job.running(data);
+            owned = true;
+            QTMiner miner = compute.newMiner(job.getRadius());
+            ProgressListener checkpoint = slot.getCheckpoint();
+            miner.compute(data, (clusters, clustered, total) -> {
+                job.clusterFound(clusters, clustered, total);
+                checkpoint.clusterFound(clusters, clustered, total);
+            }, slot.getWorkers());
+            work.close();
+            job.done(miner, governor.charge(account, Footprint.result(data, miner.getC().size())));
+        } catch (Exception ex) {
+            job.failed(ClientSession.learnError(ex, job.getTableName()));
+        } finally {
+            if (work != null) {
+                work.close();
+            }
+            if (data != null && !owned) {
+                data.release();
+            }
+        }
+    }
+
+    /**
+     * Rimuove i job terminati da piu' del tempo di conservazione, rilasciandone i dataset.
+     */
+    private void purge() {
+        long now = System.nanoTime();
+        Iterator<Job> it = jobs.values().iterator();
+        while (it.hasNext()) {
+            Job job = it.next();
+            long age = job.finishedFor(now);
+            if (age > retentionNanos) {
+                job.discard();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Rimuove il job terminato da piu' tempo, rilasciandone dataset e risultato,
+     * quando la memoria serve ad altri clustering.
+     *
+     * @return "true" se un job e' stato rimosso, "false" se non ci sono job terminati.
+     */
+    boolean shed() {
+        long now = System.nanoTime();
+        Job eldest = null;
+        long eldestAge = -1;
+        for (Job job : jobs.values()) {
+            long age = job.finishedFor(now);
+            if (age > eldestAge) {
+                eldest = job;
+                eldestAge = age;
+            }
+        }
+        if (eldest == null || !jobs.remove(eldest.getId(), eldest)) {
+            return false;
+        }
+        eldest.discard();
+        return true;
+    }
+}
@@ -0,0 +1,263 @@
+package server;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import metrics.Counter;
+import metrics.Metrics;
+
+/**
+ * Classe che limita la memoria complessiva usata dai clustering, per evitare che piu' sessioni
+ * costruiscano contemporaneamente dataset e risultati grandi fino a esaurire la memoria del processo.
+ *
+ * Prima di iniziare, ogni clustering prenota la memoria stimata ({@link Footprint}); la prenotazione
+ * viene restituita al termine del clustering oppure, per i risultati trattenuti (ultimo clustering
+ * di una sessione, job terminati), quando il risultato viene sostituito o rimosso.
+ * La memoria usata e' la somma delle prenotazioni e dei dataset in memoria o ancora in uso ({@link DatasetCache}).
+ * Una prenotazione che non rientra nel limite:
+ * - viene rifiutata subito se supera da sola il limite;
+ * - altrimenti libera memoria con i recuperi registrati (dataset usati meno di recente, risultati
+ *   dei job terminati) e, se non basta, attende che altri clustering terminino;
+ * - viene rifiutata con {@link ServerBusyException} allo scadere dell'attesa massima.
+ * Con limite 0 la memoria viene solo contabilizzata.
+ *
+ * La memoria prenotata da ogni sessione, corrente e massima, viene contabilizzata in un {@link Account}.
+ */
+class MemoryGovernor {
+    /** Prenotazioni accettate. */
+    private static final Counter ADMITTED = Metrics.counter("memory.admitted");
+    /** Prenotazioni che hanno atteso la memoria di altri clustering. */
+    private static final Counter WAITED = Metrics.counter("memory.waited");
+    /** Prenotazioni rifiutate. */
+    private static final Counter REJECTED = Metrics.counter("memory.rejected");
+    /** Attesa massima tra due controlli della memoria libera (ms). */
+    private static final long POLL_MILLIS = 100;
+
+    /** Limite della memoria usata (byte), 0 se non limitata */
+    private final long budget;
+    /** Attesa massima di una prenotazione (ns) */
+    private final long waitNanos;
+    /** Dataset in memoria */
+    private final DatasetCache cache;
+    /** Recuperi di memoria, nell'ordine in cui vengono tentati */
+    private final List<BooleanSupplier> reclaimers = new CopyOnWriteArrayList<>();
+    /** Memoria prenotata (byte) */
+    private long reserved;
+    /** Massimo della memoria usata, prenotazioni e dataset (byte) */
+    private long peak;
+
+    /**
+     * Costruttore parametrizzato della classe MemoryGovernor.
+     *
+     * @param budget limite della memoria usata in byte (0 per non limitarla).
+     * @param waitMillis attesa massima di una prenotazione, in millisecondi.
+     * @param cache dataset in memoria, che vengono contati e rimossi quando la memoria non basta.
+     */
+    MemoryGovernor(long budget, long waitMillis, DatasetCache cache) {
+        this.budget = Math.max(0, budget);
+        this.waitNanos = waitMillis * 1_000_000;
+        this.cache = cache;
+        reclaimers.add(cache::evictEldest);
+    }
+
+    /**
+     * Registra un recupero di memoria, tentato dopo quelli gia' registrati.
+     *
+     * @param reclaimer recupero che libera memoria e restituisce "true", oppure "false" se non ha nulla da liberare.
+     */
+    void addReclaimer(BooleanSupplier reclaimer) {
+        reclaimers.add(reclaimer);
+    }
+
+    /**
+     * Prenota la memoria di un clustering, attendendo se necessario che si liberi.
+     *
+     * @param account contabilita' della sessione che esegue il clustering.
+     * @param bytes memoria stimata in byte.
+     * @return prenotazione, da chiudere al termine del clustering.
+     * @throws ServerBusyException se la memoria supera il limite o non si libera entro l'attesa massima.
+     * @throws InterruptedException se l'attesa viene interrotta.
+     */
+    Reservation reserve(Account account, long bytes) throws ServerBusyException, InterruptedException {
+        if (budget > 0 && bytes > budget) {
+            REJECTED.increment();
+            throw new ServerBusyException(String.format(Locale.ROOT,
+                    "Errore: memoria insufficiente per il clustering (stimati %.1f MB, limite %.1f MB)!",
+                    bytes / 1048576.0, budget / 1048576.0));
+        }
+        long deadline = System.nanoTime() + waitNanos;
+        boolean waited = false;
+        synchronized (this) {
+            while (budget > 0 && reserved + cache.getUsedBytes() + bytes > budget) {
+                if (reclaim()) {
+                    continue;
+                }
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    REJECTED.increment();
+                    throw new ServerBusyException();
+                }
+                if (!waited) {
+                    WAITED.increment();
+                    waited = true;
+                }
+                wait(Math.max(1, Math.min(POLL_MILLIS, left / 1_000_000)));
+            }
+            add(bytes);
+        }
+        ADMITTED.increment();
+        return new Reservation(account, bytes);
+    }
+
+    /**
+     * Contabilizza la memoria di un risultato gia' costruito, senza attendere ne' rifiutarla:
+     * la memoria e' gia' occupata e restera' tale finche' il risultato viene trattenuto.
+     *
+     * @param account contabilita' della sessione che trattiene il risultato.
+     * @param bytes memoria stimata in byte.
+     * @return prenotazione, da chiudere quando il risultato non viene piu' trattenuto.
+     */
+    Reservation charge(Account account, long bytes) {
+        synchronized (this) {
+            add(bytes);
+        }
+        return new Reservation(account, bytes);
+    }
+
+    /**
+     * Aggiunge memoria prenotata e ne aggiorna il massimo.
+     *
+     * @param bytes memoria in byte.
+     */
+    private void add(long bytes) {
+        reserved += bytes;
+        peak = Math.max(peak, reserved + cache.getUsedBytes());
+    }
+
+    /**
+     * Tenta i recuperi di memoria nell'ordine in cui sono stati registrati, fermandosi al primo riuscito.
+     *
+     * @return "true" se e' stata liberata memoria.
+     */
+    private boolean reclaim() {
+        for (BooleanSupplier reclaimer : reclaimers) {
+            if (reclaimer.getAsBoolean()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Restituisce memoria prenotata e risveglia le prenotazioni in attesa.
+     *
+     * @param bytes memoria in byte.
+     */
+    private synchronized void release(long bytes) {
+        reserved -= bytes;
+        notifyAll();
+    }
+
+    /**
+     * Restituisce il limite della memoria usata.
+     *
+     * @return limite in byte (0 se non limitata).
+     */
+    long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Restituisce la memoria prenotata da clustering in corso e risultati trattenuti.
+     *
+     * @return memoria prenotata in byte.
+     */
+    synchronized long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * Restituisce il massimo della memoria usata, prenotazioni e dataset, dall'avvio.
+     *
+     * @return massimo in byte.
+     */
+    synchronized long getPeak() {
+        return peak;
+    }
+
+    /**
+     * Memoria prenotata da una sessione, corrente e massima.
+     */
+    static final class Account {
+        /** Memoria prenotata (byte) */
+        private long current;
+        /** Massimo della memoria prenotata (byte) */
+        private long peak;
+
+        /**
+         * Aggiunge (o toglie, se negativa) memoria prenotata.
+         *
+         * @param bytes memoria in byte.
+         */
+        synchronized void add(long bytes) {
+            current += bytes;
+            peak = Math.max(peak, current);
+        }
+
+        /**
+         * Restituisce la memoria prenotata dalla sessione.
+         *
+         * @return memoria in byte.
+         */
+        synchronized long getCurrent() {
+            return current;
+        }
+
+        /**
+         * Restituisce il massimo della memoria prenotata dalla sessione.
+         *
+         * @return massimo in byte.
+         */
+        synchronized long getPeak() {
+            return peak;
+        }
+    }
+
+    /**
+     * Memoria prenotata da un clustering o da un risultato trattenuto. La chiusura la restituisce
+     * ed e' idempotente.
+     */
+    final class Reservation implements AutoCloseable {
+        /** Contabilita' della sessione */
+        private final Account account;
+        /** Memoria prenotata (byte), 0 dopo la chiusura */
+        private long bytes;
+
+        /**
+         * Costruttore della prenotazione, che la aggiunge alla contabilita' della sessione.
+         *
+         * @param account contabilita' della sessione.
+         * @param bytes memoria prenotata in byte.
+         */
+        private Reservation(Account account, long bytes) {
+            this.account = account;
+            this.bytes = bytes;
+            account.add(bytes);
+        }
+
+        @Override
+        public void close() {
+            long released;
+            synchronized (this) {
+                released = bytes;
+                bytes = 0;
+            }
+            if (released != 0) {
+                account.add(-released);
+                release(released);
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package server;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import metrics.Counter;
+import metrics.Metrics;
+import mining.ClusterSet;
+import mining.QTMiner;
+import mining.StagedModel;
+
+/**
+ * Classe che salva i clustering su file in background, in modo che un disco lento
+ * non blocchi la sessione che ha chiesto il salvataggio.
+ *
+ * Un salvataggio viene accodato con l'insieme di cluster da scrivere, che e' immutabile,
+ * e riceve subito un identificativo ({@link SaveHandle}) con cui il client puo' verificarne
+ * la persistenza. Un unico thread di scrittura preleva i salvataggi accodati a gruppi:
+ * scrive ogni file con un nome temporaneo, li forza tutti su disco, li rinomina in modo atomico
+ * e infine forza su disco, una sola volta per gruppo, le cartelle che li contengono
+ * ({@link StagedModel}). Solo allora i salvataggi del gruppo risultano persistenti; un'interruzione
+ * in qualunque momento lascia il file precedente oppure quello nuovo, mai un file troncato.
+ *
+ * Il caricamento di un file attende i salvataggi dello stesso file ancora in corso
+ * ({@link #awaitFile(String)}). I salvataggi terminati restano consultabili per il tempo
+ * di conservazione indicato, poi vengono rimossi.
+ */
+class ModelWriter {
+    /** Gruppi di salvataggi scritti e forzati su disco insieme. */
+    private static final Counter BATCHES = Metrics.counter("model.save.batches");
+    /** Salvataggi non riusciti. */
+    private static final Counter FAILED = Metrics.counter("model.save.failed");
+    /** Numero massimo di salvataggi di un gruppo. */
+    private static final int MAX_BATCH = 32;
+
+    /** Salvataggi in attesa del thread di scrittura */
+    private final BlockingQueue<SaveHandle> queue;
+    /** Salvataggi noti, per identificativo */
+    private final Map<Integer, SaveHandle> saves = new ConcurrentHashMap<>();
+    /** Ultimo salvataggio non terminato di ogni file, per nome del file */
+    private final Map<String, SaveHandle> pending = new ConcurrentHashMap<>();
+    /** Ultimo identificativo assegnato */
+    private final AtomicInteger lastId = new AtomicInteger();
+    /** Tempo di conservazione dei salvataggi terminati (ns) */
+    private final long retentionNanos;
+    /** Thread di scrittura */
+    private final Thread thread;
+    /** Indica se il thread di scrittura deve terminare, dopo aver svuotato la coda */
+    private volatile boolean stopping;
+
+    /**
+     * Costruttore parametrizzato della classe ModelWriter. Avvia il thread di scrittura.
+     *
+     * @param capacity numero massimo di salvataggi in attesa.
+     * @param retentionMillis tempo di conservazione dei salvataggi terminati, in millisecondi.
+     */
+    ModelWriter(int capacity, long retentionMillis) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.retentionNanos = retentionMillis * 1_000_000;
+        this.thread = new Thread(this::run, "qt-model-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Accoda il salvataggio di un clustering.
+     *
+     * @param clusters cluster da salvare.
+     * @param fileName nome del file (senza estensione).
+     * @return salvataggio accodato.
+     * @throws ServerBusyException se i salvataggi in attesa sono troppi o il server e' in arresto.
+     */
+    SaveHandle submit(ClusterSet clusters, String fileName) throws ServerBusyException {
+        purge();
+        SaveHandle save = new SaveHandle(lastId.incrementAndGet(), fileName, clusters);
+        saves.put(save.getId(), save);
+        pending.put(fileName, save);
+        if (stopping || !queue.offer(save)) {
+            saves.remove(save.getId());
+            pending.remove(fileName, save);
+            throw new ServerBusyException("Errore: troppi salvataggi in corso, riprovare piu' tardi!");
+        }
+        return save;
+    }
+
+    /**
+     * Restituisce il salvataggio con l'identificativo indicato.
+     *
+     * @param id identificativo del salvataggio.
+     * @return salvataggio richiesto, oppure null se inesistente o gia' rimosso.
+     */
+    SaveHandle get(int id) {
+        return saves.get(id);
+    }
+
+    /**
+     * Attende il termine dell'ultimo salvataggio accodato del file indicato, se ve n'e' uno in corso.
+     *
+     * @param fileName nome del file (senza estensione).
+     * @throws InterruptedException se l'attesa viene interrotta.
+     */
+    void awaitFile(String fileName) throws InterruptedException {
+        SaveHandle save = pending.get(fileName);
+        if (save != null) {
+            save.awaitFinished();
+        }
+    }
+
+    /**
+     * Restituisce il numero di salvataggi in attesa del thread di scrittura.
+     *
+     * @return salvataggi in attesa.
+     */
+    int getQueued() {
+        return queue.size();
+    }
+
+    /**
+     * Completa i salvataggi accodati e arresta il thread di scrittura, attendendolo
+     * per al piu' il tempo indicato.
+     *
+     * @param timeoutMillis attesa massima in millisecondi.
+     */
+    void shutdown(long timeoutMillis) {
+        stopping = true;
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ciclo del thread di scrittura: preleva i salvataggi accodati a gruppi e li scrive,
+     * finche' il server non viene arrestato e la coda e' vuota.
+     */
+    private void run() {
+        List<SaveHandle> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                SaveHandle first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (stopping) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH - 1);
+                write(batch);
+            } catch (InterruptedException ex) {
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Scrive un gruppo di salvataggi: prima tutti i file temporanei, poi la loro scrittura
+     * su disco, le rinomine e la scrittura su disco delle cartelle. Un salvataggio non riuscito
+     * non impedisce gli altri.
+     *
+     * @param batch salvataggi da scrivere.
+     */
+    private void write(List<SaveHandle> batch) {
+        long start = System.nanoTime();
+        List<SaveHandle> written = new ArrayList<>(batch.size());
+        List<StagedModel> staged = new ArrayList<>(batch.size());
+        for (SaveHandle save : batch) {
+            try {
+                staged.add(StagedModel.write(save.writing(), save.getFileName() + QTMiner.FILE_FORMAT));
+                written.add(save);
+            } catch (IOException | RuntimeException ex) {
+                fail(save, ex);
+            }
+        }
+        for (int i = 0; i < staged.size(); i++) {
+            StagedModel model = staged.get(i);
+            try {
+                model.sync();
+            } catch (IOException ex) {
+                model.discard();
+                fail(written.set(i, null), ex);
+            }
+        }
+        Set<Path> directories = new LinkedHashSet<>();
+        for (int i = 0; i < staged.size(); i++) {
+            if (written.get(i) == null) {
+                continue;
+            }
+            StagedModel model = staged.get(i);
+            try {
+                model.commit();
+                directories.add(model.getDirectory());
+            } catch (IOException ex) {
+                model.discard();
+                fail(written.set(i, null), ex);
+            }
+        }
+        for (Path directory : directories) {
+            StagedModel.syncDirectory(directory);
+        }
+        for (SaveHandle save : written) {
+            if (save != null) {
+                save.durable();
+                pending.remove(save.getFileName(), save);
+                Metrics.MODEL_SAVE_TIME.recordSince(start);
+            }
+        }
+        BATCHES.increment();
+    }
+
+    /**
+     * Segnala un salvataggio non riuscito.
+     *
+     * @param save salvataggio non riuscito.
+     * @param ex errore della scrittura.
+     */
+    private void fail(SaveHandle save, Exception ex) {
+        System.err.println("[!] Salvataggio di " + save.getFileName() + " non riuscito: " + ex.getMessage());
+        save.failed("Errore: salvataggio di " + save.getFileName() + " non riuscito (" + ex.getMessage() + ")!");
+        pending.remove(save.getFileName(), save);
+        FAILED.increment();
+    }
+
+    /**
+     * Rimuove i salvataggi terminati da piu' del tempo di conservazione.
+     */
+    private void purge() {
+        long now = System.nanoTime();
+        Iterator<SaveHandle> it = saves.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().finishedFor(now) > retentionNanos) {
+                it.remove();
+            }
+        }
+    }
+}
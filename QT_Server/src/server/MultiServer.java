@@ -1,19 +1,67 @@
 package server;
 
+import java.io.BufferedInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+
+import database.ConnectionPool;
+import metrics.Metrics;
+import mining.Canopies;
 
 /**
  * Classe che rappresenta un server multi-threaded che accetta connessioni
  * da piu' client su una porta specificata.
  * 
- * Per ogni client che si connette, viene creato un nuovo thread
- * {@link ServerOneClient} che gestisce la comunicazione in parallelo.
+ * Ogni client che si connette viene gestito da una sessione {@link ServerOneClient}
+ * eseguita su un virtual thread (se disponibili) o su un thread di piattaforma; i clustering,
+ * che impegnano la CPU, vengono eseguiti su un pool limitato di thread ({@link ComputePool}).
+ * Il numero di sessioni contemporanee e' limitato: oltre il limite il client riceve
+ * un messaggio di server sovraccarico e la connessione viene chiusa.
+ * In alternativa al front end bloccante puo' essere usato il front end non bloccante
+ * {@link NioServer}, che gestisce tutte le connessioni con pochi thread di rete.
+ * Se e' indicato un manifesto di preparazione ({@link WarmUp}), la porta viene aperta
+ * solo dopo aver caricato le tabelle del manifesto e compilato il calcolo delle distanze.
  */
 public class MultiServer {
+    /** Attesa massima, all'arresto del server, del completamento dei salvataggi accodati (ms). */
+    private static final long SAVE_SHUTDOWN_MILLIS = 30_000;
+
     /** Porta su cui il server rimane in ascolto */
     private int port;
+    /** Configurazione del server */
+    private ServerConfig config;
+    /** Pool di connessioni al database condiviso da tutti i client */
+    private ConnectionPool pool;
+    /** Pool su cui vengono eseguiti i clustering */
+    private ComputePool compute;
+    /** Dataset in memoria condivisi dalle sessioni */
+    private DatasetCache cache;
+    /** Servizi condivisi dalle sessioni */
+    private ServerContext context;
+    /** Esecutore delle sessioni dei client */
+    private ExecutorService sessions;
+    /** Permessi per le sessioni contemporanee */
+    private Semaphore sessionSlots;
+    /** Esecutore che risponde ai client respinti senza bloccare l'accettazione delle connessioni */
+    private ThreadPoolExecutor rejections;
+    /** Esecutore dell'aggiornamento in background delle tabelle in memoria (null se disattivato) */
+    private ScheduledExecutorService refresh;
+    /** Indica se la preparazione all'avvio e' terminata e la porta e' in ascolto */
+    private volatile boolean ready;
 
     /**
      * Costruttore parametrizzato della classe MultiServer.
@@ -22,37 +70,219 @@ public class MultiServer {
      * @param port numero di porta su cui il server deve rimanere in ascolto.
      */
     public MultiServer(int port) {
+        this(port, 1);
+    }
+
+    /**
+     * Costruttore parametrizzato della classe MultiServer.
+     * Inizializza il numero di porta e il pool di connessioni al database, quindi avvia il server.
+     * Le tabelle vengono caricate in parallelo su tutte le connessioni del pool.
+     *
+     * @param port numero di porta su cui il server deve rimanere in ascolto.
+     * @param dbConnections numero massimo di connessioni al database.
+     */
+    public MultiServer(int port, int dbConnections) {
+        this(port, new ServerConfig().setDbConnections(dbConnections));
+    }
+
+    /**
+     * Costruttore parametrizzato della classe MultiServer.
+     * Inizializza il numero di porta, il pool di connessioni al database, l'esecutore delle sessioni
+     * e il pool dei clustering secondo la configurazione indicata, quindi avvia il server.
+     *
+     * @param port numero di porta su cui il server deve rimanere in ascolto.
+     * @param config configurazione del server.
+     */
+    public MultiServer(int port, ServerConfig config) {
         this.port = port;
+        this.config = config;
+        this.pool = new ConnectionPool(config.getDbConnections());
+        Canopies canopies = config.getCanopyRows() > 0 ? new Canopies(config.getCanopyLoose(),
+                config.getCanopyTight(), config.getCanopyRows(), config.getComputeThreads()) : null;
+        this.compute = new ComputePool(config.getComputeThreads(), config.getComputeQueue(),
+                config.getTenantSlots(), config.getTenantQueue(), config.getTenantWeights(), canopies);
+        long refreshInterval = config.getRefreshInterval();
+        this.cache = new DatasetCache(new DatasetLoader(pool), config.getCacheBytes(), config.isCacheOffHeap(),
+                refreshInterval > 0 ? 0 : config.getCacheTtl());
+        if (refreshInterval > 0) {
+            this.refresh = Executors.newSingleThreadScheduledExecutor(SessionThreads.named("qt-refresh-"));
+            refresh.scheduleWithFixedDelay(new DatasetRefresher(cache, pool, config.getRefreshPartitions(),
+                    config.getRefreshKey(), config.getRefreshUpdated()),
+                    refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+        MemoryGovernor governor = new MemoryGovernor(config.getMemoryBudget(), config.getMemoryWait(), cache);
+        cache.setGovernor(governor);
+        JobManager jobs = new JobManager(cache, compute, governor, config.getJobRetention());
+        governor.addReclaimer(jobs::shed);
+        this.context = new ServerContext(cache, compute, jobs, governor,
+                new Compression(config.getCompressLevel(), config.getCompressThreshold()),
+                new ModelWriter(config.getSaveQueue(), config.getJobRetention()));
+        this.sessions = SessionThreads.create(config.getThreadModel(), config.getMaxSessions());
+        this.sessionSlots = new Semaphore(config.getMaxSessions());
+        this.rejections = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new ArrayBlockingQueue<>(64),
+                SessionThreads.named("qt-reject-"));
+        registerMetrics();
         run();
     }
 
     /**
-     * Avvia il server e gestisce le connessioni client.
-     * Per ogni client accettato, viene creato un nuovo thread
-     * dedicato mediante la classe {@link ServerOneClient}
+     * Registra i valori istantanei del server (sessioni attive, clustering in coda e in esecuzione,
+     * dataset, memoria prenotata e salvataggi in attesa) e pubblica le metriche tramite JMX.
+     */
+    private void registerMetrics() {
+        int maxSessions = config.getMaxSessions();
+        Metrics.gauge("sessions.active", () -> maxSessions - sessionSlots.availablePermits());
+        Metrics.gauge("compute.queued", compute::getQueued);
+        Metrics.gauge("compute.running", compute::getRunning);
+        Metrics.gauge("cache.entries", cache::size);
+        Metrics.gauge("cache.bytes", cache::getBytes);
+        Metrics.gauge("cache.usedBytes", cache::getUsedBytes);
+        Metrics.gauge("server.ready", () -> ready ? 1 : 0);
+        MemoryGovernor governor = context.getGovernor();
+        Metrics.gauge("memory.budgetBytes", governor::getBudget);
+        Metrics.gauge("memory.reservedBytes", governor::getReserved);
+        Metrics.gauge("memory.peakBytes", governor::getPeak);
+        Metrics.gauge("model.save.queued", context.getWriter()::getQueued);
+        try {
+            Metrics.registerMBean();
+        } catch (JMException ex) {
+            System.err.println("[!] Metriche non disponibili tramite JMX: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Esegue la preparazione all'avvio descritta dal manifesto indicato dalla configurazione, se presente.
+     * Un manifesto non leggibile o non valido viene segnalato e il server si avvia senza preparazione.
+     */
+    private void warmUp() {
+        String manifest = config.getWarmupManifest();
+        if (manifest == null || manifest.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            List<WarmUp.Entry> entries = WarmUp.readManifest(manifest);
+            int tables = new WarmUp(cache, config.getWarmupMillis()).run(entries);
+            System.out.println("Preparazione completata: " + tables + "/" + entries.size() + " tabelle in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (IOException | IllegalArgumentException ex) {
+            System.err.println("[!] Manifesto di preparazione non valido: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Esegue la preparazione all'avvio, quindi avvia il server con il front end indicato dalla configurazione
+     * e, al suo termine, arresta gli esecutori, completa i salvataggi accodati e libera i dataset in memoria.
      */
     private void run() {
+        try {
+            warmUp();
+            if (ServerConfig.NIO.equals(config.getIo())) {
+                new NioServer(port, config.getEventLoops(), context, sessions, sessionSlots).run(() -> ready = true);
+            } else {
+                runBlocking();
+            }
+        } catch (IOException e) {
+            System.err.println("[!] Errore server: " + e.getMessage());
+        } finally {
+            ready = false;
+            sessions.shutdown();
+            compute.shutdown();
+            rejections.shutdown();
+            context.getWriter().shutdown(SAVE_SHUTDOWN_MILLIS);
+            if (refresh != null) {
+                refresh.shutdownNow();
+            }
+            cache.clear();
+        }
+    }
+
+    /**
+     * Gestisce le connessioni client con il front end bloccante.
+     * Il server risulta pronto solo dopo aver aperto la porta. Per ogni client accettato,
+     * se c'e' un posto libero, viene avviata una sessione {@link ServerOneClient}
+     * sull'esecutore delle sessioni; altrimenti il client viene respinto.
+     *
+     * @throws IOException se non e' possibile aprire la porta o accettare le connessioni.
+     */
+    private void runBlocking() throws IOException {
         try (ServerSocket serverSocket = new ServerSocket(port)) {
             System.out.println("Server avviato sulla porta " + port);
+            ready = true;
 
             while (true) {
                 Socket clientSocket = serverSocket.accept();
                 System.out.println("Nuovo client connesso: " + clientSocket);
 
-                new ServerOneClient(clientSocket).start();
+                if (!sessionSlots.tryAcquire()) {
+                    System.out.println("[!] Client respinto, sessioni esaurite: " + clientSocket);
+                    if (rejections.getQueue().remainingCapacity() > 0) {
+                        rejections.execute(() -> reject(clientSocket));
+                    } else {
+                        clientSocket.close();
+                    }
+                    continue;
+                }
+                ServerOneClient client = new ServerOneClient(clientSocket, context);
+                sessions.execute(() -> {
+                    try {
+                        client.run();
+                    } finally {
+                        sessionSlots.release();
+                    }
+                });
             }
+        }
+    }
 
-        } catch (IOException e) {
-            System.err.println("[!] Errore server: " + e.getMessage());
+    /**
+     * Respinge un client quando e' stato raggiunto il numero massimo di sessioni:
+     * gli invia il messaggio di server sovraccarico, nel protocollo usato dal client,
+     * come risposta alla sua prima richiesta e chiude la connessione. La richiesta del client
+     * viene letta e scartata (per al piu' un secondo), cosi' che la chiusura non interrompa
+     * la consegna del messaggio.
+     *
+     * @param clientSocket socket del client respinto.
+     */
+    private static void reject(Socket clientSocket) {
+        try (Socket s = clientSocket) {
+            s.setSoTimeout(1000);
+            BufferedInputStream in = new BufferedInputStream(s.getInputStream());
+            boolean legacy;
+            try {
+                legacy = ServerOneClient.isLegacy(in);
+            } catch (SocketTimeoutException ex) {
+                legacy = false;
+            }
+            String message = new ServerBusyException().getMessage();
+            if (legacy) {
+                ObjectOutputStream out = new ObjectOutputStream(s.getOutputStream());
+                out.writeObject(message);
+                out.flush();
+            } else {
+                DataOutputStream out = new DataOutputStream(s.getOutputStream());
+                Frame.message(0, Frame.BUSY, message).write(out);
+                out.flush();
+            }
+            s.shutdownOutput();
+            byte[] discard = new byte[1024];
+            while (in.read(discard) >= 0) {
+                // la richiesta del client viene ignorata
+            }
+        } catch (SocketTimeoutException ex) {
+            // il client non ha chiuso la connessione: viene chiusa dal server
+        } catch (IOException ex) {
+            System.err.println("[!] Errore nella risposta al client respinto: " + ex.getMessage());
         }
     }
 
     /**
-     * Metodo principale che crea una istanza della classe MultiServer sulla porta 7070.
+     * Metodo principale che crea una istanza della classe MultiServer sulla porta 7070,
+     * configurata tramite le proprieta' di sistema descritte in {@link ServerConfig}.
      *
      * @param args eventuali parametri da linea di comando (non usati)
      */
     public static void main(String[] args) {
-        new MultiServer(7070);
+        new MultiServer(7070, ServerConfig.fromSystemProperties());
     }
 }
@@ -0,0 +1,479 @@
+package server;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import metrics.Metrics;
+
+/**
+ * Classe che implementa un front end non bloccante del server, basato su {@link Selector}.
+ *
+ * Pochi thread di rete (event loop) gestiscono tutte le connessioni: ciascun event loop legge
+ * i dati disponibili in un buffer diretto condiviso, ne estrae i {@link Frame} completi e li
+ * passa all'esecutore delle sessioni, che li esegue uno alla volta per connessione tramite
+ * {@link FrameProtocol}; le risposte vengono poi scritte dall'event loop senza bloccare.
+ * Una connessione inattiva occupa quindi solo il proprio canale e il proprio stato di sessione,
+ * non un thread ne' un buffer di lettura.
+ */
+class NioServer {
+    /** Dimensione del buffer di lettura di ciascun event loop. */
+    private static final int READ_BUFFER = 64 * 1024;
+    /** Numero di richieste in coda oltre il quale si smette di leggere da una connessione. */
+    private static final int MAX_PIPELINED = 32;
+    /** Byte di risposte non ancora scritti oltre i quali chi produce una risposta attende. */
+    private static final int MAX_PENDING_BYTES = 1 << 20;
+
+    /** Porta su cui il server rimane in ascolto */
+    private final int port;
+    /** Servizi condivisi del server */
+    private final ServerContext context;
+    /** Esecutore su cui vengono eseguite le richieste */
+    private final ExecutorService workers;
+    /** Permessi per le connessioni contemporanee */
+    private final Semaphore sessionSlots;
+    /** Event loop tra cui vengono distribuite le connessioni */
+    private final EventLoop[] loops;
+
+    /**
+     * Costruttore parametrizzato della classe NioServer.
+     *
+     * @param port porta su cui rimanere in ascolto.
+     * @param eventLoops numero di thread di rete.
+     * @param context servizi condivisi del server.
+     * @param workers esecutore su cui eseguire le richieste.
+     * @param sessionSlots permessi per le connessioni contemporanee.
+     * @throws IOException se non e' possibile aprire i selector.
+     */
+    NioServer(int port, int eventLoops, ServerContext context, ExecutorService workers,
+            Semaphore sessionSlots) throws IOException {
+        this.port = port;
+        this.context = context;
+        this.workers = workers;
+        this.sessionSlots = sessionSlots;
+        this.loops = new EventLoop[Math.max(1, eventLoops)];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new EventLoop();
+        }
+    }
+
+    /**
+     * Avvia gli event loop e accetta le connessioni finche' il canale di ascolto resta aperto.
+     * Le connessioni accettate vengono assegnate agli event loop a rotazione.
+     *
+     * @param listening azione eseguita quando la porta e' in ascolto, prima di accettare connessioni.
+     * @throws IOException se non e' possibile aprire la porta.
+     */
+    void run(Runnable listening) throws IOException {
+        for (int i = 0; i < loops.length; i++) {
+            Thread t = new Thread(loops[i], "qt-nio-" + (i + 1));
+            t.setDaemon(true);
+            t.start();
+        }
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            server.bind(new InetSocketAddress(port));
+            System.out.println("Server non bloccante avviato sulla porta " + port);
+            listening.run();
+            int next = 0;
+            while (true) {
+                SocketChannel channel = server.accept();
+                if (!sessionSlots.tryAcquire()) {
+                    System.out.println("[!] Client respinto, sessioni esaurite: " + channel);
+                    reject(channel);
+                    continue;
+                }
+                channel.configureBlocking(false);
+                EventLoop loop = loops[next];
+                next = (next + 1) % loops.length;
+                loop.execute(() -> loop.register(channel));
+            }
+        }
+    }
+
+    /**
+     * Respinge una connessione inviando, se possibile, un frame {@link Frame#BUSY}.
+     *
+     * @param channel canale del client respinto.
+     */
+    private static void reject(SocketChannel channel) {
+        try (SocketChannel c = channel) {
+            c.configureBlocking(false);
+            c.write(Frame.message(0, Frame.BUSY, new ServerBusyException().getMessage()).toBuffer());
+        } catch (IOException ex) {
+            System.err.println("[!] Errore nella risposta al client respinto: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Thread di rete che gestisce un sottoinsieme delle connessioni tramite un proprio selector.
+     */
+    private class EventLoop implements Runnable {
+        /** Selector delle connessioni di questo event loop */
+        private final Selector selector;
+        /** Buffer diretto in cui vengono letti i dati di tutte le connessioni */
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER);
+        /** Operazioni richieste da altri thread, eseguite dall'event loop */
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Costruttore dell'event loop.
+         *
+         * @throws IOException se non e' possibile aprire il selector.
+         */
+        EventLoop() throws IOException {
+            selector = Selector.open();
+        }
+
+        /**
+         * Accoda un'operazione da eseguire sul thread dell'event loop e lo risveglia.
+         *
+         * @param task operazione da eseguire.
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        /**
+         * Registra una nuova connessione presso il selector.
+         *
+         * @param channel canale della connessione.
+         */
+        void register(SocketChannel channel) {
+            try {
+                Connection connection = new Connection(this, channel);
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            } catch (IOException ex) {
+                sessionSlots.release();
+                System.err.println("[!] Errore nella registrazione del client: " + ex.getMessage());
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    selector.select();
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                connection.read(readBuffer);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.flush();
+                            }
+                        } catch (IOException ex) {
+                            connection.close();
+                        }
+                    }
+                } catch (IOException ex) {
+                    System.err.println("[!] Errore server: " + ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stato di una connessione: frame parziale in lettura, richieste in attesa di esecuzione
+     * e risposte in attesa di scrittura.
+     */
+    private class Connection {
+        /** Event loop che gestisce la connessione */
+        private final EventLoop loop;
+        /** Canale della connessione */
+        private final SocketChannel channel;
+        /** Sessione del client */
+        private final ClientSession session;
+        /** Esecuzione delle richieste sulla sessione del client */
+        private final FrameProtocol protocol;
+        /** Chiave della connessione presso il selector */
+        private SelectionKey key;
+        /** Byte di un frame incompleto (null se non ce ne sono), in modalita' scrittura */
+        private ByteBuffer partial;
+        /** Richieste ricevute e non ancora eseguite */
+        private final ArrayDeque<Frame> inbox = new ArrayDeque<>();
+        /** Indica se un thread sta eseguendo le richieste della connessione */
+        private boolean running;
+        /** Risposte non ancora scritte (usate solo dall'event loop) */
+        private final ArrayDeque<ByteBuffer> outbox = new ArrayDeque<>();
+        /** Byte di risposte prodotte e non ancora scritti sul canale */
+        private long pending;
+        /** Indica se la connessione e' stata chiusa */
+        private volatile boolean closed;
+
+        /**
+         * Costruttore della connessione.
+         *
+         * @param loop event loop che gestisce la connessione.
+         * @param channel canale della connessione.
+         */
+        Connection(EventLoop loop, SocketChannel channel) {
+            this.loop = loop;
+            this.channel = channel;
+            this.session = new ClientSession(context, channel.socket().getInetAddress().getHostAddress());
+            this.protocol = new FrameProtocol(session);
+        }
+
+        /**
+         * Legge i dati disponibili ed estrae i frame completi.
+         *
+         * @param buffer buffer di lettura dell'event loop.
+         * @throws IOException se la connessione e' stata chiusa o un frame non e' valido.
+         */
+        void read(ByteBuffer buffer) throws IOException {
+            buffer.clear();
+            int n = channel.read(buffer);
+            if (n < 0) {
+                throw new IOException("connessione chiusa dal client");
+            }
+            Metrics.BYTES_IN.add(n);
+            buffer.flip();
+            ByteBuffer source = buffer;
+            if (partial != null) {
+                if (partial.remaining() < buffer.remaining()) {
+                    ByteBuffer larger = ByteBuffer.allocate(Math.max(partial.capacity() * 2, partial.position() + buffer.remaining()));
+                    partial.flip();
+                    partial = larger.put(partial);
+                }
+                partial.put(buffer);
+                partial.flip();
+                source = partial;
+            }
+            Frame frame;
+            while ((frame = Frame.decode(source)) != null) {
+                dispatch(frame);
+            }
+            if (!source.hasRemaining()) {
+                partial = null;
+            } else if (source == partial) {
+                partial.compact();
+            } else {
+                partial = ByteBuffer.allocate(Math.max(256, source.remaining())).put(source);
+            }
+        }
+
+        /**
+         * Accoda una richiesta e, se nessun thread sta servendo la connessione, ne avvia uno.
+         * Se le richieste in coda sono troppe, la lettura viene sospesa.
+         *
+         * @param frame richiesta ricevuta.
+         */
+        private void dispatch(Frame frame) {
+            boolean start;
+            synchronized (this) {
+                inbox.add(frame);
+                start = !running;
+                running = true;
+                if (inbox.size() >= MAX_PIPELINED) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+            }
+            if (start) {
+                try {
+                    workers.execute(this::drain);
+                } catch (RejectedExecutionException ex) {
+                    synchronized (this) {
+                        inbox.clear();
+                        running = false;
+                    }
+                    send(Frame.message(frame.getRequestId(), Frame.BUSY, new ServerBusyException().getMessage()));
+                }
+            }
+        }
+
+        /**
+         * Esegue le richieste in coda, una alla volta, e ne accoda le risposte all'event loop.
+         * Se la connessione e' stata chiusa durante l'esecuzione, chiude la sessione.
+         */
+        private void drain() {
+            while (true) {
+                Frame request;
+                boolean ended;
+                synchronized (this) {
+                    request = inbox.poll();
+                    ended = closed;
+                    if (request == null || ended) {
+                        running = false;
+                    }
+                }
+                if (request == null || ended) {
+                    if (ended) {
+                        finish();
+                    }
+                    return;
+                }
+                try {
+                    protocol.handle(request, this::sendFromWorker);
+                } catch (IOException ex) {
+                    synchronized (this) {
+                        inbox.clear();
+                        running = false;
+                        ended = closed;
+                    }
+                    if (ended) {
+                        finish();
+                    }
+                    return;
+                }
+                loop.execute(this::resumeReading);
+            }
+        }
+
+        /**
+         * Accoda una risposta prodotta da un thread di lavoro. Se i byte non ancora scritti
+         * superano {@link #MAX_PENDING_BYTES} attende che il client ne abbia ricevuti una parte,
+         * in modo che una risposta lunga non venga accumulata interamente in memoria.
+         *
+         * @param response risposta da inviare.
+         * @throws IOException se la connessione viene chiusa o il thread viene interrotto durante l'attesa.
+         */
+        private void sendFromWorker(Frame response) throws IOException {
+            ByteBuffer buffer = response.toBuffer();
+            synchronized (this) {
+                while (pending > MAX_PENDING_BYTES && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("invio della risposta interrotto");
+                    }
+                }
+                if (closed) {
+                    throw new IOException("connessione chiusa");
+                }
+                pending += buffer.remaining();
+            }
+            loop.execute(() -> write(buffer));
+        }
+
+        /**
+         * Riprende la lettura se era stata sospesa e la coda delle richieste si e' svuotata.
+         */
+        private void resumeReading() {
+            synchronized (this) {
+                if (key.isValid() && inbox.size() < MAX_PIPELINED) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                }
+            }
+        }
+
+        /**
+         * Accoda una risposta e prova a scriverla subito (solo dall'event loop).
+         *
+         * @param response risposta da inviare.
+         */
+        void send(Frame response) {
+            ByteBuffer buffer = response.toBuffer();
+            synchronized (this) {
+                pending += buffer.remaining();
+            }
+            write(buffer);
+        }
+
+        /**
+         * Accoda i byte di una risposta gia' conteggiati tra quelli in attesa e prova
+         * a scriverli subito (solo dall'event loop).
+         *
+         * @param buffer byte della risposta.
+         */
+        private void write(ByteBuffer buffer) {
+            if (closed) {
+                return;
+            }
+            outbox.add(buffer);
+            try {
+                flush();
+            } catch (IOException ex) {
+                close();
+            }
+        }
+
+        /**
+         * Scrive le risposte in coda finche' il canale le accetta; se non riesce a scriverle
+         * tutte richiede la notifica di scrivibilita' (solo dall'event loop).
+         *
+         * @throws IOException se si verifica un errore di scrittura.
+         */
+        void flush() throws IOException {
+            int written = 0;
+            try {
+                while (!outbox.isEmpty()) {
+                    ByteBuffer head = outbox.peek();
+                    Metrics.BYTES_OUT.add(channel.write(head));
+                    if (head.hasRemaining()) {
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                    written += head.limit();
+                    outbox.poll();
+                }
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            } finally {
+                if (written > 0) {
+                    synchronized (this) {
+                        pending -= written;
+                        notifyAll();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Chiude la sessione e libera il compressore delle risposte, quando nessun thread
+         * ne sta eseguendo le richieste.
+         */
+        private void finish() {
+            protocol.close();
+            session.close();
+        }
+
+        /**
+         * Chiude la connessione e libera il posto occupato dalla sessione. La sessione viene
+         * chiusa subito se nessun thread ne sta eseguendo le richieste, altrimenti dal thread
+         * che le esegue quando termina.
+         */
+        void close() {
+            if (closed) {
+                return;
+            }
+            boolean idle;
+            synchronized (this) {
+                closed = true;
+                idle = !running;
+                notifyAll();
+            }
+            if (idle) {
+                finish();
+            }
+            key.cancel();
+            String address = String.valueOf(channel.socket().getInetAddress());
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                System.out.println(ex);
+            }
+            sessionSlots.release();
+            System.err.println("Client " + address + " disconnesso!");
+        }
+    }
+}
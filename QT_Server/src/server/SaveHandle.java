@@ -0,0 +1,186 @@
+package server;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+import mining.ClusterSet;
+
+/**
+ * Classe che rappresenta il salvataggio su file di un clustering, accodato presso
+ * il {@link ModelWriter} e consultabile dal client tramite il suo identificativo.
+ * Il salvataggio trattiene l'insieme di cluster (immutabile) fino alla scrittura.
+ */
+class SaveHandle {
+    /** Stati di un salvataggio. */
+    enum State {
+        /** In attesa del thread di scrittura. */
+        QUEUED,
+        /** Scrittura in corso. */
+        WRITING,
+        /** File scritto, rinominato e forzato su disco. */
+        DURABLE,
+        /** Salvataggio non riuscito. */
+        FAILED
+    }
+
+    /** Identificativo del salvataggio */
+    private final int id;
+    /** Nome del file (senza estensione) */
+    private final String fileName;
+    /** Cluster da salvare (null dopo la scrittura) */
+    private ClusterSet clusters;
+    /** Stato del salvataggio */
+    private State state = State.QUEUED;
+    /** Messaggio di errore (null se assente) */
+    private String error;
+    /** Istante dell'accodamento (ns) */
+    private final long submittedAt = System.nanoTime();
+    /** Istante del termine (ns), 0 se non terminato */
+    private long finishedAt;
+    /** Numero di aggiornamenti dello stato */
+    private long version;
+
+    /**
+     * Costruttore parametrizzato della classe SaveHandle.
+     *
+     * @param id identificativo del salvataggio.
+     * @param fileName nome del file (senza estensione).
+     * @param clusters cluster da salvare.
+     */
+    SaveHandle(int id, String fileName, ClusterSet clusters) {
+        this.id = id;
+        this.fileName = fileName;
+        this.clusters = clusters;
+    }
+
+    /**
+     * Restituisce l'identificativo del salvataggio.
+     *
+     * @return identificativo del salvataggio.
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Restituisce il nome del file.
+     *
+     * @return nome del file (senza estensione).
+     */
+    String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Restituisce lo stato del salvataggio.
+     *
+     * @return stato corrente.
+     */
+    synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Segnala l'inizio della scrittura e restituisce i cluster da scrivere.
+     *
+     * @return cluster da salvare.
+     */
+    synchronized ClusterSet writing() {
+        update(State.WRITING);
+        return clusters;
+    }
+
+    /**
+     * Segnala che il file e' persistente.
+     */
+    synchronized void durable() {
+        clusters = null;
+        finishedAt = System.nanoTime();
+        update(State.DURABLE);
+    }
+
+    /**
+     * Segnala che il salvataggio non e' riuscito.
+     *
+     * @param message messaggio di errore.
+     */
+    synchronized void failed(String message) {
+        clusters = null;
+        error = message;
+        finishedAt = System.nanoTime();
+        update(State.FAILED);
+    }
+
+    /**
+     * Aggiorna lo stato e risveglia chi attende un aggiornamento.
+     *
+     * @param state nuovo stato.
+     */
+    private void update(State state) {
+        this.state = state;
+        version++;
+        notifyAll();
+    }
+
+    /**
+     * Verifica se il salvataggio e' terminato.
+     *
+     * @return "true" se il salvataggio e' terminato, con successo o con errore.
+     */
+    synchronized boolean isFinished() {
+        return state == State.DURABLE || state == State.FAILED;
+    }
+
+    /**
+     * Restituisce da quanto tempo il salvataggio e' terminato.
+     *
+     * @param now istante corrente (ns).
+     * @return tempo trascorso dal termine in ns, oppure -1 se il salvataggio non e' terminato.
+     */
+    synchronized long finishedFor(long now) {
+        return finishedAt == 0 ? -1 : now - finishedAt;
+    }
+
+    /**
+     * Attende un aggiornamento dello stato, il termine del salvataggio o lo scadere del tempo indicato.
+     *
+     * @param timeoutMillis attesa massima in millisecondi.
+     * @throws InterruptedException se l'attesa viene interrotta.
+     */
+    synchronized void awaitUpdate(long timeoutMillis) throws InterruptedException {
+        long seen = version;
+        long deadline = System.nanoTime() + timeoutMillis * 1_000_000;
+        while (version == seen && !isFinished()) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+                return;
+            }
+            wait(Math.max(1, left / 1_000_000));
+        }
+    }
+
+    /**
+     * Attende il termine del salvataggio.
+     *
+     * @throws InterruptedException se l'attesa viene interrotta.
+     */
+    synchronized void awaitFinished() throws InterruptedException {
+        while (!isFinished()) {
+            wait();
+        }
+    }
+
+    /**
+     * Scrive lo stato del salvataggio: stato (byte), tempo trascorso dall'accodamento in ms (long)
+     * e messaggio di errore (vuoto se assente).
+     *
+     * @param out flusso di destinazione.
+     * @throws IOException se si verifica un errore di scrittura.
+     */
+    synchronized void writeStatus(DataOutput out) throws IOException {
+        long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+        out.writeByte(state.ordinal());
+        out.writeLong((end - submittedAt) / 1_000_000);
+        Frame.writeString(out, error != null ? error : "");
+    }
+}
@@ -0,0 +1,28 @@
+package server;
+
+/**
+ * Eccezione lanciata quando il server non puo' accettare altro lavoro
+ * perche' ha raggiunto il numero massimo di sessioni o di clustering in attesa,
+ * oppure il limite di memoria ({@link MemoryGovernor}).
+ */
+public class ServerBusyException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Costruttore di default.
+     * Inizializza l'eccezione con un messaggio predefinito.
+     */
+    public ServerBusyException() {
+        super("Errore: server sovraccarico, riprovare piu' tardi!");
+    }
+
+    /**
+     * Costruttore parametrizzato.
+     * Inizializza l'eccezione con il messaggio indicato.
+     *
+     * @param message messaggio da mostrare all'utente.
+     */
+    public ServerBusyException(String message) {
+        super(message);
+    }
+}
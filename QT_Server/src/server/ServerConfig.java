@@ -0,0 +1,744 @@
+package server;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Classe che raccoglie i parametri di configurazione del server.
+ *
+ * I valori predefiniti possono essere sovrascritti con le proprieta' di sistema
+ * lette da {@link #fromSystemProperties()}:
+ * - "qt.db.connections": numero di connessioni al database (default 4);
+ * - "qt.server.io": front end di rete, "blocking" (un thread per client) o "nio" (default "blocking");
+ * - "qt.server.threads": modello di esecuzione delle sessioni, "virtual" o "platform" (default "virtual");
+ * - "qt.server.sessions": numero massimo di sessioni contemporanee (default 1000);
+ * - "qt.server.eventLoops": numero di thread di rete del front end "nio" (default 2);
+ * - "qt.compute.threads": numero di clustering eseguiti contemporaneamente (default numero di core);
+ * - "qt.compute.queue": numero massimo di clustering in attesa (default 64);
+ * - "qt.compute.tenantSlots": numero massimo di clustering di uno stesso client (indirizzo dell'host)
+ *   eseguiti contemporaneamente (default meta' dei clustering contemporanei, almeno 1);
+ * - "qt.compute.tenantQueue": numero massimo di clustering di uno stesso client in attesa (default 16);
+ * - "qt.compute.weights": pesi dei client nella condivisione della CPU, nella forma
+ *   "host=peso,host=peso" (default peso 1 per ogni client);
+ * - "qt.jobs.retention": per quanti millisecondi un job o un salvataggio terminato resta consultabile
+ *   (default 600000);
+ * - "qt.canopy.rows": numero minimo di tuple perche' il clustering di un dataset venga eseguito,
+ *   in modo approssimato, sulle sue canopy (default 0, clustering sempre esatto);
+ * - "qt.canopy.loose": numero massimo di attributi discreti diversi tra il centro di una canopy
+ *   e le sue tuple (default 1);
+ * - "qt.canopy.tight": numero massimo di attributi discreti diversi tra il centro di una canopy
+ *   e le tuple che non diventano centri di altre canopy (default 0);
+ * - "qt.cache.bytes": memoria massima dei dataset tenuti in memoria tra un clustering e l'altro,
+ *   in byte (default 268435456, 0 per non trattenerli);
+ * - "qt.cache.offHeap": se i dataset vengono copiati fuori dallo heap (default true);
+ * - "qt.cache.ttl": per quanti millisecondi un dataset letto dal database resta valido se non viene
+ *   aggiornato in background (default 60000);
+ * - "qt.refresh.interval": ogni quanti millisecondi le tabelle del database in memoria vengono controllate
+ *   e aggiornate in background leggendo solo le righe cambiate (default 30000, 0 per non aggiornarle);
+ * - "qt.refresh.partitions": partizioni in cui vengono divise le tabelle per individuare le righe cambiate
+ *   (default 16);
+ * - "qt.refresh.key": colonna numerica con chiave crescente delle tabelle, per leggere solo le righe
+ *   inserite (default nessuna);
+ * - "qt.refresh.updated": colonna con la data di ultima modifica delle righe (default nessuna);
+ * - "qt.warmup.manifest": file con le tabelle e i raggi da preparare all'avvio, prima di accettare
+ *   client ({@link WarmUp}) (default nessuno);
+ * - "qt.warmup.millis": durata massima della preparazione all'avvio, in millisecondi (default 120000);
+ * - "qt.memory.budget": memoria massima di dataset in memoria, clustering in corso e risultati trattenuti,
+ *   in byte ({@link MemoryGovernor}) (default tre quarti della memoria massima della JVM, 0 per non limitarla);
+ * - "qt.memory.wait": per quanti millisecondi un clustering puo' attendere che la memoria si liberi
+ *   (default 10000);
+ * - "qt.compress.level": livello di compressione deflate delle risposte ai client che la negoziano,
+ *   da 1 (piu' veloce) a 9 ({@link Compression}) (default 1, 0 per disattivarla);
+ * - "qt.compress.threshold": numero minimo di byte di dati perche' una risposta venga compressa
+ *   (default 1024);
+ * - "qt.save.queue": numero massimo di salvataggi di clustering in attesa di scrittura
+ *   ({@link ModelWriter}) (default 64).
+ */
+public class ServerConfig {
+    /** Front end con un thread (o virtual thread) bloccante per client. */
+    public static final String BLOCKING = "blocking";
+    /** Front end non bloccante basato su selector. */
+    public static final String NIO = "nio";
+
+    /** Numero di connessioni al database */
+    private int dbConnections = 4;
+    /** Front end di rete */
+    private String io = BLOCKING;
+    /** Modello di esecuzione delle sessioni */
+    private String threadModel = SessionThreads.VIRTUAL;
+    /** Numero massimo di sessioni contemporanee */
+    private int maxSessions = 1000;
+    /** Numero di thread di rete del front end non bloccante */
+    private int eventLoops = 2;
+    /** Numero di clustering eseguiti contemporaneamente */
+    private int computeThreads = Runtime.getRuntime().availableProcessors();
+    /** Numero massimo di clustering in attesa */
+    private int computeQueue = 64;
+    /** Numero massimo di clustering di uno stesso client eseguiti contemporaneamente (0 per il default) */
+    private int tenantSlots;
+    /** Numero massimo di clustering di uno stesso client in attesa */
+    private int tenantQueue = 16;
+    /** Pesi dei client nella condivisione della CPU */
+    private Map<String, Integer> tenantWeights = new HashMap<>();
+    /** Tempo di conservazione dei job terminati (ms) */
+    private long jobRetention = 600_000;
+    /** Numero minimo di tuple per il clustering sulle canopy (0 se disattivato) */
+    private int canopyRows;
+    /** Numero massimo di attributi discreti diversi tra il centro di una canopy e le sue tuple */
+    private int canopyLoose = 1;
+    /** Numero massimo di attributi discreti diversi tra il centro di una canopy e le tuple che non diventano centri */
+    private int canopyTight;
+    /** Memoria massima dei dataset in memoria (byte) */
+    private long cacheBytes = 256L << 20;
+    /** Indica se i dataset in memoria vengono copiati fuori dallo heap */
+    private boolean cacheOffHeap = true;
+    /** Tempo di validita' dei dataset letti dal database (ms) */
+    private long cacheTtl = 60_000;
+    /** Intervallo tra due controlli delle tabelle in memoria (ms), 0 se disattivati */
+    private long refreshInterval = 30_000;
+    /** Partizioni delle tabelle per individuare le righe cambiate */
+    private int refreshPartitions = 16;
+    /** Colonna con chiave crescente (vuota se non presente) */
+    private String refreshKey = "";
+    /** Colonna con la data di ultima modifica (vuota se non presente) */
+    private String refreshUpdated = "";
+    /** File con le tabelle e i raggi da preparare all'avvio (vuoto se non presente) */
+    private String warmupManifest = "";
+    /** Durata massima della preparazione all'avvio (ms) */
+    private long warmupMillis = 120_000;
+    /** Memoria massima di dataset, clustering e risultati (byte), 0 se non limitata */
+    private long memoryBudget = Runtime.getRuntime().maxMemory() / 4 * 3;
+    /** Attesa massima della memoria di un clustering (ms) */
+    private long memoryWait = 10_000;
+    /** Livello di compressione delle risposte, 0 se disattivata */
+    private int compressLevel = 1;
+    /** Numero minimo di byte di dati perche' una risposta venga compressa */
+    private int compressThreshold = 1024;
+    /** Numero massimo di salvataggi in attesa di scrittura */
+    private int saveQueue = 64;
+
+    /**
+     * Crea una configurazione a partire dalle proprieta' di sistema.
+     *
+     * @return configurazione letta.
+     */
+    public static ServerConfig fromSystemProperties() {
+        ServerConfig config = new ServerConfig();
+        config.dbConnections = Integer.getInteger("qt.db.connections", config.dbConnections);
+        config.io = System.getProperty("qt.server.io", config.io);
+        config.threadModel = System.getProperty("qt.server.threads", config.threadModel);
+        config.maxSessions = Integer.getInteger("qt.server.sessions", config.maxSessions);
+        config.eventLoops = Integer.getInteger("qt.server.eventLoops", config.eventLoops);
+        config.computeThreads = Integer.getInteger("qt.compute.threads", config.computeThreads);
+        config.computeQueue = Integer.getInteger("qt.compute.queue", config.computeQueue);
+        config.tenantSlots = Integer.getInteger("qt.compute.tenantSlots", config.tenantSlots);
+        config.tenantQueue = Integer.getInteger("qt.compute.tenantQueue", config.tenantQueue);
+        config.tenantWeights = parseWeights(System.getProperty("qt.compute.weights", ""));
+        config.jobRetention = Long.getLong("qt.jobs.retention", config.jobRetention);
+        config.canopyRows = Integer.getInteger("qt.canopy.rows", config.canopyRows);
+        config.canopyLoose = Integer.getInteger("qt.canopy.loose", config.canopyLoose);
+        config.canopyTight = Integer.getInteger("qt.canopy.tight", config.canopyTight);
+        config.cacheBytes = Long.getLong("qt.cache.bytes", config.cacheBytes);
+        config.cacheOffHeap = Boolean.parseBoolean(System.getProperty("qt.cache.offHeap",
+                Boolean.toString(config.cacheOffHeap)));
+        config.cacheTtl = Long.getLong("qt.cache.ttl", config.cacheTtl);
+        config.refreshInterval = Long.getLong("qt.refresh.interval", config.refreshInterval);
+        config.refreshPartitions = Integer.getInteger("qt.refresh.partitions", config.refreshPartitions);
+        config.refreshKey = System.getProperty("qt.refresh.key", config.refreshKey);
+        config.refreshUpdated = System.getProperty("qt.refresh.updated", config.refreshUpdated);
+        config.warmupManifest = System.getProperty("qt.warmup.manifest", config.warmupManifest);
+        config.warmupMillis = Long.getLong("qt.warmup.millis", config.warmupMillis);
+        config.memoryBudget = Long.getLong("qt.memory.budget", config.memoryBudget);
+        config.memoryWait = Long.getLong("qt.memory.wait", config.memoryWait);
+        config.compressLevel = Integer.getInteger("qt.compress.level", config.compressLevel);
+        config.compressThreshold = Integer.getInteger("qt.compress.threshold", config.compressThreshold);
+        config.saveQueue = Integer.getInteger("qt.save.queue", config.saveQueue);
+        return config;
+    }
+
+    /**
+     * Legge i pesi dei client nella forma "host=peso,host=peso".
+     *
+     * @param text pesi da leggere.
+     * @return pesi per indirizzo dell'host.
+     * @throws IllegalArgumentException se un peso non e' valido.
+     */
+    private static Map<String, Integer> parseWeights(String text) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String entry : text.split(",")) {
+            if (entry.trim().isEmpty()) {
+                continue;
+            }
+            int separator = entry.lastIndexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Errore: peso \"" + entry + "\" non valido!");
+            }
+            weights.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * Restituisce il numero di connessioni al database.
+     *
+     * @return numero di connessioni.
+     */
+    public int getDbConnections() {
+        return dbConnections;
+    }
+
+    /**
+     * Imposta il numero di connessioni al database.
+     *
+     * @param dbConnections numero di connessioni.
+     * @return questa configurazione.
+     */
+    public ServerConfig setDbConnections(int dbConnections) {
+        this.dbConnections = dbConnections;
+        return this;
+    }
+
+    /**
+     * Restituisce il front end di rete ({@link #BLOCKING} o {@link #NIO}).
+     *
+     * @return front end di rete.
+     */
+    public String getIo() {
+        return io;
+    }
+
+    /**
+     * Imposta il front end di rete ({@link #BLOCKING} o {@link #NIO}).
+     *
+     * @param io front end di rete.
+     * @return questa configurazione.
+     */
+    public ServerConfig setIo(String io) {
+        this.io = io;
+        return this;
+    }
+
+    /**
+     * Restituisce il modello di esecuzione delle sessioni ("virtual" o "platform").
+     *
+     * @return modello di esecuzione.
+     */
+    public String getThreadModel() {
+        return threadModel;
+    }
+
+    /**
+     * Imposta il modello di esecuzione delle sessioni ("virtual" o "platform").
+     *
+     * @param threadModel modello di esecuzione.
+     * @return questa configurazione.
+     */
+    public ServerConfig setThreadModel(String threadModel) {
+        this.threadModel = threadModel;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero massimo di sessioni contemporanee.
+     *
+     * @return numero massimo di sessioni.
+     */
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * Imposta il numero massimo di sessioni contemporanee.
+     *
+     * @param maxSessions numero massimo di sessioni.
+     * @return questa configurazione.
+     */
+    public ServerConfig setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero di thread di rete del front end non bloccante.
+     *
+     * @return numero di thread di rete.
+     */
+    public int getEventLoops() {
+        return eventLoops;
+    }
+
+    /**
+     * Imposta il numero di thread di rete del front end non bloccante.
+     *
+     * @param eventLoops numero di thread di rete.
+     * @return questa configurazione.
+     */
+    public ServerConfig setEventLoops(int eventLoops) {
+        this.eventLoops = eventLoops;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero di clustering eseguiti contemporaneamente.
+     *
+     * @return numero di clustering contemporanei.
+     */
+    public int getComputeThreads() {
+        return computeThreads;
+    }
+
+    /**
+     * Imposta il numero di clustering eseguiti contemporaneamente.
+     *
+     * @param computeThreads numero di clustering contemporanei.
+     * @return questa configurazione.
+     */
+    public ServerConfig setComputeThreads(int computeThreads) {
+        this.computeThreads = computeThreads;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero massimo di clustering in attesa.
+     *
+     * @return numero massimo di clustering in attesa.
+     */
+    public int getComputeQueue() {
+        return computeQueue;
+    }
+
+    /**
+     * Imposta il numero massimo di clustering in attesa.
+     *
+     * @param computeQueue numero massimo di clustering in attesa.
+     * @return questa configurazione.
+     */
+    public ServerConfig setComputeQueue(int computeQueue) {
+        this.computeQueue = computeQueue;
+        return this;
+    }
+
+    /**
+     * Restituisce per quanti millisecondi un job terminato resta consultabile.
+     *
+     * @return tempo di conservazione dei job.
+     */
+    public long getJobRetention() {
+        return jobRetention;
+    }
+
+    /**
+     * Imposta per quanti millisecondi un job terminato resta consultabile.
+     *
+     * @param jobRetention tempo di conservazione dei job.
+     * @return questa configurazione.
+     */
+    public ServerConfig setJobRetention(long jobRetention) {
+        this.jobRetention = jobRetention;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero minimo di tuple perche' il clustering venga eseguito sulle canopy del dataset.
+     *
+     * @return numero minimo di tuple (0 se il clustering e' sempre esatto).
+     */
+    public int getCanopyRows() {
+        return canopyRows;
+    }
+
+    /**
+     * Imposta il numero minimo di tuple perche' il clustering venga eseguito sulle canopy del dataset.
+     *
+     * @param canopyRows numero minimo di tuple (0 per un clustering sempre esatto).
+     * @return questa configurazione.
+     */
+    public ServerConfig setCanopyRows(int canopyRows) {
+        this.canopyRows = canopyRows;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero massimo di attributi discreti diversi tra il centro di una canopy e le sue tuple.
+     *
+     * @return soglia larga delle canopy.
+     */
+    public int getCanopyLoose() {
+        return canopyLoose;
+    }
+
+    /**
+     * Imposta il numero massimo di attributi discreti diversi tra il centro di una canopy e le sue tuple.
+     *
+     * @param canopyLoose soglia larga delle canopy.
+     * @return questa configurazione.
+     */
+    public ServerConfig setCanopyLoose(int canopyLoose) {
+        this.canopyLoose = canopyLoose;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero massimo di attributi discreti diversi tra il centro di una canopy
+     * e le tuple che non diventano centri di altre canopy.
+     *
+     * @return soglia stretta delle canopy.
+     */
+    public int getCanopyTight() {
+        return canopyTight;
+    }
+
+    /**
+     * Imposta il numero massimo di attributi discreti diversi tra il centro di una canopy
+     * e le tuple che non diventano centri di altre canopy.
+     *
+     * @param canopyTight soglia stretta delle canopy.
+     * @return questa configurazione.
+     */
+    public ServerConfig setCanopyTight(int canopyTight) {
+        this.canopyTight = canopyTight;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero massimo di clustering di uno stesso client eseguiti contemporaneamente.
+     *
+     * @return numero massimo di clustering contemporanei per client.
+     */
+    public int getTenantSlots() {
+        return tenantSlots > 0 ? tenantSlots : Math.max(1, computeThreads / 2);
+    }
+
+    /**
+     * Imposta il numero massimo di clustering di uno stesso client eseguiti contemporaneamente.
+     *
+     * @param tenantSlots numero massimo di clustering contemporanei per client.
+     * @return questa configurazione.
+     */
+    public ServerConfig setTenantSlots(int tenantSlots) {
+        this.tenantSlots = tenantSlots;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero massimo di clustering di uno stesso client in attesa.
+     *
+     * @return numero massimo di clustering in attesa per client.
+     */
+    public int getTenantQueue() {
+        return tenantQueue;
+    }
+
+    /**
+     * Imposta il numero massimo di clustering di uno stesso client in attesa.
+     *
+     * @param tenantQueue numero massimo di clustering in attesa per client.
+     * @return questa configurazione.
+     */
+    public ServerConfig setTenantQueue(int tenantQueue) {
+        this.tenantQueue = tenantQueue;
+        return this;
+    }
+
+    /**
+     * Restituisce i pesi dei client nella condivisione della CPU.
+     *
+     * @return pesi per indirizzo dell'host.
+     */
+    public Map<String, Integer> getTenantWeights() {
+        return Collections.unmodifiableMap(tenantWeights);
+    }
+
+    /**
+     * Imposta il peso di un client nella condivisione della CPU.
+     *
+     * @param host indirizzo dell'host del client.
+     * @param weight peso del client.
+     * @return questa configurazione.
+     */
+    public ServerConfig setTenantWeight(String host, int weight) {
+        tenantWeights.put(host, weight);
+        return this;
+    }
+
+    /**
+     * Restituisce la memoria massima dei dataset tenuti in memoria.
+     *
+     * @return memoria massima in byte (0 se i dataset non vengono trattenuti).
+     */
+    public long getCacheBytes() {
+        return cacheBytes;
+    }
+
+    /**
+     * Imposta la memoria massima dei dataset tenuti in memoria.
+     *
+     * @param cacheBytes memoria massima in byte (0 per non trattenerli).
+     * @return questa configurazione.
+     */
+    public ServerConfig setCacheBytes(long cacheBytes) {
+        this.cacheBytes = cacheBytes;
+        return this;
+    }
+
+    /**
+     * Indica se i dataset in memoria vengono copiati fuori dallo heap.
+     *
+     * @return "true" se i dataset sono fuori dallo heap.
+     */
+    public boolean isCacheOffHeap() {
+        return cacheOffHeap;
+    }
+
+    /**
+     * Imposta se i dataset in memoria vengono copiati fuori dallo heap.
+     *
+     * @param cacheOffHeap "true" per copiare i dataset fuori dallo heap.
+     * @return questa configurazione.
+     */
+    public ServerConfig setCacheOffHeap(boolean cacheOffHeap) {
+        this.cacheOffHeap = cacheOffHeap;
+        return this;
+    }
+
+    /**
+     * Restituisce il tempo di validita' dei dataset letti dal database.
+     *
+     * @return tempo di validita' in millisecondi.
+     */
+    public long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    /**
+     * Imposta il tempo di validita' dei dataset letti dal database.
+     *
+     * @param cacheTtl tempo di validita' in millisecondi.
+     * @return questa configurazione.
+     */
+    public ServerConfig setCacheTtl(long cacheTtl) {
+        this.cacheTtl = cacheTtl;
+        return this;
+    }
+
+    /**
+     * Restituisce l'intervallo tra due controlli delle tabelle del database in memoria.
+     *
+     * @return intervallo in millisecondi (0 se i controlli sono disattivati).
+     */
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Imposta l'intervallo tra due controlli delle tabelle del database in memoria.
+     *
+     * @param refreshInterval intervallo in millisecondi (0 per disattivare i controlli).
+     * @return questa configurazione.
+     */
+    public ServerConfig setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero di partizioni in cui vengono divise le tabelle per individuare le righe cambiate.
+     *
+     * @return numero di partizioni.
+     */
+    public int getRefreshPartitions() {
+        return refreshPartitions;
+    }
+
+    /**
+     * Imposta il numero di partizioni in cui vengono divise le tabelle per individuare le righe cambiate.
+     *
+     * @param refreshPartitions numero di partizioni.
+     * @return questa configurazione.
+     */
+    public ServerConfig setRefreshPartitions(int refreshPartitions) {
+        this.refreshPartitions = refreshPartitions;
+        return this;
+    }
+
+    /**
+     * Restituisce il nome della colonna con chiave crescente delle tabelle.
+     *
+     * @return nome della colonna (vuoto se non presente).
+     */
+    public String getRefreshKey() {
+        return refreshKey;
+    }
+
+    /**
+     * Imposta il nome della colonna con chiave crescente delle tabelle.
+     *
+     * @param refreshKey nome della colonna (vuoto se non presente).
+     * @return questa configurazione.
+     */
+    public ServerConfig setRefreshKey(String refreshKey) {
+        this.refreshKey = refreshKey;
+        return this;
+    }
+
+    /**
+     * Restituisce il nome della colonna con la data di ultima modifica delle righe.
+     *
+     * @return nome della colonna (vuoto se non presente).
+     */
+    public String getRefreshUpdated() {
+        return refreshUpdated;
+    }
+
+    /**
+     * Imposta il nome della colonna con la data di ultima modifica delle righe.
+     *
+     * @param refreshUpdated nome della colonna (vuoto se non presente).
+     * @return questa configurazione.
+     */
+    public ServerConfig setRefreshUpdated(String refreshUpdated) {
+        this.refreshUpdated = refreshUpdated;
+        return this;
+    }
+
+    /**
+     * Restituisce il file con le tabelle e i raggi da preparare all'avvio.
+     *
+     * @return percorso del file (vuoto se non presente).
+     */
+    public String getWarmupManifest() {
+        return warmupManifest;
+    }
+
+    /**
+     * Imposta il file con le tabelle e i raggi da preparare all'avvio.
+     *
+     * @param warmupManifest percorso del file (vuoto se non presente).
+     * @return questa configurazione.
+     */
+    public ServerConfig setWarmupManifest(String warmupManifest) {
+        this.warmupManifest = warmupManifest;
+        return this;
+    }
+
+    /**
+     * Restituisce la durata massima della preparazione all'avvio.
+     *
+     * @return durata in millisecondi.
+     */
+    public long getWarmupMillis() {
+        return warmupMillis;
+    }
+
+    /**
+     * Imposta la durata massima della preparazione all'avvio.
+     *
+     * @param warmupMillis durata in millisecondi.
+     * @return questa configurazione.
+     */
+    public ServerConfig setWarmupMillis(long warmupMillis) {
+        this.warmupMillis = warmupMillis;
+        return this;
+    }
+
+    /**
+     * Restituisce la memoria massima di dataset in memoria, clustering in corso e risultati trattenuti.
+     *
+     * @return memoria in byte (0 se non limitata).
+     */
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Imposta la memoria massima di dataset in memoria, clustering in corso e risultati trattenuti.
+     *
+     * @param memoryBudget memoria in byte (0 per non limitarla).
+     * @return questa configurazione.
+     */
+    public ServerConfig setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        return this;
+    }
+
+    /**
+     * Restituisce per quanto tempo un clustering puo' attendere che la memoria si liberi.
+     *
+     * @return attesa in millisecondi.
+     */
+    public long getMemoryWait() {
+        return memoryWait;
+    }
+
+    /**
+     * Imposta per quanto tempo un clustering puo' attendere che la memoria si liberi.
+     *
+     * @param memoryWait attesa in millisecondi.
+     * @return questa configurazione.
+     */
+    public ServerConfig setMemoryWait(long memoryWait) {
+        this.memoryWait = memoryWait;
+        return this;
+    }
+
+    /**
+     * Restituisce il livello di compressione delle risposte.
+     *
+     * @return livello da 1 a 9 (0 se la compressione e' disattivata).
+     */
+    public int getCompressLevel() {
+        return compressLevel;
+    }
+
+    /**
+     * Imposta il livello di compressione delle risposte.
+     *
+     * @param compressLevel livello da 1 (piu' veloce) a 9 (piu' compatto), 0 per disattivare la compressione.
+     * @return questa configurazione.
+     */
+    public ServerConfig setCompressLevel(int compressLevel) {
+        this.compressLevel = compressLevel;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero minimo di byte di dati perche' una risposta venga compressa.
+     *
+     * @return soglia in byte.
+     */
+    public int getCompressThreshold() {
+        return compressThreshold;
+    }
+
+    /**
+     * Imposta il numero minimo di byte di dati perche' una risposta venga compressa.
+     *
+     * @param compressThreshold soglia in byte.
+     * @return questa configurazione.
+     */
+    public ServerConfig setCompressThreshold(int compressThreshold) {
+        this.compressThreshold = compressThreshold;
+        return this;
+    }
+
+    /**
+     * Restituisce il numero massimo di salvataggi di clustering in attesa di scrittura.
+     *
+     * @return numero massimo di salvataggi in attesa.
+     */
+    public int getSaveQueue() {
+        return saveQueue;
+    }
+
+    /**
+     * Imposta il numero massimo di salvataggi di clustering in attesa di scrittura.
+     *
+     * @param saveQueue numero massimo di salvataggi in attesa.
+     * @return questa configurazione.
+     */
+    public ServerConfig setSaveQueue(int saveQueue) {
+        this.saveQueue = saveQueue;
+        return this;
+    }
+}
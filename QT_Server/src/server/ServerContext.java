@@ -0,0 +1,95 @@
+package server;
+
+/**
+ * Classe che raccoglie i servizi condivisi da tutte le sessioni del server:
+ * dataset in memoria, esecuzione dei clustering, gestione dei job, limite della memoria,
+ * compressione delle risposte e salvataggio dei clustering.
+ */
+class ServerContext {
+    /** Dataset in memoria */
+    private final DatasetCache cache;
+    /** Pool su cui vengono eseguiti i clustering */
+    private final ComputePool compute;
+    /** Job di clustering asincroni */
+    private final JobManager jobs;
+    /** Limite della memoria dei clustering */
+    private final MemoryGovernor governor;
+    /** Compressione delle risposte */
+    private final Compression compression;
+    /** Salvataggio dei clustering in background */
+    private final ModelWriter writer;
+
+    /**
+     * Costruttore parametrizzato della classe ServerContext.
+     *
+     * @param cache dataset in memoria.
+     * @param compute pool su cui eseguire i clustering.
+     * @param jobs job di clustering asincroni.
+     * @param governor limite della memoria dei clustering.
+     * @param compression compressione delle risposte.
+     * @param writer salvataggio dei clustering in background.
+     */
+    ServerContext(DatasetCache cache, ComputePool compute, JobManager jobs, MemoryGovernor governor,
+            Compression compression, ModelWriter writer) {
+        this.cache = cache;
+        this.compute = compute;
+        this.jobs = jobs;
+        this.governor = governor;
+        this.compression = compression;
+        this.writer = writer;
+    }
+
+    /**
+     * Restituisce i dataset in memoria, da cui le sessioni ottengono i dataset da clusterizzare.
+     *
+     * @return dataset in memoria.
+     */
+    DatasetCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Restituisce il pool su cui vengono eseguiti i clustering.
+     *
+     * @return pool dei clustering.
+     */
+    ComputePool getCompute() {
+        return compute;
+    }
+
+    /**
+     * Restituisce il gestore dei job di clustering asincroni.
+     *
+     * @return gestore dei job.
+     */
+    JobManager getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Restituisce il limite della memoria, presso cui le sessioni prenotano la memoria dei clustering.
+     *
+     * @return limite della memoria.
+     */
+    MemoryGovernor getGovernor() {
+        return governor;
+    }
+
+    /**
+     * Restituisce la compressione delle risposte, negoziata da ogni connessione del protocollo binario.
+     *
+     * @return compressione delle risposte.
+     */
+    Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Restituisce il salvataggio dei clustering in background, presso cui le sessioni accodano i salvataggi.
+     *
+     * @return salvataggio dei clustering.
+     */
+    ModelWriter getWriter() {
+        return writer;
+    }
+}
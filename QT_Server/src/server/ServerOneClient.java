@@ -9,136 +9,61 @@ import database.DatabaseConnectionException;
 import database.EmptySetException;
 import database.EmptyTypeException;
 import database.NoValueException;
+import metrics.CountingInputStream;
+import metrics.CountingOutputStream;
+import metrics.Metrics;
 import mining.ClusteringRadiusException;
-import mining.QTMiner;
 /**
- * Classe Thread che si occupa della gestione del singolo client,
+ * Classe che si occupa della gestione del singolo client,
  * in modo da avere una gestione multi-client separata.
- * Istanziata dalla classe {@link MultiServer}
+ * Istanziata dalla classe {@link MultiServer}, che la esegue sull'esecutore delle sessioni;
+ * i clustering vengono delegati al {@link ComputePool} condiviso.
  */
-class ServerOneClient extends Thread {
+class ServerOneClient implements Runnable {
     /** Socket associato al client */
     private Socket socket;
     /** Flusso di input dal client */
     private ObjectInputStream in;
     /** Flusso di output verso il client */
     private ObjectOutputStream out;
-    /** Nome della tabella corrente del database */
-    private String tableName;
-    /** Ultimo clustering eseguito */
-    private QTMiner lastMiner;
+    /** Stato e comandi del client */
+    private ClientSession session;
 
     /**
      * Costruttore parametrizzato della classe ServerOneClient.
-     * Inizializza il socket del client e flussi di input/output.
+     * Inizializza il socket del client; i flussi di input/output vengono aperti
+     * all'avvio della sessione, in modo da non bloccare il thread che accetta le connessioni.
      * 
      * @param s socket associato al client.
-     * @throws IOException se si verifica un errore di I/O nell'apertura dei flussi.
+     * @param context servizi condivisi del server.
      */
-    public ServerOneClient(Socket s) throws IOException {
+    public ServerOneClient(Socket s, ServerContext context) {
         this.socket = s;
-        this.out = new ObjectOutputStream(socket.getOutputStream());
-        this.out.flush(); 
-        this.in = new ObjectInputStream(socket.getInputStream());
+        this.session = new ClientSession(context, socket.getInetAddress().getHostAddress());
     }
 
     /**
      * Esegue il ciclo di ascolto delle richieste del client.
-     * In base al comando ricevuto, richiama le operazioni di clustering, apprendimento dal database o apprendimento da file.
-     * In caso di errore esso viene comunicato al client.
+     * Il protocollo viene riconosciuto dai primi byte ricevuti: i client che usano la serializzazione
+     * Java iniziano con l'intestazione di {@link ObjectOutputStream}, gli altri inviano direttamente
+     * i frame del protocollo binario ({@link Frame}).
      */
     @Override
     public void run() {
         try {
-            while (true) {
-                Object request = in.readObject(); 
-                int command = (Integer) request;
-
-                switch (command) {
-                    case 0: 
-                        System.out.println("[!] Richiesta storeTableFromDb");
-                        tableName = (String) in.readObject();
-                        out.writeObject("OK");
-                        out.flush();
-                        break;
-                    case 1: 
-                        System.out.println("[!] Richiesta learningFromDbTable");
-                        
-                        double radius = 1.0;
-                        do{
-                        	radius = (double) in.readObject();
-                        }while(Double.isNaN(radius));
-                        
-                                
-                        try {                    
-                        	Data data = new Data(tableName); 
-                        	lastMiner = new QTMiner(radius);
-                        	int numIter = lastMiner.compute(data); 
-
-                        	
-                        	out.writeObject("OK"); 
-                        	out.writeObject(numIter);
-                        	out.writeObject(lastMiner.getC().toString(data));
-                        	out.flush();
-                        	break;
-                        }
-                        catch(DatabaseConnectionException ex) {
-                        	out.writeObject(ex.getMessage());
-                        }
-                        catch(EmptySetException ex) {
-                        	out.writeObject(ex.getMessage());
-                        }
-                        catch(NoValueException ex) {
-                        	out.writeObject(ex.getMessage());
-                        }
-                        catch(SQLException ex) {
-                        	out.writeObject("Errore: tabella non trovata!");
-                        }
-                        catch(ClusteringRadiusException ex) {
-                        	out.writeObject(ex.getMessage());
-                        }
-                        catch(EmptyDatasetException ex){
-                        	out.writeObject(ex.getMessage());
-                        }
-                        catch(IllegalArgumentException ex) {
-                        	out.writeObject(ex.getMessage());
-                        }
-                        catch(EmptyTypeException ex) {
-                        	out.writeObject(ex.getMessage());
-                        }
-                    case 2: 
-                        System.out.println("[!] Richiesta storeClusterInFile");
-                        String fileName = (String) in.readObject();
-
-                        if (lastMiner != null) {
-                            lastMiner.salva(fileName);
-                            out.writeObject("Clustering salvato correttamente in " + fileName);
-                        } else {
-                            out.writeObject("Errore: nessun clustering disponibile da salvare!");
-                        }
-                        out.writeObject("OK");
-                        out.flush();
-                        break;
-                    case 3: 
-                        System.out.println("[!] Richiesta learningFromFile");
-                        String fileLoad = (String) in.readObject();
-                        try {
-                        	QTMiner file_miner = new QTMiner(fileLoad);
-                        	out.writeObject("Cluster recuperati dal file: \n" + file_miner.getC());
-                            out.writeObject("OK");
-                            out.flush();
-                            break;
-                        }
-                        catch (IOException ex) {
-                        	out.writeObject("err");
-                        	out.writeObject("Errore: File non trovato!");
-                        	break;
-                        }
-                }
+            BufferedInputStream input = new BufferedInputStream(
+                    new CountingInputStream(socket.getInputStream(), Metrics.BYTES_IN));
+            BufferedOutputStream output = new BufferedOutputStream(
+                    new CountingOutputStream(socket.getOutputStream(), Metrics.BYTES_OUT));
+            if (isLegacy(input)) {
+                runLegacy(input, output);
+            } else {
+                runFramed(input, output);
             }
         } catch (Exception e) {
             System.err.println("Client " + socket.getInetAddress().getHostAddress() + " disconnesso!");
         } finally {
+            session.close();
             try {
                 socket.close();
             } catch (IOException ex) {
@@ -146,4 +71,148 @@ class ServerOneClient extends Thread {
             }
         }
     }
+
+    /**
+     * Verifica, senza consumarli, se i primi byte ricevuti sono l'intestazione
+     * di un flusso di serializzazione Java.
+     *
+     * @param input flusso di input dal client.
+     * @return "true" se il client usa la serializzazione Java.
+     * @throws IOException se si verifica un errore di lettura.
+     */
+    static boolean isLegacy(BufferedInputStream input) throws IOException {
+        input.mark(2);
+        int first = input.read();
+        int second = input.read();
+        input.reset();
+        return ((first << 8) | second) == (ObjectStreamConstants.STREAM_MAGIC & 0xFFFF);
+    }
+
+    /**
+     * Esegue le richieste del protocollo binario, una alla volta, finche' il client non si disconnette.
+     *
+     * @param input flusso di input dal client.
+     * @param output flusso di output verso il client.
+     * @throws IOException se si verifica un errore di comunicazione.
+     */
+    private void runFramed(InputStream input, OutputStream output) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        DataOutputStream out = new DataOutputStream(output);
+        FrameProtocol protocol = new FrameProtocol(session);
+        try {
+            while (true) {
+                protocol.handle(Frame.read(in), frame -> frame.write(out));
+                out.flush();
+            }
+        } finally {
+            protocol.close();
+        }
+    }
+
+    /**
+     * Esegue le richieste del vecchio protocollo basato sulla serializzazione Java.
+     * In base al comando ricevuto, richiama le operazioni di clustering, apprendimento dal database o apprendimento da file.
+     * In caso di errore esso viene comunicato al client.
+     * Dopo ogni comando il flusso di output viene azzerato, in modo che la tabella degli oggetti
+     * gia' inviati non cresca per tutta la durata della sessione.
+     *
+     * @param input flusso di input dal client.
+     * @param output flusso di output verso il client.
+     * @throws Exception se si verifica un errore di comunicazione o il client si disconnette.
+     */
+    private void runLegacy(InputStream input, OutputStream output) throws Exception {
+        out = new ObjectOutputStream(output);
+        out.flush();
+        in = new ObjectInputStream(input);
+        while (true) {
+            out.reset();
+            Object request = in.readObject(); 
+            int command = (Integer) request;
+
+            switch (command) {
+                case 0: 
+                    System.out.println("[!] Richiesta storeTableFromDb");
+                    session.setTableName((String) in.readObject());
+                    out.writeObject("OK");
+                    out.flush();
+                    break;
+                case 1: 
+                    System.out.println("[!] Richiesta learningFromDbTable");
+                    
+                    double radius = 1.0;
+                    do{
+                    	radius = (double) in.readObject();
+                    }while(Double.isNaN(radius));
+                    
+                            
+                    try {                    
+                    	int numIter = session.learn(radius); 
+
+                    	
+                    	out.writeObject("OK"); 
+                    	out.writeObject(numIter);
+                    	out.writeObject(session.describeLast());
+                    	out.flush();
+                    	break;
+                    }
+                    catch(DatabaseConnectionException ex) {
+                    	out.writeObject(ex.getMessage());
+                    }
+                    catch(EmptySetException ex) {
+                    	out.writeObject(ex.getMessage());
+                    }
+                    catch(NoValueException ex) {
+                    	out.writeObject(ex.getMessage());
+                    }
+                    catch(SQLException ex) {
+                    	out.writeObject(session.learnError(ex));
+                    }
+                    catch(ClusteringRadiusException ex) {
+                    	out.writeObject(ex.getMessage());
+                    }
+                    catch(EmptyDatasetException ex){
+                    	out.writeObject(ex.getMessage());
+                    }
+                    catch(IllegalArgumentException ex) {
+                    	out.writeObject(ex.getMessage());
+                    }
+                    catch(EmptyTypeException ex) {
+                    	out.writeObject(ex.getMessage());
+                    }
+                    catch(ServerBusyException ex) {
+                    	out.writeObject(ex.getMessage());
+                    }
+                    catch(IOException ex) {
+                    	out.writeObject(session.learnError(ex));
+                    }
+                    out.flush();
+                case 2: 
+                    System.out.println("[!] Richiesta storeClusterInFile");
+                    String fileName = (String) in.readObject();
+                    try {
+                        out.writeObject(ClientSession.saveMessage(session.save(fileName)));
+                    } catch (ServerBusyException ex) {
+                        out.writeObject(ex.getMessage());
+                    }
+                    out.writeObject("OK");
+                    out.flush();
+                    break;
+                case 3: 
+                    System.out.println("[!] Richiesta learningFromFile");
+                    String fileLoad = (String) in.readObject();
+                    try {
+                    	out.writeObject(session.load(fileLoad));
+                        out.writeObject("OK");
+                        out.flush();
+                        break;
+                    }
+                    catch (IOException ex) {
+                    	out.writeObject("err");
+                    	out.writeObject("Errore: File non trovato!");
+                    	out.flush();
+                    	break;
+                    }
+            }
+        }
+    }
 }
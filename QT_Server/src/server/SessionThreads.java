@@ -0,0 +1,78 @@
+package server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Classe che crea l'esecutore su cui girano le sessioni dei client.
+ *
+ * Le sessioni passano quasi tutto il tempo bloccate su socket e database: se la JVM
+ * mette a disposizione i virtual thread (Java 21 o successivo) ogni sessione ne usa uno,
+ * altrimenti le sessioni girano su thread di piattaforma riutilizzati, in numero
+ * mai superiore al massimo di sessioni contemporanee.
+ */
+final class SessionThreads {
+    /** Modello che usa un virtual thread per sessione. */
+    static final String VIRTUAL = "virtual";
+    /** Modello che usa un thread di piattaforma per sessione. */
+    static final String PLATFORM = "platform";
+
+    /**
+     * Costruttore privato: la classe offre solo metodi statici.
+     */
+    private SessionThreads() {
+    }
+
+    /**
+     * Crea l'esecutore delle sessioni.
+     *
+     * @param model modello di esecuzione richiesto ({@link #VIRTUAL} o {@link #PLATFORM}).
+     * @param maxSessions numero massimo di sessioni contemporanee.
+     * @return esecutore delle sessioni.
+     */
+    static ExecutorService create(String model, int maxSessions) {
+        if (VIRTUAL.equals(model)) {
+            ExecutorService virtual = virtualThreads();
+            if (virtual != null) {
+                return virtual;
+            }
+            System.out.println("[!] Virtual thread non disponibili, uso thread di piattaforma");
+        }
+        return new ThreadPoolExecutor(0, maxSessions, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                named("qt-session-"));
+    }
+
+    /**
+     * Crea un esecutore con un virtual thread per ogni sessione, se la JVM lo consente.
+     *
+     * @return esecutore a virtual thread, oppure null se non disponibile.
+     */
+    private static ExecutorService virtualThreads() {
+        try {
+            Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Restituisce una fabbrica di thread daemon con nome progressivo.
+     *
+     * @param prefix prefisso del nome dei thread.
+     * @return fabbrica di thread.
+     */
+    static ThreadFactory named(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
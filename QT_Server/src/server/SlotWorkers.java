@@ -0,0 +1,145 @@
+package server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import mining.ProgressListener;
+import mining.Workers;
+
+/**
+ * Classe che esegue i sottoproblemi di un clustering sugli slot di calcolo del {@link FairScheduler},
+ * invece che su thread propri del clustering.
+ *
+ * Il thread del clustering, che occupa gia' uno slot, esegue i sottoproblemi uno dopo l'altro;
+ * per ogni altro thread che potrebbe essere utile viene ammesso presso lo scheduler un clustering
+ * ausiliario dello stesso client ({@link ComputePool#help}), che quando ottiene uno slot esegue
+ * i sottoproblemi non ancora avviati. I thread ausiliari rientrano cosi' nei limiti di slot
+ * (totali e per client), il loro tempo viene addebitato al client e cedono lo slot ai punti
+ * di controllo come ogni altro clustering. Se la coda e' piena i sottoproblemi vengono eseguiti
+ * dal solo thread del clustering; quelli ausiliari ancora in attesa di uno slot vengono annullati
+ * quando non ci sono piu' sottoproblemi da avviare.
+ */
+final class SlotWorkers implements Workers {
+    /** Pool dei clustering */
+    private final ComputePool pool;
+    /** Biglietto del clustering che esegue i sottoproblemi */
+    private final FairScheduler.Ticket ticket;
+    /** Numero massimo di thread, compreso quello del clustering */
+    private final int threads;
+
+    /**
+     * Costruttore parametrizzato della classe SlotWorkers.
+     *
+     * @param pool pool dei clustering.
+     * @param ticket biglietto del clustering che esegue i sottoproblemi, che occupa gia' uno slot.
+     * @param threads numero massimo di thread, compreso quello del clustering.
+     */
+    SlotWorkers(ComputePool pool, FairScheduler.Ticket ticket, int threads) {
+        this.pool = pool;
+        this.ticket = ticket;
+        this.threads = Math.max(1, threads);
+    }
+
+    @Override
+    public <T> List<T> invokeAll(List<? extends Task<T>> tasks) throws ExecutionException, InterruptedException {
+        Batch<T> batch = new Batch<>(tasks);
+        List<Runnable> helpers = new ArrayList<>();
+        try {
+            for (int i = 1; i < Math.min(threads, tasks.size()); i++) {
+                Runnable cancel = pool.help(ticket.getTenant(), batch::drain);
+                if (cancel == null) {
+                    break;
+                }
+                helpers.add(cancel);
+            }
+            batch.drain(ticket);
+            return batch.await();
+        } finally {
+            for (Runnable cancel : helpers) {
+                cancel.run();
+            }
+        }
+    }
+
+    /**
+     * Sottoproblemi di una chiamata, prelevati nell'ordine dai thread che li eseguono.
+     *
+     * @param <T> tipo del risultato dei sottoproblemi.
+     */
+    private static final class Batch<T> {
+        /** Sottoproblemi da eseguire */
+        private final List<? extends Task<T>> tasks;
+        /** Risultati dei sottoproblemi */
+        private final Object[] results;
+        /** Indice del prossimo sottoproblema da avviare */
+        private int next;
+        /** Sottoproblemi in esecuzione */
+        private int running;
+        /** Errore del primo sottoproblema non riuscito (null se nessuno) */
+        private Throwable failure;
+
+        /**
+         * Costruttore dei sottoproblemi di una chiamata.
+         *
+         * @param tasks sottoproblemi da eseguire.
+         */
+        Batch(List<? extends Task<T>> tasks) {
+            this.tasks = tasks;
+            this.results = new Object[tasks.size()];
+        }
+
+        /**
+         * Esegue i sottoproblemi non ancora avviati, finche' ce ne sono e nessuno e' fallito.
+         *
+         * @param checkpoint punto di controllo del thread chiamante.
+         */
+        void drain(ProgressListener checkpoint) {
+            while (true) {
+                int k;
+                synchronized (this) {
+                    if (failure != null || next == tasks.size()) {
+                        return;
+                    }
+                    k = next++;
+                    running++;
+                }
+                Object result = null;
+                Throwable error = null;
+                try {
+                    result = tasks.get(k).run(checkpoint);
+                } catch (Throwable ex) {
+                    error = ex;
+                }
+                synchronized (this) {
+                    results[k] = result;
+                    if (error != null && failure == null) {
+                        failure = error;
+                    }
+                    running--;
+                    notifyAll();
+                }
+            }
+        }
+
+        /**
+         * Attende il termine dei sottoproblemi in esecuzione; va chiamato dopo {@link #drain}
+         * dal thread del clustering, quando non ci sono piu' sottoproblemi da avviare.
+         *
+         * @return risultati dei sottoproblemi, nello stesso ordine.
+         * @throws ExecutionException se un sottoproblema non e' riuscito.
+         * @throws InterruptedException se l'attesa viene interrotta.
+         */
+        @SuppressWarnings("unchecked")
+        synchronized List<T> await() throws ExecutionException, InterruptedException {
+            while (running > 0) {
+                wait();
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return (List<T>) Arrays.asList(results);
+        }
+    }
+}
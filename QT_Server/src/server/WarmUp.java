@@ -0,0 +1,234 @@
+package server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import data.Data;
+import data.DistanceMetric;
+import data.Distances;
+import data.Neighbors;
+import metrics.Metrics;
+import metrics.Timer;
+
+/**
+ * Classe che prepara il server all'avvio, prima che accetti client, secondo un manifesto
+ * con le tabelle e i raggi piu' usati: senza preparazione le prime richieste dopo ogni avvio
+ * pagano il caricamento dal database e la compilazione JIT del calcolo delle distanze.
+ *
+ * Il manifesto e' un file di testo con una riga per tabella (o file), seguita dai raggi
+ * separati da spazi; le righe vuote e quelle che iniziano con "#" vengono ignorate:
+ * <pre>
+ * playtennis 1.0 0.5
+ * /dati/meteo.csv 2
+ * </pre>
+ * Ogni tabella viene caricata nella cache dei dataset ({@link DatasetCache}) e per ogni raggio
+ * viene costruita la ricerca dei vicini sull'intero dataset ({@link Distances#neighbors});
+ * quindi le ricerche e la scansione completa vengono ripetute da un campione di tuple finche'
+ * il compilatore JIT non smette di lavorare (o scade il tempo massimo). La ricerca dei vicini
+ * di un clustering viene consumata dal clustering stesso e viene ricostruita a ogni richiesta:
+ * la preparazione ne compila il codice, non la conserva.
+ *
+ * Una tabella che non puo' essere caricata viene segnalata e saltata.
+ */
+class WarmUp {
+    /** Durata della preparazione all'avvio. */
+    private static final Timer TIME = Metrics.timer("warmup.time");
+    /** Numero di tuple da cui vengono ripetute le ricerche a ogni giro. */
+    private static final int SAMPLES = 64;
+    /** Numero massimo di giri di ricerche. */
+    private static final int MAX_ROUNDS = 50;
+    /** Numero di giri consecutivi senza compilazioni dopo cui il codice e' considerato compilato. */
+    private static final int STABLE_ROUNDS = 2;
+
+    /** Dataset in memoria */
+    private final DatasetCache cache;
+    /** Durata massima della preparazione (ms) */
+    private final long maxMillis;
+
+    /**
+     * Costruttore parametrizzato della classe WarmUp.
+     *
+     * @param cache dataset in memoria, in cui vengono caricate le tabelle.
+     * @param maxMillis durata massima della preparazione, in millisecondi.
+     */
+    WarmUp(DatasetCache cache, long maxMillis) {
+        this.cache = cache;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Legge il manifesto della preparazione.
+     *
+     * @param fileName percorso del manifesto.
+     * @return tabelle da preparare, nell'ordine del manifesto.
+     * @throws IOException se il file non e' leggibile.
+     * @throws IllegalArgumentException se una riga non e' valida.
+     */
+    static List<Entry> readManifest(String fileName) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                if (fields.length < 2) {
+                    throw new IllegalArgumentException("Errore: riga " + number + " del manifesto senza raggi!");
+                }
+                double[] radii = new double[fields.length - 1];
+                for (int k = 0; k < radii.length; k++) {
+                    try {
+                        radii[k] = Double.parseDouble(fields[k + 1]);
+                    } catch (NumberFormatException ex) {
+                        radii[k] = Double.NaN;
+                    }
+                    if (!(radii[k] >= 0)) {
+                        throw new IllegalArgumentException("Errore: raggio \"" + fields[k + 1] + "\" non valido alla riga "
+                                + number + " del manifesto!");
+                    }
+                }
+                entries.add(new Entry(fields[0], radii));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Esegue la preparazione: carica le tabelle, costruisce le ricerche dei vicini
+     * e ripete le ricerche finche' il codice non e' compilato.
+     *
+     * @param entries tabelle da preparare.
+     * @return numero di tabelle preparate.
+     */
+    int run(List<Entry> entries) {
+        long start = System.nanoTime();
+        long deadline = start + maxMillis * 1_000_000;
+        List<Data> loaded = new ArrayList<>();
+        List<Target> targets = new ArrayList<>();
+        try {
+            for (Entry entry : entries) {
+                if (System.nanoTime() > deadline) {
+                    System.err.println("[!] Preparazione interrotta: tempo massimo superato");
+                    break;
+                }
+                Data data;
+                try {
+                    data = cache.acquire(entry.table);
+                } catch (Exception ex) {
+                    System.err.println("[!] Preparazione di " + entry.table + " non riuscita: " + ex.getMessage());
+                    continue;
+                }
+                loaded.add(data);
+                for (double radius : entry.radii) {
+                    targets.add(new Target(data, radius));
+                }
+            }
+
+            CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+            boolean monitored = jit != null && jit.isCompilationTimeMonitoringSupported();
+            long compiled = -1;
+            int stable = 0;
+            for (int round = 0; round < MAX_ROUNDS && stable < STABLE_ROUNDS && !targets.isEmpty()
+                    && System.nanoTime() < deadline; round++) {
+                for (Target target : targets) {
+                    target.exercise(round);
+                }
+                if (monitored) {
+                    long time = jit.getTotalCompilationTime();
+                    stable = time == compiled ? stable + 1 : 0;
+                    compiled = time;
+                }
+            }
+            return loaded.size();
+        } finally {
+            for (Data data : loaded) {
+                data.release();
+            }
+            TIME.recordSince(start);
+        }
+    }
+
+    /**
+     * Riga del manifesto: una tabella e i raggi con cui viene raggruppata di solito.
+     */
+    static final class Entry {
+        /** Nome della tabella o del file */
+        private final String table;
+        /** Raggi da preparare */
+        private final double[] radii;
+
+        /**
+         * Costruttore della riga.
+         *
+         * @param table nome della tabella o del file.
+         * @param radii raggi da preparare.
+         */
+        Entry(String table, double[] radii) {
+            this.table = table;
+            this.radii = radii;
+        }
+    }
+
+    /**
+     * Ricerca dei vicini con un raggio sull'intero dataset, usata per esercitare il codice.
+     */
+    private static final class Target {
+        /** Distanze tra le tuple del dataset */
+        private final Distances distances;
+        /** Raggio della ricerca */
+        private final double radius;
+        /** Indici di tutte le tuple del dataset */
+        private final int[] rows;
+        /** Ricerca dei vicini sull'intero dataset */
+        private final Neighbors neighbors;
+        /** Destinazione delle ricerche */
+        private final int[] out;
+        /** Vettore di appoggio per le distanze della scansione */
+        private final double[] scratch;
+
+        /**
+         * Costruisce la ricerca dei vicini sull'intero dataset.
+         *
+         * @param data dataset.
+         * @param radius raggio della ricerca.
+         */
+        Target(Data data, double radius) {
+            int n = data.getNumberOfExamples();
+            this.distances = DistanceMetric.DEFAULT.bind(data);
+            this.radius = radius;
+            this.rows = new int[n];
+            for (int i = 0; i < n; i++) {
+                rows[i] = i;
+            }
+            this.neighbors = distances.neighbors(rows, n, radius);
+            this.out = new int[n];
+            this.scratch = new double[n];
+        }
+
+        /**
+         * Ripete la ricerca dei vicini e la scansione completa da un campione di tuple,
+         * diverso a ogni giro.
+         *
+         * @param round numero del giro.
+         */
+        void exercise(int round) {
+            int n = rows.length;
+            int step = Math.max(1, n / SAMPLES);
+            for (int origin = round % step; origin < n; origin += step) {
+                neighbors.within(origin, out);
+                distances.within(origin, rows, n, radius, scratch, out);
+            }
+        }
+    }
+}